@@ -39,6 +39,8 @@ public enum Feature {
   WEAK_VALUES,
   SOFT_VALUES,
 
+  COMPACT,
+
   EXPIRE_ACCESS,
   EXPIRE_WRITE,
   REFRESH_WRITE,
@@ -90,6 +92,10 @@ public enum Feature {
         || features.contains(Feature.REFRESH_WRITE);
   }
 
+  public static boolean usesCompactTime(Set<Feature> features) {
+    return features.contains(Feature.COMPACT);
+  }
+
   public static boolean usesExpiration(Set<Feature> features) {
     return features.contains(Feature.EXPIRE_ACCESS)
         || features.contains(Feature.EXPIRE_WRITE);
@@ -69,6 +69,7 @@ import com.squareup.javapoet.TypeSpec;
  *   <li>strong, weak, or soft value
  *   <li>access timestamp
  *   <li>write timestamp
+ *   <li>compact timestamps
  *   <li>size queue type
  *   <li>list references
  *   <li>weight
@@ -81,7 +82,7 @@ public final class NodeFactoryGenerator {
   private final List<NodeRule> rules = List.of(new AddSubtype(), new AddConstructors(),
       new AddKey(), new AddValue(), new AddMaximum(), new AddExpiration(), new AddDeques(),
       new AddFactoryMethods(),  new AddHealth(), new Finalize());
-  private final Feature[] featureByIndex = { null, null, Feature.EXPIRE_ACCESS,
+  private final Feature[] featureByIndex = { null, null, Feature.COMPACT, Feature.EXPIRE_ACCESS,
       Feature.EXPIRE_WRITE, Feature.REFRESH_WRITE, Feature.MAXIMUM_SIZE, Feature.MAXIMUM_WEIGHT };
   private final List<TypeSpec> nodeTypes;
   private final Path directory;
@@ -138,6 +139,9 @@ public final class NodeFactoryGenerator {
     var classNameToFeatures = new TreeMap<String, Set<Feature>>();
     for (List<Object> combination : combinations()) {
       var features = getFeatures(combination);
+      if (isRedundant(features)) {
+        continue;
+      }
       var className = Feature.makeClassName(features);
       classNameToFeatures.put(encode(className), features);
     }
@@ -159,6 +163,16 @@ public final class NodeFactoryGenerator {
     return ImmutableSet.copyOf(features);
   }
 
+  /**
+   * Returns if the compact variant is identical to the regular node because it has no timestamps.
+   * The variant is retained without a maximum as the parent of the compact nodes with timestamps.
+   */
+  private static boolean isRedundant(Set<Feature> features) {
+    return Feature.usesCompactTime(features)
+        && !Feature.usesExpirationTicker(features)
+        && Feature.usesMaximum(features);
+  }
+
   @SuppressWarnings("NullAway")
   private TypeSpec makeNodeSpec(String className, boolean isFinal, Set<Feature> features) {
     TypeName superClass;
@@ -185,13 +199,14 @@ public final class NodeFactoryGenerator {
   private Set<List<Object>> combinations() {
     var keyStrengths = Set.of(Feature.STRONG_KEYS, Feature.WEAK_KEYS);
     var valueStrengths = Set.of(Feature.STRONG_VALUES, Feature.WEAK_VALUES, Feature.SOFT_VALUES);
+    var compact = Set.of(false, true);
     var expireAfterAccess = Set.of(false, true);
     var expireAfterWrite = Set.of(false, true);
     var refreshAfterWrite = Set.of(false, true);
     var maximumSize = Set.of(false, true);
     var weighed = Set.of(false, true);
 
-    return Sets.cartesianProduct(keyStrengths, valueStrengths,
+    return Sets.cartesianProduct(keyStrengths, valueStrengths, compact,
         expireAfterAccess, expireAfterWrite, refreshAfterWrite, maximumSize, weighed);
   }
 
@@ -203,6 +218,7 @@ public final class NodeFactoryGenerator {
         .replaceFirst("_STRONG_VALUES", "S")
         .replaceFirst("_WEAK_VALUES", "W")
         .replaceFirst("_SOFT_VALUES", "D") // doux
+        .replaceFirst("_COMPACT", "C")
         .replaceFirst("_EXPIRE_ACCESS", "A")
         .replaceFirst("_EXPIRE_WRITE", "W")
         .replaceFirst("_REFRESH_WRITE", "R")
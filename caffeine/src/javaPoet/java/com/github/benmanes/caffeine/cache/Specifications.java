@@ -90,6 +90,7 @@ public final class Specifications {
   public static final TypeName STATS_COUNTER =
       ClassName.get(PACKAGE_NAME + ".stats", "StatsCounter");
   public static final TypeName TICKER = ClassName.get(PACKAGE_NAME, "Ticker");
+  public static final TypeName COMPACT_TIME = ClassName.get(PACKAGE_NAME, "CompactTime");
   public static final TypeName PACER = ClassName.get(PACKAGE_NAME, "Pacer");
 
   public static final TypeName ACCESS_ORDER_DEQUE =
@@ -15,6 +15,7 @@
  */
 package com.github.benmanes.caffeine.cache.node;
 
+import static com.github.benmanes.caffeine.cache.Specifications.COMPACT_TIME;
 import static com.github.benmanes.caffeine.cache.Specifications.NODE;
 import static org.apache.commons.lang3.StringUtils.capitalize;
 
@@ -25,7 +26,9 @@ import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 
 /**
- * Adds the expiration support to the node.
+ * Adds the expiration support to the node. A compact node stores each timestamp as a 32-bit word
+ * that is encoded by {@code CompactTime}, where a word may also hold the node's queue type and so
+ * is updated by a compare-and-set loop that retains the other bits.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
@@ -81,6 +84,13 @@ public final class AddExpiration extends NodeRule {
   }
 
   private void addVariableTime(String varName) {
+    if (isCompact()) {
+      context.nodeSubtype
+          .addMethod(newCompactGetter("getVariableTime", varName, Modifier.PUBLIC))
+          .addMethod(newCompactSetter("setVariableTime", varName, Modifier.PUBLIC))
+          .addMethod(newCompactCas("casVariableTime", varName, Modifier.PUBLIC));
+      return;
+    }
     var getter = MethodSpec.methodBuilder("getVariableTime")
         .addModifiers(Modifier.PUBLIC)
         .addStatement("return (long) $L.getOpaque(this)", varHandleName(varName))
@@ -110,6 +120,10 @@ public final class AddExpiration extends NodeRule {
       return;
     }
 
+    if (isCompact()) {
+      addCompactTime("getAccessTime", "setAccessTime", "accessTime", "now");
+      return;
+    }
     context.nodeSubtype
         .addField(long.class, "accessTime", Modifier.VOLATILE)
         .addMethod(newGetter(Strength.STRONG, TypeName.LONG, "accessTime", Visibility.OPAQUE))
@@ -122,6 +136,10 @@ public final class AddExpiration extends NodeRule {
   private void addWriteExpiration() {
     if (!Feature.useWriteTime(context.parentFeatures)
         && Feature.useWriteTime(context.generateFeatures)) {
+      if (isCompact()) {
+        addCompactTime("getWriteTime", "setWriteTime", "writeTime", "now & ~1L");
+        return;
+      }
       context.nodeSubtype
           .addField(long.class, "writeTime", Modifier.VOLATILE)
           .addMethod(newGetter(Strength.STRONG, TypeName.LONG, "writeTime", Visibility.OPAQUE))
@@ -136,6 +154,11 @@ public final class AddExpiration extends NodeRule {
     if (!context.generateFeatures.contains(Feature.REFRESH_WRITE)) {
       return;
     }
+    if (isCompact()) {
+      context.nodeSubtype.addMethod(
+          newCompactCas("casWriteTime", "writeTime", context.publicFinalModifiers()));
+      return;
+    }
     context.nodeSubtype.addMethod(MethodSpec.methodBuilder("casWriteTime")
         .addModifiers(context.publicFinalModifiers())
         .addParameter(long.class, "expect")
@@ -146,9 +169,73 @@ public final class AddExpiration extends NodeRule {
         .build());
   }
 
+  /** Adds the compact timestamp's field and accessors. */
+  private void addCompactTime(String getterName, String setterName, String varName, String value) {
+    context.nodeSubtype
+        .addField(int.class, varName, Modifier.VOLATILE)
+        .addMethod(newCompactGetter(getterName, varName, context.publicFinalModifiers()))
+        .addMethod(newCompactSetter(setterName, varName, context.publicFinalModifiers()));
+    addVarHandle(varName, TypeName.get(int.class));
+    addCompactTimeConstructorAssignment(context.constructorByKey, varName, value);
+    addCompactTimeConstructorAssignment(context.constructorByKeyRef, varName, value);
+  }
+
+  /** Creates an accessor that decodes the compact timestamp. */
+  private MethodSpec newCompactGetter(String methodName, String varName, Modifier... modifiers) {
+    return MethodSpec.methodBuilder(methodName)
+        .addModifiers(modifiers)
+        .addStatement("return $T.decode((int) $L.getOpaque(this))",
+            COMPACT_TIME, varHandleName(varName))
+        .returns(long.class)
+        .build();
+  }
+
+  /** Creates a mutator that encodes the compact timestamp, skipping the write if unchanged. */
+  private MethodSpec newCompactSetter(String methodName, String varName, Modifier... modifiers) {
+    String handle = varHandleName(varName);
+    return MethodSpec.methodBuilder(methodName)
+        .addModifiers(modifiers)
+        .addParameter(long.class, varName)
+        .beginControlFlow("for (;;)")
+        .addStatement("int current = (int) $L.getOpaque(this)", handle)
+        .addStatement("int update = $T.withTime(current, $N)", COMPACT_TIME, varName)
+        .beginControlFlow("if ((current == update) "
+            + "|| $L.weakCompareAndSet(this, current, update))", handle)
+        .addStatement("return")
+        .endControlFlow()
+        .endControlFlow()
+        .build();
+  }
+
+  /** Creates a compare-and-set of the compact timestamp. */
+  private MethodSpec newCompactCas(String methodName, String varName, Modifier... modifiers) {
+    return MethodSpec.methodBuilder(methodName)
+        .addModifiers(modifiers)
+        .addParameter(long.class, "expect")
+        .addParameter(long.class, "update")
+        .returns(boolean.class)
+        .beginControlFlow("for (;;)")
+        .addStatement("int current = $N", varName)
+        .beginControlFlow("if ($T.withTime(current, expect) != current)", COMPACT_TIME)
+        .addStatement("return false")
+        .nextControlFlow("else if ($L.compareAndSet(this, current, $T.withTime(current, update)))",
+            varHandleName(varName), COMPACT_TIME)
+        .addStatement("return true")
+        .endControlFlow()
+        .endControlFlow()
+        .build();
+  }
+
   /** Adds a long constructor assignment. */
   private void addTimeConstructorAssignment(
       MethodSpec.Builder constructor, String field, String value) {
     constructor.addStatement("$L.set(this, $N)", varHandleName(field), value);
   }
+
+  /** Adds an encoded int constructor assignment. */
+  private void addCompactTimeConstructorAssignment(
+      MethodSpec.Builder constructor, String field, String value) {
+    constructor.addStatement("$L.set(this, $T.withTime(0, $L))",
+        varHandleName(field), COMPACT_TIME, value);
+  }
 }
@@ -15,6 +15,8 @@
  */
 package com.github.benmanes.caffeine.cache.node;
 
+import static com.github.benmanes.caffeine.cache.Specifications.COMPACT_TIME;
+
 import com.github.benmanes.caffeine.cache.Feature;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
@@ -39,6 +41,10 @@ public final class AddMaximum extends NodeRule {
   }
 
   private void addQueueFlag() {
+    if (isCompact()) {
+      addCompactQueueFlag();
+      return;
+    }
     context.nodeSubtype.addField(int.class, "queueType");
     context.nodeSubtype.addMethod(MethodSpec.methodBuilder("getQueueType")
         .addModifiers(context.publicFinalModifiers())
@@ -52,6 +58,30 @@ public final class AddMaximum extends NodeRule {
         .build());
   }
 
+  /** Packs the queue type into the spare bits of an inherited compact timestamp. */
+  private void addCompactQueueFlag() {
+    String varName = context.parentFeatures.contains(Feature.EXPIRE_ACCESS)
+        ? "accessTime"
+        : "writeTime";
+    context.nodeSubtype.addMethod(MethodSpec.methodBuilder("getQueueType")
+        .addModifiers(context.publicFinalModifiers())
+        .returns(int.class)
+        .addStatement("return $T.queueType($N)", COMPACT_TIME, varName)
+        .build());
+    context.nodeSubtype.addMethod(MethodSpec.methodBuilder("setQueueType")
+        .addModifiers(context.publicFinalModifiers())
+        .addParameter(int.class, "queueType")
+        .beginControlFlow("for (;;)")
+        .addStatement("int current = $N", varName)
+        .addStatement("int update = $T.withQueueType(current, queueType)", COMPACT_TIME)
+        .beginControlFlow("if ((current == update) "
+            + "|| $L.compareAndSet(this, current, update))", varHandleName(varName))
+        .addStatement("return")
+        .endControlFlow()
+        .endControlFlow()
+        .build());
+  }
+
   private void addWeight() {
     if (!context.generateFeatures.contains(Feature.MAXIMUM_WEIGHT)) {
       return;
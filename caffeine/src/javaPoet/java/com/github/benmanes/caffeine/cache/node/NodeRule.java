@@ -88,6 +88,11 @@ public abstract class NodeRule implements Consumer<NodeContext> {
         || context.generateFeatures.contains(Feature.STRONG_VALUES);
   }
 
+  protected boolean isCompact() {
+    return Feature.usesCompactTime(context.parentFeatures)
+        || Feature.usesCompactTime(context.generateFeatures);
+  }
+
   protected ParameterizedTypeName keyReferenceType() {
     checkState(context.generateFeatures.contains(Feature.WEAK_KEYS));
     return ParameterizedTypeName.get(
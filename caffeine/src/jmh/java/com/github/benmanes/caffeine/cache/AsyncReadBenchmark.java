@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.Random;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that compares the read performance of a synchronous cache to the synchronous view of
+ * an asynchronous cache. The cache is pre-populated for a 100% hit rate and a Zipf distribution of
+ * keys is used to mimic application usage patterns.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=AsyncReadBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class AsyncReadBenchmark {
+  static final int SIZE = (2 << 14);
+  static final int MASK = SIZE - 1;
+  static final int ITEMS = SIZE / 3;
+  static final Function<Integer, Boolean> mappingFunction = any -> Boolean.TRUE;
+
+  @Param({"Sync", "Async"})
+  String cacheType;
+
+  @Param({"true", "false"})
+  boolean bounded;
+
+  LoadingCache<Integer, Boolean> cache;
+  Integer[] ints;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().executor(Runnable::run);
+    if (bounded) {
+      builder.maximumSize(2 * SIZE);
+    }
+    if (cacheType.equals("Sync")) {
+      cache = builder.build(key -> Boolean.TRUE);
+    } else if (cacheType.equals("Async")) {
+      cache = builder.buildAsync((Integer key) -> Boolean.TRUE).synchronous();
+    } else {
+      throw new AssertionError("Unknown cacheType: " + cacheType);
+    }
+
+    ints = new Integer[SIZE];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = generator.nextValue().intValue();
+      cache.put(ints[i], Boolean.TRUE);
+    }
+    cache.cleanUp();
+  }
+
+  @Benchmark @Threads(8)
+  public Boolean getIfPresent(ThreadState threadState) {
+    return cache.getIfPresent(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public Boolean get(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public Boolean get_mappingFunction(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK], mappingFunction);
+  }
+
+  @Benchmark @Threads(8)
+  public Boolean asMap_get(ThreadState threadState) {
+    return cache.asMap().get(ints[threadState.index++ & MASK]);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A benchmark that evaluates the cost of writing a large number of entries at once, where the bulk
+ * operations apply their policy updates as a single batch and the loops apply them per entry. The
+ * cache may be half the size of the bulk load so that the writes also incur the eviction work, and
+ * the removal benchmarks repopulate the cache in bulk before invalidating its entries.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=BulkWriteBenchmark -PprofilersList=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class BulkWriteBenchmark {
+  static final int SIZE = (1 << 14);
+
+  @Param({"true", "false"})
+  boolean evicts;
+
+  LoadingCache<Integer, Integer> cache;
+  Map<Integer, Integer> entries;
+  List<Integer> keys;
+
+  @Setup
+  public void setup() {
+    long maximumSize = evicts ? (SIZE / 2) : (2 * SIZE);
+    cache = Caffeine.newBuilder().maximumSize(maximumSize).build(new CacheLoader<>() {
+      @Override public Integer load(Integer key) {
+        return key;
+      }
+      @Override public Map<Integer, Integer> loadAll(Set<? extends Integer> keys) {
+        return entries;
+      }
+    });
+
+    var ints = new Integer[SIZE];
+    entries = new HashMap<>(2 * SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = i;
+      entries.put(ints[i], ints[i]);
+    }
+    keys = Arrays.asList(ints);
+  }
+
+  @Setup(Level.Invocation)
+  public void reset() {
+    cache.invalidateAll();
+    cache.cleanUp();
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void put_loop() {
+    for (var entry : entries.entrySet()) {
+      cache.put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void putAll() {
+    cache.putAll(entries);
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public Map<Integer, Integer> getAll() {
+    return cache.getAll(keys);
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void invalidate_loop() {
+    cache.putAll(entries);
+    for (Integer key : keys) {
+      cache.invalidate(key);
+    }
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void invalidateAll_keys() {
+    cache.putAll(entries);
+    cache.invalidateAll(keys);
+  }
+}
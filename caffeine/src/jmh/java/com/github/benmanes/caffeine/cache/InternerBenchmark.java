@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that evaluates the throughput of the interners when deduplicating the strings of
+ * parsed payloads. Every operation interns a fresh copy of a string that is drawn from a Zipf
+ * distribution, so that the canonical instances are only retained by the interner and the weak
+ * interners experience a high churn of garbage-collected entries.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=InternerBenchmark -PprofilersList=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class InternerBenchmark {
+  static final int SIZE = (1 << 14);
+  static final int MASK = SIZE - 1;
+  static final int ITEMS = (1 << 20);
+
+  @Param({"Strong", "Weak", "ConcurrentWeak", "Bounded"})
+  String interner;
+
+  Interner<String> strings;
+  char[][] payloads;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    static final Random random = new Random();
+    int index = random.nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    if (interner.equals("Strong")) {
+      strings = Interner.newStrongInterner();
+    } else if (interner.equals("Weak")) {
+      strings = Interner.newWeakInterner();
+    } else if (interner.equals("ConcurrentWeak")) {
+      strings = Interner.newConcurrentWeakInterner();
+    } else if (interner.equals("Bounded")) {
+      strings = Interner.newBoundedInterner(SIZE);
+    } else {
+      throw new AssertionError("Unknown interner: " + interner);
+    }
+
+    payloads = new char[SIZE][];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      payloads[i] = ("field-" + generator.nextValue().intValue()).toCharArray();
+    }
+  }
+
+  @Benchmark @Threads(8)
+  public String intern(ThreadState threadState) {
+    // A new instance mimics the string that a parser materializes from the payload
+    return strings.intern(new String(payloads[threadState.index++ & MASK]));
+  }
+}
@@ -114,11 +114,16 @@ public final class MemoryBenchmark {
         .expireAfterAccess(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build();
+    Cache<Integer, Integer> compact = builder()
+        .expireAfterAccess(1, TimeUnit.MINUTES)
+        .maximumSize(MAXIMUM_SIZE)
+        .compactNodes()
+        .build();
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .expireAfterAccess(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build();
-    compare("Maximum Size & Expire after Access", caffeine, guava);
+    compare("Maximum Size & Expire after Access", caffeine, compact, guava);
   }
 
   private void maximumSize_expireAfterWrite() {
@@ -126,11 +131,16 @@ public final class MemoryBenchmark {
         .expireAfterWrite(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build();
+    Cache<Integer, Integer> compact = builder()
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .maximumSize(MAXIMUM_SIZE)
+        .compactNodes()
+        .build();
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .expireAfterWrite(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build();
-    compare("Maximum Size & Expire after Write", caffeine, guava);
+    compare("Maximum Size & Expire after Write", caffeine, compact, guava);
   }
 
   private void maximumSize_refreshAfterWrite() {
@@ -138,27 +148,36 @@ public final class MemoryBenchmark {
         .refreshAfterWrite(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build(k -> k);
+    Cache<Integer, Integer> compact = builder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .maximumSize(MAXIMUM_SIZE)
+        .compactNodes()
+        .build(k -> k);
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .refreshAfterWrite(1, TimeUnit.MINUTES)
         .maximumSize(MAXIMUM_SIZE)
         .build(CacheLoader.from(Functions.identity()));
-    compare("Maximum Size & Refresh after Write", caffeine, guava);
+    compare("Maximum Size & Refresh after Write", caffeine, compact, guava);
   }
 
   private void expireAfterAccess() {
     Cache<Integer, Integer> caffeine = builder()
         .expireAfterAccess(1, TimeUnit.MINUTES).build();
+    Cache<Integer, Integer> compact = builder()
+        .expireAfterAccess(1, TimeUnit.MINUTES).compactNodes().build();
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .expireAfterAccess(1, TimeUnit.MINUTES).build();
-    compare("Expire after Access", caffeine, guava);
+    compare("Expire after Access", caffeine, compact, guava);
   }
 
   private void expireAfterWrite() {
     Cache<Integer, Integer> caffeine = builder()
         .expireAfterWrite(1, TimeUnit.MINUTES).build();
+    Cache<Integer, Integer> compact = builder()
+        .expireAfterWrite(1, TimeUnit.MINUTES).compactNodes().build();
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .expireAfterWrite(1, TimeUnit.MINUTES).build();
-    compare("Expire after Write", caffeine, guava);
+    compare("Expire after Write", caffeine, compact, guava);
   }
 
   private void expireAfterAccess_expireAfterWrite() {
@@ -166,11 +185,16 @@ public final class MemoryBenchmark {
         .expireAfterAccess(1, TimeUnit.MINUTES)
         .expireAfterWrite(1, TimeUnit.MINUTES)
         .build();
+    Cache<Integer, Integer> compact = builder()
+        .expireAfterAccess(1, TimeUnit.MINUTES)
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .compactNodes()
+        .build();
     com.google.common.cache.Cache<Integer, Integer> guava = CacheBuilder.newBuilder()
         .expireAfterAccess(1, TimeUnit.MINUTES)
         .expireAfterWrite(1, TimeUnit.MINUTES)
         .build();
-    compare("Expire after Access & after Write", caffeine, guava);
+    compare("Expire after Access & after Write", caffeine, compact, guava);
   }
 
   private void weakKeys() {
@@ -212,13 +236,28 @@ public final class MemoryBenchmark {
       com.google.common.cache.Cache<Integer, Integer> guava) {
     caffeine.cleanUp();
     guava.cleanUp();
+    print(label, new String[][] {
+        evaluate("Caffeine", caffeine.asMap()),
+        evaluate("Guava", guava.asMap())
+    });
+  }
 
-    int leftPadded = Math.max((36 - label.length()) / 2 - 1, 1);
-    out.printf(US, " %2$-" + leftPadded + "s %s%n", label, " ");
-    String result = FlipTable.of(new String[] { "Cache", "Baseline", "Per Entry" }, new String[][] {
+  private void compare(String label, Cache<Integer, Integer> caffeine,
+      Cache<Integer, Integer> compact, com.google.common.cache.Cache<Integer, Integer> guava) {
+    caffeine.cleanUp();
+    compact.cleanUp();
+    guava.cleanUp();
+    print(label, new String[][] {
         evaluate("Caffeine", caffeine.asMap()),
+        evaluate("Caffeine (compact)", compact.asMap()),
         evaluate("Guava", guava.asMap())
     });
+  }
+
+  private void print(String label, String[][] rows) {
+    int leftPadded = Math.max((36 - label.length()) / 2 - 1, 1);
+    out.printf(US, " %2$-" + leftPadded + "s %s%n", label, " ");
+    String result = FlipTable.of(new String[] { "Cache", "Baseline", "Per Entry" }, rows);
     out.println(result);
   }
 
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.lang.ref.Reference;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A benchmark that evaluates how a cache recovers after a garbage collection clears a large number
+ * of its references at once. The storm is simulated by enqueuing every entry's collectable
+ * reference, as the collector would, so that the work is deterministic. The {@code cycle}
+ * benchmark measures the time that a single maintenance cycle holds the eviction lock and the
+ * {@code drain} benchmark measures the total time to remove all of the collected entries, when
+ * the drain is time-budgeted or when it is allowed to empty the queues in one cycle.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=ReferenceDrainBenchmark -PprofilersList=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class ReferenceDrainBenchmark {
+  static final int SIZE = (1 << 18);
+
+  @Param({"WeakKeys", "WeakValues", "SoftValues"})
+  String referenceType;
+
+  @Param({"true", "false"})
+  boolean budgeted;
+
+  BoundedLocalCache<Integer, Integer> cache;
+  Integer[] ints;
+
+  @Setup
+  public void setup() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().executor(Runnable::run);
+    if (referenceType.equals("WeakKeys")) {
+      builder.weakKeys();
+    } else if (referenceType.equals("WeakValues")) {
+      builder.weakValues();
+    } else if (referenceType.equals("SoftValues")) {
+      builder.softValues();
+    } else {
+      throw new AssertionError("Unknown referenceType: " + referenceType);
+    }
+    Cache<Integer, Integer> cache = builder.build();
+    this.cache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    ints = new Integer[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = i;
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void storm() {
+    cache.clear();
+    for (Integer i : ints) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+
+    for (var node : cache.data.values()) {
+      var ref = cache.collectKeys() ? node.getKeyReference() : node.getValueReference();
+      ((Reference<?>) ref).enqueue();
+    }
+    cache.referenceDrainBudget = budgeted
+        ? BoundedLocalCache.REFERENCE_DRAIN_MIN_NANOS
+        : (Long.MAX_VALUE / 4);
+  }
+
+  @Benchmark
+  public void cycle() {
+    runMaintenance();
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void drain() {
+    while (!cache.data.isEmpty()) {
+      runMaintenance();
+    }
+  }
+
+  private void runMaintenance() {
+    cache.evictionLock.lock();
+    try {
+      cache.maintenance(/* ignored */ null);
+    } finally {
+      cache.evictionLock.unlock();
+    }
+  }
+}
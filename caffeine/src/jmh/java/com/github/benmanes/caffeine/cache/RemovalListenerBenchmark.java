@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A benchmark that evaluates the cost of notifying a listener when a large number of entries are
+ * removed at once, where a removal listener is submitted to the executor for every entry and a
+ * batched removal listener is submitted for every batch.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=RemovalListenerBenchmark -PprofilersList=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class RemovalListenerBenchmark {
+  static final int SIZE = (1 << 16);
+
+  @Param({"RemovalListener", "BatchRemovalListener"})
+  String listenerType;
+
+  Cache<Integer, Integer> cache;
+  LongAdder removals;
+  Integer[] ints;
+
+  @Setup
+  public void setup() {
+    removals = new LongAdder();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(2 * SIZE);
+    if (listenerType.equals("RemovalListener")) {
+      cache = builder.removalListener((key, value, cause) -> removals.increment()).build();
+    } else if (listenerType.equals("BatchRemovalListener")) {
+      cache = builder.batchedRemovalListener(batch -> removals.add(batch.size())).build();
+    } else {
+      throw new AssertionError("Unknown listenerType: " + listenerType);
+    }
+
+    ints = new Integer[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = i;
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void populate() {
+    for (Integer i : ints) {
+      cache.put(i, i);
+    }
+  }
+
+  @Benchmark @OperationsPerInvocation(SIZE)
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * A benchmark that evaluates the cost of the schedule and cancel churn that occurs when many
+ * caches reschedule their maintenance, as each cache's pacer cancels its pending task whenever an
+ * earlier expiration is observed.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=SchedulerBenchmark --no-daemon
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"FutureReturnValueIgnored", "LexicographicalAnnotationAttributeListing"})
+public class SchedulerBenchmark {
+  static final int CACHES = (2 << 12);
+  static final int MASK = CACHES - 1;
+  static final Executor executor = task -> {};
+
+  @Param({"ScheduledExecutorService", "System", "Shared"})
+  String schedulerType;
+
+  ScheduledExecutorService scheduledExecutorService;
+  Future<?>[] futures;
+  Scheduler scheduler;
+  Runnable task;
+
+  @Setup
+  public void setup() {
+    if (schedulerType.equals("ScheduledExecutorService")) {
+      scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+      scheduler = Scheduler.forScheduledExecutorService(scheduledExecutorService);
+    } else if (schedulerType.equals("System")) {
+      scheduler = Scheduler.systemScheduler();
+    } else if (schedulerType.equals("Shared")) {
+      scheduler = Scheduler.sharedScheduler();
+    } else {
+      throw new AssertionError("Unknown schedulerType: " + schedulerType);
+    }
+    futures = new Future<?>[CACHES];
+    task = () -> {};
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (var future : futures) {
+      if (future != null) {
+        future.cancel(false);
+      }
+    }
+    if (scheduledExecutorService != null) {
+      scheduledExecutorService.shutdownNow();
+    }
+  }
+
+  @Benchmark @Threads(4)
+  public Future<?> reschedule() {
+    var random = ThreadLocalRandom.current();
+    int index = random.nextInt() & MASK;
+    var future = futures[index];
+    if (future != null) {
+      future.cancel(false);
+    }
+    long delay = TimeUnit.MINUTES.toNanos(1) + random.nextInt(1 << 30);
+    return futures[index] = scheduler.schedule(executor, task, delay, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import com.github.benmanes.caffeine.cache.stats.WindowedStatsCounter;
+
+/**
+ * A benchmark that evaluates the cost of recording the statistics, where the windowed counter is
+ * expected to be close to the cumulative {@link java.util.concurrent.atomic.LongAdder} increments
+ * of the concurrent counter.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=StatsCounterBenchmark -PprofilersList=gc
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class StatsCounterBenchmark {
+  private static final int SIZE = (2 << 14);
+  private static final int MASK = SIZE - 1;
+
+  @Param({"Concurrent", "Windowed"})
+  String counterType;
+
+  StatsCounter counter;
+  long[] loadTimes;
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    int index = ThreadLocalRandom.current().nextInt();
+  }
+
+  @Setup
+  public void setup() {
+    if (counterType.equals("Concurrent")) {
+      counter = new ConcurrentStatsCounter();
+    } else if (counterType.equals("Windowed")) {
+      counter = new WindowedStatsCounter();
+    } else {
+      throw new AssertionError("Unknown counterType: " + counterType);
+    }
+
+    loadTimes = new long[SIZE];
+    for (int i = 0; i < SIZE; i++) {
+      // log-normal latencies around a millisecond
+      loadTimes[i] = (long) Math.exp(13.8 + ThreadLocalRandom.current().nextGaussian());
+    }
+  }
+
+  @Benchmark @Threads(8)
+  public void recordHits() {
+    counter.recordHits(1);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordMisses() {
+    counter.recordMisses(1);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordLoadSuccess(ThreadState threadState) {
+    counter.recordLoadSuccess(loadTimes[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Threads(8)
+  public void recordEviction() {
+    counter.recordEviction(1, RemovalCause.SIZE);
+  }
+
+  @Benchmark
+  public Object windowedSnapshot() {
+    return (counter instanceof WindowedStatsCounter)
+        ? ((WindowedStatsCounter) counter).windowedSnapshot()
+        : counter.snapshot();
+  }
+}
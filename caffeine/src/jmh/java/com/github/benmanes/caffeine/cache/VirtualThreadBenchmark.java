@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import site.ycsb.generator.NumberGenerator;
+import site.ycsb.generator.ScrambledZipfianGenerator;
+
+/**
+ * A benchmark that evaluates the throughput of many concurrent callers whose cache misses block
+ * on a simulated I/O call, when run on platform threads versus on virtual threads. A Zipf
+ * distribution of keys is used to mimic application usage patterns and the cache is sized to
+ * incur a moderate miss rate. The virtual thread configuration requires a Java 21 runtime.
+ * <p>
+ * <pre>{@code
+ *   JAVA_VERSION=21 ./gradlew jmh -PincludePattern=VirtualThreadBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@SuppressWarnings({"LexicographicalAnnotationAttributeListing", "PMD.MethodNamingConventions"})
+public class VirtualThreadBenchmark {
+  static final int SIZE = (2 << 14);
+  static final int MASK = SIZE - 1;
+  static final int ITEMS = SIZE / 3;
+  static final int TASKS = 10_000;
+  static final int PLATFORM_THREADS = 256;
+
+  @Param({"Platform", "Virtual"})
+  String threadType;
+
+  @Param({"Cache", "AsyncCache"})
+  String cacheType;
+
+  ExecutorService executorService;
+  LoadingCache<Integer, Integer> cache;
+  Integer[] ints;
+
+  @Setup
+  public void setup() throws ReflectiveOperationException {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(ITEMS / 4);
+    if (threadType.equals("Platform")) {
+      executorService = Executors.newFixedThreadPool(PLATFORM_THREADS);
+    } else if (threadType.equals("Virtual")) {
+      executorService = (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      builder.virtualThreadExecutor();
+    } else {
+      throw new AssertionError("Unknown threadType: " + threadType);
+    }
+
+    CacheLoader<Integer, Integer> loader = key -> {
+      Thread.sleep(1); // simulate a remote call
+      return key;
+    };
+    if (cacheType.equals("Cache")) {
+      cache = builder.build(loader);
+    } else if (cacheType.equals("AsyncCache")) {
+      cache = builder.buildAsync(loader).synchronous();
+    } else {
+      throw new AssertionError("Unknown cacheType: " + cacheType);
+    }
+
+    ints = new Integer[SIZE];
+    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    for (int i = 0; i < SIZE; i++) {
+      ints[i] = generator.nextValue().intValue();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Benchmark @OperationsPerInvocation(TASKS)
+  public void get() throws InterruptedException {
+    var latch = new CountDownLatch(TASKS);
+    int offset = ThreadLocalRandom.current().nextInt();
+    for (int i = 0; i < TASKS; i++) {
+      Integer key = ints[(offset + i) & MASK];
+      executorService.execute(() -> {
+        cache.get(key);
+        latch.countDown();
+      });
+    }
+    latch.await();
+  }
+}
@@ -360,7 +360,17 @@ abstract class AbstractLinkedDeque<E> extends AbstractCollection<E> implements L
 
   @Override
   public PeekingIterator<E> iterator() {
-    return new AbstractLinkedIterator(first) {
+    return iteratorFrom(first);
+  }
+
+  @Override
+  public PeekingIterator<E> descendingIterator() {
+    return descendingIteratorFrom(last);
+  }
+
+  @Override
+  public PeekingIterator<E> iteratorFrom(@Nullable E start) {
+    return new AbstractLinkedIterator(start) {
       @SuppressWarnings("NullAway")
       @Override @Nullable E computeNext() {
         return getNext(cursor);
@@ -369,8 +379,8 @@ abstract class AbstractLinkedDeque<E> extends AbstractCollection<E> implements L
   }
 
   @Override
-  public PeekingIterator<E> descendingIterator() {
-    return new AbstractLinkedIterator(last) {
+  public PeekingIterator<E> descendingIteratorFrom(@Nullable E start) {
+    return new AbstractLinkedIterator(start) {
       @SuppressWarnings("NullAway")
       @Override @Nullable E computeNext() {
         return getPrevious(cursor);
@@ -19,11 +19,14 @@ import static com.github.benmanes.caffeine.cache.BoundedLocalCache.MAXIMUM_EXPIR
 import static java.util.Objects.requireNonNull;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -48,7 +51,10 @@ final class Async {
   /** Returns the current value or null if either not done or failed. */
   @SuppressWarnings("NullAway")
   static @Nullable <V> V getIfReady(@Nullable CompletableFuture<V> future) {
-    return isReady(future) ? future.join() : null;
+    if ((future == null) || !future.isDone() || future.isCompletedExceptionally()) {
+      return null;
+    }
+    return future.join();
   }
 
   /** Returns the value when completed successfully or null if failed. */
@@ -149,6 +155,31 @@ final class Async {
     }
   }
 
+  /**
+   * A tagger for asynchronous computations. When the value is being loaded this tagger returns no
+   * tags, as the tags are determined by the value. If the value is computed successfully then the
+   * entry is reinserted so that the weight is updated, which also causes its tags to be indexed.
+   */
+  static final class AsyncTagger<K, V>
+      implements BiFunction<K, CompletableFuture<V>, Collection<?>>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final BiFunction<? super K, ? super V, ? extends Collection<?>> delegate;
+
+    AsyncTagger(BiFunction<? super K, ? super V, ? extends Collection<?>> delegate) {
+      this.delegate = requireNonNull(delegate);
+    }
+
+    @Override
+    public Collection<?> apply(K key, CompletableFuture<V> future) {
+      return isReady(future) ? delegate.apply(key, future.join()) : List.of();
+    }
+
+    Object writeReplace() {
+      return delegate;
+    }
+  }
+
   /**
    * An expiry for asynchronous computations. When the value is being loaded this expiry returns
    * {@code ASYNC_EXPIRY} to indicate that the entry should not be evicted due to an expiry
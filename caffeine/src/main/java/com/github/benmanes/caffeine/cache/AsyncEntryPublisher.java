@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A publisher that emits the entries of a bulk lookup as each value's future completes, rather
+ * than waiting for the slowest key. Entries whose futures have already completed are emitted
+ * immediately upon demand, an entry whose future completes with a {@code null} value is omitted,
+ * and the first failure terminates the subscription with that error. Each subscriber observes the
+ * same underlying futures, which were obtained eagerly when the publisher was created.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class AsyncEntryPublisher<K, V> implements Flow.Publisher<Map.Entry<K, V>> {
+  final Map<K, CompletableFuture<V>> futures;
+
+  AsyncEntryPublisher(Map<K, CompletableFuture<V>> futures) {
+    this.futures = requireNonNull(futures);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super Map.Entry<K, V>> subscriber) {
+    var subscription = new EntrySubscription<>(subscriber, futures.size());
+    subscriber.onSubscribe(subscription);
+    futures.forEach(subscription::register);
+    subscription.drain();
+  }
+
+  /**
+   * A subscription that buffers the completed entries and emits them according to the requested
+   * demand. The emissions are serialized by a work-in-progress counter so that the subscriber is
+   * signaled by at most one thread at a time, which may be the caller or a completing future.
+   */
+  static final class EntrySubscription<K, V> implements Flow.Subscription {
+    final Flow.Subscriber<? super Map.Entry<K, V>> subscriber;
+    final Queue<Map.Entry<K, V>> ready;
+    final AtomicInteger pending;
+    final AtomicLong requested;
+    final AtomicInteger wip;
+
+    volatile @Nullable Throwable error;
+    volatile boolean cancelled;
+
+    EntrySubscription(Flow.Subscriber<? super Map.Entry<K, V>> subscriber, int size) {
+      this.subscriber = requireNonNull(subscriber);
+      this.ready = new ConcurrentLinkedQueue<>();
+      this.pending = new AtomicInteger(size);
+      this.requested = new AtomicLong();
+      this.wip = new AtomicInteger();
+    }
+
+    /** Buffers the entry when the future completes and attempts to emit it. */
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void register(K key, CompletableFuture<V> future) {
+      future.whenComplete((value, e) -> {
+        if (e != null) {
+          if (error == null) {
+            error = ((e instanceof CompletionException) && (e.getCause() != null))
+                ? e.getCause()
+                : e;
+          }
+        } else if ((value != null) && !cancelled) {
+          ready.add(new SimpleImmutableEntry<>(key, value));
+        }
+        pending.decrementAndGet();
+        drain();
+      });
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        if (error == null) {
+          error = new IllegalArgumentException("non-positive subscription request: " + n);
+        }
+      } else {
+        for (;;) {
+          long current = requested.get();
+          long next = current + n;
+          if (next < 0L) {
+            next = Long.MAX_VALUE;
+          }
+          if (requested.compareAndSet(current, next)) {
+            break;
+          }
+        }
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    /** Emits the buffered entries up to the outstanding demand and signals termination. */
+    void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+
+      int missed = 1;
+      for (;;) {
+        long demand = requested.get();
+        long emitted = 0L;
+        while (emitted != demand) {
+          if (isTerminated()) {
+            return;
+          }
+          boolean done = (pending.get() == 0);
+          var entry = ready.poll();
+          if (entry == null) {
+            if (done) {
+              complete();
+              return;
+            }
+            break;
+          }
+          subscriber.onNext(entry);
+          emitted++;
+        }
+        if (emitted == demand) {
+          if (isTerminated()) {
+            return;
+          } else if ((pending.get() == 0) && ready.isEmpty()) {
+            complete();
+            return;
+          }
+        }
+        if ((emitted != 0L) && (demand != Long.MAX_VALUE)) {
+          requested.addAndGet(-emitted);
+        }
+        missed = wip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /** Returns if the subscription was cancelled or failed, signaling the error if necessary. */
+    boolean isTerminated() {
+      if (cancelled) {
+        ready.clear();
+        return true;
+      }
+      Throwable cause = error;
+      if (cause != null) {
+        cancelled = true;
+        ready.clear();
+        subscriber.onError(cause);
+        return true;
+      }
+      return false;
+    }
+
+    /** Signals the successful completion of the subscription. */
+    void complete() {
+      cancelled = true;
+      subscriber.onComplete();
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.github.benmanes.caffeine.cache;
 
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 
 import com.google.errorprone.annotations.CheckReturnValue;
 
@@ -79,6 +80,36 @@ public interface AsyncLoadingCache<K, V> extends AsyncCache<K, V> {
    */
   CompletableFuture<Map<K, V>> getAll(Iterable<? extends K> keys);
 
+  /**
+   * Returns a publisher of the entries associated with {@code keys}, creating or retrieving those
+   * values if necessary. Unlike {@link #getAll}, which completes only after every value is
+   * available, the publisher emits the entries that were already cached as soon as they are
+   * requested and emits each loaded entry as its computation completes. The entries are emitted
+   * in completion order, subject to the subscriber's demand, and the subscription completes once
+   * every value is available. The publisher will never emit null keys or values and an absent
+   * value is omitted. If any of the asynchronous computations fail, those entries will be
+   * automatically removed from this cache and the subscriber is signaled with the error.
+   * <p>
+   * The values are obtained eagerly when this method is invoked, with the loading behavior and
+   * statistics being the same as for {@link #getAll}. Each subscriber observes these same
+   * computations and does not trigger additional loads.
+   * <p>
+   * Note that duplicate elements in {@code keys}, as determined by {@link Object#equals}, will be
+   * ignored.
+   *
+   * @param keys the keys whose associated values are to be published
+   * @return a publisher of the mappings of keys to values for the specified keys in this cache
+   * @throws NullPointerException if the specified collection is null or contains a null element, or
+   *         if the future returned by the {@link AsyncCacheLoader} is null
+   * @throws RuntimeException or Error if the {@link AsyncCacheLoader} does so, if
+   *         {@link AsyncCacheLoader#asyncLoadAll} returns {@code null}, or fails when constructing
+   *         the future, in which case the mapping is left unestablished
+   */
+  default Flow.Publisher<Map.Entry<K, V>> getAllPublisher(Iterable<? extends K> keys) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Returns a view of the entries stored in this cache as a synchronous {@link LoadingCache}. A
    * mapping is not present if the value is currently being loaded. Modifications made to the
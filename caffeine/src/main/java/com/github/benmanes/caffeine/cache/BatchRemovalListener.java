@@ -0,0 +1,45 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+/**
+ * An object that can receive the notifications of many removals at once. The removals that occur
+ * close together, such as during a cache's maintenance cycle, are accumulated into a single batch
+ * so that a burst of removals is delivered by a few executor tasks rather than by one per entry.
+ * <p>
+ * An instance may be called concurrently by multiple threads to process different batches.
+ * Implementations of this interface should avoid performing blocking calls or synchronizing on
+ * shared resources.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the most general type of keys this listener can listen for; for example {@code Object}
+ *        if any key is acceptable
+ * @param <V> the most general type of values this listener can listen for; for example
+ *        {@code Object} if any value is acceptable
+ */
+@FunctionalInterface
+public interface BatchRemovalListener<K, V> {
+
+  /**
+   * Notifies the listener that the removals occurred at some point in the past.
+   * <p>
+   * This does not always signify that a key is now absent from the cache, as it may have already
+   * been re-added.
+   *
+   * @param batch the removed entries, in the order that their removals were observed
+   */
+  void onRemoval(RemovalBatch<? extends K, ? extends V> batch);
+}
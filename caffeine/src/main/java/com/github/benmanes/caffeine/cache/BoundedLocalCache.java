@@ -46,12 +46,14 @@ import java.lang.ref.WeakReference;
 import java.time.Duration;
 import java.util.AbstractCollection;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -66,6 +68,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadLocalRandom;
@@ -74,6 +77,7 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -85,7 +89,9 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 import com.github.benmanes.caffeine.cache.Async.AsyncExpiry;
 import com.github.benmanes.caffeine.cache.LinkedDeque.PeekingIterator;
 import com.github.benmanes.caffeine.cache.Policy.CacheEntry;
+import com.github.benmanes.caffeine.cache.Policy.HotKey;
 import com.github.benmanes.caffeine.cache.References.InternalReference;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 
@@ -203,6 +209,16 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   static final int WRITE_BUFFER_MAX = 128 * ceilingPowerOfTwo(NCPU);
   /** The number of attempts to insert into the write buffer before yielding. */
   static final int WRITE_BUFFER_RETRIES = 100;
+  /** The maximum number of a bulk operation's writes that are applied to the policy together. */
+  static final int WRITE_BATCH_MAX = 1_024;
+  /** The minimum number of a bulk read's hits that are recorded as a single buffered task. */
+  static final int READ_BATCH_MIN = BoundedBuffer.BUFFER_SIZE;
+  /** The number of collected references that are removed between checks of the drain's budget. */
+  static final int REFERENCE_DRAIN_BATCH = 64;
+  /** The initial time budget for draining the reference queues during a maintenance cycle. */
+  static final long REFERENCE_DRAIN_MIN_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+  /** The largest time budget that a backlog of collected references may grow the drain to. */
+  static final long REFERENCE_DRAIN_MAX_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
   /** The maximum weighted capacity of the map. */
   static final long MAXIMUM_CAPACITY = Long.MAX_VALUE - Integer.MAX_VALUE;
   /** The initial percent of the maximum weighted capacity dedicated to the main space. */
@@ -229,20 +245,32 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   static final int MAX_PUT_SPIN_WAIT_ATTEMPTS = 1024 - 1;
   /** The handle for the in-flight refresh operations. */
   static final VarHandle REFRESHES;
+  /** The handle for the lazily created write versions. */
+  static final VarHandle GENERATIONS;
 
   final @Nullable RemovalListener<K, V> evictionListener;
   final @Nullable AsyncCacheLoader<K, V> cacheLoader;
+  final @Nullable TenantPolicy<K, V> tenants;
+  final @Nullable TagIndex<K, V> tagIndex;
+  final @Nullable RemovalBatcher<K, V> removalBatcher;
+  final @Nullable HotKeyTracker<K> hotKeys;
+  final @Nullable DiagnosticsRecorder diagnostics;
+  final @Nullable MemoryPressure memoryPressure;
+
+  volatile @Nullable CacheEventHub<K, V> eventHub;
 
   final MpscGrowableArrayQueue<Runnable> writeBuffer;
   final ConcurrentHashMap<Object, Node<K, V>> data;
   final PerformCleanupTask drainBuffersTask;
   final Consumer<Node<K, V>> accessPolicy;
+  final Buffer<ReadBatchTask> readBatchBuffer;
   final Buffer<Node<K, V>> readBuffer;
   final NodeFactory<K, V> nodeFactory;
   final ReentrantLock evictionLock;
   final Weigher<K, V> weigher;
   final Executor executor;
 
+  final int bulkLoadChunkSize;
   final boolean isWeighted;
   final boolean isAsync;
 
@@ -250,6 +278,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   @Nullable Collection<V> values;
   @Nullable Set<Entry<K, V>> entrySet;
   @Nullable volatile ConcurrentMap<Object, CompletableFuture<?>> refreshes;
+  @Nullable volatile Generations generations;
+
+  @GuardedBy("evictionLock")
+  long referenceDrainBudget;
+  volatile boolean referencesPending;
 
   /** Creates an instance based on the builder's configuration. */
   protected BoundedLocalCache(Caffeine<K, V> builder,
@@ -258,15 +291,35 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     this.cacheLoader = cacheLoader;
     executor = builder.getExecutor();
     isWeighted = builder.isWeighted();
+    bulkLoadChunkSize = builder.getBulkLoadChunkSize();
     evictionLock = new ReentrantLock();
     weigher = builder.getWeigher(isAsync);
     drainBuffersTask = new PerformCleanupTask(this);
     nodeFactory = NodeFactory.newFactory(builder, isAsync);
     evictionListener = builder.getEvictionListener(isAsync);
     data = new ConcurrentHashMap<>(builder.getInitialCapacity());
+    tenants = builder.hasTenantQuota()
+        ? new TenantPolicy<>(builder.getTenantClassifier(), builder.getTenantMaximumWeight())
+        : null;
+    tagIndex = builder.hasTagger() ? new TagIndex<>(builder.getTagger(isAsync)) : null;
+    removalBatcher = builder.hasBatchRemovalListener()
+        ? new RemovalBatcher<>(builder.getBatchRemovalListener(), executor, isAsync)
+        : null;
+    hotKeys = builder.hasHotKeys()
+        ? new HotKeyTracker<>(builder.getHotKeysCapacity(), builder.getTicker(),
+            !builder.isStrongKeys())
+        : null;
+    diagnostics = builder.isRecordingDiagnostics() ? new DiagnosticsRecorder() : null;
+    memoryPressure = builder.isMemorySensitive()
+        ? new MemoryPressure(Math.min(builder.getMaximum(), MAXIMUM_CAPACITY), builder.getTicker())
+        : null;
+    referenceDrainBudget = REFERENCE_DRAIN_MIN_NANOS;
     readBuffer = evicts() || collectKeys() || collectValues() || expiresAfterAccess()
         ? new BoundedBuffer<>()
         : Buffer.disabled();
+    readBatchBuffer = (readBuffer == Buffer.<Node<K, V>>disabled())
+        ? Buffer.disabled()
+        : new BoundedBuffer<>();
     accessPolicy = (evicts() || expiresAfterAccess()) ? this::onAccess : e -> {};
     writeBuffer = new MpscGrowableArrayQueue<>(WRITE_BUFFER_MIN, WRITE_BUFFER_MAX);
 
@@ -279,6 +332,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     try {
       REFRESHES = MethodHandles.lookup()
           .findVarHandle(BoundedLocalCache.class, "refreshes", ConcurrentMap.class);
+      GENERATIONS = MethodHandles.lookup()
+          .findVarHandle(BoundedLocalCache.class, "generations", Generations.class);
     } catch (ReflectiveOperationException e) {
       throw new ExceptionInInitializerError(e);
     }
@@ -312,6 +367,23 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return isAsync && !Async.isReady((CompletableFuture<?>) node.getValue());
   }
 
+  /**
+   * Returns whether replacing the value may change the entry's tags, so that the tag index must be
+   * updated. The tags are compared on the writing thread to avoid an update task when the
+   * replacement keeps the same tags, except that an async cache reindexes when the future is
+   * replaced by itself as that signals its completion.
+   */
+  boolean isRetagged(@Nullable K key, @Nullable V oldValue, V newValue) {
+    if (tagIndex == null) {
+      return false;
+    } else if ((key == null) || (oldValue == null)) {
+      return true;
+    } else if (oldValue == newValue) {
+      return isAsync;
+    }
+    return !TagIndex.isSameTags(tagIndex.tagsOf(key, oldValue), tagIndex.tagsOf(key, newValue));
+  }
+
   @GuardedBy("evictionLock")
   protected AccessOrderDeque<Node<K, V>> accessOrderWindowDeque() {
     throw new UnsupportedOperationException();
@@ -337,6 +409,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return executor;
   }
 
+  @Override
+  public final int bulkLoadChunkSize() {
+    return bulkLoadChunkSize;
+  }
+
   @Override
   @SuppressWarnings("NullAway")
   public ConcurrentMap<Object, CompletableFuture<?>> refreshes() {
@@ -350,6 +427,31 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return pending;
   }
 
+  /**
+   * Returns the table of write versions, creating it when first requested. A writer that did not
+   * observe the table had started before any version could be obtained, so a load that is
+   * validated against the table does not need to be ordered against that write.
+   */
+  Generations generations() {
+    var versions = generations;
+    if (versions == null) {
+      long expectedKeys = (evicts() && !isWeighted()) ? maximum() : data.mappingCount();
+      versions = new Generations(expectedKeys);
+      if (!GENERATIONS.compareAndSet(this, null, versions)) {
+        versions = generations;
+      }
+    }
+    return versions;
+  }
+
+  /** Advances the key's write version, if the versions are being tracked. */
+  void advanceGeneration(Object key) {
+    var versions = generations;
+    if (versions != null) {
+      versions.advance(key);
+    }
+  }
+
   /** Invalidate the in-flight refresh. */
   void discardRefresh(Object keyReference) {
     var pending = refreshes;
@@ -393,6 +495,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
   @Override
   public void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause) {
+    if (eventHub != null) {
+      var type = CacheEvent.Type.of(cause);
+      if (type != null) {
+        publishEvent(type, key, value);
+      }
+    }
+    if (removalBatcher != null) {
+      removalBatcher.add(key, value, cause);
+    }
     if (!hasRemovalListener()) {
       return;
     }
@@ -411,6 +522,39 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  @Override
+  public void notifyOnReplace(K key, V oldValue, V newValue) {
+    if ((oldValue != null) && (oldValue != newValue)) {
+      publishEvent(CacheEvent.Type.UPDATED, key, newValue);
+    }
+    LocalCache.super.notifyOnReplace(key, oldValue, newValue);
+  }
+
+  /* --------------- Change Stream Support --------------- */
+
+  /** Returns the change stream, creating it when first subscribed to. */
+  CacheEventHub<K, V> eventHub() {
+    var hub = eventHub;
+    if (hub == null) {
+      synchronized (this) {
+        hub = eventHub;
+        if (hub == null) {
+          hub = new CacheEventHub<>(executor, isAsync);
+          eventHub = hub;
+        }
+      }
+    }
+    return hub;
+  }
+
+  /** Publishes the mutation to the change stream's subscribers, if any. */
+  void publishEvent(CacheEvent.Type type, @Nullable K key, @Nullable V value) {
+    var hub = eventHub;
+    if (hub != null) {
+      hub.publish(type, key, value);
+    }
+  }
+
   /* --------------- Eviction Listener Support --------------- */
 
   void notifyEviction(@Nullable K key, @Nullable V value, RemovalCause cause) {
@@ -677,6 +821,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       // Lazily initialize when close to the maximum size
       frequencySketch().ensureCapacity(max);
     }
+    if (hotKeys != null) {
+      hotKeys.ensureSampleSize(max);
+    }
   }
 
   /** Evicts entries if the cache exceeds the maximum. */
@@ -687,6 +834,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
     var candidate = evictFromWindow();
     evictFromMain(candidate);
+    if ((tenants != null) && tenants.evictOverweight(this)
+        && (drainStatusOpaque() == PROCESSING_TO_IDLE)) {
+      // Continue evicting the overweight tenants' entries in the next maintenance cycle
+      setDrainStatusOpaque(PROCESSING_TO_REQUIRED);
+    }
   }
 
   /**
@@ -836,7 +988,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       }
 
       // Evict the entry with the lowest frequency
-      if (admit(candidateKey, victimKey)) {
+      if (admitCandidate(candidate, victim, candidateKey, victimKey)) {
         Node<K, V> evict = victim;
         victim = victim.getNextInAccessOrder();
         evictEntry(evict, RemovalCause.SIZE, 0L);
@@ -849,6 +1001,30 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /**
+   * Determines if the candidate should be accepted into the main space. If the entries are
+   * partitioned by tenant and only one of the entries belongs to a tenant that exceeds its fair
+   * share of the capacity, then that entry is rejected. Otherwise the decision is determined by the
+   * candidate's frequency relative to the victim.
+   *
+   * @param candidate the entry being proposed for long term retention
+   * @param victim the entry chosen by the eviction policy for replacement
+   * @param candidateKey the key for the entry being proposed for long term retention
+   * @param victimKey the key for the entry chosen by the eviction policy for replacement
+   * @return if the candidate should be admitted and the victim ejected
+   */
+  @GuardedBy("evictionLock")
+  boolean admitCandidate(Node<K, V> candidate, Node<K, V> victim, K candidateKey, K victimKey) {
+    if (tenants != null) {
+      boolean candidateExceeds = tenants.exceedsFairShare(candidate, maximum());
+      boolean victimExceeds = tenants.exceedsFairShare(victim, maximum());
+      if (candidateExceeds != victimExceeds) {
+        return victimExceeds;
+      }
+    }
+    return admit(candidateKey, victimKey);
+  }
+
   /**
    * Determines if the candidate should be accepted into the main space, as determined by its
    * frequency relative to the victim. A small amount of randomness is used to protect against hash
@@ -1079,6 +1255,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       timerWheel().deschedule(node);
     }
 
+    var owner = (tenants == null) ? null : tenants.ownerOf(node);
     synchronized (node) {
       logIfAlive(node);
       makeDead(node);
@@ -1086,6 +1263,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
     if (removed[0]) {
       statsCounter().recordEviction(node.getWeight(), actualCause[0]);
+      if ((tenants != null) && (owner != null)) {
+        tenants.recordEviction(owner, node.getWeight());
+      }
       notifyRemoval(key, value[0], actualCause[0]);
     }
 
@@ -1260,18 +1440,62 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   @Nullable V afterRead(Node<K, V> node, long now, boolean recordHit) {
     if (recordHit) {
       statsCounter().recordHits(1);
+      if (tenants != null) {
+        K key = node.getKey();
+        if (key != null) {
+          tenants.recordHit(key);
+        }
+      }
     }
 
-    boolean delayable = skipReadBuffer() || (readBuffer.offer(node) != Buffer.FULL);
+    int result = skipReadBuffer() ? Buffer.SUCCESS : readBuffer.offer(node);
+    if ((result != Buffer.SUCCESS) && (diagnostics != null)) {
+      diagnostics.readBufferDrops.increment();
+    }
+    boolean delayable = (result != Buffer.FULL);
     if (shouldDrainBuffers(delayable)) {
       scheduleDrainBuffers();
     }
     return refreshIfNeeded(node, now);
   }
 
-  /** Returns if the cache should bypass the read buffer. */
+  /**
+   * Performs the post-processing work required after a bulk read. The hits are recorded as a single
+   * element in the read batch buffer, rather than as an element per entry in the read buffer, so
+   * that a large multi-get does not overflow the read buffer's stripe and lose the popularity of
+   * the entries that it accessed. Like a single read, the hits are replayed by the maintenance,
+   * are discarded if the buffer is full, and only schedule the maintenance when it is required or
+   * the buffer is full.
+   *
+   * @param nodes the entries in the page replacement policy, of which the first {@code count} hit
+   * @param count the number of hits
+   */
+  void afterReads(Node<K, V>[] nodes, int count) {
+    if (count == 0) {
+      return;
+    }
+    int result = readBatchBuffer.offer(new ReadBatchTask(nodes, count));
+    if ((result != Buffer.SUCCESS) && (diagnostics != null)) {
+      diagnostics.readBufferDrops.add(count);
+    }
+    boolean delayable = (result != Buffer.FULL);
+    if (shouldDrainBuffers(delayable)) {
+      scheduleDrainBuffers();
+    }
+  }
+
+  /** Returns if the bulk read should record its hits by {@link #afterReads}. */
+  boolean batchReads(int keys) {
+    return (keys >= READ_BATCH_MIN) && !skipReadBuffer()
+        && (readBuffer != Buffer.<Node<K, V>>disabled());
+  }
+
+  /**
+   * Returns if the cache should bypass the read buffer, which is only when the accesses do not
+   * affect the policy's decisions and are not observed by the hot key tracking.
+   */
   boolean skipReadBuffer() {
-    return fastpath() && frequencySketch().isNotInitialized();
+    return fastpath() && frequencySketch().isNotInitialized() && (hotKeys == null);
   }
 
   /**
@@ -1508,6 +1732,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         scheduleAfterWrite();
         return;
       }
+      if (diagnostics != null) {
+        diagnostics.writeBufferRetries.increment();
+      }
       scheduleDrainBuffers();
       Thread.onSpinWait();
     }
@@ -1521,8 +1748,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     // running computation due to an eviction listener, the victim is being computed on by a writer,
     // or the victim residing in the same hash bin as a computing entry. In those cases a warning is
     // logged to encourage the application to decouple these computations from the map operations.
+    long startTime = (diagnostics == null) ? 0L : System.nanoTime();
     lock();
     try {
+      if (diagnostics != null) {
+        diagnostics.writerAssists.increment();
+        diagnostics.recordLockWait(System.nanoTime() - startTime);
+      }
       maintenance(task);
     } catch (RuntimeException e) {
       logger.log(Level.ERROR, "Exception thrown when performing the maintenance task", e);
@@ -1531,6 +1763,34 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /**
+   * Performs the post-processing work required after a write that is part of a bulk operation. The
+   * task is deferred into the batch, which is submitted as a single task to the write buffer when
+   * full or by {@link #flushWrites} when the bulk operation completes.
+   *
+   * @param task the pending operation to be applied
+   * @param batch the bulk operation's pending operations, or null if not part of a bulk operation
+   */
+  void afterWrite(Runnable task, @Nullable List<Runnable> batch) {
+    if (batch == null) {
+      afterWrite(task);
+      return;
+    }
+    batch.add(task);
+    if (batch.size() >= WRITE_BATCH_MAX) {
+      flushWrites(batch);
+    }
+  }
+
+  /** Submits the bulk operation's pending operations to be applied by a single task. */
+  void flushWrites(List<Runnable> batch) {
+    if (!batch.isEmpty()) {
+      var tasks = batch.toArray(Runnable[]::new);
+      batch.clear();
+      afterWrite(new BatchTask(tasks));
+    }
+  }
+
   /** Acquires the eviction lock. */
   void lock() {
     long remainingNanos = WARN_AFTER_LOCK_WAIT_NANOS;
@@ -1616,6 +1876,64 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /**
+   * Submits a task to the executor that adjusts the effective maximum for a change in the heap's
+   * memory pressure, if the cache is memory sensitive and the capacity may change.
+   *
+   * @param underPressure whether the heap's occupancy exceeded the threshold
+   */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void onMemoryPressure(boolean underPressure) {
+    if ((memoryPressure == null) || (!underPressure && !memoryPressure.isReduced())) {
+      return;
+    }
+    try {
+      executor.execute(() -> adjustForMemoryPressure(underPressure));
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when submitting the memory pressure task", t);
+    }
+  }
+
+  /** Lowers or restores the maximum using the size-based eviction policy to discard entries. */
+  void adjustForMemoryPressure(boolean underPressure) {
+    var pressure = requireNonNull(memoryPressure);
+    evictionLock.lock();
+    try {
+      long now = pressure.ticker.read();
+      setMaximumSize(underPressure ? pressure.shrink(now) : pressure.recover(now));
+      maintenance(/* ignored */ null);
+    } finally {
+      evictionLock.unlock();
+    }
+    rescheduleCleanUpIfIncomplete();
+  }
+
+  /**
+   * Schedules the maintenance if a cycle that was run directly, such as for a change to the policy,
+   * left work pending. The common pool runs the task promptly, whereas a custom executor may run it
+   * on the calling thread, so the work is deferred to the scheduler if one was configured or is
+   * otherwise handled by the next cache activity.
+   */
+  void rescheduleCleanUpIfIncomplete() {
+    if (drainStatusOpaque() != REQUIRED) {
+      return;
+    }
+    if (executor == ForkJoinPool.commonPool()) {
+      scheduleDrainBuffers();
+      return;
+    }
+    Pacer pacer = pacer();
+    if ((pacer != null) && evictionLock.tryLock()) {
+      try {
+        if (drainStatusOpaque() == REQUIRED) {
+          pacer.schedule(executor, drainBuffersTask, expirationTicker().read(), Pacer.TOLERANCE);
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
   @Override
   public void cleanUp() {
     try {
@@ -1631,13 +1949,20 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
    * @param task an additional pending task to run, or {@code null} if not present
    */
   void performCleanUp(@Nullable Runnable task) {
+    long startTime = (diagnostics == null) ? 0L : System.nanoTime();
     evictionLock.lock();
     try {
+      if (diagnostics != null) {
+        diagnostics.recordLockWait(System.nanoTime() - startTime);
+      }
       maintenance(task);
     } finally {
       evictionLock.unlock();
     }
-    if ((drainStatusOpaque() == REQUIRED) && (executor == ForkJoinPool.commonPool())) {
+    if ((drainStatusOpaque() == REQUIRED) && ((executor == ForkJoinPool.commonPool())
+        || (referencesPending && !evictionLock.isHeldByCurrentThread()))) {
+      // A same-thread executor runs the task while the scheduling caller holds the lock, so the
+      // collected references are drained by the executor only when that cannot recurse
       scheduleDrainBuffers();
     }
   }
@@ -1651,7 +1976,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
    */
   @GuardedBy("evictionLock")
   void maintenance(@Nullable Runnable task) {
+    long startTime = (diagnostics == null) ? 0L : System.nanoTime();
     setDrainStatusRelease(PROCESSING_TO_IDLE);
+    if (removalBatcher != null) {
+      removalBatcher.startCycle();
+    }
 
     try {
       drainReadBuffer();
@@ -1661,8 +1990,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         task.run();
       }
 
-      drainKeyReferences();
-      drainValueReferences();
+      drainReferences();
 
       expireEntries();
       evictEntries();
@@ -1672,37 +2000,95 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       if ((drainStatusOpaque() != PROCESSING_TO_IDLE) || !casDrainStatus(PROCESSING_TO_IDLE, IDLE)) {
         setDrainStatusOpaque(REQUIRED);
       }
+      if (removalBatcher != null) {
+        removalBatcher.endCycle();
+      }
+      if (diagnostics != null) {
+        diagnostics.recordMaintenance(System.nanoTime() - startTime);
+      }
     }
   }
 
-  /** Drains the weak key references queue. */
+  /**
+   * Drains the weak key and the weak / soft value reference queues within a time budget. A garbage
+   * collection may clear much of the cache at once, so rather than holding the eviction lock until
+   * the queues are empty the drain stops when its budget is spent and requests another maintenance
+   * cycle, which is submitted to the executor so that the backlog is removed without waiting on
+   * further activity. The budget doubles while a backlog remains so that a storm is worked off in
+   * fewer cycles, and it is reset once the queues have been emptied.
+   */
   @GuardedBy("evictionLock")
-  void drainKeyReferences() {
-    if (!collectKeys()) {
+  void drainReferences() {
+    if (!collectKeys() && !collectValues()) {
       return;
     }
-    Reference<? extends K> keyRef;
-    while ((keyRef = keyReferenceQueue().poll()) != null) {
-      Node<K, V> node = data.get(keyRef);
-      if (node != null) {
-        evictEntry(node, RemovalCause.COLLECTED, 0L);
+    long deadline = System.nanoTime() + referenceDrainBudget;
+    if (drainKeyReferences(deadline) && drainValueReferences(deadline)) {
+      referenceDrainBudget = REFERENCE_DRAIN_MIN_NANOS;
+      if (referencesPending) {
+        referencesPending = false;
       }
+    } else {
+      referenceDrainBudget = Math.min(2 * referenceDrainBudget, REFERENCE_DRAIN_MAX_NANOS);
+      referencesPending = true;
+      setDrainStatusOpaque(PROCESSING_TO_REQUIRED);
     }
   }
 
-  /** Drains the weak / soft value references queue. */
+  /**
+   * Drains the weak key references queue until it is empty or the deadline has passed.
+   *
+   * @param deadline the time, in nanoseconds, after which the drain should stop
+   * @return if the queue was emptied
+   */
+  @GuardedBy("evictionLock")
+  boolean drainKeyReferences(long deadline) {
+    if (!collectKeys()) {
+      return true;
+    }
+    for (;;) {
+      for (int i = 0; i < REFERENCE_DRAIN_BATCH; i++) {
+        Reference<? extends K> keyRef = keyReferenceQueue().poll();
+        if (keyRef == null) {
+          return true;
+        }
+        Node<K, V> node = data.get(keyRef);
+        if (node != null) {
+          evictEntry(node, RemovalCause.COLLECTED, 0L);
+        }
+      }
+      if ((System.nanoTime() - deadline) >= 0) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Drains the weak / soft value references queue until it is empty or the deadline has passed.
+   *
+   * @param deadline the time, in nanoseconds, after which the drain should stop
+   * @return if the queue was emptied
+   */
   @GuardedBy("evictionLock")
-  void drainValueReferences() {
+  boolean drainValueReferences(long deadline) {
     if (!collectValues()) {
-      return;
+      return true;
     }
-    Reference<? extends V> valueRef;
-    while ((valueRef = valueReferenceQueue().poll()) != null) {
-      @SuppressWarnings("unchecked")
-      InternalReference<V> ref = (InternalReference<V>) valueRef;
-      Node<K, V> node = data.get(ref.getKeyReference());
-      if ((node != null) && (valueRef == node.getValueReference())) {
-        evictEntry(node, RemovalCause.COLLECTED, 0L);
+    for (;;) {
+      for (int i = 0; i < REFERENCE_DRAIN_BATCH; i++) {
+        Reference<? extends V> valueRef = valueReferenceQueue().poll();
+        if (valueRef == null) {
+          return true;
+        }
+        @SuppressWarnings("unchecked")
+        InternalReference<V> ref = (InternalReference<V>) valueRef;
+        Node<K, V> node = data.get(ref.getKeyReference());
+        if ((node != null) && (valueRef == node.getValueReference())) {
+          evictEntry(node, RemovalCause.COLLECTED, 0L);
+        }
+      }
+      if ((System.nanoTime() - deadline) >= 0) {
+        return false;
       }
     }
   }
@@ -1713,6 +2099,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     if (!skipReadBuffer()) {
       readBuffer.drainTo(accessPolicy);
     }
+    readBatchBuffer.drainTo(ReadBatchTask::run);
   }
 
   /** Updates the node's location in the page replacement policy. */
@@ -1724,6 +2111,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         return;
       }
       frequencySketch().increment(key);
+      if (hotKeys != null) {
+        hotKeys.record(node.getKeyReference());
+      }
       if (node.inWindow()) {
         reorder(accessOrderWindowDeque(), node);
       } else if (node.inMainProbation()) {
@@ -1804,17 +2194,65 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
           setMainProtectedWeightedSize(mainProtectedWeightedSize() - node.getWeight());
         }
         setWeightedSize(weightedSize() - node.getWeight());
+        if (tenants != null) {
+          tenants.remove(node);
+        }
+      }
+      if (tagIndex != null) {
+        tagIndex.remove(node);
       }
       node.die();
     }
   }
 
+  /** The hits of a bulk read, which are applied to the page replacement policy when drained. */
+  final class ReadBatchTask implements Runnable {
+    final Node<K, V>[] nodes;
+    final int count;
+
+    ReadBatchTask(Node<K, V>[] nodes, int count) {
+      this.nodes = nodes;
+      this.count = count;
+    }
+
+    @Override
+    @GuardedBy("evictionLock")
+    public void run() {
+      for (int i = 0; i < count; i++) {
+        accessPolicy.accept(nodes[i]);
+      }
+    }
+  }
+
+  /** Applies the pending operations of a bulk write to the page replacement policy. */
+  static final class BatchTask implements Runnable {
+    final Runnable[] tasks;
+
+    BatchTask(Runnable[] tasks) {
+      this.tasks = tasks;
+    }
+
+    @Override
+    @GuardedBy("evictionLock")
+    public void run() {
+      for (Runnable task : tasks) {
+        task.run();
+      }
+    }
+  }
+
   /** Adds the node to the page replacement policy. */
   final class AddTask implements Runnable {
+    final @Nullable TenantPolicy.Tenant tenant;
+    final @Nullable Object tags;
+    final @Nullable V value;
     final Node<K, V> node;
     final int weight;
 
     AddTask(Node<K, V> node, int weight) {
+      this.tenant = (tenants == null) ? null : tenants.resolve(node.getKey());
+      this.value = (tagIndex == null) || isComputingAsync(node) ? null : node.getValue();
+      this.tags = (value == null) ? null : requireNonNull(tagIndex).tagsOf(node.getKey(), value);
       this.weight = weight;
       this.node = node;
     }
@@ -1853,6 +2291,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         isAlive = node.isAlive();
       }
       if (isAlive) {
+        if (tenants != null) {
+          tenants.add(node, tenant, weight);
+        }
+        if (tagIndex != null) {
+          tagIndex.index(node, value, tags);
+        }
         if (expiresAfterWrite()) {
           writeOrderDeque().offerLast(node);
         }
@@ -1918,10 +2362,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
   /** Updates the weighted size. */
   final class UpdateTask implements Runnable {
+    final @Nullable Object tags;
+    final @Nullable V value;
     final int weightDifference;
     final Node<K, V> node;
 
     public UpdateTask(Node<K, V> node, int weightDifference) {
+      this.value = (tagIndex == null) || isComputingAsync(node) ? null : node.getValue();
+      this.tags = (value == null) ? null : requireNonNull(tagIndex).tagsOf(node.getKey(), value);
       this.weightDifference = weightDifference;
       this.node = node;
     }
@@ -1929,6 +2377,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     @Override
     @GuardedBy("evictionLock")
     public void run() {
+      if ((tagIndex != null) && node.isAlive()) {
+        tagIndex.index(node, value, tags);
+      }
       if (expiresAfterWrite()) {
         reorder(writeOrderDeque(), node);
       } else if (expiresVariable()) {
@@ -1962,6 +2413,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         }
 
         setWeightedSize(weightedSize() + weightDifference);
+        if (tenants != null) {
+          tenants.update(node, weightDifference);
+        }
         if (weightedSize() > MAXIMUM_CAPACITY) {
           evictEntries();
         }
@@ -1991,7 +2445,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   @Override
   @SuppressWarnings("FutureReturnValueIgnored")
   public void clear() {
+    var versions = generations;
+    if (versions != null) {
+      versions.advanceAll();
+    }
     evictionLock.lock();
+    if (removalBatcher != null) {
+      removalBatcher.startCycle();
+    }
     try {
       long now = expirationTicker().read();
 
@@ -2014,9 +2475,47 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
       // Discard all pending reads
       readBuffer.drainTo(e -> {});
+      readBatchBuffer.drainTo(e -> {});
+    } finally {
+      if (removalBatcher != null) {
+        removalBatcher.endCycle();
+      }
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public void invalidateTag(Object tag) {
+    requireNonNull(tag);
+    if (tagIndex == null) {
+      return;
+    }
+
+    Object[] keys;
+    Object[] values;
+    evictionLock.lock();
+    try {
+      // Apply all pending writes so that the index reflects the current mappings
+      maintenance(/* ignored */ null);
+
+      var nodes = tagIndex.nodesFor(tag);
+      keys = new Object[nodes.size()];
+      values = new Object[nodes.size()];
+      for (int i = 0; i < nodes.size(); i++) {
+        var node = nodes.get(i);
+        keys[i] = node.getKey();
+        values[i] = node.getValue();
+      }
     } finally {
       evictionLock.unlock();
     }
+
+    // Discard only the mappings that were tagged, as a value may have been replaced concurrently
+    for (int i = 0; i < keys.length; i++) {
+      if ((keys[i] != null) && (values[i] != null)) {
+        remove(keys[i], values[i]);
+      }
+    }
   }
 
   @GuardedBy("evictionLock")
@@ -2103,12 +2602,21 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return getIfPresent(key, /* recordStats */ false);
   }
 
+  /** Records a miss for the key's tenant, if the entries are partitioned by tenant. */
+  @SuppressWarnings("unchecked")
+  void recordTenantMiss(Object key) {
+    if (tenants != null) {
+      tenants.recordMiss((K) key);
+    }
+  }
+
   @Override
   public @Nullable V getIfPresent(Object key, boolean recordStats) {
     Node<K, V> node = data.get(nodeFactory.newLookupKey(key));
     if (node == null) {
       if (recordStats) {
         statsCounter().recordMisses(1);
+        recordTenantMiss(key);
       }
       if (drainStatusOpaque() == REQUIRED) {
         scheduleDrainBuffers();
@@ -2121,6 +2629,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     if (hasExpired(node, now) || (collectValues() && (value == null))) {
       if (recordStats) {
         statsCounter().recordMisses(1);
+        recordTenantMiss(key);
       }
       scheduleDrainBuffers();
       return null;
@@ -2174,13 +2683,17 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       result.put(key, null);
     }
 
+    int hits = 0;
     int uniqueKeys = result.size();
     long now = expirationTicker().read();
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    Node<K, V>[] accessed = batchReads(uniqueKeys) ? new Node[uniqueKeys] : null;
     for (var iter = result.entrySet().iterator(); iter.hasNext();) {
       V value;
       var entry = iter.next();
       Node<K, V> node = data.get(nodeFactory.newLookupKey(entry.getKey()));
       if ((node == null) || ((value = node.getValue()) == null) || hasExpired(node, now)) {
+        recordTenantMiss(entry.getKey());
         iter.remove();
       } else {
         if (!isComputingAsync(node)) {
@@ -2189,7 +2702,18 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
           tryExpireAfterRead(node, castedKey, value, expiry(), now);
           setAccessTime(node, now);
         }
-        V refreshed = afterRead(node, now, /* recordHit */ false);
+        if (tenants != null) {
+          @SuppressWarnings("unchecked")
+          K castedKey = (K) entry.getKey();
+          tenants.recordHit(castedKey);
+        }
+        V refreshed;
+        if (accessed == null) {
+          refreshed = afterRead(node, now, /* recordHit */ false);
+        } else {
+          accessed[hits++] = node;
+          refreshed = refreshIfNeeded(node, now);
+        }
         if (refreshed == null) {
           entry.setValue(value);
         } else {
@@ -2197,6 +2721,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         }
       }
     }
+    if (accessed != null) {
+      afterReads(accessed, hits);
+    }
     statsCounter().recordHits(result.size());
     statsCounter().recordMisses(uniqueKeys - result.size());
 
@@ -2207,7 +2734,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
   @Override
   public void putAll(Map<? extends K, ? extends V> map) {
-    map.forEach(this::put);
+    var batch = new ArrayList<Runnable>(Math.min(map.size(), WRITE_BATCH_MAX));
+    try {
+      map.forEach((key, value) ->
+          put(key, value, expiry(), /* onlyIfAbsent */ false, batch));
+    } finally {
+      flushWrites(batch);
+    }
   }
 
   @Override
@@ -2231,8 +2764,25 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
    * @return the prior value in or null if no mapping was found
    */
   @Nullable V put(K key, V value, Expiry<K, V> expiry, boolean onlyIfAbsent) {
+    return put(key, value, expiry, onlyIfAbsent, /* batch */ null);
+  }
+
+  /**
+   * Adds a node to the policy and the data store, deferring the policy update into the batch if
+   * this write is part of a bulk operation.
+   *
+   * @param key key with which the specified value is to be associated
+   * @param value value to be associated with the specified key
+   * @param expiry the calculator for the write expiration time
+   * @param onlyIfAbsent a write is performed only if the key is not already associated with a value
+   * @param batch the bulk operation's pending operations, or null if not part of a bulk operation
+   * @return the prior value in or null if no mapping was found
+   */
+  @Nullable V put(K key, V value, Expiry<K, V> expiry,
+      boolean onlyIfAbsent, @Nullable List<Runnable> batch) {
     requireNonNull(key);
     requireNonNull(value);
+    advanceGeneration(key);
 
     Node<K, V> node = null;
     long now = expirationTicker().read();
@@ -2248,7 +2798,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         }
         prior = data.putIfAbsent(node.getKeyReference(), node);
         if (prior == null) {
-          afterWrite(new AddTask(node, newWeight));
+          publishEvent(CacheEvent.Type.CREATED, key, value);
+          afterWrite(new AddTask(node, newWeight), batch);
           return null;
         } else if (onlyIfAbsent) {
           // An optimistic fast path to avoid unnecessary locking
@@ -2344,17 +2895,20 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
       if (expired) {
         notifyRemoval(key, oldValue, RemovalCause.EXPIRED);
+        publishEvent(CacheEvent.Type.CREATED, key, value);
       } else if (oldValue == null) {
         notifyRemoval(key, /* oldValue */ null, RemovalCause.COLLECTED);
+        publishEvent(CacheEvent.Type.CREATED, key, value);
       } else if (mayUpdate) {
         notifyOnReplace(key, oldValue, value);
       }
 
       int weightedDifference = mayUpdate ? (newWeight - oldWeight) : 0;
-      if ((oldValue == null) || (weightedDifference != 0) || expired) {
-        afterWrite(new UpdateTask(prior, weightedDifference));
+      if ((oldValue == null) || (weightedDifference != 0) || expired
+          || (mayUpdate && isRetagged(key, oldValue, value))) {
+        afterWrite(new UpdateTask(prior, weightedDifference), batch);
       } else if (!onlyIfAbsent && exceedsTolerance) {
-        afterWrite(new UpdateTask(prior, weightedDifference));
+        afterWrite(new UpdateTask(prior, weightedDifference), batch);
       } else {
         if (mayUpdate) {
           setWriteTime(prior, now);
@@ -2368,6 +2922,19 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
   @Override
   public @Nullable V remove(Object key) {
+    return removeKey(key, /* batch */ null);
+  }
+
+  /**
+   * Removes the mapping for the key, deferring the policy update into the batch if this removal is
+   * part of a bulk operation.
+   *
+   * @param key key whose mapping is to be removed from the map
+   * @param batch the bulk operation's pending operations, or null if not part of a bulk operation
+   * @return the removed value or null if no mapping was found
+   */
+  @Nullable V removeKey(Object key, @Nullable List<Runnable> batch) {
+    advanceGeneration(key);
     @SuppressWarnings("unchecked")
     K castKey = (K) key;
     @SuppressWarnings({"rawtypes", "unchecked"})
@@ -2399,18 +2966,31 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     });
 
     if (cause[0] != null) {
-      afterWrite(new RemovalTask(node[0]));
+      afterWrite(new RemovalTask(node[0]), batch);
       notifyRemoval(castKey, oldValue[0], cause[0]);
     }
     return (cause[0] == RemovalCause.EXPLICIT) ? oldValue[0] : null;
   }
 
+  @Override
+  public void invalidateAll(Iterable<?> keys) {
+    var batch = new ArrayList<Runnable>();
+    try {
+      for (Object key : keys) {
+        removeKey(key, batch);
+      }
+    } finally {
+      flushWrites(batch);
+    }
+  }
+
   @Override
   public boolean remove(Object key, Object value) {
     requireNonNull(key);
     if (value == null) {
       return false;
     }
+    advanceGeneration(key);
 
     @SuppressWarnings({"rawtypes", "unchecked"})
     Node<K, V>[] removed = new Node[1];
@@ -2458,6 +3038,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
   public @Nullable V replace(K key, V value) {
     requireNonNull(key);
     requireNonNull(value);
+    advanceGeneration(key);
 
     int[] oldWeight = new int[1];
     @SuppressWarnings("unchecked")
@@ -2495,7 +3076,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
 
     int weightedDifference = (weight - oldWeight[0]);
-    if (expiresAfterWrite() || (weightedDifference != 0)) {
+    if (expiresAfterWrite() || (weightedDifference != 0)
+        || isRetagged(nodeKey[0], oldValue[0], value)) {
       afterWrite(new UpdateTask(node, weightedDifference));
     } else {
       afterRead(node, now[0], /* recordHit */ false);
@@ -2515,6 +3097,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     requireNonNull(key);
     requireNonNull(oldValue);
     requireNonNull(newValue);
+    if (shouldDiscardRefresh) {
+      advanceGeneration(key);
+    }
 
     int weight = weigher.weigh(key, newValue);
     boolean[] replaced = new boolean[1];
@@ -2556,7 +3141,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
 
     int weightedDifference = (weight - oldWeight[0]);
-    if (expiresAfterWrite() || (weightedDifference != 0)) {
+    if (expiresAfterWrite() || (weightedDifference != 0)
+        || isRetagged(nodeKey[0], prevValue[0], newValue)) {
       afterWrite(new UpdateTask(node, weightedDifference));
     } else {
       afterRead(node, now[0], /* recordHit */ false);
@@ -2573,6 +3159,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     BiFunction<K, V, V> remappingFunction = (key, oldValue) ->
         requireNonNull(function.apply(key, oldValue));
     for (K key : keySet()) {
+      advanceGeneration(key);
       long[] now = { expirationTicker().read() };
       Object lookupKey = nodeFactory.newLookupKey(key);
       remap(key, lookupKey, remappingFunction, expiry(), now, /* computeIfAbsent */ false);
@@ -2601,6 +3188,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
     if (recordStats) {
       mappingFunction = statsAware(mappingFunction, recordLoad);
+      if (tenants != null) {
+        mappingFunction = tenants.missAware(mappingFunction);
+      }
     }
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
     return doComputeIfAbsent(key, keyRef, mappingFunction, new long[] { now }, recordStats);
@@ -2692,6 +3282,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       afterRead(node, now[0], /* recordHit */ recordStats);
       return oldValue[0];
     }
+    publishEvent(CacheEvent.Type.CREATED, key, newValue[0]);
     if ((oldValue[0] == null) && (cause[0] == null)) {
       afterWrite(new AddTask(node, weight[1]));
     } else {
@@ -2719,6 +3310,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       return null;
     }
 
+    advanceGeneration(key);
     BiFunction<? super K, ? super V, ? extends V> statsAwareRemappingFunction =
         statsAware(remappingFunction, /* recordLoad */ true, /* recordLoadFailure */ true);
     return remap(key, lookupKey, statsAwareRemappingFunction,
@@ -2732,6 +3324,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       boolean recordLoadFailure) {
     requireNonNull(key);
     requireNonNull(remappingFunction);
+    advanceGeneration(key);
 
     long[] now = { expirationTicker().read() };
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
@@ -2747,6 +3340,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     requireNonNull(key);
     requireNonNull(value);
     requireNonNull(remappingFunction);
+    advanceGeneration(key);
 
     long[] now = { expirationTicker().read() };
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
@@ -2755,6 +3349,49 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     return remap(key, keyRef, mergeFunction, expiry(), now, /* computeIfAbsent */ true);
   }
 
+  @Override
+  public long versionOf(K key) {
+    requireNonNull(key);
+    return generations().versionOf(key);
+  }
+
+  @Override
+  public boolean putIfVersion(K key, V value, long version) {
+    return putIfVersion(key, value, version, /* batch */ null);
+  }
+
+  @Override
+  public void putAllIfVersion(Set<? extends K> keys,
+      long[] versions, Map<? extends K, ? extends V> values) {
+    var batch = new ArrayList<Runnable>(Math.min(values.size(), WRITE_BATCH_MAX));
+    try {
+      LocalCache.writeAllIfVersion(keys, versions, values,
+          (key, value, version) -> putIfVersion(key, value, version, batch),
+          (key, value) -> put(key, value, expiry(), /* onlyIfAbsent */ false, batch));
+    } finally {
+      flushWrites(batch);
+    }
+  }
+
+  /** See {@link #putIfVersion(Object, Object, long)}, which defers into the batch if not null. */
+  boolean putIfVersion(K key, V value, long version, @Nullable List<Runnable> batch) {
+    requireNonNull(key);
+    requireNonNull(value);
+    var versions = generations();
+    if (!versions.isCurrent(key, version)) {
+      return false;
+    }
+
+    // The version is validated under the entry's lock, which a writer acquires after advancing it,
+    // and a stale value leaves the entry untouched
+    boolean[] installed = new boolean[1];
+    long[] now = { expirationTicker().read() };
+    Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
+    remap(key, keyRef, (k, oldValue) -> value, expiry(), now, /* computeIfAbsent */ true, batch,
+        () -> (installed[0] = versions.isCurrent(key, version)));
+    return installed[0];
+  }
+
   /**
    * Attempts to compute a mapping for the specified key and its current mapped value (or
    * {@code null} if there is no current mapping).
@@ -2771,10 +3408,24 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
    * @param computeIfAbsent if an absent entry can be computed
    * @return the new value associated with the specified key, or null if none
    */
-  @SuppressWarnings("PMD.EmptyControlStatement")
   @Nullable V remap(K key, Object keyRef,
       BiFunction<? super K, ? super V, ? extends V> remappingFunction,
       Expiry<? super K, ? super V> expiry, long[/* 1 */] now, boolean computeIfAbsent) {
+    return remap(key, keyRef, remappingFunction, expiry, now,
+        computeIfAbsent, /* batch */ null, /* precondition */ null);
+  }
+
+  /**
+   * Attempts to compute a mapping for the specified key, as by {@link #remap(Object, Object,
+   * BiFunction, Expiry, long[], boolean)}, deferring the policy update into the batch if this write
+   * is part of a bulk operation. If a precondition is given then it is evaluated under the entry's
+   * lock and, if it fails, the mapping is left unchanged without any side effects.
+   */
+  @SuppressWarnings("PMD.EmptyControlStatement")
+  @Nullable V remap(K key, Object keyRef,
+      BiFunction<? super K, ? super V, ? extends V> remappingFunction,
+      Expiry<? super K, ? super V> expiry, long[/* 1 */] now, boolean computeIfAbsent,
+      @Nullable List<Runnable> batch, @Nullable BooleanSupplier precondition) {
     @SuppressWarnings("unchecked")
     K[] nodeKey = (K[]) new Object[1];
     @SuppressWarnings("unchecked")
@@ -2786,8 +3437,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
     int[] weight = new int[2]; // old, new
     RemovalCause[] cause = new RemovalCause[1];
+    boolean[] rejected = new boolean[1];
 
     Node<K, V> node = data.compute(keyRef, (kr, n) -> {
+      if ((precondition != null) && !precondition.getAsBoolean()) {
+        rejected[0] = true;
+        return n;
+      }
       if (n == null) {
         if (!computeIfAbsent) {
           return null;
@@ -2861,6 +3517,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       }
     });
 
+    if (rejected[0]) {
+      return null;
+    }
     if (cause[0] != null) {
       if (cause[0] == RemovalCause.REPLACED) {
         notifyOnReplace(key, oldValue[0], newValue[0]);
@@ -2873,15 +3532,20 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
 
     if (removed[0] != null) {
-      afterWrite(new RemovalTask(removed[0]));
+      afterWrite(new RemovalTask(removed[0]), batch);
     } else if (node == null) {
       // absent and not computable
     } else if ((oldValue[0] == null) && (cause[0] == null)) {
-      afterWrite(new AddTask(node, weight[1]));
+      publishEvent(CacheEvent.Type.CREATED, key, newValue[0]);
+      afterWrite(new AddTask(node, weight[1]), batch);
     } else {
+      if ((cause[0] != null) && cause[0].wasEvicted()) {
+        publishEvent(CacheEvent.Type.CREATED, key, newValue[0]);
+      }
       int weightedDifference = weight[1] - weight[0];
-      if (expiresAfterWrite() || (weightedDifference != 0)) {
-        afterWrite(new UpdateTask(node, weightedDifference));
+      if (expiresAfterWrite() || (weightedDifference != 0)
+          || isRetagged(nodeKey[0], oldValue[0], newValue[0])) {
+        afterWrite(new UpdateTask(node, weightedDifference), batch);
       } else {
         afterRead(node, now[0], /* recordHit */ false);
         if ((cause[0] != null) && cause[0].wasEvicted()) {
@@ -2903,6 +3567,43 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /**
+   * Performs the action for each live entry, as by {@link ConcurrentHashMap#forEachValue(long,
+   * Consumer)}, where the entries are checked for expiration against a single reading of the
+   * ticker.
+   */
+  void forEachParallel(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action);
+    long now = expirationTicker().read();
+    data.forEachValue(parallelismThreshold, node -> {
+      K key = node.getKey();
+      V value = node.getValue();
+      if ((key != null) && (value != null) && node.isAlive() && !hasExpired(node, now)) {
+        action.accept(key, value);
+      }
+    });
+  }
+
+  /**
+   * Returns the accumulation of the live entries' transformations, as by
+   * {@link ConcurrentHashMap#reduceValues(long, Function, BiFunction)}, where the entries are
+   * checked for expiration against a single reading of the ticker.
+   */
+  <U> @Nullable U reduce(long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends U> transformer,
+      BiFunction<? super U, ? super U, ? extends U> reducer) {
+    requireNonNull(transformer);
+    requireNonNull(reducer);
+    long now = expirationTicker().read();
+    return data.reduceValues(parallelismThreshold, node -> {
+      K key = node.getKey();
+      V value = node.getValue();
+      return ((key != null) && (value != null) && node.isAlive() && !hasExpired(node, now))
+          ? transformer.apply(key, value)
+          : null;
+    }, reducer);
+  }
+
   @Override
   public Set<K> keySet() {
     final Set<K> ks = keySet;
@@ -3116,6 +3817,33 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     }
   }
 
+  /** Returns a snapshot of the diagnostics, if recorded. */
+  Optional<CacheDiagnostics> diagnostics(boolean includeBucketDepths) {
+    if (diagnostics == null) {
+      return Optional.empty();
+    }
+    evictionLock.lock();
+    try {
+      return Optional.of(diagnostics.snapshot(this, includeBucketDepths));
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /** Returns a snapshot of at most {@code limit} of the most frequently accessed keys. */
+  List<HotKey<K>> hottestKeys(int limit) {
+    if (hotKeys == null) {
+      return List.of();
+    }
+    evictionLock.lock();
+    try {
+      maintenance(/* ignored */ null);
+      return hotKeys.hottest(limit);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
   /** Returns an entry for the given node if it can be used externally, else null. */
   @Nullable CacheEntry<K, V> nodeToCacheEntry(Node<K, V> node, Function<V, V> transformer) {
     V value = transformer.apply(node.getValue());
@@ -3308,10 +4036,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     @Override
     public void forEachRemaining(Consumer<? super K> action) {
       requireNonNull(action);
+      long now = cache.expirationTicker().read();
       Consumer<Node<K, V>> consumer = node -> {
         K key = node.getKey();
         V value = node.getValue();
-        long now = cache.expirationTicker().read();
         if ((key != null) && (value != null) && node.isAlive() && !cache.hasExpired(node, now)) {
           action.accept(key);
         }
@@ -3323,10 +4051,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     public boolean tryAdvance(Consumer<? super K> action) {
       requireNonNull(action);
       boolean[] advanced = { false };
+      long now = cache.expirationTicker().read();
       Consumer<Node<K, V>> consumer = node -> {
         K key = node.getKey();
         V value = node.getValue();
-        long now = cache.expirationTicker().read();
         if ((key != null) && (value != null) && node.isAlive() && !cache.hasExpired(node, now)) {
           action.accept(key);
           advanced[0] = true;
@@ -3489,10 +4217,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     @Override
     public void forEachRemaining(Consumer<? super V> action) {
       requireNonNull(action);
+      long now = cache.expirationTicker().read();
       Consumer<Node<K, V>> consumer = node -> {
         K key = node.getKey();
         V value = node.getValue();
-        long now = cache.expirationTicker().read();
         if ((key != null) && (value != null) && node.isAlive() && !cache.hasExpired(node, now)) {
           action.accept(value);
         }
@@ -3746,10 +4474,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     @Override
     public void forEachRemaining(Consumer<? super Entry<K, V>> action) {
       requireNonNull(action);
+      long now = cache.expirationTicker().read();
       Consumer<Node<K, V>> consumer = node -> {
         K key = node.getKey();
         V value = node.getValue();
-        long now = cache.expirationTicker().read();
         if ((key != null) && (value != null) && node.isAlive() && !cache.hasExpired(node, now)) {
           action.accept(new WriteThroughEntry<>(cache, key, value));
         }
@@ -3761,10 +4489,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
     public boolean tryAdvance(Consumer<? super Entry<K, V>> action) {
       requireNonNull(action);
       boolean[] advanced = { false };
+      long now = cache.expirationTicker().read();
       Consumer<Node<K, V>> consumer = node -> {
         K key = node.getKey();
         V value = node.getValue();
-        long now = cache.expirationTicker().read();
         if ((key != null) && (value != null) && node.isAlive() && !cache.hasExpired(node, now)) {
           action.accept(new WriteThroughEntry<>(cache, key, value));
           advanced[0] = true;
@@ -3939,6 +4667,41 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       Node<K, V> node = cache.data.get(cache.nodeFactory.newLookupKey(key));
       return (node == null) ? null : cache.nodeToCacheEntry(node, transformer);
     }
+    @Override public Optional<CacheDiagnostics> diagnostics() {
+      return cache.diagnostics(/* includeBucketDepths */ true);
+    }
+    @Override public Flow.Publisher<CacheEvent<K, V>> events(
+        int bufferSize, CacheEvent.Overflow overflow) {
+      return cache.eventHub().publisher(bufferSize, overflow);
+    }
+    @Override public long versionOf(K key) {
+      return cache.versionOf(key);
+    }
+    @Override public boolean putIfVersion(K key, V value, long version) {
+      requireNonNull(value);
+      @SuppressWarnings("unchecked")
+      V castedValue = cache.isAsync ? (V) CompletableFuture.completedFuture(value) : value;
+      return cache.putIfVersion(key, castedValue, version);
+    }
+    @Override public void forEachParallel(
+        long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+      requireNonNull(action);
+      cache.forEachParallel(parallelismThreshold, (key, value) -> {
+        V transformed = transformer.apply(value);
+        if (transformed != null) {
+          action.accept(key, transformed);
+        }
+      });
+    }
+    @Override public <U> @Nullable U reduce(long parallelismThreshold,
+        BiFunction<? super K, ? super V, ? extends U> transformer,
+        BiFunction<? super U, ? super U, ? extends U> reducer) {
+      requireNonNull(transformer);
+      return cache.reduce(parallelismThreshold, (key, value) -> {
+        V transformed = this.transformer.apply(value);
+        return (transformed == null) ? null : transformer.apply(key, transformed);
+      }, reducer);
+    }
     @Override public Map<K, CompletableFuture<V>> refreshes() {
       var refreshes = cache.refreshes;
       if ((refreshes == null) || refreshes.isEmpty()) {
@@ -4037,11 +4800,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       @Override public void setMaximum(long maximum) {
         cache.evictionLock.lock();
         try {
-          cache.setMaximumSize(maximum);
+          cache.setMaximumSize((cache.memoryPressure == null)
+              ? maximum
+              : cache.memoryPressure.retarget(maximum));
           cache.maintenance(/* ignored */ null);
         } finally {
           cache.evictionLock.unlock();
         }
+        cache.rescheduleCleanUpIfIncomplete();
       }
       @Override public Map<K, V> coldest(int limit) {
         int expectedSize = Math.min(limit, cache.size());
@@ -4075,6 +4841,19 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         requireNonNull(mappingFunction);
         return cache.evictionOrder(/* hottest */ true, transformer, mappingFunction);
       }
+      @Override public Iterator<CacheEntry<K, V>> coldestCursor(int chunkSize) {
+        return PolicyCursor.coldest(cache, transformer, chunkSize);
+      }
+      @Override public Iterator<CacheEntry<K, V>> hottestCursor(int chunkSize) {
+        return PolicyCursor.hottest(cache, transformer, chunkSize);
+      }
+      @Override public Map<Object, CacheStats> tenantStats() {
+        return (cache.tenants == null) ? Map.of() : cache.tenants.stats();
+      }
+      @Override public List<HotKey<K>> hotKeys(int limit) {
+        requireArgument(limit >= 0, "limit must not be negative");
+        return cache.hottestKeys(limit);
+      }
     }
 
     @SuppressWarnings("PreferJavaTimeOverload")
@@ -4112,6 +4891,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       @Override public <T> T youngest(Function<Stream<CacheEntry<K, V>>, T> mappingFunction) {
         return cache.expireAfterAccessOrder(/* oldest */ false, transformer, mappingFunction);
       }
+      @Override public Iterator<CacheEntry<K, V>> oldestCursor(int chunkSize) {
+        return PolicyCursor.accessOrder(cache, transformer, chunkSize, /* oldest */ true);
+      }
+      @Override public Iterator<CacheEntry<K, V>> youngestCursor(int chunkSize) {
+        return PolicyCursor.accessOrder(cache, transformer, chunkSize, /* oldest */ false);
+      }
     }
 
     @SuppressWarnings("PreferJavaTimeOverload")
@@ -4152,6 +4937,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
         return cache.snapshot(cache.writeOrderDeque()::descendingIterator,
             transformer, mappingFunction);
       }
+      @Override public Iterator<CacheEntry<K, V>> oldestCursor(int chunkSize) {
+        return PolicyCursor.writeOrder(cache, transformer, chunkSize, /* oldest */ true);
+      }
+      @Override public Iterator<CacheEntry<K, V>> youngestCursor(int chunkSize) {
+        return PolicyCursor.writeOrder(cache, transformer, chunkSize, /* oldest */ false);
+      }
     }
 
     @SuppressWarnings("PreferJavaTimeOverload")
@@ -4371,12 +5162,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
 
     final Function<K, V> mappingFunction;
     @Nullable final Function<Set<? extends K>, Map<K, V>> bulkMappingFunction;
+    final ConcurrentMap<Object, CompletableFuture<V>> bulkLoads;
 
     BoundedLocalLoadingCache(Caffeine<K, V> builder, CacheLoader<? super K, V> loader) {
       super(builder, loader);
       requireNonNull(loader);
       mappingFunction = newMappingFunction(loader);
       bulkMappingFunction = newBulkMappingFunction(loader);
+      bulkLoads = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -4395,6 +5188,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef
       return bulkMappingFunction;
     }
 
+    @Override
+    public ConcurrentMap<Object, CompletableFuture<V>> bulkLoads() {
+      return bulkLoads;
+    }
+
     @SuppressWarnings("UnusedVariable")
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
       throw new InvalidObjectException("Proxy required");
@@ -173,6 +173,23 @@ public interface Cache<K, V> {
    */
   void invalidateAll();
 
+  /**
+   * Discards the cached values that are associated with the {@code tag} by the cache's
+   * {@link Caffeine#tagger tagger}. The entries are found using a secondary index, so this
+   * operation takes time proportional to the number of entries with the tag rather than to the
+   * size of the cache. An entry whose value was replaced concurrently is not discarded, and the
+   * behavior of this operation is undefined for an entry that is being loaded (or reloaded) and is
+   * otherwise not present. If the cache was not configured with a tagger then this operation has no
+   * effect.
+   *
+   * @param tag the tag whose associated values are to be removed
+   * @throws NullPointerException if the specified tag is null
+   */
+  default void invalidateTag(Object tag) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Returns the approximate number of entries in this cache. The value returned is an estimate; the
    * actual count may differ if there are concurrent insertions or removals, or if some entries are
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.List;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * Diagnostics about the internal maintenance of a cache, as recorded when the cache was configured
+ * with {@link Caffeine#recordDiagnostics()}. The counts are cumulative since the cache was created
+ * and the sizes are the cache's state when the snapshot was taken.
+ * <p>
+ * A cache records its reads in a lossy buffer and its writes in a bounded buffer, which are
+ * replayed against the eviction and expiration policies by a maintenance cycle that is performed
+ * under the eviction lock. A high number of dropped reads or of writers that assisted the
+ * maintenance indicates that the cycles are not keeping up, such as when the executor is
+ * saturated, and a long maintenance or lock wait time indicates that the cycles are contended or
+ * expensive.
+ * <p>
+ * This is a <em>value-based</em> class that is an immutable snapshot of the diagnostics.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class CacheDiagnostics {
+  private final long readBufferDropCount;
+  private final long readBufferPendingCount;
+  private final int writeBufferSize;
+  private final int writeBufferCapacity;
+  private final long writeBufferRetryCount;
+  private final long writerAssistCount;
+  private final long maintenanceCount;
+  private final long totalMaintenanceTime;
+  private final long maximumMaintenanceTime;
+  private final long totalLockWaitTime;
+  private final long sketchResetCount;
+  private final long windowMaximum;
+  private final double climberStepSize;
+  @SuppressWarnings("Immutable")
+  private final List<Integer> timerWheelBucketDepths;
+
+  CacheDiagnostics(long readBufferDropCount, long readBufferPendingCount, int writeBufferSize,
+      int writeBufferCapacity, long writeBufferRetryCount, long writerAssistCount,
+      long maintenanceCount, long totalMaintenanceTime, long maximumMaintenanceTime,
+      long totalLockWaitTime, long sketchResetCount, long windowMaximum, double climberStepSize,
+      List<Integer> timerWheelBucketDepths) {
+    this.timerWheelBucketDepths = List.copyOf(timerWheelBucketDepths);
+    this.readBufferPendingCount = readBufferPendingCount;
+    this.maximumMaintenanceTime = maximumMaintenanceTime;
+    this.writeBufferRetryCount = writeBufferRetryCount;
+    this.totalMaintenanceTime = totalMaintenanceTime;
+    this.readBufferDropCount = readBufferDropCount;
+    this.writeBufferCapacity = writeBufferCapacity;
+    this.totalLockWaitTime = totalLockWaitTime;
+    this.writerAssistCount = writerAssistCount;
+    this.sketchResetCount = sketchResetCount;
+    this.maintenanceCount = maintenanceCount;
+    this.climberStepSize = climberStepSize;
+    this.writeBufferSize = writeBufferSize;
+    this.windowMaximum = windowMaximum;
+  }
+
+  /**
+   * Returns the number of reads that were not recorded by the eviction policy because the read
+   * buffer was full or contended.
+   *
+   * @return the number of reads that were dropped by the read buffer
+   */
+  public @NonNegative long readBufferDropCount() {
+    return readBufferDropCount;
+  }
+
+  /**
+   * Returns the approximate number of reads that are waiting in the read buffer to be replayed
+   * against the eviction policy.
+   *
+   * @return the number of pending reads
+   */
+  public @NonNegative long readBufferPendingCount() {
+    return readBufferPendingCount;
+  }
+
+  /**
+   * Returns the number of writes that are waiting in the write buffer to be applied to the policy.
+   *
+   * @return the number of pending writes
+   */
+  public @NonNegative int writeBufferSize() {
+    return writeBufferSize;
+  }
+
+  /**
+   * Returns the maximum capacity of the write buffer, which grows on demand up to this size.
+   *
+   * @return the maximum capacity of the write buffer
+   */
+  public @NonNegative int writeBufferCapacity() {
+    return writeBufferCapacity;
+  }
+
+  /**
+   * Returns the number of times that a writer found the write buffer to be full and retried after
+   * scheduling the maintenance.
+   *
+   * @return the number of write buffer retries
+   */
+  public @NonNegative long writeBufferRetryCount() {
+    return writeBufferRetryCount;
+  }
+
+  /**
+   * Returns the number of times that a writer could not add to the write buffer and instead
+   * performed the maintenance itself.
+   *
+   * @return the number of times that a writer performed the maintenance
+   */
+  public @NonNegative long writerAssistCount() {
+    return writerAssistCount;
+  }
+
+  /**
+   * Returns the number of maintenance cycles that were performed.
+   *
+   * @return the number of maintenance cycles
+   */
+  public @NonNegative long maintenanceCount() {
+    return maintenanceCount;
+  }
+
+  /**
+   * Returns the total time spent performing maintenance, in nanoseconds, during which the eviction
+   * lock was held.
+   *
+   * @return the total time spent performing maintenance
+   */
+  public @NonNegative long totalMaintenanceTime() {
+    return totalMaintenanceTime;
+  }
+
+  /**
+   * Returns the longest time spent performing a single maintenance cycle, in nanoseconds.
+   *
+   * @return the longest maintenance cycle
+   */
+  public @NonNegative long maximumMaintenanceTime() {
+    return maximumMaintenanceTime;
+  }
+
+  /**
+   * Returns the total time that threads waited to acquire the eviction lock in order to perform the
+   * maintenance, in nanoseconds.
+   *
+   * @return the total time spent waiting for the eviction lock
+   */
+  public @NonNegative long totalLockWaitTime() {
+    return totalLockWaitTime;
+  }
+
+  /**
+   * Returns the number of times that the frequency sketch was aged by halving its counters, or
+   * {@code 0} if the cache is not bounded by a maximum size or weight.
+   *
+   * @return the number of times that the frequency sketch was reset
+   */
+  public @NonNegative long sketchResetCount() {
+    return sketchResetCount;
+  }
+
+  /**
+   * Returns the maximum weighted size of the admission window, as adapted by the hill climber, or
+   * {@code 0} if the cache is not bounded by a maximum size or weight.
+   *
+   * @return the maximum weighted size of the admission window
+   */
+  public @NonNegative long windowMaximum() {
+    return windowMaximum;
+  }
+
+  /**
+   * Returns the amount that the hill climber will next adjust the admission window by, where a
+   * negative step shrinks the window, or {@code 0.0} if the cache is not bounded by a maximum size
+   * or weight.
+   *
+   * @return the hill climber's step size
+   */
+  public double climberStepSize() {
+    return climberStepSize;
+  }
+
+  /**
+   * Returns the number of entries in the largest bucket of each of the timer wheels, in order from
+   * the wheel with the shortest span to the longest, or an empty list if the cache does not use a
+   * variable expiration policy.
+   *
+   * @return the depth of the largest bucket of each timer wheel
+   */
+  public List<Integer> timerWheelBucketDepths() {
+    return timerWheelBucketDepths;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "readBufferDropCount=" + readBufferDropCount + ", "
+        + "readBufferPendingCount=" + readBufferPendingCount + ", "
+        + "writeBufferSize=" + writeBufferSize + ", "
+        + "writeBufferCapacity=" + writeBufferCapacity + ", "
+        + "writeBufferRetryCount=" + writeBufferRetryCount + ", "
+        + "writerAssistCount=" + writerAssistCount + ", "
+        + "maintenanceCount=" + maintenanceCount + ", "
+        + "totalMaintenanceTime=" + totalMaintenanceTime + ", "
+        + "maximumMaintenanceTime=" + maximumMaintenanceTime + ", "
+        + "totalLockWaitTime=" + totalLockWaitTime + ", "
+        + "sketchResetCount=" + sketchResetCount + ", "
+        + "windowMaximum=" + windowMaximum + ", "
+        + "climberStepSize=" + climberStepSize + ", "
+        + "timerWheelBucketDepths=" + timerWheelBucketDepths + '}';
+  }
+}
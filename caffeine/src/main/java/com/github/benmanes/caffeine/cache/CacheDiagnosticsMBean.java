@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The management bean that exposes the {@link CacheDiagnostics} of a cache that was configured with
+ * {@link Caffeine#recordDiagnostics()}. The bean may be registered with the platform's
+ * {@link MBeanServer} under a name that identifies the cache, for example
+ * <pre>{@code
+ *   Cache<Key, Graph> graphs = Caffeine.newBuilder()
+ *       .maximumSize(10_000)
+ *       .recordDiagnostics()
+ *       .build();
+ *   CacheDiagnosticsMBean.register(graphs, "graphs");
+ * }</pre>
+ * The bean is registered under the object name
+ * {@code com.github.benmanes.caffeine:type=CacheDiagnostics,name="<name>"}, where the name is
+ * quoted. When running on the module path this requires that the {@code java.management} module is
+ * resolved.
+ * <p>
+ * The attributes are read from a snapshot that is reused for up to a second, so the values that a
+ * monitoring tool polls together are consistent and the cache's eviction lock is acquired once per
+ * poll rather than once per attribute. The timer wheel's bucket depths require a traversal of the
+ * expiration policy, so they are only measured when that attribute is read.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheDiagnosticsMBean implements CacheDiagnosticsMXBean {
+  static final String DOMAIN = "com.github.benmanes.caffeine";
+  /** The duration that a snapshot is reused for by the attributes that are read from it. */
+  static final long SNAPSHOT_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Cache<?, ?> cache;
+  private final BoundedLocalCache<?, ?> localCache;
+
+  private volatile @Nullable Snapshot snapshot;
+  private volatile @Nullable Snapshot detailedSnapshot;
+
+  /**
+   * Creates a management bean for the cache.
+   *
+   * @param cache the cache whose diagnostics are exposed
+   * @throws IllegalArgumentException if the cache does not record its diagnostics
+   */
+  public CacheDiagnosticsMBean(Cache<?, ?> cache) {
+    var policy = cache.policy();
+    requireArgument((policy instanceof BoundedLocalCache.BoundedPolicy<?, ?>)
+        && (((BoundedLocalCache.BoundedPolicy<?, ?>) policy).cache.diagnostics != null),
+        "The cache must be configured with recordDiagnostics()");
+    this.localCache = ((BoundedLocalCache.BoundedPolicy<?, ?>) policy).cache;
+    this.cache = cache;
+  }
+
+  /**
+   * Registers a management bean for the cache with the platform's {@link MBeanServer}, unless a
+   * bean is already registered with the name.
+   *
+   * @param cache the cache whose diagnostics are exposed
+   * @param name the name that identifies the cache
+   * @return the object name that the bean is registered with
+   * @throws IllegalArgumentException if the cache does not record its diagnostics or if the name
+   *         is not valid for use in an {@link ObjectName}
+   * @throws IllegalStateException if the bean could not be registered
+   */
+  public static ObjectName register(Cache<?, ?> cache, String name) {
+    var mbean = new CacheDiagnosticsMBean(cache);
+    var objectName = objectName(name);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(mbean, objectName);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Error registering " + objectName, e);
+    }
+    return objectName;
+  }
+
+  /**
+   * Unregisters the management bean with the given name from the platform's {@link MBeanServer},
+   * if registered.
+   *
+   * @param name the name that identifies the cache
+   * @throws IllegalArgumentException if the name is not valid for use in an {@link ObjectName}
+   * @throws IllegalStateException if the bean could not be unregistered
+   */
+  public static void unregister(String name) {
+    var objectName = objectName(name);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException("Error unregistering " + objectName, e);
+    }
+  }
+
+  /** Returns the object name of the management bean. */
+  static ObjectName objectName(String name) {
+    requireNonNull(name);
+    try {
+      return new ObjectName(DOMAIN + ":type=CacheDiagnostics,name=" + ObjectName.quote(name));
+    } catch (JMException e) {
+      throw new IllegalArgumentException("Illegal ObjectName for " + name, e);
+    }
+  }
+
+  @Override
+  public long getReadBufferDropCount() {
+    return snapshot().readBufferDropCount();
+  }
+
+  @Override
+  public long getReadBufferPendingCount() {
+    return snapshot().readBufferPendingCount();
+  }
+
+  @Override
+  public int getWriteBufferSize() {
+    return snapshot().writeBufferSize();
+  }
+
+  @Override
+  public int getWriteBufferCapacity() {
+    return snapshot().writeBufferCapacity();
+  }
+
+  @Override
+  public long getWriteBufferRetryCount() {
+    return snapshot().writeBufferRetryCount();
+  }
+
+  @Override
+  public long getWriterAssistCount() {
+    return snapshot().writerAssistCount();
+  }
+
+  @Override
+  public long getMaintenanceCount() {
+    return snapshot().maintenanceCount();
+  }
+
+  @Override
+  public long getTotalMaintenanceTime() {
+    return snapshot().totalMaintenanceTime();
+  }
+
+  @Override
+  public long getMaximumMaintenanceTime() {
+    return snapshot().maximumMaintenanceTime();
+  }
+
+  @Override
+  public long getTotalLockWaitTime() {
+    return snapshot().totalLockWaitTime();
+  }
+
+  @Override
+  public long getSketchResetCount() {
+    return snapshot().sketchResetCount();
+  }
+
+  @Override
+  public long getWindowMaximum() {
+    return snapshot().windowMaximum();
+  }
+
+  @Override
+  public double getClimberStepSize() {
+    return snapshot().climberStepSize();
+  }
+
+  @Override
+  public int[] getTimerWheelBucketDepths() {
+    var current = detailedSnapshot;
+    long now = System.nanoTime();
+    if ((current == null) || current.isStale(now)) {
+      detailedSnapshot = current = new Snapshot(
+          localCache.diagnostics(/* includeBucketDepths */ true).orElseThrow(), now);
+    }
+    return current.diagnostics.timerWheelBucketDepths().stream()
+        .mapToInt(Integer::intValue).toArray();
+  }
+
+  @Override
+  public long getEstimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  /** Returns the snapshot of the diagnostics, excluding the bucket depths, taken within the TTL. */
+  private CacheDiagnostics snapshot() {
+    var current = snapshot;
+    long now = System.nanoTime();
+    if ((current == null) || current.isStale(now)) {
+      snapshot = current = new Snapshot(
+          localCache.diagnostics(/* includeBucketDepths */ false).orElseThrow(), now);
+    }
+    return current.diagnostics;
+  }
+
+  /** The diagnostics and the time when they were captured. */
+  static final class Snapshot {
+    final CacheDiagnostics diagnostics;
+    final long createdAt;
+
+    Snapshot(CacheDiagnostics diagnostics, long createdAt) {
+      this.diagnostics = diagnostics;
+      this.createdAt = createdAt;
+    }
+
+    boolean isStale(long now) {
+      return (now - createdAt) >= SNAPSHOT_TTL_NANOS;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+/**
+ * A management bean that exposes the {@link CacheDiagnostics} of a cache by JMX. The attributes
+ * are read from a snapshot of the diagnostics that is briefly reused by the subsequent accesses.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface CacheDiagnosticsMXBean {
+
+  /** Returns the {@link CacheDiagnostics#readBufferDropCount()}. */
+  long getReadBufferDropCount();
+
+  /** Returns the {@link CacheDiagnostics#readBufferPendingCount()}. */
+  long getReadBufferPendingCount();
+
+  /** Returns the {@link CacheDiagnostics#writeBufferSize()}. */
+  int getWriteBufferSize();
+
+  /** Returns the {@link CacheDiagnostics#writeBufferCapacity()}. */
+  int getWriteBufferCapacity();
+
+  /** Returns the {@link CacheDiagnostics#writeBufferRetryCount()}. */
+  long getWriteBufferRetryCount();
+
+  /** Returns the {@link CacheDiagnostics#writerAssistCount()}. */
+  long getWriterAssistCount();
+
+  /** Returns the {@link CacheDiagnostics#maintenanceCount()}. */
+  long getMaintenanceCount();
+
+  /** Returns the {@link CacheDiagnostics#totalMaintenanceTime()}. */
+  long getTotalMaintenanceTime();
+
+  /** Returns the {@link CacheDiagnostics#maximumMaintenanceTime()}. */
+  long getMaximumMaintenanceTime();
+
+  /** Returns the {@link CacheDiagnostics#totalLockWaitTime()}. */
+  long getTotalLockWaitTime();
+
+  /** Returns the {@link CacheDiagnostics#sketchResetCount()}. */
+  long getSketchResetCount();
+
+  /** Returns the {@link CacheDiagnostics#windowMaximum()}. */
+  long getWindowMaximum();
+
+  /** Returns the {@link CacheDiagnostics#climberStepSize()}. */
+  double getClimberStepSize();
+
+  /** Returns the {@link CacheDiagnostics#timerWheelBucketDepths()}. */
+  int[] getTimerWheelBucketDepths();
+
+  /** Returns the approximate number of entries in the cache. */
+  long getEstimatedSize();
+}
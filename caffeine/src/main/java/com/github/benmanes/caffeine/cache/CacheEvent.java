@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Objects;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * A mutation of a cache's contents that is emitted by the {@link Policy#events change stream}. The
+ * event describes the state of the entry after a creation or an update, and the state of the entry
+ * that was discarded by a removal.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@Immutable(containerOf = {"K", "V"})
+public final class CacheEvent<K, V> {
+  private final @Nullable K key;
+  private final @Nullable V value;
+  private final Type type;
+
+  CacheEvent(Type type, @Nullable K key, @Nullable V value) {
+    this.type = requireNonNull(type);
+    this.value = value;
+    this.key = key;
+  }
+
+  /**
+   * Returns the kind of mutation.
+   *
+   * @return the kind of mutation
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the key of the entry that was mutated.
+   *
+   * @return the key, or {@code null} if the entry was removed after its key was collected
+   */
+  public @Nullable K getKey() {
+    return key;
+  }
+
+  /**
+   * Returns the entry's new value if it was created or updated, or its prior value if it was
+   * removed.
+   *
+   * @return the value, or {@code null} if the entry was removed after its value was collected
+   */
+  public @Nullable V getValue() {
+    return value;
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof CacheEvent)) {
+      return false;
+    }
+    var event = (CacheEvent<?, ?>) o;
+    return (type == event.type)
+        && Objects.equals(key, event.key)
+        && Objects.equals(value, event.value);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, key, value);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "type=" + type + ", "
+        + "key=" + key + ", "
+        + "value=" + value + '}';
+  }
+
+  /** The kind of mutation that was applied to an entry. */
+  public enum Type {
+
+    /** The entry was added to the cache. */
+    CREATED,
+
+    /** The entry's value was replaced. */
+    UPDATED,
+
+    /** The entry was manually removed by the user. */
+    REMOVED,
+
+    /** The entry was evicted due to a size constraint or because its key or value was collected. */
+    EVICTED,
+
+    /** The entry's expiration timestamp has passed. */
+    EXPIRED;
+
+    /** Returns the event type of a removal, or {@code null} if the removal is an update. */
+    static @Nullable Type of(RemovalCause cause) {
+      switch (cause) {
+        case EXPLICIT:
+          return REMOVED;
+        case REPLACED:
+          return null;
+        case EXPIRED:
+          return EXPIRED;
+        case SIZE:
+        case COLLECTED:
+          return EVICTED;
+        default:
+          throw new IllegalArgumentException("Unknown cause: " + cause);
+      }
+    }
+  }
+
+  /** The strategy used when a subscriber does not keep up and its buffer is full. */
+  public enum Overflow {
+
+    /** Discards the oldest buffered event to make room for the new one. */
+    DROP_OLDEST,
+
+    /** Discards the new event, retaining the buffered ones. */
+    DROP_LATEST,
+
+    /**
+     * Retains only the most recent event for each key, so that the subscriber observes the latest
+     * state of an entry rather than every intermediate mutation. The oldest buffered event is
+     * discarded if the buffer is full of distinct keys.
+     */
+    COALESCE,
+  }
+}
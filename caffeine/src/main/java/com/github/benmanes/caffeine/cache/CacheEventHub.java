@@ -0,0 +1,313 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.CacheEvent.Overflow;
+import com.github.benmanes.caffeine.cache.CacheEvent.Type;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * The change stream of a cache, which fans out the mutations to the active subscriptions. The
+ * cache publishes an event after the atomic operation that mutated the entry has completed, which
+ * is where the removal notifications are also produced, and a publication costs only a volatile
+ * read when there are no subscribers.
+ * <p>
+ * Each subscription has a bounded buffer that absorbs the events until they are requested, and
+ * applies its {@link Overflow} strategy when the subscriber falls behind. The events are emitted
+ * on the cache's executor in batches, where a single task drains all of the buffered events that
+ * the subscriber has demand for, and the emissions to a subscriber are serialized by a
+ * work-in-progress counter. An asynchronous cache stores futures as its values, so an event is
+ * published when its future completes successfully.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class CacheEventHub<K, V> {
+  static final Logger logger = System.getLogger(CacheEventHub.class.getName());
+  @SuppressWarnings("rawtypes")
+  static final EventSubscription[] NO_SUBSCRIPTIONS = new EventSubscription[0];
+
+  final Executor executor;
+  final boolean isAsync;
+
+  volatile EventSubscription<K, V>[] subscriptions;
+
+  @SuppressWarnings("unchecked")
+  CacheEventHub(Executor executor, boolean isAsync) {
+    this.subscriptions = (EventSubscription<K, V>[]) NO_SUBSCRIPTIONS;
+    this.executor = requireNonNull(executor);
+    this.isAsync = isAsync;
+  }
+
+  /** Returns a publisher whose subscriptions use the given buffer size and overflow strategy. */
+  Flow.Publisher<CacheEvent<K, V>> publisher(int bufferSize, Overflow overflow) {
+    requireArgument(bufferSize > 0, "buffer size must be positive: %s", bufferSize);
+    requireNonNull(overflow);
+    return subscriber -> {
+      var subscription = new EventSubscription<>(this, subscriber, bufferSize, overflow);
+      subscriber.onSubscribe(subscription);
+      if (!subscription.cancelled) {
+        add(subscription);
+        if (subscription.cancelled) {
+          // The subscription may be cancelled by the drain concurrently with its registration
+          remove(subscription);
+        }
+      }
+    };
+  }
+
+  /** Publishes the mutation to the subscribers, if any. */
+  @SuppressWarnings({"FutureReturnValueIgnored", "unchecked"})
+  void publish(Type type, @Nullable K key, @Nullable V value) {
+    if (subscriptions.length == 0) {
+      return;
+    } else if (!isAsync || (value == null)) {
+      emit(new CacheEvent<>(type, key, value));
+      return;
+    }
+
+    var future = (CompletableFuture<?>) value;
+    if (future.isDone()) {
+      var result = Async.getIfReady(future);
+      if (result != null) {
+        emit(new CacheEvent<>(type, key, (V) result));
+      }
+    } else {
+      future.thenAccept(result -> {
+        if (result != null) {
+          emit(new CacheEvent<>(type, key, (V) result));
+        }
+      });
+    }
+  }
+
+  /** Offers the event to every subscription. */
+  void emit(CacheEvent<K, V> event) {
+    for (var subscription : subscriptions) {
+      subscription.offer(event);
+    }
+  }
+
+  synchronized void add(EventSubscription<K, V> subscription) {
+    var current = subscriptions;
+    var updated = Arrays.copyOf(current, current.length + 1);
+    updated[current.length] = subscription;
+    subscriptions = updated;
+  }
+
+  synchronized void remove(EventSubscription<K, V> subscription) {
+    var current = subscriptions;
+    for (int i = 0; i < current.length; i++) {
+      if (current[i] == subscription) {
+        var updated = Arrays.copyOf(current, current.length - 1);
+        System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+        subscriptions = updated;
+        return;
+      }
+    }
+  }
+
+  /** A subscription that buffers the events and emits them according to the requested demand. */
+  static final class EventSubscription<K, V> implements Flow.Subscription, Runnable {
+    final Flow.Subscriber<? super CacheEvent<K, V>> subscriber;
+    final CacheEventHub<K, V> hub;
+    final AtomicLong requested;
+    final Overflow overflow;
+    final AtomicInteger wip;
+    final int bufferSize;
+
+    /** The buffered events in order, or the latest event per key when coalescing. */
+    @GuardedBy("this")
+    final @Nullable ArrayDeque<CacheEvent<K, V>> queue;
+    @GuardedBy("this")
+    final @Nullable LinkedHashMap<Object, CacheEvent<K, V>> latest;
+
+    volatile @Nullable Throwable error;
+    volatile boolean cancelled;
+
+    EventSubscription(CacheEventHub<K, V> hub, Flow.Subscriber<? super CacheEvent<K, V>> subscriber,
+        int bufferSize, Overflow overflow) {
+      this.subscriber = requireNonNull(subscriber);
+      this.requested = new AtomicLong();
+      this.wip = new AtomicInteger();
+      this.bufferSize = bufferSize;
+      this.overflow = overflow;
+      this.hub = hub;
+
+      if (overflow == Overflow.COALESCE) {
+        this.latest = new LinkedHashMap<>();
+        this.queue = null;
+      } else {
+        this.queue = new ArrayDeque<>();
+        this.latest = null;
+      }
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        if (error == null) {
+          error = new IllegalArgumentException("non-positive subscription request: " + n);
+        }
+        schedule();
+        return;
+      }
+      requested.accumulateAndGet(n, (current, demand) -> {
+        long total = current + demand;
+        return (total < 0) ? Long.MAX_VALUE : total;
+      });
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      if (cancelled) {
+        return;
+      }
+      cancelled = true;
+      hub.remove(this);
+      synchronized (this) {
+        if (queue != null) {
+          queue.clear();
+        }
+        if (latest != null) {
+          latest.clear();
+        }
+      }
+    }
+
+    /** Buffers the event, applying the overflow strategy if full, and schedules the drain. */
+    void offer(CacheEvent<K, V> event) {
+      synchronized (this) {
+        if (latest != null) {
+          // A collected key cannot be coalesced, so the event is buffered under a unique key
+          Object key = (event.getKey() == null) ? new Object() : event.getKey();
+          if ((latest.remove(key) == null) && (latest.size() >= bufferSize)) {
+            var eldest = latest.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+          }
+          latest.put(key, event);
+        } else if (queue != null) {
+          if (queue.size() >= bufferSize) {
+            if (overflow == Overflow.DROP_LATEST) {
+              return;
+            }
+            queue.poll();
+          }
+          queue.add(event);
+        }
+      }
+      if (requested.get() != 0) {
+        schedule();
+      }
+    }
+
+    /** Removes and returns the next buffered event, if any. */
+    synchronized @Nullable CacheEvent<K, V> poll() {
+      if (latest != null) {
+        if (latest.isEmpty()) {
+          return null;
+        }
+        var iterator = latest.values().iterator();
+        var event = iterator.next();
+        iterator.remove();
+        return event;
+      }
+      return (queue == null) ? null : queue.poll();
+    }
+
+    /** Submits the drain task to the executor unless it is already scheduled or running. */
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    void schedule() {
+      if (wip.getAndIncrement() == 0) {
+        try {
+          hub.executor.execute(this);
+        } catch (Throwable t) {
+          logger.log(Level.ERROR, "Exception thrown when submitting the event stream's drain", t);
+          run();
+        }
+      }
+    }
+
+    /** Emits the buffered events that the subscriber has demand for. */
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    public void run() {
+      int missed = 1;
+      for (;;) {
+        if (isTerminated()) {
+          return;
+        }
+        long demand = requested.get();
+        long emitted = 0;
+        while (emitted != demand) {
+          if (isTerminated()) {
+            return;
+          }
+          var event = poll();
+          if (event == null) {
+            break;
+          }
+          try {
+            subscriber.onNext(event);
+          } catch (Throwable t) {
+            logger.log(Level.WARNING, "Exception thrown by the event stream's subscriber", t);
+            cancel();
+            return;
+          }
+          emitted++;
+        }
+        if ((emitted != 0) && (demand != Long.MAX_VALUE)) {
+          requested.addAndGet(-emitted);
+        }
+        missed = wip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /** Returns if the subscription was cancelled or failed, signaling the error if necessary. */
+    boolean isTerminated() {
+      if (cancelled) {
+        return true;
+      }
+      Throwable cause = error;
+      if (cause != null) {
+        cancel();
+        subscriber.onError(cause);
+        return true;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A group of bounded caches that share a single maximum weight budget. Rather than each cache
+ * being configured with a static maximum, the group divides its budget among the member caches and
+ * periodically rebalances it so that capacity flows towards the caches that would make the best
+ * use of it. The same amount of memory can then deliver a higher aggregate hit rate, as a cache
+ * that holds cold data gives up capacity to one whose working set does not fit.
+ * <p>
+ * Each rebalancing estimates a member's marginal utility from its recent activity. The number of
+ * misses since the previous rebalancing approximates the unmet demand, and the popularity of the
+ * entries at the eviction boundary, as estimated by the cache's frequency sketch, indicates whether
+ * additional capacity would retain useful entries. The budget is then redistributed in proportion
+ * to the utilities, with every member guaranteed a minimum share and with the change damped to
+ * avoid oscillations. The members that shrink are resized before those that grow, so that their
+ * excess entries are evicted before the space is handed out.
+ * <p>
+ * A member must be bounded by a maximum size or weight and must {@link Caffeine#recordStats()
+ * record statistics}, so that the demands of the members are measured on the same scale. Its
+ * maximum is adjusted by the group in the units of that bound. The group only weakly retains its
+ * members, so a cache that is no longer referenced is garbage collected and its share is returned
+ * to the remaining members.
+ * <p>
+ * Usage example:
+ * <pre>{@code
+ *   CacheGroup group = CacheGroup.newGroup(10_000, Scheduler.systemScheduler(),
+ *       Duration.ofSeconds(30));
+ *   Cache<Key, Graph> graphs = Caffeine.newBuilder()
+ *       .maximumSize(1)
+ *       .recordStats()
+ *       .build();
+ *   group.register(graphs);
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheGroup {
+  /** The number of entries at the eviction boundary that are sampled for their frequency. */
+  static final int BOUNDARY_SAMPLE = 16;
+  /** The maximum frequency that can be estimated by the sketch. */
+  static final double MAXIMUM_FREQUENCY = 15.0;
+  /** The fraction of an equal share that is reserved for every member. */
+  static final int MINIMUM_SHARE_DIVISOR = 8;
+  /** The fraction of the difference from the target maximum that is applied when rebalancing. */
+  static final int DAMPING_DIVISOR = 2;
+
+  @GuardedBy("this")
+  final List<Member> members;
+  final long maximumWeight;
+
+  CacheGroup(long maximumWeight) {
+    this.members = new ArrayList<>();
+    this.maximumWeight = maximumWeight;
+  }
+
+  /**
+   * Returns a new group that shares the given budget among its member caches. The group is only
+   * rebalanced when {@link #rebalance()} is called.
+   *
+   * @param maximumWeight the total maximum weight, or size, shared by the members
+   * @return a new group without any member caches
+   * @throws IllegalArgumentException if {@code maximumWeight} is not positive
+   */
+  public static CacheGroup newGroup(long maximumWeight) {
+    requireArgument(maximumWeight > 0, "maximum weight must be positive: %s", maximumWeight);
+    return new CacheGroup(maximumWeight);
+  }
+
+  /**
+   * Returns a new group that shares the given budget among its member caches and that is
+   * rebalanced periodically by using the scheduler. The rebalancing is performed on
+   * {@link ForkJoinPool#commonPool()} and stops when the group is garbage collected.
+   *
+   * @param maximumWeight the total maximum weight, or size, shared by the members
+   * @param scheduler the scheduler that submits the rebalancing task after each interval
+   * @param rebalanceInterval the duration between rebalancing the members
+   * @return a new group without any member caches
+   * @throws IllegalArgumentException if {@code maximumWeight} or {@code rebalanceInterval} is not
+   *         positive
+   * @throws NullPointerException if the scheduler or interval is null
+   */
+  public static CacheGroup newGroup(long maximumWeight,
+      Scheduler scheduler, Duration rebalanceInterval) {
+    requireNonNull(scheduler);
+    requireArgument(!rebalanceInterval.isNegative() && !rebalanceInterval.isZero(),
+        "rebalance interval must be positive: %s", rebalanceInterval);
+    var group = newGroup(maximumWeight);
+    new RebalanceTask(group, Scheduler.guardedScheduler(scheduler),
+        ForkJoinPool.commonPool(), Caffeine.saturatedToNanos(rebalanceInterval)).schedule();
+    return group;
+  }
+
+  /** Returns the total maximum weight, or size, that is shared by the member caches. */
+  public long maximumWeight() {
+    return maximumWeight;
+  }
+
+  /** Returns the number of caches that are currently members of this group. */
+  public synchronized int size() {
+    prune();
+    return members.size();
+  }
+
+  /**
+   * Adds the cache to this group and assigns it an equal share of the budget, which is taken from
+   * the existing members in proportion to their current maximums.
+   *
+   * @param cache the cache to add to this group
+   * @throws IllegalArgumentException if the cache is not bounded by a maximum size or weight, if it
+   *         does not record statistics, or if it is already a member of this group
+   * @throws NullPointerException if the cache is null
+   */
+  public void register(Cache<?, ?> cache) {
+    requireNonNull(cache);
+    register(asBoundedLocalCache(cache));
+  }
+
+  /**
+   * Adds the cache to this group and assigns it an equal share of the budget, which is taken from
+   * the existing members in proportion to their current maximums.
+   *
+   * @param cache the cache to add to this group
+   * @throws IllegalArgumentException if the cache is not bounded by a maximum size or weight, if it
+   *         does not record statistics, or if it is already a member of this group
+   * @throws NullPointerException if the cache is null
+   */
+  public void register(AsyncCache<?, ?> cache) {
+    requireNonNull(cache);
+    register(asBoundedLocalCache(cache));
+  }
+
+  /**
+   * Removes the cache from this group and returns its share of the budget to the remaining members.
+   * The removed cache retains its current maximum.
+   *
+   * @param cache the cache to remove from this group
+   * @return if the cache was a member of this group
+   * @throws NullPointerException if the cache is null
+   */
+  public boolean unregister(Cache<?, ?> cache) {
+    requireNonNull(cache);
+    return unregister(localCacheOf(cache));
+  }
+
+  /**
+   * Removes the cache from this group and returns its share of the budget to the remaining members.
+   * The removed cache retains its current maximum.
+   *
+   * @param cache the cache to remove from this group
+   * @return if the cache was a member of this group
+   * @throws NullPointerException if the cache is null
+   */
+  public boolean unregister(AsyncCache<?, ?> cache) {
+    requireNonNull(cache);
+    return unregister(localCacheOf(cache));
+  }
+
+  /**
+   * Redistributes the budget among the member caches according to their marginal utility since the
+   * previous rebalancing.
+   */
+  public synchronized void rebalance() {
+    prune();
+    if (members.isEmpty()) {
+      return;
+    }
+
+    double totalUtility = 0.0;
+    var utilities = new double[members.size()];
+    for (int i = 0; i < members.size(); i++) {
+      utilities[i] = members.get(i).sampleUtility();
+      totalUtility += utilities[i];
+    }
+
+    long floor = Math.max(1L, maximumWeight / ((long) MINIMUM_SHARE_DIVISOR * members.size()));
+    long distributable = Math.max(0L, maximumWeight - (floor * members.size()));
+    var targets = new long[members.size()];
+    for (int i = 0; i < members.size(); i++) {
+      double share = (totalUtility == 0.0)
+          ? (1.0 / members.size())
+          : (utilities[i] / totalUtility);
+      long current = members.get(i).maximum();
+      long target = floor + (long) (distributable * share);
+      targets[i] = current + ((target - current) / DAMPING_DIVISOR);
+    }
+    resize(targets);
+  }
+
+  /**
+   * Performs any pending maintenance operations needed by the member caches, one at a time, so that
+   * their work is not performed concurrently.
+   */
+  public synchronized void cleanUp() {
+    prune();
+    for (var member : members) {
+      var cache = member.get();
+      if (cache != null) {
+        cache.cleanUp();
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    prune();
+    return getClass().getSimpleName()
+        + "{maximumWeight=" + maximumWeight + ", members=" + members.size() + '}';
+  }
+
+  synchronized void register(BoundedLocalCache<?, ?> cache) {
+    prune();
+    requireArgument(indexOf(cache) < 0, "cache is already a member of this group");
+
+    long share = maximumWeight / (members.size() + 1);
+    long remaining = maximumWeight - share;
+    long existing = 0L;
+    for (var member : members) {
+      existing += member.maximum();
+    }
+    var targets = new long[members.size() + 1];
+    for (int i = 0; i < members.size(); i++) {
+      long current = members.get(i).maximum();
+      targets[i] = (existing == 0L)
+          ? (remaining / members.size())
+          : (long) ((double) remaining * current / existing);
+    }
+    targets[members.size()] = share;
+    members.add(new Member(cache));
+    resize(targets);
+  }
+
+  synchronized boolean unregister(@Nullable LocalCache<?, ?> cache) {
+    prune();
+    int index = (cache == null) ? -1 : indexOf(cache);
+    if (index < 0) {
+      return false;
+    }
+    members.remove(index);
+    redistribute();
+    return true;
+  }
+
+  /** Removes the members that were garbage collected, returning their shares to the others. */
+  @GuardedBy("this")
+  void prune() {
+    if (members.removeIf(member -> member.get() == null)) {
+      redistribute();
+    }
+  }
+
+  /** Scales the members' maximums so that the budget is fully assigned. */
+  @GuardedBy("this")
+  void redistribute() {
+    if (members.isEmpty()) {
+      return;
+    }
+    long total = 0L;
+    for (var member : members) {
+      total += member.maximum();
+    }
+    var targets = new long[members.size()];
+    for (int i = 0; i < members.size(); i++) {
+      targets[i] = (total == 0L)
+          ? (maximumWeight / members.size())
+          : (long) ((double) maximumWeight * members.get(i).maximum() / total);
+    }
+    resize(targets);
+  }
+
+  /**
+   * Assigns the target maximums, with any rounding remainder given to the largest member, by first
+   * shrinking the members that decrease and then growing those that increase.
+   */
+  @GuardedBy("this")
+  void resize(long[] targets) {
+    long assigned = 0L;
+    int largest = 0;
+    for (int i = 0; i < targets.length; i++) {
+      targets[i] = Math.max(0L, targets[i]);
+      assigned += targets[i];
+      if (targets[i] > targets[largest]) {
+        largest = i;
+      }
+    }
+    targets[largest] = Math.max(0L, targets[largest] + (maximumWeight - assigned));
+
+    for (int i = 0; i < targets.length; i++) {
+      if (targets[i] < members.get(i).maximum()) {
+        members.get(i).setMaximum(targets[i]);
+      }
+    }
+    for (int i = 0; i < targets.length; i++) {
+      if (targets[i] > members.get(i).maximum()) {
+        members.get(i).setMaximum(targets[i]);
+      }
+    }
+  }
+
+  @GuardedBy("this")
+  int indexOf(LocalCache<?, ?> cache) {
+    for (int i = 0; i < members.size(); i++) {
+      if (members.get(i).get() == cache) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  static @Nullable LocalCache<?, ?> localCacheOf(Object cache) {
+    if (cache instanceof LocalManualCache<?, ?>) {
+      return ((LocalManualCache<?, ?>) cache).cache();
+    } else if (cache instanceof LocalAsyncCache<?, ?>) {
+      return ((LocalAsyncCache<?, ?>) cache).cache();
+    }
+    return null;
+  }
+
+  static BoundedLocalCache<?, ?> asBoundedLocalCache(Object cache) {
+    LocalCache<?, ?> local = localCacheOf(cache);
+    requireArgument((local instanceof BoundedLocalCache<?, ?>)
+        && ((BoundedLocalCache<?, ?>) local).evicts(),
+        "cache must be bounded by a maximum size or weight");
+    requireArgument(local.isRecordingStats(), "cache must record statistics");
+    return (BoundedLocalCache<?, ?>) local;
+  }
+
+  /** A weakly referenced member cache and the statistics observed at the previous rebalancing. */
+  static final class Member extends WeakReference<BoundedLocalCache<?, ?>> {
+    long hitCount;
+    long missCount;
+
+    Member(BoundedLocalCache<?, ?> cache) {
+      super(cache);
+      var stats = cache.statsCounter().snapshot();
+      hitCount = stats.hitCount();
+      missCount = stats.missCount();
+    }
+
+    /**
+     * Returns the cache's configured maximum, which excludes a reduction for memory pressure, or
+     * zero if it was garbage collected.
+     */
+    long maximum() {
+      var cache = get();
+      if (cache == null) {
+        return 0L;
+      }
+      cache.evictionLock.lock();
+      try {
+        return (cache.memoryPressure == null) ? cache.maximum() : cache.memoryPressure.target;
+      } finally {
+        cache.evictionLock.unlock();
+      }
+    }
+
+    /** Sets the cache's maximum and evicts entries if it now exceeds the threshold. */
+    void setMaximum(long maximum) {
+      var cache = get();
+      if (cache != null) {
+        cache.evictionLock.lock();
+        try {
+          cache.setMaximumSize((cache.memoryPressure == null)
+              ? maximum
+              : cache.memoryPressure.retarget(maximum));
+          cache.maintenance(/* ignored */ null);
+        } finally {
+          cache.evictionLock.unlock();
+        }
+        cache.rescheduleCleanUpIfIncomplete();
+      }
+    }
+
+    /**
+     * Returns the estimated benefit of additional capacity, which is the number of misses since
+     * the last sample scaled by the popularity of the entries at the eviction boundary. A cache
+     * that is well below its maximum is not constrained and so it would not benefit.
+     */
+    double sampleUtility() {
+      var cache = get();
+      if (cache == null) {
+        return 0.0;
+      }
+
+      CacheStats stats = cache.statsCounter().snapshot();
+      long misses = stats.missCount() - missCount;
+      long requests = misses + (stats.hitCount() - hitCount);
+      hitCount = stats.hitCount();
+      missCount = stats.missCount();
+
+      if ((misses == 0L) || (requests == 0L)) {
+        return 0.0;
+      }
+      long maximum = maximum();
+      double occupancy = (maximum == 0L) ? 1.0 : Math.min(1.0, (double) weightedSize() / maximum);
+      double popularity = (boundaryFrequency(cache) + 1.0) / (MAXIMUM_FREQUENCY + 1.0);
+      return misses * popularity * occupancy * occupancy;
+    }
+
+    /** Returns the cache's current weighted size. */
+    long weightedSize() {
+      var cache = get();
+      if (cache == null) {
+        return 0L;
+      }
+      cache.evictionLock.lock();
+      try {
+        return Math.max(0L, cache.weightedSize());
+      } finally {
+        cache.evictionLock.unlock();
+      }
+    }
+
+    /** Returns the average estimated frequency of the entries that are next to be evicted. */
+    static <K, V> double boundaryFrequency(BoundedLocalCache<K, V> cache) {
+      return cache.evictionOrder(/* hottest */ false, Function.identity(), stream -> stream
+          .limit(BOUNDARY_SAMPLE)
+          .mapToInt(entry -> cache.frequencySketch().frequency(entry.getKey()))
+          .average().orElse(0.0));
+    }
+  }
+
+  /** A task that periodically rebalances the group until it is garbage collected. */
+  static final class RebalanceTask implements Runnable {
+    final WeakReference<CacheGroup> reference;
+    final Scheduler scheduler;
+    final Executor executor;
+    final long intervalNanos;
+
+    RebalanceTask(CacheGroup group, Scheduler scheduler, Executor executor, long intervalNanos) {
+      this.reference = new WeakReference<>(group);
+      this.intervalNanos = intervalNanos;
+      this.scheduler = scheduler;
+      this.executor = executor;
+    }
+
+    @Override
+    public void run() {
+      var group = reference.get();
+      if (group != null) {
+        try {
+          group.rebalance();
+        } finally {
+          schedule();
+        }
+      }
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    void schedule() {
+      scheduler.schedule(executor, this, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -34,14 +34,19 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 
 import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.index.qual.Positive;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import com.github.benmanes.caffeine.cache.Async.AsyncEvictionListener;
 import com.github.benmanes.caffeine.cache.Async.AsyncExpiry;
 import com.github.benmanes.caffeine.cache.Async.AsyncRemovalListener;
+import com.github.benmanes.caffeine.cache.Async.AsyncTagger;
 import com.github.benmanes.caffeine.cache.Async.AsyncWeigher;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
@@ -151,11 +156,16 @@ public final class Caffeine<K, V> {
   static final int DEFAULT_REFRESH_NANOS = 0;
 
   boolean strictParsing = true;
+  boolean compactNodes;
+  boolean diagnostics;
+  boolean memorySensitive;
   boolean interner;
 
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
   int initialCapacity = UNSET_INT;
+  int bulkLoadChunkSize = UNSET_INT;
+  int hotKeysCapacity = UNSET_INT;
 
   long expireAfterWriteNanos = UNSET_INT;
   long expireAfterAccessNanos = UNSET_INT;
@@ -163,8 +173,12 @@ public final class Caffeine<K, V> {
 
   @Nullable RemovalListener<? super K, ? super V> evictionListener;
   @Nullable RemovalListener<? super K, ? super V> removalListener;
+  @Nullable BatchRemovalListener<? super K, ? super V> batchRemovalListener;
   @Nullable Supplier<StatsCounter> statsCounterSupplier;
   @Nullable Weigher<? super K, ? super V> weigher;
+  @Nullable Function<? super K, ?> tenantClassifier;
+  @Nullable ToLongFunction<?> tenantMaximumWeight;
+  @Nullable BiFunction<?, ?, ? extends Collection<?>> tagger;
   @Nullable Expiry<? super K, ? super V> expiry;
   @Nullable Scheduler scheduler;
   @Nullable Executor executor;
@@ -338,10 +352,65 @@ public final class Caffeine<K, V> {
     return this;
   }
 
+  /**
+   * Specifies that asynchronous tasks should run on virtual threads. Each task, such as periodic
+   * maintenance, a removal notification, a refresh, or an {@link AsyncCache} computation, is run
+   * by a new virtual thread instead of by {@link ForkJoinPool#commonPool()}. This allows for loads
+   * that block on I/O to not occupy a platform thread while waiting.
+   * <p>
+   * Note that a synchronous cache performs its loads within the hash table's bin lock, which pins
+   * the calling virtual thread to its carrier while the loader blocks. An application that loads
+   * from virtual threads may prefer to build an asynchronous cache using this executor and access
+   * it through the {@link AsyncCache#synchronous()} view. The load then runs on a virtual thread
+   * without holding a lock and the caller parks until the value is available.
+   *
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if an executor was already set
+   * @throws UnsupportedOperationException if the runtime does not support virtual threads
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> virtualThreadExecutor() {
+    if (!VirtualThreadExecutor.isSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    return executor(VirtualThreadExecutor.INSTANCE);
+  }
+
   Executor getExecutor() {
     return (executor == null) ? ForkJoinPool.commonPool() : executor;
   }
 
+  /**
+   * Specifies that a bulk load of more than {@code chunkSize} absent entries should be partitioned
+   * into chunks of at most that size, which are loaded concurrently. This applies to
+   * {@link LoadingCache#getAll}, {@link Cache#getAll}, and their asynchronous counterparts, where
+   * the latency of a large bulk load is then bounded by its slowest chunk rather than by the sum of
+   * the chunks. By default, the absent entries are loaded by a single bulk request.
+   * <p>
+   * The chunks are loaded using the cache's {@link #executor}, except for the last chunk of a
+   * synchronous bulk load which is loaded by the calling thread. When the executor runs tasks on
+   * virtual threads then a blocking {@link CacheLoader#loadAll} will not consume a platform thread
+   * while waiting. The successfully loaded chunks are stored in the cache even if another chunk
+   * fails, in which case the failure is propagated to the caller.
+   *
+   * @param chunkSize the maximum number of keys requested from the loader in a single bulk load
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if {@code chunkSize} is not positive
+   * @throws IllegalStateException if a bulk load chunk size was already set
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> bulkLoadChunkSize(@Positive int chunkSize) {
+    requireState(this.bulkLoadChunkSize == UNSET_INT,
+        "bulk load chunk size was already set to %s", this.bulkLoadChunkSize);
+    requireArgument(chunkSize > 0, "chunk size must be positive");
+    this.bulkLoadChunkSize = chunkSize;
+    return this;
+  }
+
+  int getBulkLoadChunkSize() {
+    return (bulkLoadChunkSize == UNSET_INT) ? Integer.MAX_VALUE : bulkLoadChunkSize;
+  }
+
   /**
    * Specifies the scheduler to use when scheduling routine maintenance based on an expiration
    * event. This augments the periodic maintenance that occurs during normal cache operations to
@@ -356,7 +425,8 @@ public final class Caffeine<K, V> {
    * be removed.
    * <p>
    * <b>Note for Java 9 and later:</b> consider using {@link Scheduler#systemScheduler()} to
-   * leverage the dedicated, system-wide scheduling thread.
+   * leverage the dedicated, system-wide scheduling thread. When creating a large number of caches,
+   * consider using {@link Scheduler#sharedScheduler()} to coalesce their scheduled maintenance.
    *
    * @param scheduler the scheduler that submits a task to the {@link #executor(Executor)} after a
    *        given delay
@@ -373,7 +443,8 @@ public final class Caffeine<K, V> {
   Scheduler getScheduler() {
     if ((scheduler == null) || (scheduler == Scheduler.disabledScheduler())) {
       return Scheduler.disabledScheduler();
-    } else if (scheduler == Scheduler.systemScheduler()) {
+    } else if ((scheduler == Scheduler.systemScheduler())
+        || (scheduler == Scheduler.sharedScheduler())) {
       return scheduler;
     }
     return Scheduler.guardedScheduler(scheduler);
@@ -493,6 +564,174 @@ public final class Caffeine<K, V> {
     return getMaximum() != UNSET_INT;
   }
 
+  /**
+   * Specifies that the cache's entries are partitioned by tenant, where each tenant may occupy at
+   * most the given weight. The cache retains a single eviction policy across all of its tenants,
+   * which avoids the overhead of creating a separate cache per tenant, while preventing a noisy
+   * tenant from evicting the entries of the others. The tenant's least recently used entries are
+   * evicted when it exceeds its maximum, and when the cache as a whole exceeds its maximum then a
+   * tenant that holds more than its fair share (the cache's maximum divided evenly among the
+   * tenants that hold entries) is preferred for eviction. Each tenant's weight is measured in the
+   * same units as the {@link #maximumSize} or {@link #maximumWeight} that must be configured, and
+   * its statistics are available from {@link Policy.Eviction#tenantStats()}.
+   * <p>
+   * The classifier is applied to the key whenever the cache updates its tenant's bookkeeping, so
+   * it should be fast, must be consistent for the lifetime of the entry, and must not return
+   * {@code null}. The maximum weight is computed once for each tenant when it is first observed.
+   * <p>
+   * This feature cannot be used in conjunction with {@link #weakKeys()}.
+   *
+   * @param classifier the function that determines the tenant of a key
+   * @param maximumWeight the function that determines the maximum weight of a tenant
+   * @param <K1> key type of the classifier
+   * @param <V1> value type of the cache
+   * @param <T> the type of the tenant
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalStateException if a tenant quota was already set
+   * @throws NullPointerException if the classifier or the maximum weight function is null
+   */
+  public <K1 extends K, V1 extends V, T> Caffeine<K1, V1> tenantQuota(
+      Function<? super K1, ? extends T> classifier, ToLongFunction<? super T> maximumWeight) {
+    requireNonNull(classifier);
+    requireNonNull(maximumWeight);
+    requireState(this.tenantClassifier == null,
+        "tenant quota was already set to %s", this.tenantClassifier);
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.tenantMaximumWeight = maximumWeight;
+    self.tenantClassifier = classifier;
+    return self;
+  }
+
+  /**
+   * Specifies that the cache's entries are partitioned by tenant, where every tenant may occupy at
+   * most the given weight. This is equivalent to {@link #tenantQuota(Function, ToLongFunction)}
+   * with the same maximum for all tenants.
+   *
+   * @param classifier the function that determines the tenant of a key
+   * @param maximumWeightPerTenant the maximum weight that any tenant may occupy
+   * @param <K1> key type of the classifier
+   * @param <V1> value type of the cache
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalArgumentException if {@code maximumWeightPerTenant} is negative
+   * @throws IllegalStateException if a tenant quota was already set
+   * @throws NullPointerException if the classifier is null
+   */
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> tenantQuota(
+      Function<? super K1, ?> classifier, @NonNegative long maximumWeightPerTenant) {
+    requireArgument(maximumWeightPerTenant >= 0, "maximum weight must not be negative");
+    return tenantQuota(classifier, tenant -> maximumWeightPerTenant);
+  }
+
+  boolean hasTenantQuota() {
+    return (tenantClassifier != null);
+  }
+
+  @SuppressWarnings({"NullAway", "unchecked"})
+  <K1 extends K> Function<? super K1, ?> getTenantClassifier() {
+    return (Function<? super K1, ?>) tenantClassifier;
+  }
+
+  @SuppressWarnings("NullAway")
+  ToLongFunction<?> getTenantMaximumWeight() {
+    return tenantMaximumWeight;
+  }
+
+  /**
+   * Specifies that the cache should track its most frequently accessed keys, which are available
+   * from {@link Policy.Eviction#hotKeys(int)}. The keys are tracked by the Space-Saving algorithm,
+   * which retains the approximate access counts of at most {@code capacity} keys, where any key
+   * whose true frequency exceeds {@code 1 / capacity} of the recorded accesses is guaranteed to be
+   * present. The counts are periodically halved so that the tracker adapts as the workload shifts.
+   * <p>
+   * The tracker is fed by the reads that are replayed against the eviction policy during the
+   * cache's routine maintenance, so it adds little work to the read path itself. Like the eviction
+   * policy, the tracker may not observe every access when the cache's read buffer is full.
+   * <p>
+   * A size-bounded cache that is well below its maximum normally skips the read buffer, as its
+   * accesses cannot yet affect which entries are evicted. Tracking the hot keys disables that fast
+   * path, so every read is buffered and replayed even while the cache is far from full.
+   * <p>
+   * This feature requires that either {@link #maximumSize} or {@link #maximumWeight} is configured.
+   *
+   * @param capacity the maximum number of keys whose access counts are tracked
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalArgumentException if {@code capacity} is not positive
+   * @throws IllegalStateException if hot key tracking was already enabled
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> recordHotKeys(@Positive int capacity) {
+    requireState(this.hotKeysCapacity == UNSET_INT,
+        "hot key capacity was already set to %s", this.hotKeysCapacity);
+    requireArgument(capacity > 0, "capacity must be positive");
+    this.hotKeysCapacity = capacity;
+    return this;
+  }
+
+  boolean hasHotKeys() {
+    return (hotKeysCapacity != UNSET_INT);
+  }
+
+  int getHotKeysCapacity() {
+    return hotKeysCapacity;
+  }
+
+  /**
+   * Specifies the tags that are attached to an entry, which allows for all of the entries that
+   * share a tag to be discarded together by {@link Cache#invalidateTag(Object)}. The tags are
+   * determined when the entry is inserted or its value is updated, such as by an explicit write or
+   * when it is loaded, and are maintained by a secondary index that is updated as part of the
+   * routine maintenance described in the class javadoc. An entry is removed from the index when it
+   * is discarded for any reason, such as when it is evicted or expires, and an entry without any
+   * tags does not incur any additional overhead.
+   * <p>
+   * The tagger is invoked while the cache's policy lock is held, so it should be fast, must not
+   * modify the cache, and must return the same tags for a given key and value. An asynchronous
+   * cache applies the tagger once the future completes successfully.
+   * <p>
+   * <b>Important note:</b> Instead of returning <em>this</em> as a {@code Caffeine} instance, this
+   * method returns {@code Caffeine<K1, V1>}. From this point on, either the original reference or
+   * the returned reference may be used to complete configuration and build the cache, but only the
+   * "generic" one is type-safe. That is, it will properly prevent you from building caches whose
+   * key or value types are incompatible with the types accepted by the tagger already provided;
+   * the {@code Caffeine} type cannot do this. For best results, simply use the standard
+   * method-chaining idiom, as illustrated in the documentation at top, configuring a
+   * {@code Caffeine} and building your {@link Cache} all in a single statement.
+   *
+   * @param tagger the function that determines the tags of an entry, which may return an empty
+   *        collection if the entry is not tagged
+   * @param <K1> key type of the tagger
+   * @param <V1> value type of the tagger
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalStateException if a tagger was already set
+   * @throws NullPointerException if the tagger is null
+   */
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> tagger(
+      BiFunction<? super K1, ? super V1, ? extends Collection<?>> tagger) {
+    requireNonNull(tagger);
+    requireState(this.tagger == null, "tagger was already set to %s", this.tagger);
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.tagger = tagger;
+    return self;
+  }
+
+  boolean hasTagger() {
+    return (tagger != null);
+  }
+
+  @SuppressWarnings({"NullAway", "rawtypes", "unchecked"})
+  <K1 extends K, V1 extends V> BiFunction<? super K1, ? super V1, ? extends Collection<?>>
+      getTagger(boolean isAsync) {
+    var delegate = (BiFunction<K1, V1, ? extends Collection<?>>) tagger;
+    return isAsync ? (BiFunction) new AsyncTagger(delegate) : delegate;
+  }
+
   boolean isWeighted() {
     return (weigher != null);
   }
@@ -580,8 +819,9 @@ public final class Caffeine<K, V> {
    * demand.
    * <p>
    * <b>Warning:</b> in most circumstances it is better to set a per-cache
-   * {@linkplain #maximumSize(long) maximum size} instead of using soft references. You should only
-   * use this method if you are very familiar with the practical consequences of soft references.
+   * {@linkplain #maximumSize(long) maximum size} instead of using soft references, optionally made
+   * {@linkplain #memorySensitive() memory sensitive}. You should only use this method if you are
+   * very familiar with the practical consequences of soft references.
    * <p>
    * <b>Note:</b> when this method is used, the resulting cache will use identity ({@code ==})
    * comparison to determine equality of values.
@@ -602,6 +842,41 @@ public final class Caffeine<K, V> {
     return this;
   }
 
+  /**
+   * Specifies that the cache should temporarily lower its maximum size or weight while the heap is
+   * under memory pressure, and gradually restore it once the pressure subsides. Unlike
+   * {@link #softValues()}, which leaves the choice of what to discard to the garbage collector and
+   * only does so once the heap is nearly exhausted, the entries are evicted by the cache's own
+   * policy and the collector is not burdened by soft references.
+   * <p>
+   * The heap is considered to be under pressure when the occupancy of a tenured memory pool that
+   * remains after a collection exceeds a threshold, as observed through the platform's
+   * {@link java.lang.management.MemoryPoolMXBean} and garbage collection notifications. Each signal
+   * of pressure halves the effective maximum, down to a small fraction of the configured maximum,
+   * and the capacity is then restored in steps that are at least a second apart. The adjustments
+   * are performed on the {@link #executor(Executor)}. While the capacity is reduced,
+   * {@link Policy.Eviction#getMaximum()} reports the effective maximum and
+   * {@link Policy.Eviction#setMaximum(long)} changes the configured maximum that the cache recovers
+   * to. If the collection usage threshold of a tenured pool is not already set, it is set to that
+   * threshold. When running on the module path this requires that the {@code java.management}
+   * module is resolved.
+   * <p>
+   * This feature requires that either {@link #maximumSize} or {@link #maximumWeight} is configured.
+   *
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if memory sensitivity was already set
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> memorySensitive() {
+    requireState(!memorySensitive, "Memory sensitivity was already set");
+    memorySensitive = true;
+    return this;
+  }
+
+  boolean isMemorySensitive() {
+    return memorySensitive;
+  }
+
   /**
    * Specifies that each entry should be automatically removed from the cache once a fixed duration
    * has elapsed after the entry's creation, or the most recent replacement of its value.
@@ -863,13 +1138,51 @@ public final class Caffeine<K, V> {
   }
 
   Ticker getTicker() {
-    boolean useTicker = expiresVariable() || expiresAfterAccess()
-        || expiresAfterWrite() || refreshAfterWrite() || isRecordingStats();
+    boolean useTicker = expiresVariable() || expiresAfterAccess() || expiresAfterWrite()
+        || refreshAfterWrite() || isRecordingStats() || hasHotKeys() || isMemorySensitive();
     return useTicker
         ? (ticker == null) ? Ticker.systemTicker() : ticker
         : Ticker.disabledTicker();
   }
 
+  /**
+   * Specifies that each entry's timestamps should be stored in a compact form, which reduces the
+   * per-entry overhead of caches that expire or refresh their entries. The access, write, and
+   * variable expiration times are held as 32-bit counts of coarse units, of approximately one
+   * second, since the creation of the cache and the entry's eviction queue is packed into spare
+   * bits of a timestamp. The resolution is the same as the finest granularity of the
+   * {@link #expireAfter(Expiry)} timer wheel, but it means that an entry may expire or be
+   * refreshed up to one second later than its configured duration. The compact form represents
+   * the first 18 years of a cache's lifetime, after which the entries no longer expire.
+   * <p>
+   * The times that are passed to an {@link Expiry} are measured from the creation of the cache
+   * rather than from the {@link #ticker(Ticker)}'s fixed point of reference.
+   * <p>
+   * A {@link #refreshAfterWrite refresh} is discarded if the entry was modified while it was in
+   * flight, which is detected by a change of the value instance or of the write time. Because the
+   * write time is coarse, if the entry is replaced and then restored to the same value instance
+   * within one unit then the modification is not detected and the refreshed value is stored.
+   *
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if compact nodes were already set
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> compactNodes() {
+    requireState(!compactNodes, "Compact nodes were already set");
+    compactNodes = true;
+    return this;
+  }
+
+  boolean hasCompactNodes() {
+    return compactNodes;
+  }
+
+  /** Returns the ticker for the entries' timestamps. */
+  Ticker getExpirationTicker() {
+    Ticker expirationTicker = getTicker();
+    return compactNodes ? new EpochTicker(expirationTicker) : expirationTicker;
+  }
+
   /**
    * Specifies a listener instance that caches should notify each time an entry is evicted. The
    * cache will invoke this listener during the atomic operation to remove the entry. In the case of
@@ -974,6 +1287,58 @@ public final class Caffeine<K, V> {
         : castedListener;
   }
 
+  /**
+   * Specifies a listener instance that caches should notify in batches when entries are removed for
+   * any {@linkplain RemovalCause reason}. The removals that occur during a maintenance cycle, such
+   * as the evictions caused by exceeding the maximum size or the entries discarded by
+   * {@link Cache#invalidateAll()}, are accumulated and delivered together, and the removals that
+   * occur outside of a cycle are accumulated until the scheduled delivery runs. A batch holds at
+   * most 1024 removals and the listener is invoked on the configured {@link #executor(Executor)}.
+   * This may be preferred over a {@link #removalListener(RemovalListener)} when a large number of
+   * entries may be removed at once, as the executor is submitted a task per batch rather than per
+   * entry.
+   * <p>
+   * <b>Important note:</b> after invoking this method, do not continue to use <i>this</i> cache
+   * builder reference; instead use the reference this method <i>returns</i>. At runtime, these
+   * point to the same instance, but only the returned reference has the correct generic type
+   * information so as to ensure type safety. For best results, use the standard method-chaining
+   * idiom illustrated in the class documentation above, configuring a builder and building your
+   * cache in a single statement. Failure to heed this advice can result in a
+   * {@link ClassCastException} being thrown by a cache operation at some <i>undefined</i> point in
+   * the future.
+   * <p>
+   * <b>Warning:</b> any exception thrown by {@code listener} will <i>not</i> be propagated to the
+   * {@code Cache} user, only logged via a {@link Logger}.
+   *
+   * @param batchRemovalListener a listener instance that caches should notify with the entries
+   *        that were removed
+   * @param <K1> the key type of the listener
+   * @param <V1> the value type of the listener
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalStateException if a batch removal listener was already set
+   * @throws NullPointerException if the specified batch removal listener is null
+   */
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> batchedRemovalListener(
+      BatchRemovalListener<? super K1, ? super V1> batchRemovalListener) {
+    requireState(this.batchRemovalListener == null,
+        "batch removal listener was already set to %s", this.batchRemovalListener);
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.batchRemovalListener = requireNonNull(batchRemovalListener);
+    return self;
+  }
+
+  boolean hasBatchRemovalListener() {
+    return (batchRemovalListener != null);
+  }
+
+  @SuppressWarnings({"NullAway", "unchecked"})
+  <K1 extends K, V1 extends V> BatchRemovalListener<K1, V1> getBatchRemovalListener() {
+    return (BatchRemovalListener<K1, V1>) batchRemovalListener;
+  }
+
   /**
    * Enables the accumulation of {@link CacheStats} during the operation of the cache. Without this
    * {@link Cache#stats} will return zero for all statistics. Note that recording statistics
@@ -1011,6 +1376,33 @@ public final class Caffeine<K, V> {
     return (statsCounterSupplier != null);
   }
 
+  /**
+   * Enables the accumulation of {@link CacheDiagnostics} about the cache's internal maintenance,
+   * which are available from {@link Policy#diagnostics()} and may be exposed by JMX using a
+   * {@link CacheDiagnosticsMBean}. The diagnostics include the number of reads that were not
+   * recorded because the read buffer was full, the occupancy of the write buffer, the duration of
+   * the maintenance cycles and the time spent waiting to acquire the eviction lock, and the state
+   * of the eviction and expiration policies. This information can help to size the cache and its
+   * {@link #executor(Executor)} for the workload.
+   * <p>
+   * Recording the diagnostics imposes a small overhead on the cache's maintenance, which reads the
+   * system clock to measure each cycle, and on the reads and writes that are rejected by a full
+   * buffer.
+   *
+   * @return this {@code Caffeine} instance (for chaining)
+   * @throws IllegalStateException if diagnostics recording was already set
+   */
+  @CanIgnoreReturnValue
+  public Caffeine<K, V> recordDiagnostics() {
+    requireState(!diagnostics, "Diagnostics recording was already set");
+    diagnostics = true;
+    return this;
+  }
+
+  boolean isRecordingDiagnostics() {
+    return diagnostics;
+  }
+
   Supplier<StatsCounter> getStatsCounterSupplier() {
     return (statsCounterSupplier == null)
         ? StatsCounter::disabledStatsCounter
@@ -1023,6 +1415,9 @@ public final class Caffeine<K, V> {
         || (expireAfterAccessNanos != UNSET_INT)
         || (expireAfterWriteNanos != UNSET_INT)
         || (expiry != null)
+        || (tagger != null)
+        || (batchRemovalListener != null)
+        || diagnostics
         || (keyStrength != null)
         || (valueStrength != null);
   }
@@ -1045,6 +1440,7 @@ public final class Caffeine<K, V> {
   @CheckReturnValue
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     requireWeightWithWeigher();
+    requireTenantQuotaWithMaximum();
     requireNonLoadingCache();
 
     @SuppressWarnings("unchecked")
@@ -1072,6 +1468,7 @@ public final class Caffeine<K, V> {
   public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(
       CacheLoader<? super K1, V1> loader) {
     requireWeightWithWeigher();
+    requireTenantQuotaWithMaximum();
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
@@ -1106,6 +1503,7 @@ public final class Caffeine<K, V> {
     requireState(isStrongKeys() || (evictionListener == null),
         "Weak keys cannot be combined eviction listener and with AsyncLoadingCache");
     requireWeightWithWeigher();
+    requireTenantQuotaWithMaximum();
     requireNonLoadingCache();
 
     @SuppressWarnings("unchecked")
@@ -1165,6 +1563,7 @@ public final class Caffeine<K, V> {
     requireState(isStrongKeys() || (evictionListener == null),
         "Weak keys cannot be combined eviction listener and with AsyncLoadingCache");
     requireWeightWithWeigher();
+    requireTenantQuotaWithMaximum();
     requireNonNull(loader);
 
     @SuppressWarnings("unchecked")
@@ -1174,6 +1573,23 @@ public final class Caffeine<K, V> {
         : new UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K1, V1>(self, loader);
   }
 
+  void requireTenantQuotaWithMaximum() {
+    if (tenantClassifier != null) {
+      requireState(evicts(), "tenantQuota requires maximumSize or maximumWeight");
+      requireState(isStrongKeys(), "tenantQuota can not be combined with weakKeys");
+    }
+    if (hotKeysCapacity != UNSET_INT) {
+      requireState(evicts(), "recordHotKeys requires maximumSize or maximumWeight");
+    }
+    if (memorySensitive) {
+      requireState(evicts(), "memorySensitive requires maximumSize or maximumWeight");
+    }
+    if (compactNodes) {
+      requireState(expiresAfterAccess() || expiresAfterWrite() || expiresVariable()
+          || refreshAfterWrite(), "compactNodes requires expiration or refresh");
+    }
+  }
+
   void requireNonLoadingCache() {
     requireState(refreshAfterWriteNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
   }
@@ -1217,6 +1633,27 @@ public final class Caffeine<K, V> {
     if (initialCapacity != UNSET_INT) {
       s.append("initialCapacity=").append(initialCapacity).append(", ");
     }
+    if (tenantClassifier != null) {
+      s.append("tenantQuota, ");
+    }
+    if (tagger != null) {
+      s.append("tagger, ");
+    }
+    if (hotKeysCapacity != UNSET_INT) {
+      s.append("hotKeys=").append(hotKeysCapacity).append(", ");
+    }
+    if (diagnostics) {
+      s.append("recordDiagnostics, ");
+    }
+    if (memorySensitive) {
+      s.append("memorySensitive, ");
+    }
+    if (compactNodes) {
+      s.append("compactNodes, ");
+    }
+    if (bulkLoadChunkSize != UNSET_INT) {
+      s.append("bulkLoadChunkSize=").append(bulkLoadChunkSize).append(", ");
+    }
     if (maximumSize != UNSET_INT) {
       s.append("maximumSize=").append(maximumSize).append(", ");
     }
@@ -1247,6 +1684,9 @@ public final class Caffeine<K, V> {
     if (removalListener != null) {
       s.append("removalListener, ");
     }
+    if (batchRemovalListener != null) {
+      s.append("batchRemovalListener, ");
+    }
     if (s.length() > baseLength) {
       s.delete(s.length() - 2, s.length());
     }
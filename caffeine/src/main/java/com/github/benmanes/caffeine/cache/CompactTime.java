@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+/**
+ * The encoding of a timestamp into the 32-bit word of a compact node. The word holds the time as a
+ * count of coarse units, which match the 1.07 second span of the {@link TimerWheel}'s finest
+ * bucket, and reserves its low bits for flags. The lowest bit mirrors the lowest bit of the
+ * timestamp, which the cache uses to mark that an entry is being refreshed, and the next two bits
+ * may hold the node's queue type. A time is rounded up to the next unit so that an entry does not
+ * expire early, and a time beyond the representable range saturates to the distant future.
+ * <p>
+ * The timestamps are read from an {@link EpochTicker}, so that the words represent the first 18
+ * years since the cache was created.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class CompactTime {
+  static final int UNIT_SHIFT = Long.numberOfTrailingZeros(TimerWheel.SPANS[0]);
+  static final int FLAG_BITS = 3;
+  static final int REFRESH_MASK = 0b001;
+  static final int QUEUE_TYPE_MASK = 0b110;
+  static final int QUEUE_TYPE_SHIFT = 1;
+
+  static final long MAXIMUM_UNITS = (1L << (Integer.SIZE - FLAG_BITS)) - 1;
+  static final long SATURATED_TIME = (Long.MAX_VALUE & ~REFRESH_MASK);
+
+  private CompactTime() {}
+
+  /** Returns the timestamp held by the word. */
+  static long decode(int word) {
+    long units = (word >>> FLAG_BITS);
+    long flag = (word & REFRESH_MASK);
+    return (units == MAXIMUM_UNITS) ? (SATURATED_TIME | flag) : ((units << UNIT_SHIFT) | flag);
+  }
+
+  /** Returns the word with its timestamp replaced by the given time, retaining the queue type. */
+  static int withTime(int word, long time) {
+    return (int) (units(time) << FLAG_BITS)
+        | (word & QUEUE_TYPE_MASK)
+        | (int) (time & REFRESH_MASK);
+  }
+
+  /** Returns the queue type held by the word. */
+  static int queueType(int word) {
+    return (word & QUEUE_TYPE_MASK) >>> QUEUE_TYPE_SHIFT;
+  }
+
+  /** Returns the word with its queue type replaced, retaining the timestamp. */
+  static int withQueueType(int word, int queueType) {
+    return (word & ~QUEUE_TYPE_MASK) | ((queueType << QUEUE_TYPE_SHIFT) & QUEUE_TYPE_MASK);
+  }
+
+  /** Returns the number of units in the time, rounded up and saturated to the maximum. */
+  private static long units(long time) {
+    long nanos = (time & ~REFRESH_MASK);
+    if (nanos <= 0) {
+      return 0;
+    }
+    return Math.min(((nanos - 1) >>> UNIT_SHIFT) + 1, MAXIMUM_UNITS);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * The recorder of a cache's {@link CacheDiagnostics}. The events that occur on the read and write
+ * paths, which are only recorded when a buffer rejects an element, are counted with striped
+ * counters. The maintenance cycles are measured while holding the eviction lock, so their counts
+ * are plain fields that are guarded by that lock.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class DiagnosticsRecorder {
+  final LongAdder writeBufferRetries;
+  final LongAdder readBufferDrops;
+  final LongAdder writerAssists;
+
+  @GuardedBy("evictionLock")
+  long maintenanceCount;
+  @GuardedBy("evictionLock")
+  long totalMaintenanceTime;
+  @GuardedBy("evictionLock")
+  long maximumMaintenanceTime;
+  @GuardedBy("evictionLock")
+  long totalLockWaitTime;
+
+  DiagnosticsRecorder() {
+    writeBufferRetries = new LongAdder();
+    readBufferDrops = new LongAdder();
+    writerAssists = new LongAdder();
+  }
+
+  /** Records that a maintenance cycle completed after the given duration. */
+  @GuardedBy("evictionLock")
+  void recordMaintenance(long durationNanos) {
+    maintenanceCount++;
+    totalMaintenanceTime += durationNanos;
+    maximumMaintenanceTime = Math.max(maximumMaintenanceTime, durationNanos);
+  }
+
+  /** Records that the eviction lock was acquired for maintenance after waiting for it. */
+  @GuardedBy("evictionLock")
+  void recordLockWait(long durationNanos) {
+    totalLockWaitTime += durationNanos;
+  }
+
+  /**
+   * Returns a snapshot of the diagnostics and the state of the cache's buffers and policies.
+   *
+   * @param cache the cache whose state is captured
+   * @param includeBucketDepths whether to traverse the timer wheel to measure its bucket depths
+   * @return a snapshot of the diagnostics
+   */
+  @GuardedBy("evictionLock")
+  CacheDiagnostics snapshot(BoundedLocalCache<?, ?> cache, boolean includeBucketDepths) {
+    long sketchResetCount = 0;
+    double climberStepSize = 0.0;
+    long windowMaximum = 0;
+    if (cache.evicts()) {
+      sketchResetCount = cache.frequencySketch().resetCount;
+      climberStepSize = cache.stepSize();
+      windowMaximum = cache.windowMaximum();
+    }
+    List<Integer> timerWheelBucketDepths = (includeBucketDepths && cache.expiresVariable())
+        ? IntStream.of(cache.timerWheel().maximumBucketDepths()).boxed()
+            .collect(Collectors.toUnmodifiableList())
+        : List.of();
+    return new CacheDiagnostics(readBufferDrops.sum(),
+        Math.max(0L, cache.readBuffer.writes() - cache.readBuffer.reads()),
+        cache.writeBuffer.size(), cache.writeBuffer.capacity(),
+        writeBufferRetries.sum(), writerAssists.sum(), maintenanceCount, totalMaintenanceTime,
+        maximumMaintenanceTime, totalLockWaitTime, sketchResetCount, windowMaximum,
+        climberStepSize, timerWheelBucketDepths);
+  }
+}
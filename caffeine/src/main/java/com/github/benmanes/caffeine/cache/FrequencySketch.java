@@ -63,6 +63,7 @@ final class FrequencySketch<E> {
   static final long RESET_MASK = 0x7777777777777777L;
   static final long ONE_MASK = 0x1111111111111111L;
 
+  long resetCount;
   int sampleSize;
   int blockMask;
   long[] table;
@@ -207,5 +208,6 @@ final class FrequencySketch<E> {
       table[i] = (table[i] >>> 1) & RESET_MASK;
     }
     size = (size - (count >>> 2)) >>> 1;
+    resetCount++;
   }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.ceilingPowerOfTwo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A compact table of write versions that lets a load detect whether its key was written to or
+ * invalidated while the value was being computed outside of the hash table's lock, so that a stale
+ * value is not installed afterwards. Each key hashes to a slot whose counter is advanced before a
+ * write, which acts as a tombstone that outlives the removed entry, and a clear advances an epoch
+ * that is shared by all of the keys.
+ * <p>
+ * The table is sized when it is created, from the number of processors and the cache's expected
+ * number of keys, and is not resized afterwards, so its footprint does not follow the number of
+ * entries. A cache creates the table lazily when a version is first requested, as only the callers
+ * that install loaded values need it. The keys that share a slot share a version, which may cause a
+ * load to be discarded unnecessarily but never allows a stale load to be installed. A bulk load's
+ * key is only discarded spuriously if another key in its slot was written during the load, so the
+ * table has many more slots than the writes that a load is expected to overlap. The counters are
+ * not padded, as at that size two concurrent writers rarely share a cache line. A writer advances
+ * the version before acquiring the entry's lock and a versioned installation validates it while
+ * holding that lock, so the two are ordered such that either the load observes the advance or the
+ * write observes the installed value.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class Generations {
+  static final int MINIMUM_SLOTS_PER_CPU = 512;
+  static final int MAXIMUM_SLOTS = 1 << 16;
+
+  final AtomicIntegerArray versions;
+  final AtomicInteger epoch;
+  final int mask;
+
+  /**
+   * Creates a table sized for the processors and the expected number of keys.
+   *
+   * @param expectedKeys the number of keys that the cache is expected to hold
+   */
+  Generations(long expectedKeys) {
+    int minimum = Math.min(MAXIMUM_SLOTS, MINIMUM_SLOTS_PER_CPU
+        * ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+    int slots = ceilingPowerOfTwo((int) Math.max(minimum, Math.min(MAXIMUM_SLOTS, expectedKeys)));
+    this.versions = new AtomicIntegerArray(slots);
+    this.epoch = new AtomicInteger();
+    this.mask = slots - 1;
+  }
+
+  /** Returns the version of the key, which changes if the key may have been written to. */
+  long versionOf(Object key) {
+    return ((long) epoch.get() << 32) | (versions.get(indexOf(key)) & 0xFFFFFFFFL);
+  }
+
+  /** Returns whether the key's version has not changed since it was read. */
+  boolean isCurrent(Object key, long version) {
+    return (versionOf(key) == version);
+  }
+
+  /** Advances the version of the key prior to it being written to. */
+  void advance(Object key) {
+    versions.incrementAndGet(indexOf(key));
+  }
+
+  /** Advances the version of every key prior to the cache being cleared. */
+  void advanceAll() {
+    epoch.incrementAndGet();
+  }
+
+  /** Returns the index of the key's counter. */
+  int indexOf(Object key) {
+    int x = key.hashCode() * 0x31848bab;
+    x ^= x >>> 14;
+    return (x & mask);
+  }
+}
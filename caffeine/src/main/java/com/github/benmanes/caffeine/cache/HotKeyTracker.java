@@ -0,0 +1,247 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.Policy.HotKey;
+import com.github.benmanes.caffeine.cache.References.InternalReference;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A tracker of the most frequently accessed keys, which is fed by the reads that the cache replays
+ * against its eviction policy. The keys are counted by the Space-Saving algorithm, as described in
+ * <a href="https://www.cs.ucsb.edu/sites/default/files/documents/2005-23.pdf">Efficient Computation
+ * of Frequent and Top-k Elements in Data Streams</a>, which monitors a fixed number of counters.
+ * When an unmonitored key is accessed and all of the counters are in use then the counter with the
+ * smallest count is reassigned to the new key, which inherits that count as its error. This
+ * guarantees that every key whose true frequency exceeds {@code 1 / capacity} of the accesses is
+ * monitored, and that a counter overestimates its key's accesses by at most its error.
+ * <p>
+ * The counters are held in a binary min-heap that is indexed by a hash table, so that an access
+ * costs a lookup and a sift. Like the {@link FrequencySketch}, the counts are halved after a sample
+ * period so that the tracker adapts to a shifting workload, and the start of the measurement period
+ * is moved forward proportionally so that the access rates remain consistent. The key references
+ * of the cache's nodes are retained rather than the keys, so that a weakly referenced key may be
+ * garbage collected. The tracker is guarded by the cache's eviction lock.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class HotKeyTracker<K> {
+  static final Comparator<Counter> HOTTEST = Comparator.comparingLong((Counter c) -> c.count)
+      .reversed().thenComparingLong(c -> c.error);
+  static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  final HashMap<Object, Counter> counters;
+  final boolean weakKeys;
+  final Counter[] heap;
+  final Ticker ticker;
+
+  @GuardedBy("evictionLock")
+  long sampleSize;
+  @GuardedBy("evictionLock")
+  long startTime;
+  @GuardedBy("evictionLock")
+  long samples;
+  @GuardedBy("evictionLock")
+  int size;
+
+  HotKeyTracker(int capacity, Ticker ticker, boolean weakKeys) {
+    this.counters = new HashMap<>(Caffeine.calculateHashMapCapacity(capacity));
+    this.ticker = requireNonNull(ticker);
+    this.heap = new Counter[capacity];
+    this.sampleSize = 10L * capacity;
+    this.startTime = ticker.read();
+    this.weakKeys = weakKeys;
+  }
+
+  /** Resizes the sample period so that the counts age in step with the cache's frequency sketch. */
+  @GuardedBy("evictionLock")
+  void ensureSampleSize(long maximumSize) {
+    long maximum = Math.min(maximumSize, Integer.MAX_VALUE >>> 1);
+    sampleSize = Math.max(10L * heap.length, 10L * maximum);
+  }
+
+  /** Records an access to the key held by the given reference. */
+  @GuardedBy("evictionLock")
+  void record(Object keyReference) {
+    var counter = counters.get(keyReference);
+    if (counter != null) {
+      counter.count++;
+      siftDown(counter.index);
+    } else if (size < heap.length) {
+      counter = new Counter(keyReference, size);
+      counters.put(keyReference, counter);
+      heap[size++] = counter;
+      siftUp(counter.index);
+    } else {
+      counter = heap[0];
+      counters.remove(counter.keyReference);
+      counter.keyReference = keyReference;
+      counter.error = counter.count;
+      counter.count++;
+      counters.put(keyReference, counter);
+      siftDown(0);
+    }
+
+    if (++samples >= sampleSize) {
+      age();
+    }
+  }
+
+  /** Halves the counts, which retains the heap order, and the length of the measurement period. */
+  @GuardedBy("evictionLock")
+  void age() {
+    long now = ticker.read();
+    startTime = now - ((now - startTime) >>> 1);
+    samples >>>= 1;
+    for (int i = 0; i < size; i++) {
+      heap[i].count >>>= 1;
+      heap[i].error >>>= 1;
+    }
+  }
+
+  /** Returns a snapshot of at most {@code limit} of the hottest keys, from hottest to coldest. */
+  @GuardedBy("evictionLock")
+  List<HotKey<K>> hottest(int limit) {
+    var sorted = Arrays.copyOf(heap, size);
+    Arrays.sort(sorted, HOTTEST);
+
+    double elapsedSeconds = (ticker.read() - startTime) / NANOS_PER_SECOND;
+    var hotKeys = new ArrayList<HotKey<K>>(Math.min(limit, size));
+    for (int i = 0; (i < sorted.length) && (hotKeys.size() < limit); i++) {
+      var counter = sorted[i];
+      K key = keyOf(counter.keyReference);
+      if ((key == null) || (counter.count == 0)) {
+        continue;
+      }
+      double rate = (elapsedSeconds > 0) ? (counter.count / elapsedSeconds) : 0.0;
+      hotKeys.add(new SnapshotHotKey<>(key, counter.count, counter.error, rate));
+    }
+    return Collections.unmodifiableList(hotKeys);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable K keyOf(Object keyReference) {
+    return weakKeys ? ((InternalReference<K>) keyReference).get() : (K) keyReference;
+  }
+
+  /** Moves the counter towards the root while it is smaller than its parent. */
+  void siftUp(int index) {
+    var counter = heap[index];
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (heap[parent].count <= counter.count) {
+        break;
+      }
+      place(heap[parent], index);
+      index = parent;
+    }
+    place(counter, index);
+  }
+
+  /** Moves the counter towards the leaves while it is larger than its smallest child. */
+  void siftDown(int index) {
+    var counter = heap[index];
+    int half = size >>> 1;
+    while (index < half) {
+      int child = (2 * index) + 1;
+      int right = child + 1;
+      if ((right < size) && (heap[right].count < heap[child].count)) {
+        child = right;
+      }
+      if (counter.count <= heap[child].count) {
+        break;
+      }
+      place(heap[child], index);
+      index = child;
+    }
+    place(counter, index);
+  }
+
+  void place(Counter counter, int index) {
+    heap[index] = counter;
+    counter.index = index;
+  }
+
+  /** The approximate number of accesses to a monitored key. */
+  static final class Counter {
+    Object keyReference;
+    long count;
+    long error;
+    int index;
+
+    Counter(Object keyReference, int index) {
+      this.keyReference = keyReference;
+      this.index = index;
+      this.count = 1;
+    }
+  }
+
+  /** An immutable snapshot of a hot key. */
+  static final class SnapshotHotKey<K> implements HotKey<K> {
+    final double rate;
+    final long count;
+    final long error;
+    final K key;
+
+    SnapshotHotKey(K key, long count, long error, double rate) {
+      this.count = count;
+      this.error = error;
+      this.rate = rate;
+      this.key = key;
+    }
+    @Override public K getKey() {
+      return key;
+    }
+    @Override public long count() {
+      return count;
+    }
+    @Override public long error() {
+      return error;
+    }
+    @Override public double rate() {
+      return rate;
+    }
+    @Override public boolean equals(@Nullable Object o) {
+      if (o == this) {
+        return true;
+      } else if (!(o instanceof HotKey)) {
+        return false;
+      }
+      var hotKey = (HotKey<?>) o;
+      return key.equals(hotKey.getKey()) && (count == hotKey.count())
+          && (error == hotKey.error()) && (Double.compare(rate, hotKey.rate()) == 0);
+    }
+    @Override public int hashCode() {
+      return Objects.hash(key, count, error, rate);
+    }
+    @Override public String toString() {
+      return key + "=" + count + " (error=" + error + ", rate=" + rate + "/s)";
+    }
+  }
+}
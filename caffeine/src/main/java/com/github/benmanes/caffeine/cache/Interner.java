@@ -20,6 +20,7 @@ import java.lang.ref.ReferenceQueue;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.github.benmanes.caffeine.cache.References.LookupKeyEqualsReference;
 import com.github.benmanes.caffeine.cache.References.WeakKeyEqualsReference;
@@ -74,6 +75,43 @@ public interface Interner<E> {
   static <E> Interner<E> newWeakInterner() {
     return new WeakInterner<>();
   }
+
+  /**
+   * Returns a new thread-safe interner which retains a weak reference to each instance it has
+   * interned, and so does not prevent these instances from being garbage-collected. Unlike
+   * {@link #newWeakInterner()}, this interner is not backed by a cache and does not perform any
+   * maintenance when reading. A lookup does not acquire any locks, and the entries whose instances
+   * were garbage-collected are removed in small batches when a new instance is interned. This is
+   * preferable when the interned instances are short-lived and frequently replaced.
+   *
+   * @param <E> the type of elements
+   * @return an interner for retrieving the canonical instance
+   */
+  static <E> Interner<E> newConcurrentWeakInterner() {
+    return new ConcurrentWeakInterner<>();
+  }
+
+  /**
+   * Returns a new thread-safe interner which retains a strong reference to at most
+   * {@code maximumSize} instances. An instance is canonicalized only once it has recurred often
+   * enough, as estimated by a TinyLFU frequency sketch, so that the values that are seen once do
+   * not displace the frequently recurring ones. The canonical instances are then retained by a
+   * cache that uses the Window TinyLFU eviction policy.
+   * <p>
+   * Unlike the unbounded interners, the instance that is returned for a value that is not retained
+   * is the given sample, so {@code intern(a) == intern(b)} only holds for the frequently recurring
+   * values. This trades the exactness of the canonicalization for a bounded footprint, which is
+   * appropriate when interning is used to reduce the memory usage of duplicated values, such as
+   * the strings of parsed payloads.
+   *
+   * @param maximumSize the maximum number of canonical instances to retain
+   * @param <E> the type of elements
+   * @return an interner for retrieving the canonical instance
+   * @throws IllegalArgumentException if {@code maximumSize} is negative
+   */
+  static <E> Interner<E> newBoundedInterner(long maximumSize) {
+    return new BoundedInterner<>(maximumSize);
+  }
 }
 
 final class StrongInterner<E> implements Interner<E> {
@@ -114,6 +152,113 @@ final class WeakInterner<E> implements Interner<E> {
   }
 }
 
+final class ConcurrentWeakInterner<E> implements Interner<E> {
+  /** The maximum number of collected entries to remove when a new instance is interned. */
+  static final int CLEANUP_BATCH_SIZE = 64;
+
+  final ConcurrentMap<Object, WeakKeyEqualsReference<E>> map;
+  final ReferenceQueue<E> referenceQueue;
+  final ReentrantLock cleanupLock;
+
+  ConcurrentWeakInterner() {
+    map = new ConcurrentHashMap<>();
+    cleanupLock = new ReentrantLock();
+    referenceQueue = new ReferenceQueue<>();
+  }
+  @Override public E intern(E sample) {
+    var lookupKey = new LookupKeyEqualsReference<>(sample);
+    for (;;) {
+      var reference = map.get(lookupKey);
+      if (reference != null) {
+        E canonical = reference.get();
+        if (canonical != null) {
+          return canonical;
+        }
+        map.remove(reference, reference);
+        continue;
+      }
+
+      var added = new WeakKeyEqualsReference<>(sample, referenceQueue);
+      var prior = map.putIfAbsent(added, added);
+      if (prior == null) {
+        cleanUp();
+        return sample;
+      }
+      E canonical = prior.get();
+      if (canonical != null) {
+        return canonical;
+      }
+      map.remove(prior, prior);
+    }
+  }
+
+  /** Removes a batch of the entries whose instances were garbage-collected, if not contended. */
+  void cleanUp() {
+    if (!cleanupLock.tryLock()) {
+      return;
+    }
+    try {
+      for (int i = 0; i < CLEANUP_BATCH_SIZE; i++) {
+        Reference<? extends E> reference = referenceQueue.poll();
+        if (reference == null) {
+          return;
+        }
+        map.remove(reference, reference);
+      }
+    } finally {
+      cleanupLock.unlock();
+    }
+  }
+}
+
+final class BoundedInterner<E> implements Interner<E> {
+  /** The estimated number of occurrences before an instance is canonicalized. */
+  static final int ADMISSION_FREQUENCY = 2;
+
+  final FrequencySketch<E> sketch;
+  final ReentrantLock sketchLock;
+  final ConcurrentMap<E, E> map;
+  final Buffer<E> occurrences;
+
+  BoundedInterner(long maximumSize) {
+    map = Caffeine.newBuilder().maximumSize(maximumSize).<E, E>build().asMap();
+    occurrences = new BoundedBuffer<>();
+    sketchLock = new ReentrantLock();
+    sketch = new FrequencySketch<>();
+    sketch.ensureCapacity(maximumSize);
+  }
+  @Override public E intern(E sample) {
+    E canonical = map.get(sample);
+    if (canonical != null) {
+      return canonical;
+    } else if (!admit(sample)) {
+      return sample;
+    }
+    var value = map.putIfAbsent(sample, sample);
+    return (value == null) ? sample : value;
+  }
+
+  /**
+   * Records the occurrence and returns whether the instance has recurred often enough to be
+   * canonicalized. If the sketch is contended then the occurrence is recorded in a striped buffer,
+   * which is replayed by the next thread to acquire the lock, and the instance is not admitted.
+   * Like the read buffer, an occurrence is only dropped if the buffer is full.
+   */
+  boolean admit(E sample) {
+    if (!sketchLock.tryLock()) {
+      occurrences.offer(sample);
+      return false;
+    }
+    try {
+      occurrences.drainTo(sketch::increment);
+      sketch.increment(sample);
+      return (sketch.frequency(sample) >= ADMISSION_FREQUENCY);
+    } finally {
+      sketchLock.unlock();
+    }
+  }
+}
+
 @SuppressWarnings({"NullAway", "unchecked"})
 final class Interned<K, V> extends Node<K, V> implements NodeFactory<K, V> {
   volatile Reference<?> keyReference;
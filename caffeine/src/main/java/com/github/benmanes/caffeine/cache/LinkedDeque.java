@@ -102,6 +102,22 @@ interface LinkedDeque<E> extends Deque<E> {
   @Override
   PeekingIterator<E> descendingIterator();
 
+  /**
+   * Returns an iterator over the elements from the given element to the back of the deque. The
+   * element must be linked to this deque for the traversal to be well-defined.
+   *
+   * @param start the linked element to begin traversal from, or null for an empty iteration
+   */
+  PeekingIterator<E> iteratorFrom(@Nullable E start);
+
+  /**
+   * Returns an iterator over the elements from the given element to the front of the deque. The
+   * element must be linked to this deque for the traversal to be well-defined.
+   *
+   * @param start the linked element to begin traversal from, or null for an empty iteration
+   */
+  PeekingIterator<E> descendingIteratorFrom(@Nullable E start);
+
   interface PeekingIterator<E> extends Iterator<E> {
 
     /** Returns the next element in the iteration, without advancing the iteration. */
@@ -73,8 +73,12 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
   @Override
   default CompletableFuture<V> get(K key, Function<? super K, ? extends V> mappingFunction) {
     requireNonNull(mappingFunction);
-    return get(key, (k1, executor) -> CompletableFuture.supplyAsync(
-        () -> mappingFunction.apply(key), executor));
+    CompletableFuture<V> present = getIfPresentForCompute(key, /* recordStats */ true);
+    if (present != null) {
+      return present;
+    }
+    return getAfterMiss(key, (k1, executor) -> CompletableFuture.supplyAsync(
+        () -> mappingFunction.apply(key), executor), /* recordStats */ true);
   }
 
   @Override
@@ -83,9 +87,23 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
     return get(key, mappingFunction, /* recordStats */ true);
   }
 
-  @SuppressWarnings({"FutureReturnValueIgnored", "NullAway"})
   default CompletableFuture<V> get(K key, BiFunction<? super K, ? super Executor,
       ? extends CompletableFuture<? extends V>> mappingFunction, boolean recordStats) {
+    requireNonNull(mappingFunction);
+    CompletableFuture<V> present = getIfPresentForCompute(key, recordStats);
+    if (present != null) {
+      return present;
+    }
+    return getAfterMiss(key, mappingFunction, recordStats);
+  }
+
+  /**
+   * Returns the future associated with the {@code key}, computing it if absent. This is the slow
+   * path after {@link #getIfPresentForCompute} missed, so the lookup is not repeated.
+   */
+  @SuppressWarnings({"FutureReturnValueIgnored", "NullAway"})
+  private CompletableFuture<V> getAfterMiss(K key, BiFunction<? super K, ? super Executor,
+      ? extends CompletableFuture<? extends V>> mappingFunction, boolean recordStats) {
     long startTime = cache().statsTicker().read();
     @SuppressWarnings({"rawtypes", "unchecked"})
     CompletableFuture<? extends V>[] result = new CompletableFuture[1];
@@ -101,6 +119,21 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
     return future;
   }
 
+  /**
+   * Returns the future associated with the {@code key} if present, recording a hit, or else
+   * {@code null} without recording a miss. This optimistic fast path allows a hit on a computing
+   * {@code get} to be served without capturing the mapping function or reading the stats ticker.
+   * The entries are still stored as futures, so this does not change the cost of a lookup that
+   * does not compute, such as the synchronous view's {@code getIfPresent}.
+   */
+  private @Nullable CompletableFuture<V> getIfPresentForCompute(K key, boolean recordStats) {
+    CompletableFuture<V> future = cache().getIfPresent(key, /* recordStats */ false);
+    if ((future != null) && recordStats) {
+      cache().statsCounter().recordHits(1);
+    }
+    return future;
+  }
+
   @Override
   default CompletableFuture<Map<K, V>> getAll(Iterable<? extends K> keys,
       Function<? super Set<? extends K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
@@ -110,10 +143,20 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
   }
 
   @Override
-  @SuppressWarnings("FutureReturnValueIgnored")
   default CompletableFuture<Map<K, V>> getAll(Iterable<? extends K> keys,
       BiFunction<? super Set<? extends K>, ? super Executor,
           ? extends CompletableFuture<? extends Map<? extends K, ? extends V>>> mappingFunction) {
+    return composeResult(getAllFutures(keys, mappingFunction));
+  }
+
+  /**
+   * Returns the futures associated with the {@code keys}, where the absent entries are loaded by a
+   * single bulk request. The futures are in iteration order and may not yet be complete.
+   */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  default Map<K, CompletableFuture<V>> getAllFutures(Iterable<? extends K> keys,
+      BiFunction<? super Set<? extends K>, ? super Executor,
+          ? extends CompletableFuture<? extends Map<? extends K, ? extends V>>> mappingFunction) {
     requireNonNull(mappingFunction);
     requireNonNull(keys);
 
@@ -138,15 +181,52 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
     cache().statsCounter().recordMisses(proxies.size());
     cache().statsCounter().recordHits(futures.size() - proxies.size());
     if (proxies.isEmpty()) {
-      return composeResult(futures);
+      return futures;
+    }
+
+    int chunkSize = cache().bulkLoadChunkSize();
+    if (proxies.size() <= chunkSize) {
+      bulkLoad(proxies, mappingFunction);
+      return futures;
+    }
+
+    // Request every chunk so that no proxy is left incomplete, then propagate the first failure
+    Throwable error = null;
+    var chunk = new HashMap<K, CompletableFuture<V>>(calculateHashMapCapacity(chunkSize));
+    for (var iterator = proxies.entrySet().iterator(); iterator.hasNext();) {
+      var proxy = iterator.next();
+      chunk.put(proxy.getKey(), proxy.getValue());
+      if ((chunk.size() == chunkSize) || !iterator.hasNext()) {
+        try {
+          bulkLoad(chunk, mappingFunction);
+        } catch (Throwable t) {
+          if (error == null) {
+            error = t;
+          }
+        }
+        chunk = new HashMap<>(calculateHashMapCapacity(chunkSize));
+      }
+    }
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      throw new CompletionException(error);
     }
+    return futures;
+  }
 
+  /** Requests the bulk load of the proxies, which are completed when the load completes. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  default void bulkLoad(Map<K, CompletableFuture<V>> proxies,
+      BiFunction<? super Set<? extends K>, ? super Executor,
+          ? extends CompletableFuture<? extends Map<? extends K, ? extends V>>> mappingFunction) {
     var completer = new AsyncBulkCompleter<>(cache(), proxies);
     try {
       var loader = mappingFunction.apply(
           Collections.unmodifiableSet(proxies.keySet()), cache().executor());
       loader.whenComplete(completer);
-      return composeResult(futures);
     } catch (Throwable t) {
       completer.accept(/* result */ null, t);
       throw t;
@@ -546,7 +626,13 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
 
     @Override
     public void putAll(Map<? extends K, ? extends V> map) {
-      map.forEach(this::put);
+      var futures = new LinkedHashMap<K, CompletableFuture<V>>(
+          calculateHashMapCapacity(map.size()));
+      map.forEach((key, value) -> {
+        requireNonNull(value);
+        futures.put(key, CompletableFuture.completedFuture(value));
+      });
+      asyncCache().cache().putAll(futures);
     }
 
     @Override
@@ -564,6 +650,11 @@ interface LocalAsyncCache<K, V> extends AsyncCache<K, V> {
       asyncCache().cache().clear();
     }
 
+    @Override
+    public void invalidateTag(Object tag) {
+      asyncCache().cache().invalidateTag(tag);
+    }
+
     @Override
     public long estimatedSize() {
       return asyncCache().cache().estimatedSize();
@@ -29,6 +29,7 @@ import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
@@ -136,8 +137,18 @@ abstract class LocalAsyncLoadingCache<K, V>
 
   @Override
   public CompletableFuture<Map<K, V>> getAll(Iterable<? extends K> keys) {
+    return composeResult(loadAllFutures(keys));
+  }
+
+  @Override
+  public Flow.Publisher<Map.Entry<K, V>> getAllPublisher(Iterable<? extends K> keys) {
+    return new AsyncEntryPublisher<>(loadAllFutures(keys));
+  }
+
+  /** Returns the futures associated with the {@code keys}, loading the absent entries. */
+  Map<K, CompletableFuture<V>> loadAllFutures(Iterable<? extends K> keys) {
     if (bulkMappingFunction != null) {
-      return getAll(keys, bulkMappingFunction);
+      return getAllFutures(keys, bulkMappingFunction);
     }
 
     Function<K, CompletableFuture<V>> mappingFunction = this::get;
@@ -146,7 +157,7 @@ abstract class LocalAsyncLoadingCache<K, V>
       var future = result.computeIfAbsent(key, mappingFunction);
       requireNonNull(future);
     }
-    return composeResult(result);
+    return result;
   }
 
   @Override
@@ -15,10 +15,14 @@
  */
 package com.github.benmanes.caffeine.cache;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -49,6 +53,9 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
   /** Returns the {@link Executor} used by this cache. */
   Executor executor();
 
+  /** Returns the maximum number of keys requested from the loader in a single bulk load. */
+  int bulkLoadChunkSize();
+
   /** Returns the map of in-flight refresh operations. */
   ConcurrentMap<Object, CompletableFuture<?>> refreshes();
 
@@ -113,6 +120,64 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
   @Nullable V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction,
       boolean recordStats, boolean recordLoad);
 
+  /**
+   * Returns the version of the key's mapping, which changes when the key is written to or removed.
+   * A cache that does not track the versions returns zero.
+   */
+  default long versionOf(K key) {
+    requireNonNull(key);
+    return 0L;
+  }
+
+  /**
+   * Associates the value with the key unless the key was written to or removed since the given
+   * version was obtained by {@link #versionOf}, such as while the value was being loaded. A cache
+   * that does not track the versions always associates the value.
+   *
+   * @return if the value was associated with the key
+   */
+  default boolean putIfVersion(K key, V value, long version) {
+    put(key, value);
+    return true;
+  }
+
+  /**
+   * Associates the loaded values with their keys, as by {@link #putIfVersion} for the requested
+   * keys using the versions obtained in iteration order, and unconditionally for any additional
+   * entries. A cache may apply the writes to its policy as a single batch.
+   */
+  default void putAllIfVersion(Set<? extends K> keys,
+      long[] versions, Map<? extends K, ? extends V> values) {
+    writeAllIfVersion(keys, versions, values, this::putIfVersion, this::put);
+  }
+
+  /**
+   * Writes the loaded values, as described by {@link #putAllIfVersion}, by using the versioned
+   * writer for the requested keys and the unconditional writer for any additional entries.
+   */
+  static <K, V> void writeAllIfVersion(Set<? extends K> keys, long[] versions,
+      Map<? extends K, ? extends V> values, VersionedWriter<K, V> versionedWriter,
+      BiConsumer<K, V> writer) {
+    int index = 0;
+    int requested = 0;
+    for (K key : keys) {
+      V value = values.get(key);
+      long version = versions[index++];
+      if (value != null) {
+        versionedWriter.write(key, value, version);
+        requested++;
+      }
+    }
+    if (values.size() > requested) {
+      // The additional entries that were not requested have no version to validate against
+      for (var entry : values.entrySet()) {
+        if (!keys.contains(entry.getKey())) {
+          writer.accept(entry.getKey(), entry.getValue());
+        }
+      }
+    }
+  }
+
   /** See {@link Cache#invalidateAll(Iterable)}. */
   default void invalidateAll(Iterable<?> keys) {
     for (Object key : keys) {
@@ -120,6 +185,12 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
     }
   }
 
+  /** See {@link Cache#invalidateTag(Object)}. */
+  default void invalidateTag(Object tag) {
+    // A cache without a tagger does not associate any entries with a tag
+    requireNonNull(tag);
+  }
+
   /** See {@link Cache#cleanUp}. */
   void cleanUp();
 
@@ -210,4 +281,10 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
       return result;
     };
   }
+
+  /** A writer of an entry that is conditional on the version of the key's mapping. */
+  @FunctionalInterface
+  interface VersionedWriter<K, V> {
+    void write(K key, V value, long version);
+  }
 }
@@ -37,7 +37,11 @@ final class LocalCacheFactory {
   static <K, V> BoundedLocalCache<K, V> newBoundedLocalCache(Caffeine<K, V> builder,
       @Nullable AsyncCacheLoader<? super K, V> cacheLoader, boolean async) {
     var className = getClassName(builder);
-    return loadFactory(builder, cacheLoader, async, className);
+    var cache = loadFactory(builder, cacheLoader, async, className);
+    if (builder.isMemorySensitive()) {
+      MemoryPressure.register(cache);
+    }
+    return cache;
   }
 
   static String getClassName(Caffeine<?, ?> builder) {
@@ -24,11 +24,13 @@ import java.lang.System.Logger.Level;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 
@@ -52,6 +54,9 @@ interface LocalLoadingCache<K, V> extends LocalManualCache<K, V>, LoadingCache<K
   /** Returns the {@link CacheLoader#loadAll} as a mapping function, if implemented. */
   @Nullable Function<Set<? extends K>, Map<K, V>> bulkMappingFunction();
 
+  /** Returns the in-flight bulk loads, keyed by the cache's key reference. */
+  ConcurrentMap<Object, CompletableFuture<V>> bulkLoads();
+
   @Override
   @SuppressWarnings("NullAway")
   default V get(K key) {
@@ -63,7 +68,73 @@ interface LocalLoadingCache<K, V> extends LocalManualCache<K, V>, LoadingCache<K
     Function<Set<? extends K>, Map<K, V>> mappingFunction = bulkMappingFunction();
     return (mappingFunction == null)
         ? loadSequentially(keys)
-        : getAll(keys, mappingFunction);
+        : loadCoalesced(keys, mappingFunction);
+  }
+
+  /**
+   * Loads the missing entries while joining the overlapping bulk loads that are in-flight by other
+   * callers. The missing keys that are not already being loaded are claimed and loaded by a single
+   * call to the mapping function, after which this caller waits for the loads that it joined. If a
+   * joined load fails, then those keys are loaded by this caller instead.
+   */
+  default Map<K, V> loadCoalesced(Iterable<? extends K> keys,
+      Function<Set<? extends K>, Map<K, V>> mappingFunction) {
+    var found = cache().getAllPresent(keys);
+    int initialCapacity = calculateHashMapCapacity(keys);
+    var result = new LinkedHashMap<K, V>(initialCapacity);
+    var claimed = new LinkedHashMap<K, CompletableFuture<V>>();
+    var joined = new LinkedHashMap<K, CompletableFuture<V>>();
+    for (K key : keys) {
+      V value = found.get(key);
+      if ((value == null) && !result.containsKey(key)) {
+        var future = new CompletableFuture<V>();
+        var inFlight = bulkLoads().putIfAbsent(cache().referenceKey(key), future);
+        if (inFlight == null) {
+          claimed.put(key, future);
+        } else {
+          joined.put(key, inFlight);
+        }
+      }
+      result.put(key, value);
+    }
+    if (claimed.isEmpty() && joined.isEmpty()) {
+      return found;
+    }
+
+    if (!claimed.isEmpty()) {
+      try {
+        bulkLoad(claimed.keySet(), result, mappingFunction);
+      } catch (Throwable t) {
+        claimed.forEach((key, future) -> {
+          bulkLoads().remove(cache().referenceKey(key), future);
+          future.completeExceptionally(t);
+        });
+        throw t;
+      }
+      claimed.forEach((key, future) -> {
+        bulkLoads().remove(cache().referenceKey(key), future);
+        future.complete(result.get(key));
+      });
+    }
+
+    Set<K> retries = null;
+    for (var entry : joined.entrySet()) {
+      V value = Async.getWhenSuccessful(entry.getValue());
+      if (value != null) {
+        result.put(entry.getKey(), value);
+      } else if (entry.getValue().isCompletedExceptionally()) {
+        if (retries == null) {
+          retries = new LinkedHashSet<>();
+        }
+        retries.add(entry.getKey());
+      } else {
+        result.remove(entry.getKey());
+      }
+    }
+    if (retries != null) {
+      bulkLoad(retries, result, mappingFunction);
+    }
+    return Collections.unmodifiableMap(result);
   }
 
   /** Sequentially loads each missing entry. */
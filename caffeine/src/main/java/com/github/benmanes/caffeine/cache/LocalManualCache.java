@@ -18,12 +18,18 @@ package com.github.benmanes.caffeine.cache;
 import static com.github.benmanes.caffeine.cache.Caffeine.calculateHashMapCapacity;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -93,25 +99,102 @@ interface LocalManualCache<K, V> extends Cache<K, V> {
 
   /**
    * Performs a non-blocking bulk load of the missing keys. Any missing entry that materializes
-   * during the load are replaced when the loaded entries are inserted into the cache.
+   * during the load are replaced when the loaded entries are inserted into the cache. If the number
+   * of missing keys exceeds the cache's bulk load chunk size, then the keys are partitioned and
+   * the chunks are loaded concurrently.
    */
-  @SuppressWarnings("CatchingUnchecked")
   default void bulkLoad(Set<K> keysToLoad, Map<K, V> result,
       Function<? super Set<? extends K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
+    int chunkSize = cache().bulkLoadChunkSize();
+    Map<? extends K, ? extends V> loaded = (keysToLoad.size() <= chunkSize)
+        ? loadChunk(keysToLoad, mappingFunction)
+        : loadChunks(keysToLoad, chunkSize, mappingFunction);
+    for (K key : keysToLoad) {
+      V value = loaded.get(key);
+      if (value == null) {
+        result.remove(key);
+      } else {
+        result.put(key, value);
+      }
+    }
+  }
+
+  /**
+   * Partitions the missing keys into chunks that are loaded concurrently, where the last chunk is
+   * loaded by the calling thread. Every chunk is allowed to complete so that the successful loads
+   * are cached, after which the first failure, if any, is propagated.
+   */
+  @SuppressWarnings("CatchingUnchecked")
+  default Map<K, V> loadChunks(Set<K> keysToLoad, int chunkSize,
+      Function<? super Set<? extends K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
+    var chunks = new ArrayList<Set<K>>((keysToLoad.size() / chunkSize) + 1);
+    for (K key : keysToLoad) {
+      if (chunks.isEmpty() || (chunks.get(chunks.size() - 1).size() == chunkSize)) {
+        chunks.add(new LinkedHashSet<>(calculateHashMapCapacity(chunkSize)));
+      }
+      chunks.get(chunks.size() - 1).add(key);
+    }
+
+    Executor executor = task -> {
+      try {
+        cache().executor().execute(task);
+      } catch (RejectedExecutionException e) {
+        task.run();
+      }
+    };
+    var futures = new ArrayList<CompletableFuture<Map<? extends K, ? extends V>>>(chunks.size());
+    for (int i = 0; i < chunks.size() - 1; i++) {
+      Set<K> chunk = chunks.get(i);
+      futures.add(CompletableFuture.supplyAsync(() -> loadChunk(chunk, mappingFunction), executor));
+    }
+
+    Throwable error = null;
+    var loaded = new HashMap<K, V>(calculateHashMapCapacity(keysToLoad.size()));
+    try {
+      loaded.putAll(loadChunk(chunks.get(chunks.size() - 1), mappingFunction));
+    } catch (Throwable t) {
+      error = t;
+    }
+    for (var future : futures) {
+      try {
+        loaded.putAll(future.join());
+      } catch (CompletionException e) {
+        if (error == null) {
+          error = (e.getCause() == null) ? e : e.getCause();
+        }
+      }
+    }
+
+    if (error instanceof RuntimeException) {
+      throw (RuntimeException) error;
+    } else if (error instanceof Error) {
+      throw (Error) error;
+    } else if (error != null) {
+      throw new CompletionException(error);
+    }
+    return loaded;
+  }
+
+  /**
+   * Loads and caches the entries for the keys, recording the load statistics. A loaded value is
+   * not cached if its key was written to or invalidated while the load was in-flight, as the value
+   * may be stale, but it is still returned to the caller.
+   */
+  default Map<? extends K, ? extends V> loadChunk(Set<K> keysToLoad,
+      Function<? super Set<? extends K>, ? extends Map<? extends K, ? extends V>> mappingFunction) {
     boolean success = false;
     long startTime = cache().statsTicker().read();
     try {
-      var loaded = mappingFunction.apply(Collections.unmodifiableSet(keysToLoad));
-      loaded.forEach(cache()::put);
+      int index = 0;
+      long[] versions = new long[keysToLoad.size()];
       for (K key : keysToLoad) {
-        V value = loaded.get(key);
-        if (value == null) {
-          result.remove(key);
-        } else {
-          result.put(key, value);
-        }
+        versions[index++] = cache().versionOf(key);
       }
+      var loaded = mappingFunction.apply(Collections.unmodifiableSet(keysToLoad));
+
+      cache().putAllIfVersion(keysToLoad, versions, loaded);
       success = !loaded.isEmpty();
+      return loaded;
     } finally {
       long loadTime = cache().statsTicker().read() - startTime;
       if (success) {
@@ -147,6 +230,11 @@ interface LocalManualCache<K, V> extends Cache<K, V> {
     cache().clear();
   }
 
+  @Override
+  default void invalidateTag(Object tag) {
+    cache().invalidateTag(tag);
+  }
+
   @Override
   default CacheStats stats() {
     return cache().statsCounter().snapshot();
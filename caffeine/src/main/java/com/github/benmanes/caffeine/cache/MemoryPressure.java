@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * The capacity of a cache that was configured with {@link Caffeine#memorySensitive()}, which is
+ * lowered while the heap is under pressure and is restored once the pressure subsides. The
+ * effective maximum is a fraction of the configured maximum that is halved on every signal of
+ * pressure, no more often than once per shrink interval and down to a floor, and that is raised
+ * in small steps no more often than once per recovery interval, so that a cache does not
+ * oscillate between its extremes as the collector reclaims the entries that it evicted.
+ * <p>
+ * The signals are produced by a {@link Monitor} that is shared by all of the memory sensitive
+ * caches. It listens for the garbage collection notifications of the tenured heap pools, and for
+ * any collection usage threshold notifications that the application configured, and once per
+ * collection of those pools it compares the occupancy that remained afterwards against the
+ * library's own threshold. The pools' collection usage thresholds are not modified, as they are
+ * global to the JVM. The notifications that describe a collection which was already evaluated are
+ * ignored, as the usage that they would observe is unchanged. The intervals are measured by the
+ * cache's {@link Caffeine#ticker(Ticker) ticker}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class MemoryPressure {
+  /** The occupancy of a tenured pool after a collection that indicates pressure. */
+  static final double PRESSURE_THRESHOLD = 0.85d;
+  /** The smallest fraction of the configured maximum that pressure may reduce the cache to. */
+  static final double MINIMUM_FRACTION = 0.0625d;
+  /** The fraction of the configured maximum that is restored by each step of the recovery. */
+  static final double RECOVERY_STEP = 0.125d;
+  /** The minimum duration between an adjustment and the next step of the recovery. */
+  static final long RECOVERY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+  /** The minimum duration between a reduction and the next reduction of the capacity. */
+  static final long SHRINK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  final Ticker ticker;
+
+  @GuardedBy("evictionLock")
+  long target;
+  @GuardedBy("evictionLock")
+  long lastAdjusted;
+  @GuardedBy("evictionLock")
+  long lastShrunk;
+
+  volatile double fraction;
+
+  MemoryPressure(long target, Ticker ticker) {
+    this.ticker = requireNonNull(ticker);
+    this.fraction = 1.0d;
+    this.target = target;
+  }
+
+  /** Returns if the effective maximum is below the configured maximum. */
+  boolean isReduced() {
+    return (fraction < 1.0d);
+  }
+
+  /** Returns the maximum that is in effect. */
+  @GuardedBy("evictionLock")
+  long maximum() {
+    double current = fraction;
+    return (current >= 1.0d) ? target : (long) (current * target);
+  }
+
+  /** Sets the configured maximum and returns the maximum that is in effect. */
+  @GuardedBy("evictionLock")
+  long retarget(long maximum) {
+    requireArgument(maximum >= 0, "maximum must not be negative");
+    target = Math.min(maximum, BoundedLocalCache.MAXIMUM_CAPACITY);
+    return maximum();
+  }
+
+  /**
+   * Reduces the capacity in response to pressure, unless it was already reduced within the shrink
+   * interval, and returns the maximum that is in effect.
+   */
+  @GuardedBy("evictionLock")
+  long shrink(long now) {
+    if (!isReduced() || ((now - lastShrunk) >= SHRINK_INTERVAL_NANOS)) {
+      fraction = Math.max(MINIMUM_FRACTION, fraction / 2);
+      lastAdjusted = now;
+      lastShrunk = now;
+    }
+    return maximum();
+  }
+
+  /** Restores a step of the capacity, if due, and returns the maximum that is in effect. */
+  @GuardedBy("evictionLock")
+  long recover(long now) {
+    if (isReduced() && ((now - lastAdjusted) >= RECOVERY_INTERVAL_NANOS)) {
+      fraction = Math.min(1.0d, fraction + RECOVERY_STEP);
+      lastAdjusted = now;
+    }
+    return maximum();
+  }
+
+  /** Registers the cache to be signaled when the heap's memory pressure changes. */
+  static void register(BoundedLocalCache<?, ?> cache) {
+    Monitor.INSTANCE.caches.add(new WeakReference<>(cache));
+  }
+
+  /**
+   * The listener of the platform's memory notifications, which signals the registered caches. The
+   * caches are weakly referenced so that an abandoned cache is discarded, and each cache applies
+   * the adjustment on its own executor rather than on the thread that delivers the notifications.
+   */
+  static final class Monitor implements NotificationListener {
+    static final Logger logger = System.getLogger(MemoryPressure.class.getName());
+    static final Monitor INSTANCE = create();
+
+    final List<WeakReference<BoundedLocalCache<?, ?>>> caches;
+    final List<GarbageCollectorMXBean> collectors;
+    final List<MemoryPoolMXBean> pools;
+
+    @GuardedBy("this")
+    long lastCollectionCount;
+
+    Monitor(List<MemoryPoolMXBean> pools, List<GarbageCollectorMXBean> collectors) {
+      this.caches = new CopyOnWriteArrayList<>();
+      this.collectors = collectors;
+      this.pools = pools;
+    }
+
+    /** Returns a monitor of the tenured pools that listens for the platform's notifications. */
+    static Monitor create() {
+      var pools = new ArrayList<MemoryPoolMXBean>();
+      var poolNames = new HashSet<String>();
+      for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+        if ((pool.getType() == MemoryType.HEAP) && (pool.getUsage().getMax() > 0)
+            && (pool.getCollectionUsage() != null)) {
+          poolNames.add(pool.getName());
+          pools.add(pool);
+        }
+      }
+      var collectors = new ArrayList<GarbageCollectorMXBean>();
+      for (var collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+        if (Arrays.stream(collector.getMemoryPoolNames()).anyMatch(poolNames::contains)) {
+          collectors.add(collector);
+        }
+      }
+
+      var monitor = new Monitor(pools, collectors);
+      if (ManagementFactory.getMemoryMXBean() instanceof NotificationEmitter) {
+        ((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+            .addNotificationListener(monitor, /* filter */ null, /* handback */ null);
+      }
+      for (var collector : collectors) {
+        if (collector instanceof NotificationEmitter) {
+          ((NotificationEmitter) collector)
+              .addNotificationListener(monitor, /* filter */ null, /* handback */ null);
+        }
+      }
+      return monitor;
+    }
+
+    @Override
+    @SuppressWarnings("PMD.AvoidCatchingThrowable")
+    public void handleNotification(Notification notification, Object handback) {
+      try {
+        if (isNewCollection(collectionCount())) {
+          signal(isUnderPressure());
+        }
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown when handling a memory notification", t);
+      }
+    }
+
+    /** Returns the number of collections that were performed on the tenured pools. */
+    long collectionCount() {
+      long count = 0;
+      for (var collector : collectors) {
+        count += Math.max(0, collector.getCollectionCount());
+      }
+      return count;
+    }
+
+    /**
+     * Returns if the collection count differs from the one that was last evaluated, in which case
+     * it is recorded, so that the multiple notifications for a single collection signal only once.
+     */
+    synchronized boolean isNewCollection(long collectionCount) {
+      if (collectionCount == lastCollectionCount) {
+        return false;
+      }
+      lastCollectionCount = collectionCount;
+      return true;
+    }
+
+    /** Returns if a tenured pool's occupancy after its last collection exceeds the threshold. */
+    boolean isUnderPressure() {
+      for (var pool : pools) {
+        var usage = pool.getCollectionUsage();
+        if ((usage != null) && (usage.getMax() > 0)
+            && (usage.getUsed() >= (PRESSURE_THRESHOLD * usage.getMax()))) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /** Signals the registered caches and discards those that were garbage collected. */
+    void signal(boolean underPressure) {
+      for (var ref : caches) {
+        var cache = ref.get();
+        if (cache == null) {
+          caches.remove(ref);
+        } else {
+          cache.onMemoryPressure(underPressure);
+        }
+      }
+    }
+  }
+}
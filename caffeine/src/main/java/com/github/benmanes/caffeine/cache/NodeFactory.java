@@ -100,6 +100,9 @@ interface NodeFactory<K, V> {
     } else {
       className.append('D');
     }
+    if (builder.hasCompactNodes()) {
+      className.append('C');
+    }
     if (builder.expiresVariable()) {
       if (builder.refreshAfterWrite()) {
         className.append('A');
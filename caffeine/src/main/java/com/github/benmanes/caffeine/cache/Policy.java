@@ -19,12 +19,16 @@ import static com.github.benmanes.caffeine.cache.Caffeine.saturatedToNanos;
 
 import java.time.Duration;
 import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.stream.Stream;
@@ -33,6 +37,8 @@ import org.checkerframework.checker.index.qual.NonNegative;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.nullness.qual.PolyNull;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
 /**
  * An access point for inspecting and performing low-level operations based on the cache's runtime
  * characteristics. These operations are optional and dependent on how the cache was constructed
@@ -149,6 +155,144 @@ public interface Policy<K, V> {
    */
   Optional<FixedRefresh<K, V>> refreshAfterWrite();
 
+  /**
+   * Returns a snapshot of the diagnostics about this cache's internal maintenance, if the cache was
+   * constructed with {@link Caffeine#recordDiagnostics()}. The diagnostics include the behavior of
+   * the read and write buffers, the duration of the maintenance cycles, and the state of the
+   * eviction and expiration policies.
+   * <p>
+   * Beware that obtaining the snapshot requires the cache's eviction lock, and that the timer wheel
+   * bucket depths are computed by traversing the entries if a variable expiration policy is used.
+   * If the cache does not record its diagnostics then an empty {@link Optional} is returned.
+   *
+   * @return a snapshot of the diagnostics if they are recorded
+   */
+  default Optional<CacheDiagnostics> diagnostics() {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns a publisher of the mutations to this cache's entries, using a buffer of
+   * {@link Flow#defaultBufferSize()} events per subscriber that discards the oldest event when the
+   * subscriber falls behind. This is equivalent to
+   * {@code events(Flow.defaultBufferSize(), CacheEvent.Overflow.DROP_OLDEST)}.
+   *
+   * @return a publisher of the mutations to this cache's entries
+   * @throws UnsupportedOperationException if the implementation does not support a change stream
+   */
+  default Flow.Publisher<CacheEvent<K, V>> events() {
+    return events(Flow.defaultBufferSize(), CacheEvent.Overflow.DROP_OLDEST);
+  }
+
+  /**
+   * Returns a publisher of the mutations to this cache's entries. A subscriber receives an event
+   * when an entry is created, updated, explicitly removed, evicted, or expires, which allows for
+   * the cache's contents to be replicated elsewhere. An event is published after the atomic
+   * operation that mutated the entry has completed, so the events for a key that is concurrently
+   * modified by multiple threads may be observed in a different order than the operations were
+   * applied, and an expired or collected entry is only reported once the cache discards it.
+   * <p>
+   * The events are buffered for each subscriber until requested and are emitted on the configured
+   * executor in batches. When a subscriber does not keep up and its buffer of {@code bufferSize}
+   * events is full, the {@code overflow} strategy determines which events are discarded. A
+   * subscription does not observe the mutations that occurred before it was established, and the
+   * cache does not incur any overhead for the change stream while there are no subscribers.
+   *
+   * @param bufferSize the maximum number of events that are buffered for each subscriber
+   * @param overflow the strategy to apply when a subscriber's buffer is full
+   * @return a publisher of the mutations to this cache's entries
+   * @throws IllegalArgumentException if the buffer size is not positive
+   * @throws NullPointerException if the overflow strategy is null
+   * @throws UnsupportedOperationException if the implementation does not support a change stream
+   */
+  default Flow.Publisher<CacheEvent<K, V>> events(int bufferSize, CacheEvent.Overflow overflow) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the version of the mapping for the key, which changes whenever the key is written to or
+   * removed. The version is obtained before loading a value outside of the cache and is supplied
+   * to {@link #putIfVersion} so that the value is discarded if the key was invalidated while the
+   * load was in-flight. The versions are kept in a compact, fixed-size table where the keys may
+   * share a version, so the version may also change due to a write to another key.
+   *
+   * @param key the key whose version is to be returned
+   * @return the version of the mapping for the key
+   * @throws NullPointerException if the specified key is null
+   * @throws UnsupportedOperationException if the implementation does not support versioned writes
+   */
+  default long versionOf(K key) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Associates the value with the key in this cache, unless the key was written to or removed
+   * since its version was obtained by {@link #versionOf}. This allows a value that was loaded
+   * outside of the cache to be installed without the risk of overwriting the invalidation that
+   * occurred while it was loaded, such as when the system of record was updated concurrently.
+   *
+   * @param key the key with which the specified value is to be associated
+   * @param value the value to be associated with the specified key
+   * @param version the version of the key that was obtained before the value was loaded
+   * @return if the value was associated with the key
+   * @throws NullPointerException if the specified key or value is null
+   * @throws UnsupportedOperationException if the implementation does not support versioned writes
+   */
+  default boolean putIfVersion(K key, V value, long version) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Performs the given action for each entry in this cache, in parallel if the cache holds at
+   * least {@code parallelismThreshold} entries. The traversal is split across the hash table's bins
+   * and executed by the {@link java.util.concurrent.ForkJoinPool#commonPool()}, and the entries are
+   * supplied to the action without being materialized as {@link Map.Entry} instances. An entry
+   * that has expired or been collected is skipped, where the expiration is evaluated as of the time
+   * that the traversal began.
+   * <p>
+   * Like the views of {@link Cache#asMap()}, the traversal is weakly consistent and does not
+   * modify the entries' access or write times. The action must be thread-safe, must not block, and
+   * should not modify this cache.
+   *
+   * @param parallelismThreshold the estimated number of entries needed for this operation to be
+   *        executed in parallel, such as {@code 1} for maximal parallelism or
+   *        {@code Long.MAX_VALUE} to suppress it
+   * @param action the action to be performed for each entry
+   * @throws NullPointerException if the specified action is null
+   * @throws UnsupportedOperationException if the implementation does not support bulk traversals
+   */
+  default void forEachParallel(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the result of accumulating the given transformation of all of the entries in this
+   * cache using the given reducer to combine the values, or {@code null} if none. The traversal
+   * has the same characteristics as {@link #forEachParallel}, where an entry is skipped if it has
+   * expired or been collected, or if the transformer returns {@code null} for it.
+   *
+   * @param parallelismThreshold the estimated number of entries needed for this operation to be
+   *        executed in parallel
+   * @param transformer a function returning the transformation for an entry, or {@code null} if
+   *        there is no transformation (in which case it is not combined)
+   * @param reducer a commutative associative combining function
+   * @param <U> the type of the transformation
+   * @return the result of accumulating the given transformation of all entries
+   * @throws NullPointerException if the specified transformer or reducer is null
+   * @throws UnsupportedOperationException if the implementation does not support bulk traversals
+   */
+  default <U> @Nullable U reduce(long parallelismThreshold,
+      BiFunction<? super K, ? super V, ? extends U> transformer,
+      BiFunction<? super U, ? super U, ? extends U> reducer) {
+    // This method was added & implemented in version 3.1.2
+    throw new UnsupportedOperationException();
+  }
+
   /** The low-level operations for a cache with a size-based eviction policy. */
   interface Eviction<K, V> {
 
@@ -330,6 +474,80 @@ public interface Policy<K, V> {
       // This method was added & implemented in version 3.0.6
       throw new UnsupportedOperationException();
     }
+
+    /**
+     * Returns a cursor that lazily traverses the cache entries in chunks. The order of iteration is
+     * from the entries least likely to be retained (coldest) to the entries most likely to be
+     * retained (hottest), as determined by the eviction policy's best guess when each chunk is
+     * gathered.
+     * <p>
+     * Unlike the snapshot views, the cursor holds the eviction policy's exclusive lock only while
+     * it gathers the next {@code chunkSize} entries, so a large traversal does not halt the
+     * maintenance work for its full duration. The cursor is weakly consistent: it does not throw
+     * {@link ConcurrentModificationException}, it does not return the entries that were removed
+     * before it reached them, and it may miss or repeat the entries that were reordered around its
+     * position between chunks.
+     *
+     * @param chunkSize the maximum number of entries visited per acquisition of the lock
+     * @return a cursor over the cache's entries from the coldest to the hottest
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    default Iterator<CacheEntry<K, V>> coldestCursor(int chunkSize) {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a cursor that lazily traverses the cache entries in chunks. The order of iteration is
+     * from the entries most likely to be retained (hottest) to the entries least likely to be
+     * retained (coldest). See {@link #coldestCursor} for the cursor's locking and consistency.
+     *
+     * @param chunkSize the maximum number of entries visited per acquisition of the lock
+     * @return a cursor over the cache's entries from the hottest to the coldest
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    default Iterator<CacheEntry<K, V>> hottestCursor(int chunkSize) {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded for each tenant, if the cache partitions its
+     * entries by using {@link Caffeine#tenantQuota}. The statistics include the hits and misses of
+     * the cache's synchronous read operations and the size-based evictions of the tenant's entries,
+     * but not the load statistics. If the cache is not partitioned by tenant then an empty map is
+     * returned.
+     * <p>
+     * A tenant is only reported while it holds entries. When a tenant's last entry is removed then
+     * its statistics are discarded, so they restart from zero if the tenant later adds entries, and
+     * the reads of a tenant that holds no entries are not recorded.
+     *
+     * @return a snapshot of the statistics of each tenant
+     */
+    default Map<Object, CacheStats> tenantStats() {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns an unmodifiable snapshot list of the most frequently accessed keys, as tracked when
+     * the cache was configured with {@link Caffeine#recordHotKeys}, ordered from the hottest to the
+     * coldest. The access counts are approximate, where a key's true count lies between its
+     * {@link HotKey#count()} less its {@link HotKey#error()} and its count, and the counts are
+     * periodically halved so that they reflect the recent workload. If the cache does not track its
+     * hot keys then an empty list is returned.
+     * <p>
+     * Beware that obtaining the hot keys requires the cache's eviction lock, though the work is
+     * proportional to the tracker's capacity rather than to the number of cached entries.
+     *
+     * @param limit the maximum number of keys
+     * @return a snapshot of at most {@code limit} of the hottest keys
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    default List<HotKey<K>> hotKeys(@NonNegative int limit) {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
   }
 
   /** The low-level operations for a cache with a fixed expiration policy. */
@@ -502,6 +720,38 @@ public interface Policy<K, V> {
       // This method was added & implemented in version 3.0.6
       throw new UnsupportedOperationException();
     }
+
+    /**
+     * Returns a cursor that lazily traverses the cache entries in chunks. The order of iteration is
+     * from the entries most likely to expire (oldest) to the entries least likely to expire
+     * (youngest), as determined by the expiration policy's best guess when each chunk is gathered.
+     * <p>
+     * The cursor holds the eviction policy's exclusive lock only while it gathers the next
+     * {@code chunkSize} entries and is weakly consistent, as described by
+     * {@link Eviction#coldestCursor}.
+     *
+     * @param chunkSize the maximum number of entries visited per acquisition of the lock
+     * @return a cursor over the cache's entries from the oldest to the youngest
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    default Iterator<CacheEntry<K, V>> oldestCursor(int chunkSize) {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns a cursor that lazily traverses the cache entries in chunks. The order of iteration is
+     * from the entries least likely to expire (youngest) to the entries most likely to expire
+     * (oldest). See {@link #oldestCursor} for the cursor's locking and consistency.
+     *
+     * @param chunkSize the maximum number of entries visited per acquisition of the lock
+     * @return a cursor over the cache's entries from the youngest to the oldest
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    default Iterator<CacheEntry<K, V>> youngestCursor(int chunkSize) {
+      // This method was added & implemented in version 3.1.2
+      throw new UnsupportedOperationException();
+    }
   }
 
   /** The low-level operations for a cache with a variable expiration policy. */
@@ -891,4 +1141,42 @@ public interface Policy<K, V> {
      */
     long snapshotAt();
   }
+
+  /**
+   * A frequently accessed key and its approximate access count. This is a value-based class that
+   * is an immutable snapshot of the tracker's state at the time of its creation.
+   */
+  interface HotKey<K> {
+
+    /**
+     * Returns the key that was frequently accessed.
+     *
+     * @return the key
+     */
+    K getKey();
+
+    /**
+     * Returns the estimated number of accesses to the key, which may overestimate but never
+     * underestimates the key's recent accesses.
+     *
+     * @return the estimated number of accesses
+     */
+    long count();
+
+    /**
+     * Returns the maximum amount that the {@link #count()} may overestimate the key's accesses.
+     *
+     * @return the maximum overestimation of the count
+     */
+    long error();
+
+    /**
+     * Returns the estimated rate of accesses to the key, per second, over the period in which its
+     * recent accesses were counted. This value is zero if the rate could not be determined because
+     * no time has elapsed.
+     *
+     * @return the estimated number of accesses per second
+     */
+    double rate();
+  }
 }
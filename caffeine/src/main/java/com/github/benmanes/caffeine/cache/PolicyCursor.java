@@ -0,0 +1,249 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.LinkedDeque.PeekingIterator;
+import com.github.benmanes.caffeine.cache.Policy.CacheEntry;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A lazy traversal of the cache's entries in a policy order that holds the eviction lock only
+ * while a chunk of the nodes is gathered. The order is composed from one or more lanes, where each
+ * lane walks a linked deque and remembers its position by the last node that it visited and that
+ * node's successor. When the next chunk is requested, a lane resumes from the successor if it is
+ * still linked to the lane's deque, else from the successor of the last visited node, and
+ * otherwise it restarts from the head of its deque unless it had reached the end. The position is
+ * usually lost because the entries around it were evicted or invalidated, such as when the caller
+ * removes the entries as it traverses them, so the head is then the closest unvisited node.
+ * <p>
+ * The traversal is weakly consistent and never throws a {@code ConcurrentModificationException}.
+ * A gathered node is converted into an entry when it is reached, so an entry that is concurrently
+ * removed is skipped. An entry that is added or reordered after the cursor's position may be
+ * visited, and an entry that is reordered around the cursor's position, or that precedes it when
+ * a lane restarts, may be missed or visited again.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class PolicyCursor<K, V> implements Iterator<CacheEntry<K, V>> {
+  final ArrayDeque<Node<K, V>> buffer;
+  final Function<PolicyCursor<K, V>, PeekingIterator<Node<K, V>>> order;
+  final BoundedLocalCache<K, V> cache;
+  final Function<V, V> transformer;
+  final int chunkSize;
+
+  @Nullable CacheEntry<K, V> next;
+  boolean exhausted;
+
+  PolicyCursor(BoundedLocalCache<K, V> cache, Function<V, V> transformer, int chunkSize,
+      Function<PolicyCursor<K, V>, PeekingIterator<Node<K, V>>> order) {
+    requireArgument(chunkSize > 0, "chunk size must be positive: %s", chunkSize);
+    this.buffer = new ArrayDeque<>(Math.min(chunkSize, 1_024));
+    this.transformer = requireNonNull(transformer);
+    this.cache = requireNonNull(cache);
+    this.chunkSize = chunkSize;
+    this.order = order;
+  }
+
+  /** Returns a cursor from the entry most likely to be evicted to the least likely. */
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> PolicyCursor<K, V> coldest(BoundedLocalCache<K, V> cache,
+      Function<V, V> transformer, int chunkSize) {
+    var window = new Lane<>(cache.accessOrderWindowDeque(), Node::inWindow, /* ascending */ true);
+    var probation = new Lane<>(cache.accessOrderProbationDeque(),
+        Node::inMainProbation, /* ascending */ true);
+    var protectedLane = new Lane<>(cache.accessOrderProtectedDeque(),
+        Node::inMainProtected, /* ascending */ true);
+    return new PolicyCursor<>(cache, transformer, chunkSize, cursor -> {
+      var primary = PeekingIterator.comparing(window.iterator(), probation.iterator(),
+          cursor.frequencyComparator().reversed());
+      return PeekingIterator.concat(primary, protectedLane.iterator());
+    });
+  }
+
+  /** Returns a cursor from the entry least likely to be evicted to the most likely. */
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> PolicyCursor<K, V> hottest(BoundedLocalCache<K, V> cache,
+      Function<V, V> transformer, int chunkSize) {
+    var window = new Lane<>(cache.accessOrderWindowDeque(), Node::inWindow, /* ascending */ false);
+    var probation = new Lane<>(cache.accessOrderProbationDeque(),
+        Node::inMainProbation, /* ascending */ false);
+    var protectedLane = new Lane<>(cache.accessOrderProtectedDeque(),
+        Node::inMainProtected, /* ascending */ false);
+    return new PolicyCursor<>(cache, transformer, chunkSize, cursor -> {
+      var secondary = PeekingIterator.comparing(probation.iterator(), window.iterator(),
+          cursor.frequencyComparator());
+      return PeekingIterator.concat(protectedLane.iterator(), secondary);
+    });
+  }
+
+  /** Returns a cursor in the access order, from the oldest or the youngest entry. */
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> PolicyCursor<K, V> accessOrder(BoundedLocalCache<K, V> cache,
+      Function<V, V> transformer, int chunkSize, boolean oldest) {
+    if (!cache.evicts()) {
+      var window = new Lane<>(cache.accessOrderWindowDeque(), node -> true, oldest);
+      return new PolicyCursor<>(cache, transformer, chunkSize, cursor -> window.iterator());
+    }
+    var window = new Lane<>(cache.accessOrderWindowDeque(), Node::inWindow, oldest);
+    var probation = new Lane<>(cache.accessOrderProbationDeque(), Node::inMainProbation, oldest);
+    var protectedLane = new Lane<>(cache.accessOrderProtectedDeque(),
+        Node::inMainProtected, oldest);
+    Comparator<Node<K, V>> comparator = oldest
+        ? Comparator.comparingLong(Node::getAccessTime)
+        : Comparator.<Node<K, V>>comparingLong(Node::getAccessTime).reversed();
+    return new PolicyCursor<>(cache, transformer, chunkSize, cursor -> PeekingIterator.comparing(
+        PeekingIterator.comparing(window.iterator(), probation.iterator(), comparator),
+        protectedLane.iterator(), comparator));
+  }
+
+  /** Returns a cursor in the write order, from the oldest or the youngest entry. */
+  @SuppressWarnings("GuardedByChecker")
+  static <K, V> PolicyCursor<K, V> writeOrder(BoundedLocalCache<K, V> cache,
+      Function<V, V> transformer, int chunkSize, boolean oldest) {
+    var lane = new Lane<>(cache.writeOrderDeque(), node -> true, oldest);
+    return new PolicyCursor<>(cache, transformer, chunkSize, cursor -> lane.iterator());
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (next == null) {
+      var node = buffer.poll();
+      if (node != null) {
+        next = cache.nodeToCacheEntry(node, transformer);
+      } else if (exhausted) {
+        return false;
+      } else {
+        fill();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  @SuppressWarnings("NullAway")
+  public CacheEntry<K, V> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    var entry = next;
+    next = null;
+    return entry;
+  }
+
+  /** Gathers the next chunk of nodes while holding the eviction lock. */
+  void fill() {
+    cache.evictionLock.lock();
+    try {
+      cache.maintenance(/* ignored */ null);
+
+      // Obtain the iterator after the maintenance work so that it observes a stable policy
+      var iterator = order.apply(this);
+      for (int i = 0; (i < chunkSize) && iterator.hasNext(); i++) {
+        buffer.add(iterator.next());
+      }
+      exhausted = !iterator.hasNext();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+  }
+
+  /** Returns a comparator of the nodes by their estimated popularity. */
+  @GuardedBy("evictionLock")
+  Comparator<Node<K, V>> frequencyComparator() {
+    return Comparator.comparingInt(node -> {
+      K key = node.getKey();
+      return (key == null) ? 0 : cache.frequencySketch().frequency(key);
+    });
+  }
+
+  /** A resumable walk over a linked deque in one direction. */
+  static final class Lane<K, V> {
+    final LinkedDeque<Node<K, V>> deque;
+    final Predicate<Node<K, V>> member;
+    final boolean ascending;
+
+    @Nullable Node<K, V> visited;
+    @Nullable Node<K, V> successor;
+    boolean finished;
+    boolean started;
+
+    Lane(LinkedDeque<Node<K, V>> deque, Predicate<Node<K, V>> member, boolean ascending) {
+      this.ascending = ascending;
+      this.member = member;
+      this.deque = deque;
+    }
+
+    /** Returns an iterator from the lane's position that records its progress. */
+    @GuardedBy("evictionLock")
+    PeekingIterator<Node<K, V>> iterator() {
+      var delegate = ascending
+          ? deque.iteratorFrom(resumeFrom())
+          : deque.descendingIteratorFrom(resumeFrom());
+      started = true;
+      return new PeekingIterator<>() {
+        @Override public boolean hasNext() {
+          if (delegate.hasNext()) {
+            return true;
+          }
+          finished = true;
+          return false;
+        }
+        @Override public Node<K, V> next() {
+          var node = delegate.next();
+          successor = delegate.peek();
+          visited = node;
+          return node;
+        }
+        @Override public @Nullable Node<K, V> peek() {
+          return delegate.peek();
+        }
+      };
+    }
+
+    /** Returns the node to resume the walk from, or null if the lane is exhausted. */
+    @GuardedBy("evictionLock")
+    @Nullable Node<K, V> resumeFrom() {
+      if (started) {
+        if (isLinked(successor)) {
+          return successor;
+        } else if (isLinked(visited)) {
+          return ascending ? deque.getNext(visited) : deque.getPrevious(visited);
+        } else if (finished) {
+          return null;
+        }
+      }
+      return ascending ? deque.peekFirst() : deque.peekLast();
+    }
+
+    /** Returns if the node is still linked to this lane's deque. */
+    @GuardedBy("evictionLock")
+    boolean isLinked(@Nullable Node<K, V> node) {
+      return (node != null) && member.test(node) && deque.contains(node);
+    }
+  }
+}
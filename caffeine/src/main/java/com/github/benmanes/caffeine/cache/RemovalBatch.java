@@ -0,0 +1,127 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.checkIndex;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The removal notifications that are delivered together to a {@link BatchRemovalListener}. The
+ * entries are held in parallel arrays of keys, values, and causes rather than as an object per
+ * removal, so a batch is compact and inexpensive to accumulate. A batch is not modified after it
+ * has been delivered.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public final class RemovalBatch<K, V> {
+  static final int INITIAL_CAPACITY = 16;
+
+  @Nullable Object[] keys;
+  @Nullable Object[] values;
+  RemovalCause[] causes;
+  int size;
+
+  RemovalBatch(int initialCapacity) {
+    int capacity = Math.max(1, initialCapacity);
+    this.causes = new RemovalCause[capacity];
+    this.values = new Object[capacity];
+    this.keys = new Object[capacity];
+  }
+
+  /** Appends the removal, growing the arrays if necessary. */
+  void add(@Nullable K key, @Nullable V value, RemovalCause cause) {
+    if (size == causes.length) {
+      int capacity = 2 * size;
+      causes = Arrays.copyOf(causes, capacity);
+      values = Arrays.copyOf(values, capacity);
+      keys = Arrays.copyOf(keys, capacity);
+    }
+    causes[size] = requireNonNull(cause);
+    values[size] = value;
+    keys[size] = key;
+    size++;
+  }
+
+  /**
+   * Returns the number of removals in this batch.
+   *
+   * @return the number of removals in this batch
+   */
+  public @NonNegative int size() {
+    return size;
+  }
+
+  /**
+   * Returns the key of the removal at the specified position.
+   *
+   * @param index the position of the removal in this batch
+   * @return the key, or {@code null} if collected
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  @SuppressWarnings("unchecked")
+  public @Nullable K getKey(@NonNegative int index) {
+    return (K) keys[checkIndex(index, size)];
+  }
+
+  /**
+   * Returns the value of the removal at the specified position.
+   *
+   * @param index the position of the removal in this batch
+   * @return the value, or {@code null} if collected
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  @SuppressWarnings("unchecked")
+  public @Nullable V getValue(@NonNegative int index) {
+    return (V) values[checkIndex(index, size)];
+  }
+
+  /**
+   * Returns the reason for the removal at the specified position.
+   *
+   * @param index the position of the removal in this batch
+   * @return the reason for which the entry was removed
+   * @throws IndexOutOfBoundsException if the index is out of range
+   */
+  public RemovalCause getCause(@NonNegative int index) {
+    return causes[checkIndex(index, size)];
+  }
+
+  /**
+   * Performs the given action for each removal in this batch, in order.
+   *
+   * @param action the action to be performed for each removal
+   * @throws NullPointerException if the specified action is null
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(RemovalListener<? super K, ? super V> action) {
+    requireNonNull(action);
+    for (int i = 0; i < size; i++) {
+      action.onRemoval((K) keys[i], (V) values[i], causes[i]);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{size=" + size + "}";
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * Accumulates the removal notifications into batches that are delivered to a
+ * {@link BatchRemovalListener} on the executor. While a maintenance cycle is in progress the
+ * notifications are held back and the batch is delivered when the cycle ends, so that a burst of
+ * evictions results in a single task rather than in a task per entry. Outside of a cycle the first
+ * notification schedules a delivery task and any subsequent notifications are added to the pending
+ * batch until that task runs. A batch is delivered immediately when it reaches the maximum size so
+ * that the memory held by the pending notifications is bounded.
+ * <p>
+ * An asynchronous cache stores futures as its values, so the delivery of a batch is delayed until
+ * all of its futures complete and the entries whose future failed are omitted.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class RemovalBatcher<K, V> {
+  static final Logger logger = System.getLogger(RemovalBatcher.class.getName());
+
+  /** The maximum number of notifications that are delivered together. */
+  static final int MAXIMUM_BATCH_SIZE = 1024;
+
+  final BatchRemovalListener<K, V> listener;
+  final Executor executor;
+  final boolean isAsync;
+
+  @GuardedBy("this")
+  @Nullable RemovalBatch<K, V> pending;
+  @GuardedBy("this")
+  boolean scheduled;
+  /** The number of maintenance cycles in progress, as the eviction lock is reentrant. */
+  @GuardedBy("this")
+  int cycles;
+
+  RemovalBatcher(BatchRemovalListener<K, V> listener, Executor executor, boolean isAsync) {
+    this.listener = requireNonNull(listener);
+    this.executor = requireNonNull(executor);
+    this.isAsync = isAsync;
+  }
+
+  /** Adds the removal to the pending batch, scheduling its delivery if necessary. */
+  void add(@Nullable K key, @Nullable V value, RemovalCause cause) {
+    RemovalBatch<K, V> full = null;
+    boolean schedule = false;
+    synchronized (this) {
+      if (pending == null) {
+        pending = new RemovalBatch<>(RemovalBatch.INITIAL_CAPACITY);
+      }
+      pending.add(key, value, cause);
+      if (pending.size() >= MAXIMUM_BATCH_SIZE) {
+        full = pending;
+        pending = null;
+      } else if ((cycles == 0) && !scheduled) {
+        scheduled = true;
+        schedule = true;
+      }
+    }
+    if (full != null) {
+      deliver(full);
+    } else if (schedule) {
+      submit(this::flush);
+    }
+  }
+
+  /** Holds back the delivery of notifications until the maintenance cycle ends. */
+  synchronized void startCycle() {
+    cycles++;
+  }
+
+  /** Delivers the notifications that were accumulated during the maintenance cycle. */
+  void endCycle() {
+    RemovalBatch<K, V> batch;
+    synchronized (this) {
+      cycles--;
+      if ((cycles > 0) || scheduled) {
+        // The outer cycle or the scheduled task will deliver the pending batch
+        return;
+      }
+      batch = pending;
+      pending = null;
+    }
+    if (batch != null) {
+      deliver(batch);
+    }
+  }
+
+  /** Delivers the pending batch, if present. */
+  void flush() {
+    RemovalBatch<K, V> batch;
+    synchronized (this) {
+      scheduled = false;
+      if (cycles > 0) {
+        // The end of the maintenance cycle will deliver the pending batch
+        return;
+      }
+      batch = pending;
+      pending = null;
+    }
+    if (batch != null) {
+      notifyListener(batch);
+    }
+  }
+
+  /** Submits a task that notifies the listener of the batch. */
+  void deliver(RemovalBatch<K, V> batch) {
+    submit(() -> notifyListener(batch));
+  }
+
+  /** Notifies the listener, waiting for the batch's values to complete if asynchronous. */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  void notifyListener(RemovalBatch<K, V> batch) {
+    if (!isAsync) {
+      invoke(batch);
+      return;
+    }
+
+    var inFlight = new ArrayList<CompletableFuture<?>>();
+    for (int i = 0; i < batch.size(); i++) {
+      var future = (CompletableFuture<?>) batch.values[i];
+      if ((future != null) && !future.isDone()) {
+        inFlight.add(future);
+      }
+    }
+    if (inFlight.isEmpty()) {
+      invoke(unwrap(batch));
+    } else {
+      CompletableFuture.allOf(inFlight.toArray(CompletableFuture<?>[]::new))
+          .whenCompleteAsync((result, error) -> invoke(unwrap(batch)), executor);
+    }
+  }
+
+  /** Returns a batch of the successfully completed values of an asynchronous cache's batch. */
+  @SuppressWarnings("unchecked")
+  static <K, V> RemovalBatch<K, V> unwrap(RemovalBatch<K, V> batch) {
+    var completed = new RemovalBatch<K, V>(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      V value = (V) Async.getIfReady((CompletableFuture<?>) batch.values[i]);
+      if (value != null) {
+        completed.add((K) batch.keys[i], value, batch.causes[i]);
+      }
+    }
+    return completed;
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void invoke(RemovalBatch<K, V> batch) {
+    if (batch.size() == 0) {
+      return;
+    }
+    try {
+      listener.onRemoval(batch);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by batch removal listener", t);
+    }
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void submit(Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (Throwable t) {
+      logger.log(Level.ERROR, "Exception thrown when submitting batch removal listener", t);
+      task.run();
+    }
+  }
+}
@@ -64,6 +64,21 @@ public interface Scheduler {
     return SystemScheduler.INSTANCE;
   }
 
+  /**
+   * Returns a scheduler that multiplexes the tasks of all of the caches that use it onto a single,
+   * shared timer thread. The tasks are kept in a hashed timing wheel whose resolution matches the
+   * minimum delay between a cache's scheduled maintenance runs, so that the wakeups of every cache
+   * due within the same tick are coalesced and the tasks are submitted in batches to their
+   * executors. Cancelling a task is a constant time operation and a cache that was garbage
+   * collected is not retained by its pending task. This scheduler is preferable to
+   * {@link #systemScheduler()} when an application creates a large number of caches.
+   *
+   * @return a scheduler that uses a shared, cache-aware timer thread
+   */
+  static Scheduler sharedScheduler() {
+    return SharedScheduler.INSTANCE;
+  }
+
   /**
    * Returns a scheduler that delegates to the a {@link ScheduledExecutorService}.
    *
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.ceilingPowerOfTwo;
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A scheduler that multiplexes the delayed tasks of many caches onto a single timer thread by
+ * using a hashed timing wheel. The wheel's resolution matches the {@link Pacer}'s tolerance so that
+ * the wakeups of all caches whose deadlines fall within the same tick are coalesced into a single
+ * wakeup, and the due tasks are submitted in batches per executor rather than individually.
+ * <p>
+ * Scheduling and cancellation are cheap operations that only enqueue the request for the timer
+ * thread, which is the sole owner of the wheel. A cancelled task is unlinked from its bucket in
+ * constant time, and the timer thread parks indefinitely when the wheel is empty. The wheel only
+ * weakly retains a cache, as the maintenance task holds a weak reference to it, so a pending task
+ * whose cache was garbage collected is discarded rather than dispatched.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class SharedScheduler implements Scheduler {
+  static final Logger logger = System.getLogger(SharedScheduler.class.getName());
+
+  /** The shared instance used by {@link Scheduler#sharedScheduler()}. */
+  static final SharedScheduler INSTANCE = new SharedScheduler(Pacer.TOLERANCE, 512);
+
+  /** The maximum number of tasks that are run by a single executor submission. */
+  static final int BATCH_SIZE = 64;
+  /** The maximum delay, which avoids overflowing the deadline calculation. */
+  static final long MAXIMUM_DELAY = Long.MAX_VALUE >>> 2;
+  /** The maximum pause of the timer thread after consecutive failures. */
+  static final long MAXIMUM_BACKOFF = TimeUnit.MINUTES.toNanos(1);
+
+  final Queue<WheelTask> cancellations;
+  final Queue<WheelTask> additions;
+  final @Nullable WheelTask[] wheel;
+  final long tickNanos;
+  final int mask;
+
+  volatile @Nullable Thread thread;
+  volatile boolean idle;
+
+  /** The time, in nanoseconds, of the wheel's first tick. Accessed only by the timer thread. */
+  long origin;
+  /** The number of ticks processed since the origin. Accessed only by the timer thread. */
+  long tick;
+  /** The number of tasks linked into the wheel. Accessed only by the timer thread. */
+  int size;
+
+  SharedScheduler(long tickNanos, int buckets) {
+    requireArgument(tickNanos > 0, "tick duration must be positive");
+    requireArgument(buckets > 0, "number of buckets must be positive");
+
+    int length = ceilingPowerOfTwo(buckets);
+    this.cancellations = new ConcurrentLinkedQueue<>();
+    this.additions = new ConcurrentLinkedQueue<>();
+    this.wheel = new WheelTask[length];
+    this.tickNanos = tickNanos;
+    this.mask = (length - 1);
+  }
+
+  @Override
+  public Future<?> schedule(Executor executor, Runnable command, long delay, TimeUnit unit) {
+    requireNonNull(executor);
+    requireNonNull(command);
+    requireNonNull(unit);
+
+    long delayNanos = Math.min(Math.max(0L, unit.toNanos(delay)), MAXIMUM_DELAY);
+    var task = new WheelTask(this, executor, command, System.nanoTime() + delayNanos);
+    additions.add(task);
+    wakeUp();
+    return task;
+  }
+
+  /** Starts the timer thread if necessary and unparks it if it is waiting for work. */
+  void wakeUp() {
+    Thread timer = thread;
+    if (timer == null) {
+      synchronized (this) {
+        timer = thread;
+        if (timer == null) {
+          // The thread outlives the caller, so it must not retain the caller's class loader or
+          // inheritable thread locals
+          timer = new Thread(/* group */ null, this::run, "Caffeine-SharedScheduler",
+              /* stackSize */ 0L, /* inheritThreadLocals */ false);
+          timer.setContextClassLoader(null);
+          timer.setDaemon(true);
+          thread = timer;
+          timer.start();
+          return;
+        }
+      }
+    }
+    if (idle) {
+      LockSupport.unpark(timer);
+    }
+  }
+
+  /**
+   * The timer thread's loop that advances the wheel by one tick at a time. A failure pauses the
+   * thread for an exponentially increasing duration, so that a repeating error does not spin it.
+   */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void run() {
+    origin = System.nanoTime();
+    int failures = 0;
+    for (;;) {
+      try {
+        processPending();
+        if (size == 0) {
+          awaitWork();
+        } else {
+          sleepUntil(origin + (tick * tickNanos));
+          processPending();
+          expire();
+          tick++;
+        }
+        failures = 0;
+      } catch (Throwable t) {
+        logger.log(Level.ERROR, "Exception thrown by the shared scheduler's timer thread", t);
+        failures++;
+        sleepUntil(System.nanoTime() + backoff(failures));
+      }
+    }
+  }
+
+  /** Returns the duration to pause after the number of consecutive failures. */
+  long backoff(int failures) {
+    int shift = Math.min(failures - 1, Long.numberOfLeadingZeros(tickNanos) - 1);
+    return Math.min(MAXIMUM_BACKOFF, tickNanos << shift);
+  }
+
+  /** Parks the timer thread until a task is scheduled and then restarts the wheel from now. */
+  void awaitWork() {
+    idle = true;
+    if (additions.isEmpty()) {
+      LockSupport.park(this);
+    }
+    idle = false;
+
+    // The wheel is empty, so the ticks are realigned to avoid a burst of catch-up iterations
+    origin = System.nanoTime();
+    tick = 0L;
+  }
+
+  /** Sleeps until the given time has been reached. */
+  static void sleepUntil(long deadline) {
+    for (;;) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0L) {
+        return;
+      }
+      LockSupport.parkNanos(remaining);
+    }
+  }
+
+  /** Applies the pending cancellations and links the pending additions into the wheel. */
+  void processPending() {
+    for (;;) {
+      WheelTask task = cancellations.poll();
+      if (task == null) {
+        break;
+      } else if (task.bucket >= 0) {
+        unlink(task);
+      }
+    }
+    for (;;) {
+      WheelTask task = additions.poll();
+      if (task == null) {
+        break;
+      } else if (task.isDone() || isCollected(task.command)) {
+        continue;
+      }
+
+      // A task is never fired early, and one whose deadline has passed is fired on this tick
+      long ticks = Math.max(tick, ceilingDiv(task.deadline - origin, tickNanos));
+      task.rounds = (ticks - tick) / wheel.length;
+      link(task, (int) (ticks & mask));
+    }
+  }
+
+  /** Fires the due tasks in the current bucket and submits them in batches to their executors. */
+  void expire() {
+    Map<Executor, List<Runnable>> batches = null;
+    for (WheelTask task = wheel[(int) (tick & mask)]; task != null;) {
+      WheelTask next = task.next;
+      if (task.rounds > 0) {
+        task.rounds--;
+      } else {
+        unlink(task);
+        if (task.complete(null) && !isCollected(task.command)) {
+          if (batches == null) {
+            batches = new IdentityHashMap<>();
+          }
+          batches.computeIfAbsent(task.executor, k -> new ArrayList<>()).add(task.command);
+        }
+      }
+      task = next;
+    }
+    if (batches != null) {
+      batches.forEach(SharedScheduler::dispatch);
+    }
+  }
+
+  /** Submits the commands to the executor, grouping them to reduce the number of submissions. */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  static void dispatch(Executor executor, List<Runnable> commands) {
+    for (int i = 0; i < commands.size(); i += BATCH_SIZE) {
+      var batch = commands.subList(i, Math.min(i + BATCH_SIZE, commands.size()));
+      try {
+        executor.execute((batch.size() == 1) ? batch.get(0) : () -> runAll(batch));
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown when submitting scheduled task", t);
+      }
+    }
+  }
+
+  /** Runs each command, isolating the others from any failure. */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  static void runAll(List<Runnable> batch) {
+    for (Runnable command : batch) {
+      try {
+        command.run();
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown by scheduled task", t);
+      }
+    }
+  }
+
+  /** Returns if the command is the maintenance task of a cache that was garbage collected. */
+  static boolean isCollected(Runnable command) {
+    return (command instanceof BoundedLocalCache.PerformCleanupTask)
+        && (((BoundedLocalCache.PerformCleanupTask) command).reference.get() == null);
+  }
+
+  /** Adds the task to the head of the bucket. */
+  void link(WheelTask task, int index) {
+    WheelTask head = wheel[index];
+    if (head != null) {
+      head.prev = task;
+    }
+    task.next = head;
+    task.prev = null;
+    task.bucket = index;
+    wheel[index] = task;
+    size++;
+  }
+
+  /** Removes the task from its bucket. */
+  void unlink(WheelTask task) {
+    if (task.prev == null) {
+      wheel[task.bucket] = task.next;
+    } else {
+      task.prev.next = task.next;
+    }
+    if (task.next != null) {
+      task.next.prev = task.prev;
+    }
+    task.next = null;
+    task.prev = null;
+    task.bucket = -1;
+    size--;
+  }
+
+  static long ceilingDiv(long x, long y) {
+    long quotient = x / y;
+    return ((x % y) > 0) ? (quotient + 1) : quotient;
+  }
+
+  /**
+   * A task in the timing wheel that is completed when submitted to its executor. The links are
+   * accessed only by the timer thread.
+   */
+  static final class WheelTask extends CompletableFuture<Void> {
+    final SharedScheduler scheduler;
+    final Executor executor;
+    final Runnable command;
+    final long deadline;
+
+    @Nullable WheelTask prev;
+    @Nullable WheelTask next;
+    long rounds;
+    int bucket;
+
+    WheelTask(SharedScheduler scheduler, Executor executor, Runnable command, long deadline) {
+      this.scheduler = scheduler;
+      this.executor = executor;
+      this.command = command;
+      this.deadline = deadline;
+      this.bucket = -1;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        scheduler.cancellations.add(this);
+      }
+      return cancelled;
+    }
+  }
+}
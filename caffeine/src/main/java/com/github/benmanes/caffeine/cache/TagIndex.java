@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A secondary index from a tag to the entries that it was attached to. The index is maintained
+ * alongside the node's life cycle by the cache's maintenance tasks, so that an entry is indexed
+ * when it is added or its value is replaced and is unindexed when it is removed for any reason,
+ * such as an explicit removal, eviction, or expiration. This allows for all of the entries that
+ * share a tag to be found in time proportional to the number of entries in the group rather than
+ * by scanning the cache.
+ * <p>
+ * The index is kept compact because it is expected that most tags are attached to only a few
+ * entries and that most entries have only a single tag. An entry without any tags is not present
+ * in the index, a single tag or node is stored directly, and only a larger association is held in
+ * a collection. The index is guarded by the cache's eviction lock.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class TagIndex<K, V> {
+  static final Logger logger = System.getLogger(TagIndex.class.getName());
+
+  final BiFunction<? super K, ? super V, ? extends Collection<?>> tagger;
+
+  /** The node to its tag or an array of its tags. */
+  @GuardedBy("evictionLock")
+  final HashMap<Node<K, V>, Object> tagsByNode;
+  /** The tag to its node or a set of its nodes. */
+  @GuardedBy("evictionLock")
+  final HashMap<Object, Object> nodesByTag;
+
+  TagIndex(BiFunction<? super K, ? super V, ? extends Collection<?>> tagger) {
+    this.tagger = requireNonNull(tagger);
+    this.tagsByNode = new HashMap<>();
+    this.nodesByTag = new HashMap<>();
+  }
+
+  /**
+   * Returns the tags of the entry in their indexed form, which is either absent, a single tag, or
+   * an array of tags. This is evaluated by the writing thread so that the user's tagger is not run
+   * while holding the eviction lock, and if it fails then the entry is left untagged rather than
+   * disrupting the cache's maintenance.
+   */
+  @Nullable Object tagsOf(@Nullable K key, @Nullable V value) {
+    if ((key == null) || (value == null)) {
+      return null;
+    }
+    try {
+      Collection<?> tags = tagger.apply(key, value);
+      if ((tags == null) || tags.isEmpty()) {
+        return null;
+      } else if (tags.size() == 1) {
+        return requireNonNull(tags.iterator().next(), "tagger returned a null tag");
+      }
+      Object[] array = tags.toArray();
+      for (Object tag : array) {
+        requireNonNull(tag, "tagger returned a null tag");
+      }
+      return array;
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Exception thrown by tagger", e);
+      return null;
+    }
+  }
+
+  /** Returns whether the indexed forms have the same tags, in the same order. */
+  static boolean isSameTags(@Nullable Object tags, @Nullable Object other) {
+    return (tags instanceof Object[]) && (other instanceof Object[])
+        ? Arrays.equals((Object[]) tags, (Object[]) other)
+        : Objects.equals(tags, other);
+  }
+
+  /**
+   * Associates the entry with the tags that were computed for the value, replacing any prior
+   * tags. If the tags were not computed, such as for an in-flight future, or the entry's value has
+   * since changed because the writes were reordered in the buffer, then the tags are recomputed
+   * from its current value.
+   */
+  @GuardedBy("evictionLock")
+  void index(Node<K, V> node, @Nullable V value, @Nullable Object tags) {
+    remove(node);
+
+    V current = node.getValue();
+    if (current != value) {
+      tags = tagsOf(node.getKey(), current);
+    }
+    if (tags == null) {
+      return;
+    }
+    tagsByNode.put(node, tags);
+    if (tags instanceof Object[]) {
+      for (Object tag : (Object[]) tags) {
+        link(tag, node);
+      }
+    } else {
+      link(tags, node);
+    }
+  }
+
+  /** Removes the entry from the groups of all of its tags. */
+  @GuardedBy("evictionLock")
+  void remove(Node<K, V> node) {
+    Object tags = tagsByNode.remove(node);
+    if (tags == null) {
+      return;
+    } else if (tags instanceof Object[]) {
+      for (Object tag : (Object[]) tags) {
+        unlink(tag, node);
+      }
+    } else {
+      unlink(tags, node);
+    }
+  }
+
+  /** Returns a snapshot of the entries that are associated with the tag. */
+  @GuardedBy("evictionLock")
+  @SuppressWarnings("unchecked")
+  List<Node<K, V>> nodesFor(Object tag) {
+    Object nodes = nodesByTag.get(tag);
+    if (nodes == null) {
+      return List.of();
+    } else if (nodes instanceof Node<?, ?>) {
+      return List.of((Node<K, V>) nodes);
+    }
+    return new ArrayList<>((Set<Node<K, V>>) nodes);
+  }
+
+  /** Returns the number of distinct tags that are associated with at least one entry. */
+  @GuardedBy("evictionLock")
+  int tagCount() {
+    return nodesByTag.size();
+  }
+
+  /** Adds the node to the tag's group. */
+  @GuardedBy("evictionLock")
+  @SuppressWarnings("unchecked")
+  private void link(Object tag, Node<K, V> node) {
+    Object nodes = nodesByTag.putIfAbsent(tag, node);
+    if ((nodes == null) || (nodes == node)) {
+      return;
+    } else if (nodes instanceof Node<?, ?>) {
+      var group = new HashSet<Node<K, V>>();
+      group.add((Node<K, V>) nodes);
+      group.add(node);
+      nodesByTag.put(tag, group);
+    } else {
+      ((Set<Node<K, V>>) nodes).add(node);
+    }
+  }
+
+  /** Removes the node from the tag's group and discards the group if it became empty. */
+  @GuardedBy("evictionLock")
+  @SuppressWarnings("unchecked")
+  private void unlink(Object tag, Node<K, V> node) {
+    @Nullable Object nodes = nodesByTag.get(tag);
+    if (nodes == node) {
+      nodesByTag.remove(tag);
+    } else if (nodes instanceof Set<?>) {
+      var group = (Set<Node<K, V>>) nodes;
+      group.remove(node);
+      if (group.size() == 1) {
+        nodesByTag.put(tag, group.iterator().next());
+      }
+    }
+  }
+}
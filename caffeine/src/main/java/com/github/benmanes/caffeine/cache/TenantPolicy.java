@@ -0,0 +1,381 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * The bookkeeping for a cache whose entries are partitioned by tenant. Each entry is classified by
+ * its key and the tenant tracks its weighted size and its statistics. This allows a single cache to
+ * share one eviction policy across all of its tenants while bounding the capacity that any one
+ * tenant may occupy.
+ * <p>
+ * Two constraints are enforced. A tenant that exceeds its own maximum has its least recently used
+ * entries evicted, and when the cache must evict an entry then the W-TinyLFU contest between the
+ * admission window's candidate and the main space's victim favors the tenant that is within its
+ * fair share, which is the cache's maximum divided evenly among the tenants that hold entries. The
+ * frequency-based admission decides the contest when both tenants are on the same side of their
+ * fair share.
+ * <p>
+ * The user's classifier and maximum weight functions are never called while holding the eviction
+ * lock. A writer resolves the tenant of the entry that it added, which the policy then records as
+ * the owner of that entry, so that the removals, the admission contest, and the eviction of an
+ * overweight tenant's entries are attributed without classifying the key again. The overweight
+ * tenants' victims are found by scanning the cache's access order queues from the coldest entry,
+ * rather than by maintaining a per-tenant ordering, and the scan visits a bounded number of entries
+ * per maintenance cycle and resumes where it stopped on the next cycle.
+ * <p>
+ * A tenant exists only while it holds weight, so the tenants that are merely looked up, or whose
+ * entries have all been removed, are not retained and their statistics are discarded. The policy
+ * state is guarded by the cache's eviction lock, whereas the statistics may be recorded
+ * concurrently and are attributed only to a tenant that exists.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class TenantPolicy<K, V> {
+  static final Logger logger = System.getLogger(TenantPolicy.class.getName());
+
+  /** The maximum number of entries visited per cycle when evicting from overweight tenants. */
+  static final int EVICTION_SCAN_LIMIT = 1_024;
+
+  /** The order in which the access order queues are scanned for an overweight tenant's entries. */
+  static final int PROBATION = 0;
+  static final int WINDOW = 1;
+  static final int PROTECTED = 2;
+
+  final ConcurrentHashMap<Object, Tenant> tenants;
+  final ToLongFunction<Object> maximumWeight;
+  final Function<? super K, ?> classifier;
+
+  @GuardedBy("evictionLock")
+  final Map<Node<K, V>, Tenant> owners;
+  @GuardedBy("evictionLock")
+  final ArrayDeque<Tenant> overweight;
+  @GuardedBy("evictionLock")
+  @Nullable Node<K, V> scanCursor;
+  @GuardedBy("evictionLock")
+  int activeTenants;
+
+  @SuppressWarnings("unchecked")
+  TenantPolicy(Function<? super K, ?> classifier, ToLongFunction<?> maximumWeight) {
+    this.maximumWeight = (ToLongFunction<Object>) requireNonNull(maximumWeight);
+    this.classifier = requireNonNull(classifier);
+    this.tenants = new ConcurrentHashMap<>();
+    this.owners = new IdentityHashMap<>();
+    this.overweight = new ArrayDeque<>();
+  }
+
+  /**
+   * Returns the identifier of the tenant that the key belongs to, or {@code null} if the key was
+   * collected or the classifier failed, in which case the entry is not attributed to a tenant.
+   */
+  @Nullable Object idOf(@Nullable K key) {
+    if (key == null) {
+      return null;
+    }
+    try {
+      return requireNonNull(classifier.apply(key), "classifier returned a null tenant");
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Exception thrown by the tenant classifier", e);
+      return null;
+    }
+  }
+
+  /** Returns the tenant that the key belongs to, or {@code null} if it does not hold weight. */
+  @Nullable Tenant tenantOf(K key) {
+    Object id = idOf(key);
+    return (id == null) ? null : tenants.get(id);
+  }
+
+  /**
+   * Returns the tenant that an added entry belongs to, which is either the existing tenant or a
+   * new one that is registered when the entry is added to the policy. This is called by the writer
+   * so that the user's functions are evaluated outside of the eviction lock.
+   *
+   * @param key the key of the entry being added, or {@code null} if it was collected
+   * @return the key's tenant, or {@code null} if the entry is not attributed to a tenant
+   */
+  @Nullable Tenant resolve(@Nullable K key) {
+    Object id = idOf(key);
+    if (id == null) {
+      return null;
+    }
+    var tenant = tenants.get(id);
+    if (tenant != null) {
+      return tenant;
+    }
+    try {
+      return new Tenant(id, maximumWeight.applyAsLong(id));
+    } catch (RuntimeException e) {
+      logger.log(Level.WARNING, "Exception thrown by the tenant's maximum weight function", e);
+      return null;
+    }
+  }
+
+  /* --------------- Policy --------------- */
+
+  /** Records the tenant as the owner of the live entry and adds the entry's weight to it. */
+  @GuardedBy("evictionLock")
+  void add(Node<K, V> node, @Nullable Tenant tenant, int weight) {
+    if (tenant == null) {
+      return;
+    }
+    var current = tenants.putIfAbsent(tenant.id, tenant);
+    if (current != null) {
+      tenant = current;
+    }
+    owners.put(node, tenant);
+    adjust(tenant, weight);
+  }
+
+  /** Adjusts the weighted size of the entry's owner, if any, by the change in its weight. */
+  @GuardedBy("evictionLock")
+  void update(Node<K, V> node, int weightDifference) {
+    var tenant = owners.get(node);
+    if (tenant != null) {
+      adjust(tenant, weightDifference);
+    }
+  }
+
+  /**
+   * Releases the weight that the dead entry contributed to its owner, if any. The entry's policy
+   * weight is exactly what was added to the owner, as both are adjusted by the same tasks from the
+   * time that the owner is recorded.
+   */
+  @GuardedBy("evictionLock")
+  void remove(Node<K, V> node) {
+    var tenant = owners.remove(node);
+    if (tenant != null) {
+      adjust(tenant, -node.getPolicyWeight());
+    }
+    if (scanCursor == node) {
+      scanCursor = null;
+    }
+  }
+
+  /** Returns the tenant that owns the entry, or {@code null} if it is not attributed to one. */
+  @GuardedBy("evictionLock")
+  @Nullable Tenant ownerOf(Node<K, V> node) {
+    return owners.get(node);
+  }
+
+  /**
+   * Adjusts the weighted size of the tenant, discarding it when it no longer holds weight, and
+   * flags it for eviction if it exceeds its maximum.
+   */
+  @GuardedBy("evictionLock")
+  void adjust(Tenant tenant, int weightDifference) {
+    if (weightDifference == 0) {
+      return;
+    }
+    long previous = tenant.weightedSize;
+    tenant.weightedSize += weightDifference;
+    if ((previous <= 0) && (tenant.weightedSize > 0)) {
+      activeTenants++;
+    } else if ((previous > 0) && (tenant.weightedSize <= 0)) {
+      activeTenants--;
+    }
+    if (tenant.weightedSize == 0) {
+      tenants.remove(tenant.id, tenant);
+    } else if ((tenant.weightedSize > tenant.maximum) && !tenant.overweight) {
+      tenant.overweight = true;
+      overweight.add(tenant);
+    }
+  }
+
+  /** Returns if the entry's owner holds more than an even share of the cache's maximum. */
+  @GuardedBy("evictionLock")
+  boolean exceedsFairShare(Node<K, V> node, long maximum) {
+    var tenant = owners.get(node);
+    long fairShare = maximum / Math.max(1, activeTenants);
+    return (tenant != null) && (tenant.weightedSize > fairShare);
+  }
+
+  /**
+   * Evicts the least recently used entries of the tenants that exceed their maximum. The access
+   * order queues are scanned from the coldest to the hottest entry, evicting the entries whose
+   * owner is overweight, for at most {@link #EVICTION_SCAN_LIMIT} entries. If the tenants are still
+   * overweight then the position is retained so that the next cycle resumes from it.
+   *
+   * @return if the scan stopped before the overweight tenants were reduced to their maximums
+   */
+  @GuardedBy("evictionLock")
+  boolean evictOverweight(BoundedLocalCache<K, V> cache) {
+    if (!hasOverweight()) {
+      scanCursor = null;
+      return false;
+    }
+
+    int queue;
+    Node<K, V> node = scanCursor;
+    if ((node == null) || node.isDead()) {
+      queue = PROBATION;
+      node = headOf(cache, queue);
+    } else {
+      queue = queueOf(node);
+    }
+    for (int scanned = 0; scanned < EVICTION_SCAN_LIMIT; scanned++) {
+      while (node == null) {
+        if (++queue > PROTECTED) {
+          scanCursor = null;
+          return false;
+        }
+        node = headOf(cache, queue);
+      }
+      Node<K, V> next = node.getNextInAccessOrder();
+      var tenant = owners.get(node);
+      if ((tenant != null) && (tenant.weightedSize > tenant.maximum)) {
+        cache.evictEntry(node, RemovalCause.SIZE, 0L);
+        if (!hasOverweight()) {
+          scanCursor = null;
+          return false;
+        }
+      }
+      node = next;
+    }
+    scanCursor = node;
+    return true;
+  }
+
+  /** Returns if a tenant exceeds its maximum, discarding the flags of those that no longer do. */
+  @GuardedBy("evictionLock")
+  boolean hasOverweight() {
+    for (;;) {
+      var tenant = overweight.peek();
+      if (tenant == null) {
+        return false;
+      } else if (tenant.weightedSize > tenant.maximum) {
+        return true;
+      }
+      overweight.poll();
+      tenant.overweight = false;
+    }
+  }
+
+  /** Returns the order in which the access order queue that holds the entry is scanned. */
+  static int queueOf(Node<?, ?> node) {
+    if (node.inMainProbation()) {
+      return PROBATION;
+    }
+    return node.inWindow() ? WINDOW : PROTECTED;
+  }
+
+  /** Returns the coldest entry of the access order queue, or {@code null} if it is empty. */
+  @GuardedBy("evictionLock")
+  @Nullable Node<K, V> headOf(BoundedLocalCache<K, V> cache, int queue) {
+    switch (queue) {
+      case PROBATION:
+        return cache.accessOrderProbationDeque().peekFirst();
+      case WINDOW:
+        return cache.accessOrderWindowDeque().peekFirst();
+      default:
+        return cache.accessOrderProtectedDeque().peekFirst();
+    }
+  }
+
+  /* --------------- Statistics --------------- */
+
+  void recordHit(K key) {
+    var tenant = tenantOf(key);
+    if (tenant != null) {
+      tenant.hits.increment();
+    }
+  }
+
+  void recordMiss(K key) {
+    var tenant = tenantOf(key);
+    if (tenant != null) {
+      tenant.misses.increment();
+    }
+  }
+
+  void recordEviction(Tenant tenant, int weight) {
+    tenant.evictionWeight.add(weight);
+    tenant.evictions.increment();
+  }
+
+  /**
+   * Decorates the mapping function to record a miss for the key's tenant when invoked. The tenant
+   * is created if the function computes a value, as the entry will then be added for the tenant.
+   */
+  <T extends K, R> Function<T, R> missAware(Function<? super T, ? extends R> mappingFunction) {
+    return key -> {
+      R value = mappingFunction.apply(key);
+      if (value != null) {
+        var tenant = resolve(key);
+        if (tenant != null) {
+          var current = tenants.putIfAbsent(tenant.id, tenant);
+          ((current == null) ? tenant : current).misses.increment();
+        }
+      }
+      return value;
+    };
+  }
+  /** Returns a snapshot of the statistics for each tenant. */
+  Map<Object, CacheStats> stats() {
+    var stats = new LinkedHashMap<Object, CacheStats>(tenants.size());
+    for (var tenant : tenants.values()) {
+      stats.put(tenant.id, tenant.snapshot());
+    }
+    return Collections.unmodifiableMap(stats);
+  }
+
+  /** The weighted size and statistics of a tenant. */
+  static final class Tenant {
+    final LongAdder evictionWeight;
+    final LongAdder evictions;
+    final LongAdder misses;
+    final LongAdder hits;
+    final long maximum;
+    final Object id;
+
+    @GuardedBy("evictionLock")
+    long weightedSize;
+    @GuardedBy("evictionLock")
+    boolean overweight;
+
+    Tenant(Object id, long maximum) {
+      this.evictionWeight = new LongAdder();
+      this.evictions = new LongAdder();
+      this.misses = new LongAdder();
+      this.hits = new LongAdder();
+      this.maximum = maximum;
+      this.id = id;
+    }
+
+    CacheStats snapshot() {
+      return CacheStats.of(hits.sum(), misses.sum(), /* loadSuccessCount */ 0L,
+          /* loadFailureCount */ 0L, /* totalLoadTime */ 0L, evictions.sum(), evictionWeight.sum());
+    }
+  }
+}
@@ -65,3 +65,18 @@ enum DisabledTicker implements Ticker {
     return 0L;
   }
 }
+
+/** A ticker that reads the time elapsed since its creation. */
+final class EpochTicker implements Ticker {
+  final Ticker delegate;
+  final long epoch;
+
+  EpochTicker(Ticker delegate) {
+    this.epoch = delegate.read();
+    this.delegate = delegate;
+  }
+
+  @Override public long read() {
+    return delegate.read() - epoch;
+  }
+}
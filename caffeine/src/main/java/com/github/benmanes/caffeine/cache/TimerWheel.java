@@ -280,6 +280,25 @@ final class TimerWheel<K, V> implements Iterable<Node<K, V>> {
     return (next == sentinel) ? Long.MAX_VALUE : (SPANS[index] - (nanos & spanMask));
   }
 
+  /**
+   * Returns the number of entries in the largest bucket of each wheel, in order from the wheel with
+   * the shortest span to the longest. This traverses every scheduled entry.
+   */
+  int[] maximumBucketDepths() {
+    var depths = new int[wheel.length];
+    for (int i = 0; i < wheel.length; i++) {
+      for (Node<K, V> sentinel : wheel[i]) {
+        int depth = 0;
+        for (var node = sentinel.getNextInVariableOrder();
+            node != sentinel; node = node.getNextInVariableOrder()) {
+          depth++;
+        }
+        depths[i] = Math.max(depths[i], depth);
+      }
+    }
+    return depths;
+  }
+
   /**
    * Returns an iterator roughly ordered by the expiration time from the entries most likely to
    * expire (oldest) to the entries least likely to expire (youngest). The wheels are evaluated in
@@ -67,6 +67,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   final ConcurrentHashMap<K, V> data;
   final StatsCounter statsCounter;
   final boolean isRecordingStats;
+  final int bulkLoadChunkSize;
   final Executor executor;
   final boolean isAsync;
   final Ticker ticker;
@@ -81,6 +82,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     this.statsCounter = builder.getStatsCounterSupplier().get();
     this.removalListener = builder.getRemovalListener(isAsync);
     this.isRecordingStats = builder.isRecordingStats();
+    this.bulkLoadChunkSize = builder.getBulkLoadChunkSize();
     this.executor = builder.getExecutor();
     this.ticker = builder.getTicker();
     this.isAsync = isAsync;
@@ -205,6 +207,11 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     return executor;
   }
 
+  @Override
+  public int bulkLoadChunkSize() {
+    return bulkLoadChunkSize;
+  }
+
   @Override
   @SuppressWarnings("NullAway")
   public ConcurrentMap<Object, CompletableFuture<?>> refreshes() {
@@ -1090,6 +1097,29 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     @Override public Optional<FixedRefresh<K, V>> refreshAfterWrite() {
       return Optional.empty();
     }
+    @Override public Optional<CacheDiagnostics> diagnostics() {
+      return Optional.empty();
+    }
+    @Override public void forEachParallel(
+        long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+      requireNonNull(action);
+      cache.data.forEach(parallelismThreshold, (key, value) -> {
+        V transformed = transformer.apply(value);
+        if (transformed != null) {
+          action.accept(key, transformed);
+        }
+      });
+    }
+    @Override public <U> @Nullable U reduce(long parallelismThreshold,
+        BiFunction<? super K, ? super V, ? extends U> transformer,
+        BiFunction<? super U, ? super U, ? extends U> reducer) {
+      requireNonNull(transformer);
+      requireNonNull(reducer);
+      return cache.data.reduce(parallelismThreshold, (key, value) -> {
+        V transformed = this.transformer.apply(value);
+        return (transformed == null) ? null : transformer.apply(key, transformed);
+      }, reducer);
+    }
   }
 
   /* --------------- Loading Cache --------------- */
@@ -1101,12 +1131,14 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     final Function<K, V> mappingFunction;
     final CacheLoader<? super K, V> cacheLoader;
     @Nullable final Function<Set<? extends K>, Map<K, V>> bulkMappingFunction;
+    final ConcurrentMap<Object, CompletableFuture<V>> bulkLoads;
 
     UnboundedLocalLoadingCache(Caffeine<K, V> builder, CacheLoader<? super K, V> cacheLoader) {
       super(builder);
       this.cacheLoader = cacheLoader;
       this.mappingFunction = newMappingFunction(cacheLoader);
       this.bulkMappingFunction = newBulkMappingFunction(cacheLoader);
+      this.bulkLoads = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -1124,6 +1156,11 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
       return bulkMappingFunction;
     }
 
+    @Override
+    public ConcurrentMap<Object, CompletableFuture<V>> bulkLoads() {
+      return bulkLoads;
+    }
+
     @Override
     Object writeReplace() {
       @SuppressWarnings("unchecked")
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An executor that runs each task on a new virtual thread. The library is compiled against an
+ * older release than the one that introduced virtual threads, so the thread factory is resolved
+ * reflectively and this executor is only usable when {@link #isSupported()} is true.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+enum VirtualThreadExecutor implements Executor {
+  INSTANCE;
+
+  /** The {@code Thread.startVirtualThread(Runnable)} method, if supported by the runtime. */
+  static final @Nullable MethodHandle START_VIRTUAL_THREAD = findStartVirtualThread();
+
+  /** Returns if the runtime supports creating virtual threads. */
+  static boolean isSupported() {
+    return (START_VIRTUAL_THREAD != null);
+  }
+
+  @Override
+  @SuppressWarnings({"NullAway", "PMD.AvoidCatchingThrowable"})
+  public void execute(Runnable command) {
+    requireNonNull(command);
+    if (START_VIRTUAL_THREAD == null) {
+      throw new RejectedExecutionException("Virtual threads are not supported by this runtime");
+    }
+    try {
+      START_VIRTUAL_THREAD.invoke(command);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable t) {
+      throw new RejectedExecutionException(t);
+    }
+  }
+
+  private static @Nullable MethodHandle findStartVirtualThread() {
+    // Virtual threads were a preview feature prior to Java 21
+    if (Runtime.version().feature() < 21) {
+      return null;
+    }
+    try {
+      return MethodHandles.publicLookup().findStatic(Thread.class,
+          "startVirtualThread", MethodType.methodType(Thread.class, Runnable.class));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
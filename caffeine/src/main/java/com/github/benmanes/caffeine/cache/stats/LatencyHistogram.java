@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * A distribution of latencies, in nanoseconds, that is recorded into log-linear buckets. The
+ * values are grouped by their power of two and each power of two is divided into eight linear
+ * sub-buckets, so that a value is reported with a relative error of at most 12.5%. The values of
+ * less than eight nanoseconds are recorded exactly and the values that exceed
+ * {@code 2^41} nanoseconds (about 36 minutes) are recorded in the largest bucket.
+ * <p>
+ * The buckets are fixed, so that a latency is recorded without allocating by incrementing its
+ * bucket's counter, and the distributions of multiple periods can be merged by adding their bucket
+ * counts. This is a <em>value-based</em> class that is an immutable snapshot of the distribution.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class LatencyHistogram {
+  static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int MAXIMUM_EXPONENT = 40;
+  static final int BUCKETS = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  @SuppressWarnings("Immutable")
+  private final long[] counts;
+  private final long totalTime;
+  private final long count;
+
+  private LatencyHistogram(long[] counts, long totalTime) {
+    long count = 0;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+    this.totalTime = totalTime;
+    this.counts = counts;
+    this.count = count;
+  }
+
+  /** Returns an empty distribution. */
+  static LatencyHistogram empty() {
+    return new LatencyHistogram(new long[BUCKETS], 0L);
+  }
+
+  /** Returns the distribution of the given histograms merged together. */
+  static LatencyHistogram merge(AtomicLongArray[] histograms, long totalTime) {
+    var counts = new long[BUCKETS];
+    for (var histogram : histograms) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += histogram.get(i);
+      }
+    }
+    return new LatencyHistogram(counts, totalTime);
+  }
+
+  /** Returns the index of the bucket that the latency is recorded in. */
+  static int bucketOf(long nanos) {
+    if (nanos < SUB_BUCKETS) {
+      return (int) Math.max(nanos, 0);
+    }
+    int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(nanos);
+    if (exponent > MAXIMUM_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (nanos >>> shift) & (SUB_BUCKETS - 1);
+    return ((shift + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the largest latency that is recorded in the bucket. */
+  static long highestValueOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+    long lowest = (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+
+  /**
+   * Returns the number of latencies that were recorded.
+   *
+   * @return the number of latencies that were recorded
+   */
+  public @NonNegative long count() {
+    return count;
+  }
+
+  /**
+   * Returns the sum of the latencies that were recorded, in nanoseconds.
+   *
+   * @return the sum of the latencies that were recorded
+   */
+  public @NonNegative long totalTime() {
+    return totalTime;
+  }
+
+  /**
+   * Returns the average latency, in nanoseconds, or {@code 0.0} if no latencies were recorded.
+   *
+   * @return the average latency
+   */
+  public @NonNegative double averageTime() {
+    return (count == 0) ? 0.0 : (double) totalTime / count;
+  }
+
+  /**
+   * Returns the latency, in nanoseconds, at or below which the given percentage of the recorded
+   * latencies fall. The value is the upper bound of the bucket in which the percentile lies, so it
+   * may overestimate the true latency by up to 12.5%.
+   *
+   * @param percentile the percentage in the range of {@code 0.0} to {@code 100.0}, inclusive
+   * @return the latency at the percentile, or {@code 0} if no latencies were recorded
+   * @throws IllegalArgumentException if the percentile is not within the range
+   */
+  public @NonNegative long percentile(double percentile) {
+    if (!((percentile >= 0.0) && (percentile <= 100.0))) {
+      throw new IllegalArgumentException("percentile must be in the range [0, 100]: " + percentile);
+    } else if (count == 0) {
+      return 0L;
+    }
+
+    long rank = Math.max(1L, (long) Math.ceil((percentile / 100.0) * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return highestValueOf(i);
+      }
+    }
+    return highestValueOf(counts.length - 1);
+  }
+
+  /**
+   * Returns the upper bound of the largest latency that was recorded, in nanoseconds.
+   *
+   * @return the largest latency, or {@code 0} if no latencies were recorded
+   */
+  public @NonNegative long maximum() {
+    return percentile(100.0);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "count=" + count + ", "
+        + "average=" + averageTime() + ", "
+        + "p50=" + percentile(50.0) + ", "
+        + "p99=" + percentile(99.0) + ", "
+        + "max=" + maximum() + '}';
+  }
+}
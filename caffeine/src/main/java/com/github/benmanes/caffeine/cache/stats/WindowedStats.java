@@ -0,0 +1,155 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.index.qual.NonNegative;
+
+import com.google.errorprone.annotations.Immutable;
+
+/**
+ * Statistics about the performance of a cache over a recent period of time, as recorded by a
+ * {@link WindowedStatsCounter}. This includes the {@link CacheStats} of the operations within the
+ * window, their rates per second, and the distributions of the load latencies.
+ * <p>
+ * This is a <em>value-based</em> class that is an immutable snapshot of the window.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class WindowedStats {
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final LatencyHistogram loadSuccessLatency;
+  private final LatencyHistogram loadFailureLatency;
+  private final CacheStats stats;
+  private final long windowNanos;
+
+  WindowedStats(CacheStats stats, LatencyHistogram loadSuccessLatency,
+      LatencyHistogram loadFailureLatency, long windowNanos) {
+    this.loadSuccessLatency = loadSuccessLatency;
+    this.loadFailureLatency = loadFailureLatency;
+    this.windowNanos = windowNanos;
+    this.stats = stats;
+  }
+
+  /**
+   * Returns the length of time that the statistics were recorded over, which may be shorter than
+   * the counter's window if the counter was created more recently.
+   *
+   * @return the length of time that the statistics were recorded over
+   */
+  public Duration window() {
+    return Duration.ofNanos(windowNanos);
+  }
+
+  /**
+   * Returns the statistics of the operations that were recorded within the window.
+   *
+   * @return the statistics of the operations within the window
+   */
+  public CacheStats stats() {
+    return stats;
+  }
+
+  /**
+   * Returns the ratio of the lookups within the window that were hits, or {@code 1.0} if there
+   * were no lookups.
+   *
+   * @return the ratio of the lookups that were hits
+   */
+  public @NonNegative double hitRate() {
+    return stats.hitRate();
+  }
+
+  /**
+   * Returns the number of lookups per second within the window.
+   *
+   * @return the number of lookups per second
+   */
+  public @NonNegative double requestsPerSecond() {
+    return perSecond(stats.requestCount());
+  }
+
+  /**
+   * Returns the number of hits per second within the window.
+   *
+   * @return the number of hits per second
+   */
+  public @NonNegative double hitsPerSecond() {
+    return perSecond(stats.hitCount());
+  }
+
+  /**
+   * Returns the number of misses per second within the window.
+   *
+   * @return the number of misses per second
+   */
+  public @NonNegative double missesPerSecond() {
+    return perSecond(stats.missCount());
+  }
+
+  /**
+   * Returns the number of loads, both successful and failed, per second within the window.
+   *
+   * @return the number of loads per second
+   */
+  public @NonNegative double loadsPerSecond() {
+    return perSecond(stats.loadCount());
+  }
+
+  /**
+   * Returns the number of evictions per second within the window.
+   *
+   * @return the number of evictions per second
+   */
+  public @NonNegative double evictionsPerSecond() {
+    return perSecond(stats.evictionCount());
+  }
+
+  /**
+   * Returns the distribution of the latencies of the successful loads within the window.
+   *
+   * @return the distribution of the successful load latencies
+   */
+  public LatencyHistogram loadSuccessLatency() {
+    return loadSuccessLatency;
+  }
+
+  /**
+   * Returns the distribution of the latencies of the failed loads within the window.
+   *
+   * @return the distribution of the failed load latencies
+   */
+  public LatencyHistogram loadFailureLatency() {
+    return loadFailureLatency;
+  }
+
+  private double perSecond(long count) {
+    return (windowNanos <= 0) ? 0.0 : (count / (windowNanos / NANOS_PER_SECOND));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "window=" + window() + ", "
+        + "stats=" + stats + ", "
+        + "loadSuccessLatency=" + loadSuccessLatency + ", "
+        + "loadFailureLatency=" + loadFailureLatency + '}';
+  }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static java.util.Objects.requireNonNull;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+/**
+ * A thread-safe {@link StatsCounter} implementation that, in addition to the cumulative statistics
+ * reported by {@link Cache#stats()}, records the statistics of a recent window of time. This allows
+ * for observing the recent hit rate or the tail latency of loads without differencing the
+ * cumulative totals externally, such as by {@link #windowedSnapshot()} for the last minute.
+ * <p>
+ * The window is divided into a ring of slices, where each slice counts the operations that occur
+ * within its interval of time and the latencies of the loads in allocation-free
+ * {@linkplain LatencyHistogram log-linear histograms}. A slice is reused by clearing it when the
+ * ring wraps around, so the window advances in increments of a slice and the statistics of a slice
+ * that is cleared while being concurrently updated are approximate. Recording an operation costs a
+ * volatile read of the current slice and an additional {@link LongAdder} increment, whereas a load
+ * latency increments its bucket's counter, which is only contended if the loads are very frequent.
+ * The ticker is not read when recording; instead, the current slice is advanced by a periodic task
+ * on the {@link Scheduler} and when a snapshot is taken, so an operation may be attributed to the
+ * prior slice if it occurs shortly after the slice's interval has ended. That delay is bounded by
+ * the scheduler's resolution, which is about a second for the shared scheduler, so the slices
+ * should be considerably longer than that.
+ * <p>
+ * The cache does not expose its stats counter, so the instance should be retained when it is
+ * supplied to the cache's builder, for example
+ * <pre>{@code
+ *   var statsCounter = new WindowedStatsCounter();
+ *   Cache<Key, Graph> graphs = Caffeine.newBuilder()
+ *       .maximumSize(10_000)
+ *       .recordStats(() -> statsCounter)
+ *       .build();
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class WindowedStatsCounter implements StatsCounter {
+  static final Duration DEFAULT_WINDOW = Duration.ofMinutes(1);
+  static final int DEFAULT_SLICES = 12;
+  /** The number of times per slice that the current slice is advanced by the scheduled task. */
+  static final int TICKS_PER_SLICE = 4;
+  static final VarHandle EPOCH;
+
+  private final ConcurrentStatsCounter cumulative;
+  private final long sliceNanos;
+  private final long startTime;
+  private final Slice[] slices;
+  private final Ticker ticker;
+
+  private volatile Slice current;
+
+  /**
+   * Constructs an instance with all counts initialized to zero that records the last minute of
+   * statistics in slices of five seconds.
+   */
+  public WindowedStatsCounter() {
+    this(DEFAULT_WINDOW, DEFAULT_SLICES, Ticker.systemTicker());
+  }
+
+  /**
+   * Constructs an instance with all counts initialized to zero that records the statistics of the
+   * given window, which advances in increments of the window divided by the number of slices. The
+   * current slice is advanced by the {@linkplain Scheduler#sharedScheduler() shared scheduler}.
+   *
+   * @param window the length of time that the windowed statistics are recorded over
+   * @param slices the number of intervals that the window is divided into
+   * @param ticker the nanosecond-precision time source, such as the {@link Caffeine#ticker}
+   * @throws IllegalArgumentException if the number of slices is not positive or if the window is
+   *         shorter than a nanosecond per slice
+   */
+  public WindowedStatsCounter(Duration window, int slices, Ticker ticker) {
+    this(window, slices, ticker, Scheduler.sharedScheduler());
+  }
+
+  /**
+   * Constructs an instance with all counts initialized to zero that records the statistics of the
+   * given window, which advances in increments of the window divided by the number of slices. The
+   * current slice is advanced by a task on the scheduler that runs several times per slice, or
+   * only when a snapshot is taken if the scheduler is {@link Scheduler#disabledScheduler()}.
+   *
+   * @param window the length of time that the windowed statistics are recorded over
+   * @param slices the number of intervals that the window is divided into
+   * @param ticker the nanosecond-precision time source, such as the {@link Caffeine#ticker}
+   * @param scheduler the scheduler that periodically advances the current slice
+   * @throws IllegalArgumentException if the number of slices is not positive or if the window is
+   *         shorter than a nanosecond per slice
+   */
+  public WindowedStatsCounter(Duration window, int slices, Ticker ticker, Scheduler scheduler) {
+    requireNonNull(window);
+    requireNonNull(ticker);
+    requireNonNull(scheduler);
+    if (slices <= 0) {
+      throw new IllegalArgumentException("slices must be positive: " + slices);
+    } else if (window.compareTo(Duration.ofNanos(slices)) < 0) {
+      throw new IllegalArgumentException("window must be at least a nanosecond per slice");
+    }
+
+    this.ticker = ticker;
+    this.startTime = ticker.read();
+    this.slices = new Slice[slices];
+    this.cumulative = new ConcurrentStatsCounter();
+    this.sliceNanos = saturatedToNanos(window) / slices;
+
+    // Assign each slice to its interval within the current window so that they are not cleared
+    // while being concurrently updated by their first use
+    long currentEpoch = Math.floorDiv(startTime, sliceNanos);
+    for (int i = 0; i < slices; i++) {
+      this.slices[i] = new Slice(currentEpoch - Math.floorMod(currentEpoch - i, (long) slices));
+    }
+    this.current = this.slices[(int) Math.floorMod(currentEpoch, (long) slices)];
+
+    if (scheduler != Scheduler.disabledScheduler()) {
+      long period = Math.max(1L, sliceNanos / TICKS_PER_SLICE);
+      new Clock(this, Scheduler.guardedScheduler(scheduler), period).schedule();
+    }
+  }
+
+  @Override
+  public void recordHits(int count) {
+    cumulative.recordHits(count);
+    current.hitCount.add(count);
+  }
+
+  @Override
+  public void recordMisses(int count) {
+    cumulative.recordMisses(count);
+    current.missCount.add(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(long loadTime) {
+    cumulative.recordLoadSuccess(loadTime);
+    var slice = current;
+    slice.loadSuccessTime.add(loadTime);
+    slice.loadSuccessLatency.getAndIncrement(LatencyHistogram.bucketOf(loadTime));
+  }
+
+  @Override
+  public void recordLoadFailure(long loadTime) {
+    cumulative.recordLoadFailure(loadTime);
+    var slice = current;
+    slice.loadFailureTime.add(loadTime);
+    slice.loadFailureLatency.getAndIncrement(LatencyHistogram.bucketOf(loadTime));
+  }
+
+  @Override
+  public void recordEviction(int weight, RemovalCause cause) {
+    cumulative.recordEviction(weight, cause);
+    var slice = current;
+    slice.evictionCount.increment();
+    slice.evictionWeight.add(weight);
+  }
+
+  /**
+   * Returns a snapshot of the cumulative statistics since this counter was created.
+   *
+   * @return a snapshot of the cumulative statistics
+   */
+  @Override
+  public CacheStats snapshot() {
+    return cumulative.snapshot();
+  }
+
+  /**
+   * Returns a snapshot of the statistics that were recorded within the window, which ends at the
+   * current time.
+   *
+   * @return a snapshot of the statistics within the window
+   */
+  public WindowedStats windowedSnapshot() {
+    long now = ticker.read();
+    long currentEpoch = Math.floorDiv(now, sliceNanos);
+    advance(currentEpoch);
+
+    int active = 0;
+    var windowed = new Slice[slices.length];
+    for (var slice : slices) {
+      long epoch = slice.epoch;
+      if ((epoch <= currentEpoch) && (epoch > (currentEpoch - slices.length))) {
+        windowed[active++] = slice;
+      }
+    }
+
+    long hitCount = 0;
+    long missCount = 0;
+    long evictionCount = 0;
+    long evictionWeight = 0;
+    long loadSuccessTime = 0;
+    long loadFailureTime = 0;
+    var loadSuccessLatencies = new AtomicLongArray[active];
+    var loadFailureLatencies = new AtomicLongArray[active];
+    for (int i = 0; i < active; i++) {
+      var slice = windowed[i];
+      hitCount += slice.hitCount.sum();
+      missCount += slice.missCount.sum();
+      evictionCount += slice.evictionCount.sum();
+      evictionWeight += slice.evictionWeight.sum();
+      loadSuccessTime += slice.loadSuccessTime.sum();
+      loadFailureTime += slice.loadFailureTime.sum();
+      loadSuccessLatencies[i] = slice.loadSuccessLatency;
+      loadFailureLatencies[i] = slice.loadFailureLatency;
+    }
+
+    var loadSuccessLatency = LatencyHistogram.merge(
+        loadSuccessLatencies, negativeToMaxValue(loadSuccessTime));
+    var loadFailureLatency = LatencyHistogram.merge(
+        loadFailureLatencies, negativeToMaxValue(loadFailureTime));
+    var stats = CacheStats.of(
+        negativeToMaxValue(hitCount),
+        negativeToMaxValue(missCount),
+        loadSuccessLatency.count(),
+        loadFailureLatency.count(),
+        negativeToMaxValue(loadSuccessTime + loadFailureTime),
+        negativeToMaxValue(evictionCount),
+        negativeToMaxValue(evictionWeight));
+    long windowNanos = Math.min(now - startTime,
+        ((slices.length - 1) * sliceNanos) + Math.floorMod(now, sliceNanos));
+    return new WindowedStats(stats, loadSuccessLatency, loadFailureLatency, windowNanos);
+  }
+
+  /** Advances the current slice to the current time. */
+  void advance() {
+    advance(Math.floorDiv(ticker.read(), sliceNanos));
+  }
+
+  /**
+   * Advances the current slice to the given epoch, clearing its slice if it was last used by a
+   * prior epoch. The slice is not moved backwards if a concurrent call has already advanced it.
+   */
+  private synchronized void advance(long epoch) {
+    if (current.epoch >= epoch) {
+      return;
+    }
+    var slice = slices[(int) Math.floorMod(epoch, (long) slices.length)];
+    long sliceEpoch = slice.epoch;
+    if ((sliceEpoch < epoch) && EPOCH.compareAndSet(slice, sliceEpoch, epoch)) {
+      slice.reset();
+    }
+    current = slice;
+  }
+
+  /** Returns {@code value}, if non-negative. Otherwise, returns {@link Long#MAX_VALUE}. */
+  private static long negativeToMaxValue(long value) {
+    return (value >= 0) ? value : Long.MAX_VALUE;
+  }
+
+  /** Returns the number of nanoseconds of the given duration without throwing or overflowing. */
+  private static long saturatedToNanos(Duration duration) {
+    try {
+      return duration.toNanos();
+    } catch (ArithmeticException tooBig) {
+      return duration.isNegative() ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+
+  static {
+    try {
+      EPOCH = MethodHandles.lookup().findVarHandle(Slice.class, "epoch", long.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * The periodic task that advances the counter's current slice. The counter is weakly referenced
+   * so that the task stops rescheduling itself once the counter has been garbage collected.
+   */
+  static final class Clock implements Runnable {
+    final WeakReference<WindowedStatsCounter> counterRef;
+    final Scheduler scheduler;
+    final long period;
+
+    Clock(WindowedStatsCounter counter, Scheduler scheduler, long period) {
+      this.counterRef = new WeakReference<>(counter);
+      this.scheduler = scheduler;
+      this.period = period;
+    }
+
+    @Override
+    public void run() {
+      var counter = counterRef.get();
+      if (counter != null) {
+        counter.advance();
+        schedule();
+      }
+    }
+
+    void schedule() {
+      scheduler.schedule(Runnable::run, this, period, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** The statistics recorded within an interval of the window. */
+  static final class Slice {
+    final AtomicLongArray loadSuccessLatency;
+    final AtomicLongArray loadFailureLatency;
+    final LongAdder loadSuccessTime;
+    final LongAdder loadFailureTime;
+    final LongAdder evictionWeight;
+    final LongAdder evictionCount;
+    final LongAdder missCount;
+    final LongAdder hitCount;
+
+    volatile long epoch;
+
+    Slice(long epoch) {
+      loadSuccessLatency = new AtomicLongArray(LatencyHistogram.BUCKETS);
+      loadFailureLatency = new AtomicLongArray(LatencyHistogram.BUCKETS);
+      loadSuccessTime = new LongAdder();
+      loadFailureTime = new LongAdder();
+      evictionWeight = new LongAdder();
+      evictionCount = new LongAdder();
+      missCount = new LongAdder();
+      hitCount = new LongAdder();
+      this.epoch = epoch;
+    }
+
+    /** Clears the statistics so that the slice may be reused for a later interval. */
+    void reset() {
+      loadSuccessTime.reset();
+      loadFailureTime.reset();
+      evictionWeight.reset();
+      evictionCount.reset();
+      missCount.reset();
+      hitCount.reset();
+      for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+        loadSuccessLatency.lazySet(i, 0L);
+        loadFailureLatency.lazySet(i, 0L);
+      }
+    }
+  }
+}
@@ -222,6 +222,21 @@ public final class AsyncCacheTest {
     assertThat(context).stats().hits(3).misses(0).success(0).failures(0);
   }
 
+  @CacheSpec
+  @Test(dataProvider = "caches")
+  public void getFunc_present_inFlight(AsyncCache<Int, Int> cache, CacheContext context) {
+    var future = new CompletableFuture<Int>();
+    cache.put(context.absentKey(), future);
+
+    Function<Int, Int> loader = key -> { throw new RuntimeException(); };
+    assertThat(cache.get(context.absentKey(), loader)).isSameInstanceAs(future);
+    assertThat(context).stats().hits(1).misses(0).success(0).failures(0);
+
+    future.complete(context.absentValue());
+    assertThat(cache.get(context.absentKey(), loader)).succeedsWith(context.absentValue());
+    assertThat(context).stats().hits(2).misses(0).success(1).failures(0);
+  }
+
   /* --------------- getBiFunc --------------- */
 
   @CacheSpec
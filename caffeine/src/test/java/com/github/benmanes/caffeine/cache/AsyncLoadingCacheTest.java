@@ -35,8 +35,10 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
@@ -64,6 +66,7 @@ import com.github.benmanes.caffeine.testing.Int;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 import com.google.common.primitives.Ints;
 
 /**
@@ -408,6 +411,182 @@ public final class AsyncLoadingCacheTest {
   @SuppressWarnings("serial")
   private static final class LoadAllException extends RuntimeException {}
 
+  @Test
+  public void getAll_chunked_failure() {
+    var chunks = new ConcurrentHashMap<Set<Int>, Boolean>();
+    var loader = new CacheLoader<Int, Int>() {
+      @Override public Int load(Int key) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public Map<Int, Int> loadAll(Set<? extends Int> keys) {
+        chunks.put(ImmutableSet.copyOf(keys), true);
+        if (keys.contains(Int.valueOf(1))) {
+          throw new IllegalStateException();
+        }
+        return keys.stream().collect(toImmutableMap(identity(), Int::negate));
+      }
+    };
+    AsyncLoadingCache<Int, Int> cache = Caffeine.newBuilder()
+        .executor(Runnable::run).bulkLoadChunkSize(2).buildAsync(loader);
+
+    assertThat(cache.getAll(Int.listOf(1, 2, 3, 4, 5))).failsWith(CompletionException.class)
+        .hasCauseThat().isInstanceOf(IllegalStateException.class);
+    assertThat(chunks).hasSize(3);
+
+    var failed = Iterables.find(chunks.keySet(), chunk -> chunk.contains(Int.valueOf(1)));
+    var loaded = Sets.difference(Int.setOf(1, 2, 3, 4, 5), failed);
+    assertThat(cache.synchronous().asMap()).containsExactlyKeys(loaded);
+  }
+
+  /* --------------- getAllPublisher --------------- */
+
+  @CheckNoStats
+  @Test(dataProvider = "caches", expectedExceptions = NullPointerException.class)
+  @CacheSpec(removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_iterable_null(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    cache.getAllPublisher(null);
+  }
+
+  @CheckNoStats
+  @Test(dataProvider = "caches")
+  @CacheSpec(loader = { Loader.NEGATIVE, Loader.BULK_NEGATIVE },
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_iterable_empty(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(Long.MAX_VALUE);
+    cache.getAllPublisher(List.of()).subscribe(subscriber);
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.entries).isEmpty();
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(loader = { Loader.NEGATIVE, Loader.BULK_NEGATIVE },
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_absent(AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(Long.MAX_VALUE);
+    cache.getAllPublisher(context.absentKeys()).subscribe(subscriber);
+    await().untilTrue(subscriber.done);
+
+    int count = context.absentKeys().size();
+    int loads = context.loader().isBulk() ? 1 : count;
+    assertThat(subscriber.completed).isTrue();
+    assertThat(subscriber.entries).containsExactlyKeys(context.absentKeys());
+    assertThat(context).stats().hits(0).misses(count).success(loads).failures(0);
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(population = { Population.PARTIAL, Population.FULL },
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_present_beforeSlowLoad(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var future = new CompletableFuture<Int>();
+    cache.put(context.absentKey(), future);
+
+    var subscriber = new EntrySubscriber(Long.MAX_VALUE);
+    var keys = List.of(context.absentKey(), context.firstKey(), context.lastKey());
+    cache.getAllPublisher(keys).subscribe(subscriber);
+    assertThat(subscriber.entries).containsExactly(
+        context.firstKey(), context.original().get(context.firstKey()),
+        context.lastKey(), context.original().get(context.lastKey()));
+    assertThat(subscriber.done.get()).isFalse();
+
+    future.complete(context.absentValue());
+    assertThat(subscriber.entries).containsEntry(context.absentKey(), context.absentValue());
+    assertThat(subscriber.completed).isTrue();
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(population = { Population.PARTIAL, Population.FULL },
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_backpressure(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(1);
+    var keys = List.of(context.firstKey(), context.middleKey(), context.lastKey());
+    cache.getAllPublisher(keys).subscribe(subscriber);
+    assertThat(subscriber.entries).containsExactly(
+        context.firstKey(), context.original().get(context.firstKey()));
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.entries).hasSize(2);
+    assertThat(subscriber.done.get()).isFalse();
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.entries).containsExactlyKeys(keys);
+    assertThat(subscriber.completed).isTrue();
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(population = { Population.PARTIAL, Population.FULL },
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_cancel(AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(1);
+    var keys = List.of(context.firstKey(), context.middleKey(), context.lastKey());
+    cache.getAllPublisher(keys).subscribe(subscriber);
+
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(2);
+    assertThat(subscriber.entries).hasSize(1);
+    assertThat(subscriber.done.get()).isFalse();
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(population = Population.EMPTY,
+      removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAllPublisher_badRequest(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(0);
+    cache.getAllPublisher(List.of(context.absentKey())).subscribe(subscriber);
+    subscriber.subscription.request(0);
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(loader = { Loader.EXCEPTIONAL, Loader.BULK_EXCEPTIONAL })
+  public void getAllPublisher_absent_failure(
+      AsyncLoadingCache<Int, Int> cache, CacheContext context) {
+    var subscriber = new EntrySubscriber(Long.MAX_VALUE);
+    cache.getAllPublisher(context.absentKeys()).subscribe(subscriber);
+    await().untilTrue(subscriber.done);
+
+    assertThat(subscriber.completed).isFalse();
+    assertThat(subscriber.error).isInstanceOf(IllegalStateException.class);
+    assertThat(cache).doesNotContainKey(context.absentKey());
+  }
+
+  /** A subscriber that records the published entries after making an initial request. */
+  private static final class EntrySubscriber implements Flow.Subscriber<Map.Entry<Int, Int>> {
+    final Map<Int, Int> entries = new ConcurrentHashMap<>();
+    final AtomicBoolean done = new AtomicBoolean();
+    final long initialRequest;
+
+    volatile Flow.Subscription subscription;
+    volatile Throwable error;
+    volatile boolean completed;
+
+    EntrySubscriber(long initialRequest) {
+      this.initialRequest = initialRequest;
+    }
+
+    @Override public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initialRequest > 0) {
+        subscription.request(initialRequest);
+      }
+    }
+    @Override public void onNext(Map.Entry<Int, Int> entry) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    @Override public void onError(Throwable throwable) {
+      error = throwable;
+      done.set(true);
+    }
+    @Override public void onComplete() {
+      completed = true;
+      done.set(true);
+    }
+  }
+
   /* --------------- put --------------- */
 
   @Test(dataProvider = "caches")
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for delivering removal notifications in batches.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class BatchRemovalListenerTest {
+
+  @Test
+  public void eviction_singleBatch() {
+    var executor = new CountingExecutor();
+    var batches = new ArrayList<RemovalBatch<? extends Integer, ? extends Integer>>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener(
+            (RemovalBatch<? extends Integer, ? extends Integer> batch) -> batches.add(batch))
+        .executor(executor)
+        .maximumSize(10)
+        .build();
+
+    // The maintenance is deferred so that the evictions occur within one cycle
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    executor.runAll();
+
+    assertThat(batches).hasSize(1);
+    assertThat(batches.get(0).size()).isEqualTo(90);
+    assertThat(batches.get(0).getCause(0)).isEqualTo(RemovalCause.SIZE);
+    assertThat(executor.submitted.get()).isLessThan(10);
+  }
+
+  @Test
+  public void invalidateAll_bounded() {
+    var executor = new CountingExecutor();
+    var batches = new ArrayList<RemovalBatch<? extends Integer, ? extends Integer>>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener(
+            (RemovalBatch<? extends Integer, ? extends Integer> batch) -> batches.add(batch))
+        .executor(executor)
+        .build();
+    int count = 3 * RemovalBatcher.MAXIMUM_BATCH_SIZE + 1;
+    for (int i = 0; i < count; i++) {
+      cache.put(i, i);
+    }
+    executor.runAll();
+    executor.submitted.set(0);
+
+    cache.invalidateAll();
+    executor.runAll();
+
+    assertThat(batches).hasSize(4);
+    assertThat(executor.submitted.get()).isEqualTo(4);
+    assertThat(batches.stream().mapToInt(RemovalBatch::size).sum()).isEqualTo(count);
+    assertThat(batches.stream().allMatch(batch ->
+        batch.size() <= RemovalBatcher.MAXIMUM_BATCH_SIZE)).isTrue();
+  }
+
+  @Test
+  public void explicit() {
+    var removals = new ArrayList<List<Object>>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener((RemovalBatch<? extends Integer, ? extends Integer> batch) ->
+            batch.forEach((key, value, cause) -> removals.add(List.of(key, value, cause))))
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 2);
+    cache.put(1, 3);
+    cache.invalidate(1);
+
+    assertThat(removals).containsExactly(
+        List.of(1, 2, RemovalCause.REPLACED), List.of(1, 3, RemovalCause.EXPLICIT)).inOrder();
+  }
+
+  @Test
+  public void withRemovalListener() {
+    var notifications = new AtomicInteger();
+    var batched = new AtomicInteger();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener(batch -> batched.addAndGet(batch.size()))
+        .removalListener((k, v, cause) -> notifications.incrementAndGet())
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 1);
+    cache.invalidate(1);
+
+    assertThat(batched.get()).isEqualTo(1);
+    assertThat(notifications.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void listenerFails() {
+    var batches = new AtomicInteger();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener(batch -> {
+          batches.incrementAndGet();
+          throw new IllegalStateException();
+        })
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 1);
+    cache.invalidate(1);
+    cache.put(2, 2);
+    cache.invalidate(2);
+
+    assertThat(batches.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void async() {
+    var removals = new ArrayList<Object>();
+    var future = new CompletableFuture<Integer>();
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .batchedRemovalListener((RemovalBatch<? extends Integer, ? extends Integer> batch) ->
+            batch.forEach((key, value, cause) -> removals.add(value)))
+        .executor(Runnable::run)
+        .buildAsync();
+    cache.put(1, future);
+    cache.put(2, CompletableFuture.failedFuture(new IllegalStateException()));
+    cache.synchronous().invalidateAll();
+
+    // The batch is delivered once its values are complete and omits the failed value
+    assertThat(removals).isEmpty();
+    future.complete(3);
+    assertThat(removals).containsExactly(3);
+  }
+
+  @Test(expectedExceptions = IndexOutOfBoundsException.class)
+  public void batch_outOfBounds() {
+    var batch = new RemovalBatch<Integer, Integer>(1);
+    batch.add(1, 1, RemovalCause.EXPLICIT);
+    batch.getKey(1);
+  }
+
+  @Test
+  public void batch_grows() {
+    var batch = new RemovalBatch<Integer, Integer>(1);
+    for (int i = 0; i < 100; i++) {
+      batch.add(i, -i, RemovalCause.EXPIRED);
+    }
+    assertThat(batch.size()).isEqualTo(100);
+    assertThat(batch.getKey(99)).isEqualTo(99);
+    assertThat(batch.getValue(99)).isEqualTo(-99);
+    assertThat(batch.getCause(99)).isEqualTo(RemovalCause.EXPIRED);
+    assertThat(batch.toString()).contains("size=100");
+  }
+
+  /** An executor that defers the tasks until run and counts the submissions. */
+  static final class CountingExecutor implements Executor {
+    final List<Runnable> tasks = new ArrayList<>();
+    final AtomicInteger submitted = new AtomicInteger();
+
+    @Override
+    public void execute(Runnable command) {
+      submitted.incrementAndGet();
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+  }
+}
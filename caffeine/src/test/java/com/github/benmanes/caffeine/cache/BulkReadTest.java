@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.READ_BATCH_MIN;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for the bulk reads that record their hits as a single batch.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class BulkReadTest {
+
+  @Test
+  public void getAllPresent_batch() {
+    var cache = populatedCache();
+    long producerIndex = cache.writeBuffer.producerIndex;
+
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    assertThat(cache.getAllPresent(keys)).hasSize(100);
+    assertThat(cache.writeBuffer.producerIndex).isEqualTo(producerIndex);
+    assertThat(cache.readBuffer.writes()).isEqualTo(0);
+    assertThat(cache.readBatchBuffer.writes()).isEqualTo(1);
+    assertThat(cache.frequencySketch().frequency(90)).isEqualTo(1);
+
+    cache.cleanUp();
+    assertThat(cache.frequencySketch().frequency(90)).isEqualTo(2);
+  }
+
+  @Test
+  public void getAllPresent_belowBatch() {
+    var cache = populatedCache();
+    long producerIndex = cache.writeBuffer.producerIndex;
+
+    var keys = IntStream.range(90, 90 + READ_BATCH_MIN - 1).boxed().collect(Collectors.toList());
+    assertThat(cache.getAllPresent(keys)).hasSize(keys.size());
+    assertThat(cache.writeBuffer.producerIndex).isEqualTo(producerIndex);
+    assertThat(cache.readBuffer.writes()).isGreaterThan(0);
+  }
+
+  @Test
+  public void getAllPresent_misses() {
+    var cache = populatedCache();
+    long producerIndex = cache.writeBuffer.producerIndex;
+
+    var keys = IntStream.range(1_000, 1_100).boxed().collect(Collectors.toList());
+    assertThat(cache.getAllPresent(keys)).isEmpty();
+    assertThat(cache.writeBuffer.producerIndex).isEqualTo(producerIndex);
+  }
+
+  @Test
+  public void getAll_batch() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(task -> {})
+        .maximumSize(150)
+        .build();
+    var localCache = populate(cache);
+    long producerIndex = localCache.writeBuffer.producerIndex;
+
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    var result = cache.getAll(keys, keysToLoad -> { throw new AssertionError(); });
+    assertThat(result).hasSize(100);
+    assertThat(localCache.writeBuffer.producerIndex).isEqualTo(producerIndex);
+    assertThat(localCache.readBatchBuffer.writes()).isEqualTo(1);
+  }
+
+  @Test
+  public void getAllPresent_batch_doesNotBlock() throws Exception {
+    var cache = populatedCache();
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+    cache.evictionLock.lock();
+    try {
+      var future = CompletableFuture.supplyAsync(() -> cache.getAllPresent(keys));
+      assertThat(future.get(10, TimeUnit.SECONDS)).hasSize(100);
+    } finally {
+      cache.evictionLock.unlock();
+    }
+    assertThat(cache.readBatchBuffer.writes()).isEqualTo(1);
+  }
+
+  @Test
+  public void getAllPresent_stats() {
+    var cache = populatedCache();
+    cache.getAllPresent(List.of(1, 2, 1_000));
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    cache.getAllPresent(keys);
+
+    var stats = cache.statsCounter().snapshot();
+    assertThat(stats.hitCount()).isEqualTo(102);
+    assertThat(stats.missCount()).isEqualTo(1);
+  }
+
+  private static BoundedLocalCache<Integer, Integer> populatedCache() {
+    return populate(Caffeine.newBuilder()
+        .executor(task -> {})
+        .maximumSize(150)
+        .recordStats()
+        .build());
+  }
+
+  private static BoundedLocalCache<Integer, Integer> populate(Cache<Integer, Integer> cache) {
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, -i);
+    }
+    localCache.cleanUp();
+    return localCache;
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.WRITE_BATCH_MAX;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for the bulk writes that apply their policy updates as a single batch.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class BulkWriteTest {
+
+  @Test
+  public void putAll_singleTask() {
+    var tasks = new ConcurrentLinkedQueue<Runnable>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(tasks::add)
+        .maximumSize(1_000)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    cache.putAll(entries(0, 100));
+    assertThat(localCache.writeBuffer.producerIndex).isEqualTo(2);
+    assertThat(cache.asMap()).hasSize(100);
+
+    cache.cleanUp();
+    assertThat(localCache.writeBuffer).isEmpty();
+    assertThat(localCache.accessOrderWindowDeque().size()
+        + localCache.accessOrderProbationDeque().size()
+        + localCache.accessOrderProtectedDeque().size()).isEqualTo(100);
+  }
+
+  @Test
+  public void putAll_exceedsBatch() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(task -> {})
+        .maximumSize(10 * WRITE_BATCH_MAX)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    cache.putAll(entries(0, WRITE_BATCH_MAX + 1));
+    assertThat(localCache.writeBuffer.producerIndex).isEqualTo(4);
+  }
+
+  @Test
+  public void putAll_evicts() {
+    var removed = new ArrayList<Integer>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .removalListener((Integer key, Integer value, RemovalCause cause) -> removed.add(key))
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+
+    cache.putAll(entries(0, 100));
+    cache.cleanUp();
+    assertThat(cache.estimatedSize()).isEqualTo(10);
+    assertThat(removed).hasSize(90);
+  }
+
+  @Test
+  public void putAll_updates() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumWeight(1_000)
+        .weigher((Integer key, Integer value) -> value)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    cache.putAll(Map.of(1, 1, 2, 2));
+    cache.putAll(Map.of(1, 10, 2, 20));
+    cache.cleanUp();
+    assertThat(cache.asMap()).containsExactly(1, 10, 2, 20);
+    assertThat(localCache.weightedSize()).isEqualTo(30);
+  }
+
+  @Test
+  public void putAll_async() {
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .buildAsync();
+
+    cache.synchronous().putAll(entries(0, 100));
+    cache.synchronous().cleanUp();
+    assertThat(cache.synchronous().estimatedSize()).isEqualTo(10);
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void putAll_async_nullValue() {
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).buildAsync();
+    var map = new HashMap<Integer, Integer>();
+    map.put(1, null);
+    cache.synchronous().putAll(map);
+  }
+
+  @Test
+  public void invalidateAll_singleTask() {
+    var tasks = new ConcurrentLinkedQueue<Runnable>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(tasks::add)
+        .maximumSize(1_000)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    cache.putAll(entries(0, 100));
+    cache.cleanUp();
+
+    long producerIndex = localCache.writeBuffer.producerIndex;
+    var keys = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+    cache.invalidateAll(keys);
+    assertThat(localCache.writeBuffer.producerIndex).isEqualTo(producerIndex + 2);
+    assertThat(cache.asMap()).hasSize(50);
+
+    cache.cleanUp();
+    assertThat(localCache.weightedSize()).isEqualTo(50);
+  }
+
+  @Test
+  public void invalidateAll_notifies() {
+    var removed = new ArrayList<Integer>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .removalListener((Integer key, Integer value, RemovalCause cause) -> {
+          assertThat(cause).isEqualTo(RemovalCause.EXPLICIT);
+          removed.add(key);
+        })
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    cache.putAll(entries(0, 10));
+
+    cache.invalidateAll(List.of(1, 2, 3, 42));
+    assertThat(removed).containsExactly(1, 2, 3);
+    assertThat(cache.asMap()).hasSize(7);
+  }
+
+  @Test
+  public void getAll_singleTask() {
+    var tasks = new ConcurrentLinkedQueue<Runnable>();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(tasks::add)
+        .maximumSize(1_000)
+        .build(new CacheLoader<Integer, Integer>() {
+          @Override public Integer load(Integer key) {
+            return -key;
+          }
+          @Override public Map<Integer, Integer> loadAll(Set<? extends Integer> keys) {
+            return keys.stream().collect(Collectors.toMap(key -> key, key -> -key));
+          }
+        });
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    var keys = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+    assertThat(cache.getAll(keys)).hasSize(100);
+    assertThat(localCache.writeBuffer.producerIndex).isEqualTo(2);
+    assertThat(cache.asMap()).hasSize(100);
+  }
+
+  private static Map<Integer, Integer> entries(int from, int to) {
+    var map = new HashMap<Integer, Integer>();
+    for (int i = from; i < to; i++) {
+      map.put(i, -i);
+    }
+    return map;
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for the diagnostics of a cache's internal maintenance.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheDiagnosticsTest {
+
+  @Test
+  public void maintenance() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .maximumSize(10)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i);
+    }
+    cache.cleanUp();
+
+    var diagnostics = cache.policy().diagnostics().orElseThrow();
+    assertThat(diagnostics.maintenanceCount()).isAtLeast(100);
+    assertThat(diagnostics.totalMaintenanceTime()).isAtLeast(diagnostics.maximumMaintenanceTime());
+    assertThat(diagnostics.maximumMaintenanceTime()).isGreaterThan(0);
+    assertThat(diagnostics.readBufferPendingCount()).isEqualTo(0);
+    assertThat(diagnostics.writeBufferSize()).isEqualTo(0);
+    assertThat(diagnostics.writeBufferCapacity()).isGreaterThan(0);
+    assertThat(diagnostics.windowMaximum()).isAtMost(10);
+    assertThat(diagnostics.timerWheelBucketDepths()).isEmpty();
+    assertThat(diagnostics.toString()).contains("maintenanceCount=");
+  }
+
+  @Test
+  public void readBufferDrops() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+
+    // The read buffer rejects a read when full and then schedules its drain
+    for (int i = 0; i < 1_000; i++) {
+      cache.getIfPresent(1);
+    }
+    var diagnostics = cache.policy().diagnostics().orElseThrow();
+    assertThat(diagnostics.readBufferDropCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void sketchResets() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .maximumSize(10)
+        .build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i);
+    }
+    cache.cleanUp();
+    assertThat(cache.policy().diagnostics().orElseThrow().sketchResetCount()).isGreaterThan(0);
+  }
+
+  @Test
+  public void timerWheel() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfter(new Expiry<Integer, Integer>() {
+          @Override public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+            return Duration.ofMinutes(key).toNanos();
+          }
+          @Override public long expireAfterUpdate(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+          @Override public long expireAfterRead(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .build();
+    for (int i = 1; i <= 3; i++) {
+      cache.put(1, i);
+      cache.put(10 + i, i);
+    }
+    cache.cleanUp();
+
+    var depths = cache.policy().diagnostics().orElseThrow().timerWheelBucketDepths();
+    assertThat(depths).hasSize(5);
+    assertThat(depths.stream().mapToInt(Integer::intValue).sum()).isAtLeast(1);
+  }
+
+  @Test
+  public void disabled() {
+    assertThat(Caffeine.newBuilder().maximumSize(10).build().policy().diagnostics()).isEmpty();
+    assertThat(Caffeine.newBuilder().build().policy().diagnostics()).isEmpty();
+  }
+
+  @Test
+  public void mbean() throws Exception {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .maximumSize(10)
+        .build();
+    cache.put(1, 1);
+
+    var server = ManagementFactory.getPlatformMBeanServer();
+    var objectName = CacheDiagnosticsMBean.register(cache, "test:cache");
+    try {
+      assertThat(server.isRegistered(objectName)).isTrue();
+      assertThat(CacheDiagnosticsMBean.register(cache, "test:cache")).isEqualTo(objectName);
+      assertThat((Long) server.getAttribute(objectName, "EstimatedSize")).isEqualTo(1L);
+      assertThat((Long) server.getAttribute(objectName, "MaintenanceCount")).isAtLeast(1L);
+      assertThat((int[]) server.getAttribute(objectName, "TimerWheelBucketDepths")).isEmpty();
+    } finally {
+      CacheDiagnosticsMBean.unregister("test:cache");
+    }
+    assertThat(server.isRegistered(objectName)).isFalse();
+  }
+
+  @Test
+  public void mbean_snapshotReused() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .maximumSize(10)
+        .build();
+    var mbean = new CacheDiagnosticsMBean(cache);
+    long maintenanceCount = mbean.getMaintenanceCount();
+
+    cache.put(1, 1);
+    cache.cleanUp();
+    assertThat(mbean.getMaintenanceCount()).isEqualTo(maintenanceCount);
+    assertThat(cache.policy().diagnostics().orElseThrow().maintenanceCount())
+        .isGreaterThan(maintenanceCount);
+  }
+
+  @Test
+  public void mbean_timerWheel() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfter(new Expiry<Integer, Integer>() {
+          @Override public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+            return Duration.ofMinutes(key).toNanos();
+          }
+          @Override public long expireAfterUpdate(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+          @Override public long expireAfterRead(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .executor(Runnable::run)
+        .recordDiagnostics()
+        .build();
+    cache.put(1, 1);
+    cache.cleanUp();
+
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(localCache.diagnostics(/* includeBucketDepths */ false)
+        .orElseThrow().timerWheelBucketDepths()).isEmpty();
+    assertThat(new CacheDiagnosticsMBean(cache).getTimerWheelBucketDepths()).hasLength(5);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void mbean_notRecording() {
+    new CacheDiagnosticsMBean(Caffeine.newBuilder().maximumSize(10).build());
+  }
+}
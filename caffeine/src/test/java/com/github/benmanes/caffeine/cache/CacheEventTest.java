@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.CacheEvent.Overflow;
+import com.github.benmanes.caffeine.cache.CacheEvent.Type;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for the change stream of a cache's mutations.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CacheEventTest {
+
+  @Test
+  public void mutations() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(Long.MAX_VALUE);
+    cache.policy().events().subscribe(subscriber);
+
+    cache.put(1, 1);
+    cache.put(1, 2);
+    cache.asMap().computeIfAbsent(2, k -> 3);
+    cache.asMap().merge(3, 4, Integer::sum);
+    cache.invalidate(1);
+
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 1, 1), new CacheEvent<>(Type.UPDATED, 1, 2),
+        new CacheEvent<>(Type.CREATED, 2, 3), new CacheEvent<>(Type.CREATED, 3, 4),
+        new CacheEvent<>(Type.REMOVED, 1, 2)).inOrder();
+  }
+
+  @Test
+  public void eviction() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(0)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(Long.MAX_VALUE);
+    cache.policy().events().subscribe(subscriber);
+
+    cache.put(1, 1);
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 1, 1), new CacheEvent<>(Type.EVICTED, 1, 1)).inOrder();
+  }
+
+  @Test
+  public void expiration() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(Long.MAX_VALUE);
+    cache.policy().events().subscribe(subscriber);
+
+    cache.put(1, 1);
+    ticker.advance(Duration.ofMinutes(2));
+    cache.cleanUp();
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 1, 1), new CacheEvent<>(Type.EXPIRED, 1, 1)).inOrder();
+  }
+
+  @Test
+  public void backpressure() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(0);
+    cache.policy().events().subscribe(subscriber);
+
+    cache.put(1, 1);
+    cache.put(2, 2);
+    assertThat(subscriber.events).isEmpty();
+
+    subscriber.subscription.request(1);
+    assertThat(subscriber.events).containsExactly(new CacheEvent<>(Type.CREATED, 1, 1));
+    subscriber.subscription.request(5);
+    assertThat(subscriber.events).hasSize(2);
+  }
+
+  @Test
+  public void overflow_dropOldest() {
+    var subscriber = overflow(Overflow.DROP_OLDEST);
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 2, 2), new CacheEvent<>(Type.UPDATED, 1, 3)).inOrder();
+  }
+
+  @Test
+  public void overflow_dropLatest() {
+    var subscriber = overflow(Overflow.DROP_LATEST);
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 1, 1), new CacheEvent<>(Type.CREATED, 2, 2)).inOrder();
+  }
+
+  @Test
+  public void overflow_coalesce() {
+    var subscriber = overflow(Overflow.COALESCE);
+    assertThat(subscriber.events).containsExactly(
+        new CacheEvent<>(Type.CREATED, 2, 2), new CacheEvent<>(Type.UPDATED, 1, 3)).inOrder();
+  }
+
+  private static RecordingSubscriber<Integer, Integer> overflow(Overflow overflow) {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(0);
+    cache.policy().events(2, overflow).subscribe(subscriber);
+
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.put(1, 3);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    return subscriber;
+  }
+
+  @Test
+  public void cancel() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(Long.MAX_VALUE);
+    cache.policy().events().subscribe(subscriber);
+    subscriber.subscription.cancel();
+
+    cache.put(1, 1);
+    assertThat(subscriber.events).isEmpty();
+
+    var hub = ((BoundedLocalCache<Integer, Integer>) cache.asMap()).eventHub;
+    assertThat(hub.subscriptions).isEmpty();
+  }
+
+  @Test
+  public void noSubscribers() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    cache.put(1, 1);
+    assertThat(((BoundedLocalCache<Integer, Integer>) cache.asMap()).eventHub).isNull();
+  }
+
+  @Test
+  public void request_nonPositive() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(0);
+    cache.policy().events().subscribe(subscriber);
+    subscriber.subscription.request(0);
+
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    cache.put(1, 1);
+    assertThat(subscriber.events).isEmpty();
+  }
+
+  @Test
+  public void request_nonPositive_signaledByDrain() {
+    var tasks = new ArrayDeque<Runnable>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(tasks::add)
+        .maximumSize(100)
+        .build();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(0);
+    cache.policy().events().subscribe(subscriber);
+    subscriber.subscription.request(-1);
+    assertThat(subscriber.error).isNull();
+
+    while (!tasks.isEmpty()) {
+      tasks.poll().run();
+    }
+    assertThat(subscriber.error).isInstanceOf(IllegalArgumentException.class);
+    var hub = ((BoundedLocalCache<Integer, Integer>) cache.asMap()).eventHub;
+    assertThat(hub.subscriptions).isEmpty();
+  }
+
+  @Test
+  public void async() {
+    var future = new CompletableFuture<Integer>();
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .buildAsync();
+    var subscriber = new RecordingSubscriber<Integer, Integer>(Long.MAX_VALUE);
+    cache.synchronous().policy().events().subscribe(subscriber);
+
+    cache.put(1, future);
+    assertThat(subscriber.events).isEmpty();
+    future.complete(2);
+    assertThat(subscriber.events).containsExactly(new CacheEvent<>(Type.CREATED, 1, 2));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void events_invalidBufferSize() {
+    Caffeine.newBuilder().maximumSize(100).build().policy().events(0, Overflow.DROP_OLDEST);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void events_unbounded() {
+    Caffeine.newBuilder().build().policy().events();
+  }
+
+  static final class RecordingSubscriber<K, V> implements Flow.Subscriber<CacheEvent<K, V>> {
+    final List<CacheEvent<K, V>> events = new ArrayList<>();
+    final long initialDemand;
+
+    Flow.Subscription subscription;
+    @Nullable Throwable error;
+
+    RecordingSubscriber(long initialDemand) {
+      this.initialDemand = initialDemand;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initialDemand > 0) {
+        subscription.request(initialDemand);
+      }
+    }
+    @Override
+    public void onNext(CacheEvent<K, V> event) {
+      events.add(event);
+    }
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+    @Override
+    public void onComplete() {}
+  }
+}
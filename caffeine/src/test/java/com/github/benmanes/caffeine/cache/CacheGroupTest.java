@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.NullPointerTester;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@SuppressWarnings("CheckReturnValue")
+public final class CacheGroupTest {
+
+  @Test
+  public void nullParameters() {
+    var npeTester = new NullPointerTester();
+    npeTester.testAllPublicStaticMethods(CacheGroup.class);
+    npeTester.testAllPublicInstanceMethods(CacheGroup.newGroup(100));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void newGroup_zero() {
+    CacheGroup.newGroup(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void newGroup_zeroInterval() {
+    CacheGroup.newGroup(100, Scheduler.disabledScheduler(), Duration.ZERO);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void register_unbounded() {
+    CacheGroup.newGroup(100).register(Caffeine.newBuilder().build());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void register_withoutStats() {
+    CacheGroup.newGroup(100).register(Caffeine.newBuilder().maximumSize(1).build());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void register_twice() {
+    var group = CacheGroup.newGroup(100);
+    var cache = newCache();
+    group.register(cache);
+    group.register(cache);
+  }
+
+  @Test
+  public void register() {
+    var group = CacheGroup.newGroup(1_000);
+    var first = newCache();
+    var second = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(1)
+        .recordStats()
+        .buildAsync();
+
+    group.register(first);
+    assertThat(group.size()).isEqualTo(1);
+    assertThat(maximum(first)).isEqualTo(1_000);
+
+    group.register(second);
+    assertThat(group.size()).isEqualTo(2);
+    assertThat(maximum(first)).isEqualTo(500);
+    assertThat(maximum(second.synchronous())).isEqualTo(500);
+  }
+
+  @Test
+  public void unregister() {
+    var group = CacheGroup.newGroup(1_000);
+    var first = newCache();
+    var second = newCache();
+    group.register(first);
+    group.register(second);
+
+    assertThat(group.unregister(second)).isTrue();
+    assertThat(group.unregister(second)).isFalse();
+    assertThat(group.size()).isEqualTo(1);
+    assertThat(maximum(first)).isEqualTo(1_000);
+    assertThat(maximum(second)).isEqualTo(500);
+  }
+
+  @Test
+  public void unregister_unknown() {
+    var group = CacheGroup.newGroup(1_000);
+    assertThat(group.unregister(Caffeine.newBuilder().build())).isFalse();
+    assertThat(group.unregister(Caffeine.newBuilder().buildAsync())).isFalse();
+  }
+
+  @Test
+  public void rebalance_empty() {
+    var group = CacheGroup.newGroup(1_000);
+    group.rebalance();
+    group.cleanUp();
+    assertThat(group.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void rebalance_towardsMisses() {
+    var group = CacheGroup.newGroup(1_000);
+    var starved = newCache();
+    var idle = newCache();
+    group.register(starved);
+    group.register(idle);
+
+    // The starved cache's working set exceeds its share, while the idle cache barely uses its own
+    for (int i = 0; i < 10; i++) {
+      for (int key = 0; key < 750; key++) {
+        starved.get(key, k -> -k);
+      }
+      for (int key = 0; key < 10; key++) {
+        idle.get(key, k -> -k);
+      }
+    }
+    group.rebalance();
+
+    assertThat(maximum(starved)).isGreaterThan(500);
+    assertThat(maximum(idle)).isLessThan(500);
+    assertThat(maximum(starved) + maximum(idle)).isEqualTo(1_000);
+    assertThat(idle.estimatedSize()).isEqualTo(10);
+  }
+
+  @Test
+  public void rebalance_idle() {
+    var group = CacheGroup.newGroup(1_000);
+    var first = newCache();
+    var second = newCache();
+    group.register(first);
+    group.register(second);
+
+    group.rebalance();
+    assertThat(maximum(first)).isEqualTo(500);
+    assertThat(maximum(second)).isEqualTo(500);
+  }
+
+  @Test
+  public void rebalance_minimumShare() {
+    var group = CacheGroup.newGroup(1_000);
+    var starved = newCache();
+    var idle = newCache();
+    group.register(starved);
+    group.register(idle);
+
+    for (int round = 0; round < 20; round++) {
+      for (int key = 0; key < 2_000; key++) {
+        starved.get(key, k -> -k);
+      }
+      group.rebalance();
+    }
+    assertThat(maximum(idle)).isAtLeast(1_000 / (2 * CacheGroup.MINIMUM_SHARE_DIVISOR));
+    assertThat(maximum(starved) + maximum(idle)).isEqualTo(1_000);
+  }
+
+  @Test
+  public void toString_members() {
+    var group = CacheGroup.newGroup(1_000);
+    group.register(newCache());
+    assertThat(group.toString()).contains("maximumWeight=1000");
+  }
+
+  private static Cache<Integer, Integer> newCache() {
+    return Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(1)
+        .recordStats()
+        .build();
+  }
+
+  private static long maximum(Cache<?, ?> cache) {
+    return cache.policy().eviction().orElseThrow().getMaximum();
+  }
+}
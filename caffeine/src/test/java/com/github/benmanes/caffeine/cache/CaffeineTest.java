@@ -22,6 +22,9 @@ import static org.mockito.Mockito.verify;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -263,6 +266,167 @@ public final class CaffeineTest {
     assertThat(builder.initialCapacity).isEqualTo(Integer.MAX_VALUE);
   }
 
+  /* --------------- bulkLoadChunkSize --------------- */
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void bulkLoadChunkSize_zero() {
+    Caffeine.newBuilder().bulkLoadChunkSize(0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void bulkLoadChunkSize_twice() {
+    Caffeine.newBuilder().bulkLoadChunkSize(1).bulkLoadChunkSize(1);
+  }
+
+  @Test
+  public void bulkLoadChunkSize() {
+    var builder = Caffeine.newBuilder().bulkLoadChunkSize(10);
+    assertThat(builder.getBulkLoadChunkSize()).isEqualTo(10);
+    assertThat(builder.toString()).contains("bulkLoadChunkSize=10");
+    assertThat(Caffeine.newBuilder().getBulkLoadChunkSize()).isEqualTo(Integer.MAX_VALUE);
+  }
+
+  /* --------------- tenantQuota --------------- */
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void tenantQuota_negative() {
+    Caffeine.newBuilder().tenantQuota(key -> key, -1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void tenantQuota_twice() {
+    Caffeine.newBuilder().tenantQuota(key -> key, 1).tenantQuota(key -> key, 1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void tenantQuota_unbounded() {
+    Caffeine.newBuilder().tenantQuota(key -> key, 1).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void tenantQuota_weakKeys() {
+    Caffeine.newBuilder().maximumSize(10).weakKeys().tenantQuota(key -> key, 1).build();
+  }
+
+  @Test
+  public void tenantQuota() {
+    var builder = Caffeine.newBuilder().maximumSize(10).tenantQuota(key -> key, 5);
+    assertThat(builder.hasTenantQuota()).isTrue();
+    assertThat(builder.toString()).contains("tenantQuota");
+    assertThat(builder.build()).isNotNull();
+    assertThat(Caffeine.newBuilder().hasTenantQuota()).isFalse();
+  }
+
+  /* --------------- recordDiagnostics --------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordDiagnostics_twice() {
+    Caffeine.newBuilder().recordDiagnostics().recordDiagnostics();
+  }
+
+  @Test
+  public void recordDiagnostics() {
+    var builder = Caffeine.newBuilder().recordDiagnostics();
+    assertThat(builder.isRecordingDiagnostics()).isTrue();
+    assertThat(builder.isBounded()).isTrue();
+    assertThat(builder.toString()).contains("recordDiagnostics");
+    assertThat(builder.build().policy().diagnostics()).isPresent();
+    assertThat(Caffeine.newBuilder().isRecordingDiagnostics()).isFalse();
+  }
+
+  /* --------------- compactNodes --------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void compactNodes_twice() {
+    Caffeine.newBuilder().compactNodes().compactNodes();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void compactNodes_noExpiration() {
+    Caffeine.newBuilder().maximumSize(10).compactNodes().build();
+  }
+
+  @Test
+  public void compactNodes() {
+    var builder = Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(1)).compactNodes();
+    assertThat(builder.hasCompactNodes()).isTrue();
+    assertThat(builder.getExpirationTicker()).isInstanceOf(EpochTicker.class);
+    assertThat(builder.toString()).contains("compactNodes");
+    assertThat(builder.build()).isNotNull();
+    assertThat(Caffeine.newBuilder().hasCompactNodes()).isFalse();
+  }
+
+  /* --------------- recordHotKeys --------------- */
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void recordHotKeys_zero() {
+    Caffeine.newBuilder().recordHotKeys(0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordHotKeys_twice() {
+    Caffeine.newBuilder().recordHotKeys(1).recordHotKeys(1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordHotKeys_unbounded() {
+    Caffeine.newBuilder().recordHotKeys(10).build();
+  }
+
+  @Test
+  public void recordHotKeys() {
+    var builder = Caffeine.newBuilder().maximumSize(10).recordHotKeys(5);
+    assertThat(builder.hasHotKeys()).isTrue();
+    assertThat(builder.getHotKeysCapacity()).isEqualTo(5);
+    assertThat(builder.toString()).contains("hotKeys=5");
+    assertThat(builder.build()).isNotNull();
+    assertThat(Caffeine.newBuilder().hasHotKeys()).isFalse();
+  }
+
+  /* --------------- batchedRemovalListener --------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void batchedRemovalListener_null() {
+    Caffeine.newBuilder().batchedRemovalListener(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void batchedRemovalListener_twice() {
+    Caffeine.newBuilder().batchedRemovalListener(batch -> {}).batchedRemovalListener(batch -> {});
+  }
+
+  @Test
+  public void batchedRemovalListener() {
+    var builder = Caffeine.newBuilder().batchedRemovalListener(batch -> {});
+    assertThat(builder.hasBatchRemovalListener()).isTrue();
+    assertThat(builder.isBounded()).isTrue();
+    assertThat(builder.toString()).contains("batchRemovalListener");
+    assertThat(builder.build()).isNotNull();
+    assertThat(Caffeine.newBuilder().hasBatchRemovalListener()).isFalse();
+  }
+
+  /* --------------- tagger --------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void tagger_null() {
+    Caffeine.newBuilder().tagger(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void tagger_twice() {
+    Caffeine.newBuilder().tagger((k, v) -> Set.of()).tagger((k, v) -> Set.of());
+  }
+
+  @Test
+  public void tagger() {
+    var builder = Caffeine.newBuilder().tagger((k, v) -> Set.of(k));
+    assertThat(builder.hasTagger()).isTrue();
+    assertThat(builder.isBounded()).isTrue();
+    assertThat(builder.toString()).contains("tagger");
+    assertThat(builder.build()).isNotNull();
+    assertThat(Caffeine.newBuilder().hasTagger()).isFalse();
+  }
+
   /* --------------- maximumSize --------------- */
 
   @Test(expectedExceptions = IllegalArgumentException.class)
@@ -710,6 +874,26 @@ public final class CaffeineTest {
     builder.build();
   }
 
+  @Test
+  public void virtualThreadExecutor() {
+    if (!VirtualThreadExecutor.isSupported()) {
+      Assert.assertThrows(UnsupportedOperationException.class,
+          () -> Caffeine.newBuilder().virtualThreadExecutor());
+      Assert.assertThrows(RejectedExecutionException.class,
+          () -> VirtualThreadExecutor.INSTANCE.execute(() -> {}));
+      return;
+    }
+
+    var builder = Caffeine.newBuilder().virtualThreadExecutor();
+    assertThat(builder.getExecutor()).isSameInstanceAs(VirtualThreadExecutor.INSTANCE);
+    Assert.assertThrows(IllegalStateException.class, builder::virtualThreadExecutor);
+
+    var thread = new CompletableFuture<Thread>();
+    builder.getExecutor().execute(() -> thread.complete(Thread.currentThread()));
+    assertThat(thread.join().isDaemon()).isTrue();
+    assertThat(thread.join()).isNotSameInstanceAs(Thread.currentThread());
+  }
+
   /* --------------- ticker --------------- */
 
   @Test(expectedExceptions = NullPointerException.class)
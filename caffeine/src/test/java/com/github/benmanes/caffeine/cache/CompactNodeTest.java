@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for the nodes that store their timestamps in a compact form.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CompactNodeTest {
+  static final long UNIT = 1L << CompactTime.UNIT_SHIFT;
+
+  @Test
+  public void encode_roundsUp() {
+    for (long time : new long[] { 0, 2, UNIT - 2, UNIT, UNIT + 2, 100 * UNIT + 4 }) {
+      long decoded = CompactTime.decode(CompactTime.withTime(0, time));
+      assertThat(decoded).isAtLeast(time);
+      assertThat(decoded).isLessThan(time + UNIT);
+      assertThat(CompactTime.withTime(0, decoded)).isEqualTo(CompactTime.withTime(0, time));
+    }
+  }
+
+  @Test
+  public void encode_negative() {
+    assertThat(CompactTime.decode(CompactTime.withTime(0, -UNIT))).isEqualTo(0);
+  }
+
+  @Test
+  public void encode_saturates() {
+    long time = CompactTime.MAXIMUM_UNITS * UNIT;
+    assertThat(CompactTime.decode(CompactTime.withTime(0, time)))
+        .isEqualTo(CompactTime.SATURATED_TIME);
+    assertThat(CompactTime.decode(CompactTime.withTime(0, Long.MAX_VALUE)))
+        .isEqualTo(CompactTime.SATURATED_TIME | 1L);
+  }
+
+  @Test
+  public void encode_refreshBit() {
+    int word = CompactTime.withTime(0, (5 * UNIT) | 1L);
+    assertThat(CompactTime.decode(word)).isEqualTo((5 * UNIT) | 1L);
+    assertThat(CompactTime.decode(CompactTime.withTime(word, 5 * UNIT))).isEqualTo(5 * UNIT);
+  }
+
+  @Test
+  public void encode_queueType() {
+    int word = CompactTime.withQueueType(CompactTime.withTime(0, 7 * UNIT), Node.PROTECTED);
+    assertThat(CompactTime.queueType(word)).isEqualTo(Node.PROTECTED);
+    assertThat(CompactTime.decode(word)).isEqualTo(7 * UNIT);
+
+    word = CompactTime.withTime(word, 9 * UNIT);
+    assertThat(CompactTime.queueType(word)).isEqualTo(Node.PROTECTED);
+    assertThat(CompactTime.decode(word)).isEqualTo(9 * UNIT);
+
+    word = CompactTime.withQueueType(word, Node.PROBATION);
+    assertThat(CompactTime.queueType(word)).isEqualTo(Node.PROBATION);
+    assertThat(CompactTime.decode(word)).isEqualTo(9 * UNIT);
+  }
+
+  @Test
+  public void epochTicker() {
+    var ticker = new FakeTicker().advance(Duration.ofDays(365));
+    var epochTicker = new EpochTicker(ticker::read);
+    assertThat(epochTicker.read()).isEqualTo(0);
+    ticker.advance(Duration.ofSeconds(5));
+    assertThat(epochTicker.read()).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+  }
+
+  @Test
+  public void expireAfterWrite() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .compactNodes()
+        .build();
+    assertThat(nodeClassName(cache)).contains("C");
+
+    cache.put(1, 1);
+    ticker.advance(Duration.ofSeconds(59));
+    assertThat(cache.getIfPresent(1)).isEqualTo(1);
+
+    ticker.advance(Duration.ofSeconds(3));
+    assertThat(cache.getIfPresent(1)).isNull();
+  }
+
+  @Test
+  public void expireAfterAccess_maximumSize() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .maximumSize(10)
+        .compactNodes()
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i % 5);
+      ticker.advance(Duration.ofMillis(500));
+    }
+    cache.cleanUp();
+    assertThat(cache.estimatedSize()).isEqualTo(10);
+
+    ticker.advance(Duration.ofMinutes(2));
+    cache.cleanUp();
+    assertThat(cache.estimatedSize()).isEqualTo(0);
+  }
+
+  @Test
+  public void queueType_retainedByAccess() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .maximumSize(10)
+        .compactNodes()
+        .build();
+    cache.put(1, 1);
+
+    var cacheImpl = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    var node = cacheImpl.data.get(cacheImpl.nodeFactory.newLookupKey(1));
+    node.setQueueType(Node.PROTECTED);
+    node.setAccessTime(5 * UNIT);
+    assertThat(node.getQueueType()).isEqualTo(Node.PROTECTED);
+    assertThat(node.getAccessTime()).isEqualTo(5 * UNIT);
+
+    node.setQueueType(Node.PROBATION);
+    assertThat(node.getAccessTime()).isEqualTo(5 * UNIT);
+  }
+
+  @Test
+  public void refreshAfterWrite() {
+    var ticker = new FakeTicker();
+    var loads = new AtomicInteger();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .compactNodes()
+        .build(key -> loads.incrementAndGet());
+    assertThat(cache.get(1)).isEqualTo(1);
+
+    ticker.advance(Duration.ofSeconds(30));
+    assertThat(cache.get(1)).isEqualTo(1);
+
+    ticker.advance(Duration.ofMinutes(1));
+    cache.get(1);
+    assertThat(cache.get(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void expireAfter() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .expireAfter(new Expiry<Integer, Integer>() {
+          @Override public long expireAfterCreate(Integer key, Integer value, long currentTime) {
+            return TimeUnit.SECONDS.toNanos(value);
+          }
+          @Override public long expireAfterUpdate(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+          @Override public long expireAfterRead(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .maximumSize(100)
+        .compactNodes()
+        .build();
+    cache.put(10, 10);
+    cache.put(100, 100);
+
+    ticker.advance(Duration.ofSeconds(12));
+    cache.cleanUp();
+    assertThat(cache.asMap()).containsExactly(100, 100);
+
+    ticker.advance(Duration.ofSeconds(90));
+    cache.cleanUp();
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  private static String nodeClassName(Cache<?, ?> cache) {
+    return ((BoundedLocalCache<?, ?>) cache.asMap()).nodeFactory.getClass().getSimpleName();
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Policy.HotKey;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for tracking the most frequently accessed keys.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class HotKeysTest {
+
+  @Test
+  public void hotKeys() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .recordHotKeys(4)
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < 100; i++) {
+      cache.getIfPresent(1);
+      if ((i % 2) == 0) {
+        cache.getIfPresent(2);
+      }
+      if ((i % 4) == 0) {
+        cache.getIfPresent(10 + i);
+      }
+      ticker.advance(Duration.ofMillis(10));
+      cache.cleanUp();
+    }
+
+    List<HotKey<Integer>> hotKeys = hotKeys(cache, 2);
+    assertThat(hotKeys).hasSize(2);
+    assertThat(hotKeys.get(0).getKey()).isEqualTo(1);
+    assertThat(hotKeys.get(0).count()).isEqualTo(100);
+    assertThat(hotKeys.get(0).error()).isEqualTo(0);
+    assertThat(hotKeys.get(0).rate()).isWithin(0.01).of(100.0);
+    assertThat(hotKeys.get(1).getKey()).isEqualTo(2);
+    assertThat(hotKeys.get(1).count()).isEqualTo(50);
+    assertThat(hotKeys.get(1).rate()).isWithin(0.01).of(50.0);
+  }
+
+  @Test
+  public void hotKeys_limit() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordHotKeys(10)
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 20; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i);
+    }
+    assertThat(hotKeys(cache, 0)).isEmpty();
+    assertThat(hotKeys(cache, 5)).hasSize(5);
+    assertThat(hotKeys(cache, 100)).hasSize(10);
+  }
+
+  @Test
+  public void hotKeys_mostlyEmpty() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordHotKeys(4)
+        .maximumSize(10_000)
+        .build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    for (int i = 0; i < 10; i++) {
+      cache.getIfPresent(1);
+    }
+    cache.getIfPresent(2);
+    cache.cleanUp();
+
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(localCache.skipReadBuffer()).isFalse();
+
+    List<HotKey<Integer>> hotKeys = hotKeys(cache, 2);
+    assertThat(hotKeys).hasSize(2);
+    assertThat(hotKeys.get(0).getKey()).isEqualTo(1);
+    assertThat(hotKeys.get(0).count()).isEqualTo(10);
+    assertThat(hotKeys.get(1).getKey()).isEqualTo(2);
+  }
+
+  @Test
+  public void hotKeys_aging() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordHotKeys(2)
+        .maximumSize(1)
+        .build();
+    cache.put(1, 1);
+    for (int i = 0; i < 100; i++) {
+      cache.getIfPresent(1);
+    }
+    var tracker = ((BoundedLocalCache<Integer, Integer>) cache.asMap()).hotKeys;
+    assertThat(tracker.sampleSize).isEqualTo(20);
+    assertThat(hotKeys(cache, 1).get(0).count()).isLessThan(20);
+  }
+
+  @Test
+  public void hotKeys_weakKeys() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .recordHotKeys(10)
+        .maximumSize(100)
+        .weakKeys()
+        .build();
+    Integer key = 1_000;
+    cache.put(key, key);
+    cache.getIfPresent(key);
+    assertThat(hotKeys(cache, 1).get(0).getKey()).isSameInstanceAs(key);
+  }
+
+  @Test
+  public void hotKeys_disabled() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    cache.put(1, 1);
+    cache.getIfPresent(1);
+    assertThat(hotKeys(cache, 10)).isEmpty();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void hotKeys_negative() {
+    hotKeys(Caffeine.newBuilder().maximumSize(100).build(), -1);
+  }
+
+  private static <K> List<HotKey<K>> hotKeys(Cache<K, ?> cache, int limit) {
+    return cache.policy().eviction().orElseThrow().hotKeys(limit);
+  }
+}
@@ -17,14 +17,17 @@ package com.github.benmanes.caffeine.cache;
 
 import static com.github.benmanes.caffeine.cache.LocalCacheSubject.mapLocal;
 import static com.github.benmanes.caffeine.cache.testing.CacheSubject.assertThat;
+import static com.github.benmanes.caffeine.testing.Awaits.await;
 import static com.github.benmanes.caffeine.testing.MapSubject.assertThat;
 import static com.google.common.truth.Truth.assertAbout;
 import static com.google.common.truth.Truth.assertThat;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -131,6 +134,117 @@ public final class InternerTest extends TestCase {
     assertThat(interner.cache.drainStatus).isEqualTo(BoundedLocalCache.IDLE);
   }
 
+  @Test
+  public void intern_concurrentWeak_replace() {
+    var canonical = new Int(1);
+    var other = new Int(1);
+
+    var interner = (ConcurrentWeakInterner<Int>) Interner.<Int>newConcurrentWeakInterner();
+    assertThat(interner.intern(canonical)).isSameInstanceAs(canonical);
+
+    var signal = new WeakReference<>(canonical);
+    canonical = null;
+
+    GcFinalization.awaitClear(signal);
+    assertThat(interner.intern(other)).isSameInstanceAs(other);
+    assertThat(interner.intern(new Int(1))).isSameInstanceAs(other);
+  }
+
+  @Test
+  public void intern_concurrentWeak_cleanup() {
+    var interner = (ConcurrentWeakInterner<Int>) Interner.<Int>newConcurrentWeakInterner();
+    int count = 2 * ConcurrentWeakInterner.CLEANUP_BATCH_SIZE;
+    var signals = new ArrayList<WeakReference<Int>>();
+    for (int i = 0; i < count; i++) {
+      var sample = new Int(i);
+      signals.add(new WeakReference<>(sample));
+      interner.intern(sample);
+    }
+    for (var signal : signals) {
+      GcFinalization.awaitClear(signal);
+    }
+
+    var retained = new ArrayList<Int>();
+    for (int i = 0; i < 2; i++) {
+      var sample = new Int(count + i);
+      retained.add(interner.intern(sample));
+    }
+    await().untilAsserted(() -> {
+      interner.cleanUp();
+      assertThat(interner.map).hasSize(retained.size());
+    });
+  }
+
+  @Test
+  public void intern_bounded_admission() {
+    var interner = (BoundedInterner<Int>) Interner.<Int>newBoundedInterner(100);
+    var first = new Int(1);
+    var second = new Int(1);
+    var third = new Int(1);
+
+    // A value that is seen once is not canonicalized
+    assertThat(interner.intern(first)).isSameInstanceAs(first);
+    assertThat(interner.map).isEmpty();
+
+    // A recurring value is canonicalized
+    assertThat(interner.intern(second)).isSameInstanceAs(second);
+    assertThat(interner.intern(third)).isSameInstanceAs(second);
+    assertThat(interner.map).containsExactly(second, second);
+  }
+
+  @Test
+  public void intern_bounded_contended() throws InterruptedException {
+    var interner = (BoundedInterner<Int>) Interner.<Int>newBoundedInterner(100);
+    var first = new Int(1);
+    var second = new Int(1);
+
+    var locked = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var holder = new Thread(() -> {
+      interner.sketchLock.lock();
+      try {
+        locked.countDown();
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        interner.sketchLock.unlock();
+      }
+    });
+    holder.start();
+    locked.await();
+    try {
+      // The occurrence is buffered while the sketch is contended
+      assertThat(interner.intern(first)).isSameInstanceAs(first);
+      assertThat(interner.occurrences.writes()).isEqualTo(1);
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+
+    // The buffered occurrence is replayed, so the recurring value is canonicalized
+    assertThat(interner.intern(second)).isSameInstanceAs(second);
+    assertThat(interner.occurrences.reads()).isEqualTo(1);
+    assertThat(interner.map).containsExactly(second, second);
+  }
+
+  @Test
+  public void intern_bounded_maximumSize() {
+    var interner = (BoundedInterner<Int>) Interner.<Int>newBoundedInterner(10);
+    for (int i = 0; i < 1_000; i++) {
+      interner.intern(new Int(i));
+      interner.intern(new Int(i));
+    }
+    var cache = (BoundedLocalCache<?, ?>) interner.map;
+    cache.cleanUp();
+    assertThat(interner.map.size()).isAtMost(10);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void intern_bounded_negative() {
+    Interner.newBoundedInterner(-1);
+  }
+
   @Test
   public void nullPointerExceptions() {
     new NullPointerTester().testAllPublicStaticMethods(Interner.class);
@@ -155,6 +269,8 @@ public final class InternerTest extends TestCase {
   private void checkSize(Interner<Int> interner, int size) {
     if (interner instanceof StrongInterner) {
       assertThat(((StrongInterner<Int>) interner).map).hasSize(size);
+    } else if (interner instanceof ConcurrentWeakInterner) {
+      assertThat(((ConcurrentWeakInterner<Int>) interner).map).hasSize(size);
     } else if (interner instanceof WeakInterner) {
       var cache = new LocalManualCache<Int, Boolean>() {
         @Override public LocalCache<Int, Boolean> cache() {
@@ -178,6 +294,7 @@ public final class InternerTest extends TestCase {
 
   @DataProvider(name = "interners")
   Object[] providesInterners() {
-    return new Object[] { Interner.newStrongInterner(), Interner.newWeakInterner() };
+    return new Object[] { Interner.newStrongInterner(),
+        Interner.newWeakInterner(), Interner.newConcurrentWeakInterner() };
   }
 }
@@ -41,6 +41,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
@@ -66,6 +67,7 @@ import com.github.benmanes.caffeine.cache.testing.CacheValidationListener;
 import com.github.benmanes.caffeine.cache.testing.CheckMaxLogLevel;
 import com.github.benmanes.caffeine.cache.testing.CheckNoEvictions;
 import com.github.benmanes.caffeine.cache.testing.CheckNoStats;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
 import com.github.benmanes.caffeine.testing.Int;
 import com.github.valfirst.slf4jtest.TestLoggerFactory;
 import com.google.common.collect.ImmutableSet;
@@ -433,6 +435,98 @@ public final class LoadingCacheTest {
     assertThat(result.values()).doesNotContain(null);
   }
 
+  @CheckNoEvictions
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      compute = Compute.SYNC, removalListener = { Listener.DISABLED, Listener.REJECTING })
+  public void getAll_coalesced(CacheContext context) {
+    Int[] keys = { Int.valueOf(1), Int.valueOf(2), Int.valueOf(3) };
+    var loads = new ConcurrentHashMap<Int, Integer>();
+    var started = new AtomicBoolean();
+    var release = new AtomicBoolean();
+    var loader = new CacheLoader<Int, Int>() {
+      @Override public Int load(Int key) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public Map<Int, Int> loadAll(Set<? extends Int> keysToLoad) {
+        keysToLoad.forEach(key -> loads.merge(key, 1, Integer::sum));
+        if (keysToLoad.contains(keys[0])) {
+          started.set(true);
+          await().untilTrue(release);
+        }
+        return keysToLoad.stream().collect(toImmutableMap(identity(), Int::negate));
+      }
+    };
+    LoadingCache<Int, Int> cache = context.build(loader);
+
+    var first = new CompletableFuture<Map<Int, Int>>();
+    ConcurrentTestHarness.execute(() -> first.complete(cache.getAll(List.of(keys[0], keys[1]))));
+    await().untilTrue(started);
+
+    var second = new CompletableFuture<Map<Int, Int>>();
+    ConcurrentTestHarness.execute(() -> second.complete(cache.getAll(List.of(keys[1], keys[2]))));
+    await().until(() -> cache.asMap().containsKey(keys[2]));
+    assertThat(second).isNotDone();
+
+    release.set(true);
+    assertThat(first.join()).containsExactly(keys[0], keys[0].negate(), keys[1], keys[1].negate());
+    assertThat(second.join()).containsExactly(keys[1], keys[1].negate(), keys[2], keys[2].negate());
+    assertThat(loads).containsExactly(keys[0], 1, keys[1], 1, keys[2], 1);
+  }
+
+  @Test
+  public void getAll_chunked() {
+    var chunks = new ConcurrentHashMap<Set<Int>, Boolean>();
+    var loader = new CacheLoader<Int, Int>() {
+      @Override public Int load(Int key) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public Map<Int, Int> loadAll(Set<? extends Int> keys) {
+        chunks.put(ImmutableSet.copyOf(keys), true);
+        return keys.stream().collect(toImmutableMap(identity(), Int::negate));
+      }
+    };
+    LoadingCache<Int, Int> cache = Caffeine.newBuilder()
+        .executor(ConcurrentTestHarness.executor)
+        .bulkLoadChunkSize(3).recordStats().build(loader);
+
+    var keys = Int.listOf(1, 2, 3, 4, 5, 6, 7);
+    var result = cache.getAll(keys);
+    assertThat(result).containsExactlyKeys(keys).inOrder();
+    assertThat(chunks.keySet()).containsExactly(
+        Int.setOf(1, 2, 3), Int.setOf(4, 5, 6), Int.setOf(7));
+    assertThat(cache.stats().loadSuccessCount()).isEqualTo(3);
+  }
+
+  @Test
+  public void getAll_chunked_failure() {
+    var loader = new CacheLoader<Int, Int>() {
+      @Override public Int load(Int key) {
+        throw new UnsupportedOperationException();
+      }
+      @Override public Map<Int, Int> loadAll(Set<? extends Int> keys) {
+        if (keys.contains(Int.valueOf(1))) {
+          throw new IllegalStateException();
+        }
+        return keys.stream().collect(toImmutableMap(identity(), Int::negate));
+      }
+    };
+    LoadingCache<Int, Int> cache = Caffeine.newBuilder()
+        .executor(ConcurrentTestHarness.executor)
+        .bulkLoadChunkSize(2).recordStats().build(loader);
+
+    try {
+      cache.getAll(Int.listOf(1, 2, 3, 4, 5));
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      assertThat(cache.asMap()).containsExactly(
+          Int.valueOf(3), Int.valueOf(-3), Int.valueOf(4), Int.valueOf(-4),
+          Int.valueOf(5), Int.valueOf(-5));
+      assertThat(cache.stats().loadSuccessCount()).isEqualTo(2);
+      assertThat(cache.stats().loadFailureCount()).isEqualTo(1);
+    }
+  }
+
   /* --------------- refresh --------------- */
 
   @CheckNoEvictions
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.MemoryPressure.MINIMUM_FRACTION;
+import static com.github.benmanes.caffeine.cache.MemoryPressure.RECOVERY_INTERVAL_NANOS;
+import static com.github.benmanes.caffeine.cache.MemoryPressure.SHRINK_INTERVAL_NANOS;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for lowering the maximum of a memory sensitive cache while the heap is under pressure.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class MemoryPressureTest {
+
+  @Test
+  public void shrink() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    assertThat(pressure.isReduced()).isFalse();
+    assertThat(pressure.shrink(0L)).isEqualTo(500);
+    assertThat(pressure.shrink(SHRINK_INTERVAL_NANOS)).isEqualTo(250);
+    assertThat(pressure.isReduced()).isTrue();
+  }
+
+  @Test
+  public void shrink_rateLimited() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    assertThat(pressure.shrink(0L)).isEqualTo(500);
+    assertThat(pressure.shrink(0L)).isEqualTo(500);
+    assertThat(pressure.shrink(SHRINK_INTERVAL_NANOS - 1)).isEqualTo(500);
+    assertThat(pressure.shrink(SHRINK_INTERVAL_NANOS)).isEqualTo(250);
+  }
+
+  @Test
+  public void shrink_afterRecovery() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    pressure.shrink(0L);
+    for (int i = 1; i <= 4; i++) {
+      pressure.recover(i * RECOVERY_INTERVAL_NANOS);
+    }
+    assertThat(pressure.isReduced()).isFalse();
+    assertThat(pressure.shrink(4 * RECOVERY_INTERVAL_NANOS)).isEqualTo(500);
+  }
+
+  @Test
+  public void shrink_floor() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    for (int i = 0; i < 100; i++) {
+      pressure.shrink(i * SHRINK_INTERVAL_NANOS);
+    }
+    assertThat(pressure.maximum()).isEqualTo((long) (MINIMUM_FRACTION * 1_000));
+  }
+
+  @Test
+  public void recover() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    pressure.shrink(0L);
+    assertThat(pressure.recover(RECOVERY_INTERVAL_NANOS - 1)).isEqualTo(500);
+    assertThat(pressure.recover(RECOVERY_INTERVAL_NANOS)).isEqualTo(625);
+    assertThat(pressure.recover(RECOVERY_INTERVAL_NANOS + 1)).isEqualTo(625);
+
+    long now = RECOVERY_INTERVAL_NANOS;
+    for (int i = 0; i < 10; i++) {
+      now += RECOVERY_INTERVAL_NANOS;
+      pressure.recover(now);
+    }
+    assertThat(pressure.maximum()).isEqualTo(1_000);
+    assertThat(pressure.isReduced()).isFalse();
+  }
+
+  @Test
+  public void retarget() {
+    var pressure = new MemoryPressure(1_000, Ticker.systemTicker());
+    pressure.shrink(0L);
+    assertThat(pressure.retarget(2_000)).isEqualTo(1_000);
+    assertThat(pressure.target).isEqualTo(2_000);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void retarget_negative() {
+    new MemoryPressure(1_000, Ticker.systemTicker()).retarget(-1);
+  }
+
+  @Test
+  public void cache_shrink() {
+    var cache = newCache();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+
+    localCache.onMemoryPressure(true);
+    assertThat(cache.estimatedSize()).isEqualTo(50);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(50);
+
+    localCache.onMemoryPressure(false);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(50);
+  }
+
+  @Test
+  public void cache_shrink_repeated() {
+    var cache = newCache();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    localCache.onMemoryPressure(true);
+    localCache.onMemoryPressure(true);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(50);
+  }
+
+  @Test
+  public void cache_recover() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .memorySensitive()
+        .maximumSize(100)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    localCache.onMemoryPressure(true);
+
+    ticker.advance(RECOVERY_INTERVAL_NANOS - 1, TimeUnit.NANOSECONDS);
+    localCache.onMemoryPressure(false);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(50);
+
+    ticker.advance(1, TimeUnit.NANOSECONDS);
+    localCache.onMemoryPressure(false);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(62);
+  }
+
+  @Test
+  public void cache_setMaximum() {
+    var cache = newCache();
+    var eviction = cache.policy().eviction().orElseThrow();
+    ((BoundedLocalCache<Integer, Integer>) cache.asMap()).onMemoryPressure(true);
+
+    eviction.setMaximum(200);
+    assertThat(eviction.getMaximum()).isEqualTo(100);
+  }
+
+  @Test
+  public void cache_groupRebalance() {
+    var group = CacheGroup.newGroup(200);
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .memorySensitive()
+        .maximumSize(100)
+        .recordStats()
+        .build();
+    ((BoundedLocalCache<Integer, Integer>) cache.asMap()).onMemoryPressure(true);
+
+    group.register(cache);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(100);
+  }
+
+  @Test
+  public void monitor_deduplicatesCollections() {
+    var monitor = new MemoryPressure.Monitor(List.of(), List.of());
+    assertThat(monitor.isNewCollection(0L)).isFalse();
+    assertThat(monitor.isNewCollection(1L)).isTrue();
+    assertThat(monitor.isNewCollection(1L)).isFalse();
+    assertThat(monitor.isNewCollection(2L)).isTrue();
+  }
+
+  @Test
+  public void monitor_doesNotSetThresholds() {
+    assertThat(MemoryPressure.Monitor.INSTANCE).isNotNull();
+    for (var pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.isCollectionUsageThresholdSupported()) {
+        assertThat(pool.getCollectionUsageThreshold()).isEqualTo(0);
+      }
+    }
+  }
+
+  @Test
+  public void monitor_noCollectors() {
+    var monitor = new MemoryPressure.Monitor(List.of(), List.of());
+    assertThat(monitor.collectionCount()).isEqualTo(0);
+    assertThat(monitor.isUnderPressure()).isFalse();
+  }
+
+  @Test
+  public void cache_registered() {
+    var cache = newCache();
+    var localCache = cache.asMap();
+    assertThat(MemoryPressure.Monitor.INSTANCE.caches.stream()
+        .anyMatch(ref -> ref.get() == localCache)).isTrue();
+  }
+
+  @Test
+  public void cache_notSensitive() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(localCache.memoryPressure).isNull();
+
+    localCache.onMemoryPressure(true);
+    assertThat(cache.policy().eviction().orElseThrow().getMaximum()).isEqualTo(100);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void memorySensitive_twice() {
+    Caffeine.newBuilder().memorySensitive().memorySensitive();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void memorySensitive_unbounded() {
+    Caffeine.newBuilder().memorySensitive().build();
+  }
+
+  @Test
+  public void memorySensitive_toString() {
+    assertThat(Caffeine.newBuilder().memorySensitive().toString()).contains("memorySensitive");
+  }
+
+  private static Cache<Integer, Integer> newCache() {
+    return Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .memorySensitive()
+        .maximumSize(100)
+        .build();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for the parallel traversals of a cache's entries.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ParallelTraversalTest {
+  static final int SIZE = 10_000;
+
+  @DataProvider(name = "caches")
+  public Object[][] caches() {
+    return new Object[][] {
+        { populate(Caffeine.newBuilder().build()) },
+        { populate(Caffeine.newBuilder().maximumSize(2 * SIZE).build()) },
+    };
+  }
+
+  @Test(dataProvider = "caches")
+  public void forEachParallel(Cache<Integer, Integer> cache) {
+    var seen = ConcurrentHashMap.<Integer, Integer>newKeySet();
+    cache.policy().forEachParallel(1, (key, value) -> {
+      assertThat(value).isEqualTo(-key);
+      seen.add(key);
+    });
+    assertThat(seen).hasSize(SIZE);
+  }
+
+  @Test(dataProvider = "caches")
+  public void forEachParallel_sequential(Cache<Integer, Integer> cache) {
+    var count = new LongAdder();
+    cache.policy().forEachParallel(Long.MAX_VALUE, (key, value) -> count.increment());
+    assertThat(count.sum()).isEqualTo(SIZE);
+  }
+
+  @Test(dataProvider = "caches")
+  public void reduce(Cache<Integer, Integer> cache) {
+    Long sum = cache.policy().reduce(1, (key, value) -> (long) key, Long::sum);
+    assertThat(sum).isEqualTo((long) SIZE * (SIZE - 1) / 2);
+  }
+
+  @Test(dataProvider = "caches")
+  public void reduce_skipsNull(Cache<Integer, Integer> cache) {
+    Integer max = cache.policy().reduce(1,
+        (key, value) -> ((key % 2) == 0) ? key : null, Math::max);
+    assertThat(max).isEqualTo(SIZE - 2);
+  }
+
+  @Test
+  public void reduce_empty() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    assertThat(cache.policy().reduce(1, (key, value) -> key, Integer::sum)).isNull();
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void forEachParallel_nullAction() {
+    Caffeine.newBuilder().maximumSize(10).build().policy().forEachParallel(1, null);
+  }
+
+  @Test
+  public void forEachParallel_expired() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    cache.put(1, 1);
+    ticker.advance(Duration.ofMinutes(2));
+    cache.put(2, 2);
+
+    var count = new LongAdder();
+    cache.policy().forEachParallel(1, (key, value) -> {
+      assertThat(key).isEqualTo(2);
+      count.increment();
+    });
+    assertThat(count.sum()).isEqualTo(1);
+    assertThat(cache.policy().reduce(1, (key, value) -> key, Integer::sum)).isEqualTo(2);
+  }
+
+  @Test
+  public void forEachParallel_async() {
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).buildAsync();
+    cache.put(1, CompletableFuture.completedFuture(1));
+    cache.put(2, new CompletableFuture<>());
+
+    var seen = ConcurrentHashMap.<Integer, Integer>newKeySet();
+    cache.synchronous().policy().forEachParallel(1, (key, value) -> seen.add(value));
+    assertThat(seen).containsExactly(1);
+  }
+
+  @Test(dataProvider = "caches")
+  public void parallelStream(Cache<Integer, Integer> cache) {
+    var keys = cache.asMap().keySet().parallelStream().collect(Collectors.toSet());
+    assertThat(keys).hasSize(SIZE);
+  }
+
+  private static Cache<Integer, Integer> populate(Cache<Integer, Integer> cache) {
+    for (int i = 0; i < SIZE; i++) {
+      cache.put(i, -i);
+    }
+    return cache;
+  }
+}
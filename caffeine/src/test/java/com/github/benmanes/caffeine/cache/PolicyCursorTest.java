@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Policy.CacheEntry;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for the chunked cursors over the policy orders.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class PolicyCursorTest {
+  static final int SIZE = 100;
+
+  @Test
+  public void coldestCursor_matchesSnapshot() {
+    var cache = evictingCache();
+    var eviction = cache.policy().eviction().orElseThrow();
+    var expected = eviction.coldest(stream -> stream.map(Map.Entry::getKey)
+        .collect(Collectors.toList()));
+    assertThat(keys(eviction.coldestCursor(7))).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  @Test
+  public void hottestCursor_matchesSnapshot() {
+    var cache = evictingCache();
+    var eviction = cache.policy().eviction().orElseThrow();
+    var expected = eviction.hottest(stream -> stream.map(Map.Entry::getKey)
+        .collect(Collectors.toList()));
+    assertThat(keys(eviction.hottestCursor(7))).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  @Test
+  public void oldestCursor_expireAfterWrite() {
+    var cache = expiringCache(Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(1)));
+    var expiration = cache.policy().expireAfterWrite().orElseThrow();
+    assertThat(keys(expiration.oldestCursor(7))).containsExactlyElementsIn(range(0, SIZE))
+        .inOrder();
+    assertThat(keys(expiration.youngestCursor(7))).containsExactlyElementsIn(
+        reverse(range(0, SIZE))).inOrder();
+  }
+
+  @Test
+  public void oldestCursor_expireAfterAccess() {
+    var cache = expiringCache(Caffeine.newBuilder()
+        .expireAfterAccess(Duration.ofMinutes(1)).maximumSize(10 * SIZE));
+    var expiration = cache.policy().expireAfterAccess().orElseThrow();
+    var expected = expiration.oldest(stream -> stream.map(Map.Entry::getKey)
+        .collect(Collectors.toList()));
+    assertThat(keys(expiration.oldestCursor(7))).containsExactlyElementsIn(expected).inOrder();
+  }
+
+  @Test
+  public void cursor_removedWhileTraversing() {
+    var cache = expiringCache(Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(1)));
+    var cursor = cache.policy().expireAfterWrite().orElseThrow().oldestCursor(10);
+
+    var visited = new ArrayList<Integer>();
+    while (cursor.hasNext()) {
+      int key = cursor.next().getKey();
+      cache.invalidate(key);
+      visited.add(key);
+    }
+    assertThat(visited).containsExactlyElementsIn(range(0, SIZE)).inOrder();
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void cursor_removedBetweenChunks() {
+    var cache = expiringCache(Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(1)));
+    var cursor = cache.policy().expireAfterWrite().orElseThrow().oldestCursor(10);
+
+    assertThat(cursor.next().getKey()).isEqualTo(0);
+    cache.invalidateAll(range(0, 50));
+    assertThat(keys(cursor)).containsExactlyElementsIn(range(50, SIZE)).inOrder();
+  }
+
+  @Test
+  public void cursor_addedBetweenChunks() {
+    var cache = expiringCache(Caffeine.newBuilder().expireAfterWrite(Duration.ofMinutes(1)));
+    var cursor = cache.policy().expireAfterWrite().orElseThrow().oldestCursor(10);
+
+    assertThat(cursor.next().getKey()).isEqualTo(0);
+    cache.put(SIZE, SIZE);
+    var remaining = keys(cursor);
+    assertThat(remaining).hasSize(SIZE);
+    assertThat(remaining.get(remaining.size() - 1)).isEqualTo(SIZE);
+  }
+
+  @Test
+  public void cursor_clearedBetweenChunks() {
+    var cache = evictingCache();
+    var cursor = cache.policy().eviction().orElseThrow().coldestCursor(10);
+    assertThat(cursor.hasNext()).isTrue();
+
+    // The entry that was reached before the removal is still returned
+    cache.invalidateAll();
+    assertThat(cursor.next()).isNotNull();
+    assertThat(cursor.hasNext()).isFalse();
+  }
+
+  @Test(expectedExceptions = NoSuchElementException.class)
+  public void cursor_exhausted() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    cache.policy().eviction().orElseThrow().coldestCursor(1).next();
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void cursor_invalidChunkSize() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    cache.policy().eviction().orElseThrow().coldestCursor(0);
+  }
+
+  @Test
+  public void cursor_expiredEntries() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    cache.put(1, 1);
+    var cursor = cache.policy().expireAfterWrite().orElseThrow().oldestCursor(1);
+    ticker.advance(Duration.ofMinutes(2));
+    assertThat(cursor.hasNext()).isFalse();
+  }
+
+  private static Cache<Integer, Integer> evictingCache() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(SIZE)
+        .build();
+    for (int i = 0; i < 2 * SIZE; i++) {
+      cache.put(i, -i);
+      cache.getIfPresent(i / 2);
+    }
+    cache.cleanUp();
+    return cache;
+  }
+
+  private static Cache<Integer, Integer> expiringCache(Caffeine<Object, Object> builder) {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = builder
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    for (int i = 0; i < SIZE; i++) {
+      cache.put(i, -i);
+      ticker.advance(Duration.ofSeconds(1));
+    }
+    cache.cleanUp();
+    return cache;
+  }
+
+  private static List<Integer> keys(Iterator<CacheEntry<Integer, Integer>> cursor) {
+    var keys = new ArrayList<Integer>();
+    cursor.forEachRemaining(entry -> keys.add(entry.getKey()));
+    return keys;
+  }
+
+  private static List<Integer> range(int from, int to) {
+    var list = new ArrayList<Integer>();
+    for (int i = from; i < to; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  private static List<Integer> reverse(List<Integer> list) {
+    var reversed = new ArrayList<>(list);
+    Collections.reverse(reversed);
+    return reversed;
+  }
+}
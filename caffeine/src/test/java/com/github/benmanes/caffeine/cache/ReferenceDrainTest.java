@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BLCHeader.DrainStatusRef.IDLE;
+import static com.github.benmanes.caffeine.cache.BLCHeader.DrainStatusRef.REQUIRED;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.REFERENCE_DRAIN_BATCH;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.REFERENCE_DRAIN_MIN_NANOS;
+import static com.google.common.truth.Truth.assertThat;
+
+import java.lang.ref.Reference;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for draining the collected references within a time budget.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ReferenceDrainTest {
+  static final int SIZE = 10 * REFERENCE_DRAIN_BATCH;
+
+  @Test
+  public void drain_withinBudget() {
+    var cache = newCache(Runnable::run);
+    collect(cache, REFERENCE_DRAIN_BATCH - 1);
+
+    cache.referenceDrainBudget = 1;
+    cache.cleanUp();
+    assertThat(cache.data).isEmpty();
+    assertThat(cache.referencesPending).isFalse();
+    assertThat(cache.drainStatusOpaque()).isEqualTo(IDLE);
+    assertThat(cache.referenceDrainBudget).isEqualTo(REFERENCE_DRAIN_MIN_NANOS);
+  }
+
+  @Test
+  public void drain_overBudget() {
+    var executor = new QueueingExecutor();
+    var cache = newCache(executor);
+    collect(cache, SIZE);
+    executor.queue = true;
+
+    cache.referenceDrainBudget = 1;
+    cache.cleanUp();
+    assertThat(cache.data).hasSize(SIZE - REFERENCE_DRAIN_BATCH);
+    assertThat(cache.referenceDrainBudget).isEqualTo(2);
+    assertThat(cache.referencesPending).isTrue();
+    assertThat(executor.tasks).containsExactly(cache.drainBuffersTask);
+
+    executor.runAll();
+    assertThat(cache.data).isEmpty();
+    assertThat(cache.referencesPending).isFalse();
+    assertThat(cache.drainStatusOpaque()).isEqualTo(IDLE);
+    assertThat(cache.referenceDrainBudget).isEqualTo(REFERENCE_DRAIN_MIN_NANOS);
+  }
+
+  @Test
+  public void drain_pastDeadline() {
+    var cache = newCache(Runnable::run);
+    collect(cache, SIZE);
+
+    cache.evictionLock.lock();
+    try {
+      assertThat(cache.drainKeyReferences(System.nanoTime())).isTrue();
+      assertThat(cache.drainValueReferences(System.nanoTime())).isFalse();
+      assertThat(cache.data).hasSize(SIZE - REFERENCE_DRAIN_BATCH);
+    } finally {
+      cache.evictionLock.unlock();
+    }
+  }
+
+  @Test
+  public void drain_sameThreadExecutor() {
+    var cache = newCache(Runnable::run);
+    collect(cache, SIZE);
+
+    cache.referenceDrainBudget = 1;
+    cache.cleanUp();
+    assertThat(cache.data).hasSize(SIZE - 2 * REFERENCE_DRAIN_BATCH);
+    assertThat(cache.drainStatusOpaque()).isEqualTo(REQUIRED);
+    assertThat(cache.referencesPending).isTrue();
+
+    for (int i = 0; (i < SIZE) && !cache.data.isEmpty(); i++) {
+      cache.cleanUp();
+    }
+    assertThat(cache.data).isEmpty();
+    assertThat(cache.referencesPending).isFalse();
+  }
+
+  @Test
+  public void drain_staleReference() {
+    var cache = newCache(Runnable::run);
+    cache.put(1, 1);
+    @SuppressWarnings("unchecked")
+    var ref = (Reference<Integer>) cache.data.get(cache.referenceKey(1)).getValueReference();
+    cache.put(1, 2);
+    ref.enqueue();
+
+    cache.cleanUp();
+    assertThat(cache).containsExactly(1, 2);
+    assertThat(cache.referencesPending).isFalse();
+  }
+
+  private static BoundedLocalCache<Integer, Integer> newCache(Executor executor) {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(executor)
+        .weakValues()
+        .build();
+    return (BoundedLocalCache<Integer, Integer>) cache.asMap();
+  }
+
+  /** Adds the entries and enqueues their value references as if cleared by the collector. */
+  private static void collect(BoundedLocalCache<Integer, Integer> cache, int count) {
+    int start = cache.data.size();
+    for (int i = start; i < start + count; i++) {
+      cache.put(i, i);
+    }
+    for (int i = start; i < start + count; i++) {
+      var node = cache.data.get(cache.referenceKey(i));
+      ((Reference<?>) node.getValueReference()).enqueue();
+    }
+  }
+
+  /** An executor that runs the tasks directly until it is switched to queuing them. */
+  static final class QueueingExecutor implements Executor {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+    boolean queue;
+
+    @Override
+    public void execute(Runnable task) {
+      if (queue) {
+        tasks.add(task);
+      } else {
+        task.run();
+      }
+    }
+
+    void runAll() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+    }
+  }
+}
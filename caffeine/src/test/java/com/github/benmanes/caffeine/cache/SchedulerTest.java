@@ -20,6 +20,7 @@ import static com.github.benmanes.caffeine.testing.ConcurrentTestHarness.executo
 import static com.github.benmanes.caffeine.testing.ConcurrentTestHarness.scheduledExecutor;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.util.concurrent.testing.TestingExecutors.sameThreadScheduledExecutor;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
@@ -27,12 +28,20 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
@@ -131,6 +140,116 @@ public final class SchedulerTest {
     assertThat(future).isSameInstanceAs(DisabledFuture.INSTANCE);
   }
 
+  /* --------------- shared --------------- */
+
+  @Test
+  public void sharedScheduler() {
+    assertThat(Scheduler.sharedScheduler()).isSameInstanceAs(SharedScheduler.INSTANCE);
+    assertThat(Caffeine.newBuilder().scheduler(Scheduler.sharedScheduler()).getScheduler())
+        .isSameInstanceAs(Scheduler.sharedScheduler());
+  }
+
+  @Test
+  public void sharedScheduler_batched() {
+    var scheduler = new SharedScheduler(TimeUnit.MILLISECONDS.toNanos(1), 4);
+    var submissions = new AtomicInteger();
+    var executed = new AtomicInteger();
+    Executor executor = task -> {
+      submissions.incrementAndGet();
+      task.run();
+    };
+
+    int tasks = 2 * SharedScheduler.BATCH_SIZE;
+    var futures = new ArrayList<Future<?>>();
+    for (int i = 0; i < tasks; i++) {
+      Runnable task = executed::incrementAndGet;
+      futures.add(scheduler.schedule(executor, task, 25, TimeUnit.MILLISECONDS));
+    }
+    await().untilAtomic(executed, is(tasks));
+    assertThat(submissions.get()).isLessThan(tasks);
+    assertThat(futures.stream().allMatch(Future::isDone)).isTrue();
+  }
+
+  @Test
+  public void sharedScheduler_cancel() {
+    var scheduler = new SharedScheduler(TimeUnit.MILLISECONDS.toNanos(1), 4);
+    var cancelled = new AtomicBoolean();
+    var executed = new AtomicBoolean();
+
+    var future = scheduler.schedule(executor, () -> cancelled.set(true), 50, TimeUnit.MILLISECONDS);
+    assertThat(future.cancel(false)).isTrue();
+    assertThat(future.isCancelled()).isTrue();
+
+    scheduler.schedule(executor, () -> executed.set(true), 100, TimeUnit.MILLISECONDS);
+    await().untilTrue(executed);
+    assertThat(cancelled.get()).isFalse();
+  }
+
+  @Test
+  public void sharedScheduler_longDelay() {
+    var scheduler = new SharedScheduler(TimeUnit.MILLISECONDS.toNanos(1), 4);
+    var executed = new AtomicBoolean();
+
+    // Exceeds the wheel's span so that the task must wait for multiple rotations
+    scheduler.schedule(executor, () -> executed.set(true), 20, TimeUnit.MILLISECONDS);
+    await().untilTrue(executed);
+  }
+
+  @Test
+  public void sharedScheduler_collected() {
+    var scheduler = new SharedScheduler(TimeUnit.MILLISECONDS.toNanos(1), 4);
+    var cache = (BoundedLocalCache<?, ?>) Caffeine.newBuilder().maximumSize(10).build().asMap();
+    var task = new BoundedLocalCache.PerformCleanupTask(cache);
+    var submitted = new AtomicBoolean();
+    var executed = new AtomicBoolean();
+
+    task.reference.clear();
+    assertThat(SharedScheduler.isCollected(task)).isTrue();
+    assertThat(SharedScheduler.isCollected(cache.drainBuffersTask)).isFalse();
+
+    scheduler.schedule(command -> submitted.set(true), task, 1, TimeUnit.MILLISECONDS);
+    scheduler.schedule(executor, () -> executed.set(true), 10, TimeUnit.MILLISECONDS);
+    await().untilTrue(executed);
+    assertThat(submitted.get()).isFalse();
+  }
+
+  @Test
+  public void sharedScheduler_threadContext() throws Exception {
+    var scheduler = new SharedScheduler(TimeUnit.MILLISECONDS.toNanos(1), 4);
+    var inheritable = new InheritableThreadLocal<String>();
+    var classLoader = new URLClassLoader(new URL[0]);
+    var thread = Thread.currentThread();
+    var original = thread.getContextClassLoader();
+    var observed = new CompletableFuture<List<Object>>();
+    try {
+      inheritable.set("caller");
+      thread.setContextClassLoader(classLoader);
+      scheduler.schedule(Runnable::run, () -> observed.complete(Arrays.asList(
+          Thread.currentThread().getContextClassLoader(), inheritable.get())),
+          1, TimeUnit.MILLISECONDS);
+    } finally {
+      thread.setContextClassLoader(original);
+      inheritable.remove();
+      classLoader.close();
+    }
+    assertThat(observed.get(10, TimeUnit.SECONDS)).containsExactly(null, null);
+  }
+
+  @Test
+  public void sharedScheduler_backoff() {
+    long tick = TimeUnit.MILLISECONDS.toNanos(1);
+    var scheduler = new SharedScheduler(tick, 4);
+    assertThat(scheduler.backoff(1)).isEqualTo(tick);
+    assertThat(scheduler.backoff(2)).isEqualTo(2 * tick);
+    assertThat(scheduler.backoff(5)).isEqualTo(16 * tick);
+    assertThat(scheduler.backoff(Integer.MAX_VALUE)).isEqualTo(SharedScheduler.MAXIMUM_BACKOFF);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void sharedScheduler_invalidTick() {
+    new SharedScheduler(0L, 4);
+  }
+
   /* --------------- ScheduledExecutorService --------------- */
 
   @Test(expectedExceptions = NullPointerException.class)
@@ -181,6 +300,7 @@ public final class SchedulerTest {
         Scheduler.forScheduledExecutorService(sameThreadScheduledExecutor()),
         Scheduler.forScheduledExecutorService(scheduledExecutor),
         Scheduler.disabledScheduler(),
+        Scheduler.sharedScheduler(),
         Scheduler.systemScheduler());
     return schedulers.iterator();
   }
@@ -190,6 +310,7 @@ public final class SchedulerTest {
     var schedulers = Set.of(
         Scheduler.forScheduledExecutorService(sameThreadScheduledExecutor()),
         Scheduler.forScheduledExecutorService(scheduledExecutor),
+        Scheduler.sharedScheduler(),
         Scheduler.systemScheduler());
     return schedulers.stream()
         .filter(scheduler -> scheduler != Scheduler.disabledScheduler())
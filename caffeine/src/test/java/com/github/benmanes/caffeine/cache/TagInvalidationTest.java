@@ -0,0 +1,253 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for discarding the entries of a cache by their tags.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class TagInvalidationTest {
+
+  @Test
+  public void invalidateTag() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+
+    cache.invalidateTag("odd");
+    assertThat(cache.asMap()).hasSize(50);
+    assertThat(cache.asMap().keySet().stream().allMatch(key -> (key % 2) == 0)).isTrue();
+
+    cache.invalidateTag("tens");
+    assertThat(cache.asMap()).hasSize(40);
+    assertThat(cache.asMap()).doesNotContainKey(20);
+  }
+
+  @Test
+  public void invalidateTag_absent() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 1);
+    cache.invalidateTag("unknown");
+    assertThat(cache.asMap()).containsExactly(1, 1);
+  }
+
+  @Test
+  public void invalidateTag_noTagger() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    cache.put(1, 1);
+    cache.invalidateTag("odd");
+    assertThat(cache.asMap()).containsExactly(1, 1);
+  }
+
+  @Test
+  public void invalidateTag_retagged() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 1);
+    cache.put(1, 2);
+
+    // The value's new tags replace the prior ones
+    cache.invalidateTag("odd");
+    assertThat(cache.asMap()).containsExactly(1, 2);
+    cache.invalidateTag("even");
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void invalidateTag_notifiesExplicit() {
+    var notifications = new ArrayList<RemovalCause>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .removalListener((Integer k, Integer v, RemovalCause cause) -> notifications.add(cause))
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build();
+    cache.put(1, 1);
+    cache.put(3, 3);
+    cache.invalidateTag("odd");
+    assertThat(notifications).containsExactly(RemovalCause.EXPLICIT, RemovalCause.EXPLICIT);
+  }
+
+  @Test
+  public void index_eviction() {
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build().asMap();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+
+    // The evicted entries were removed from the index
+    assertThat(cache.tagIndex.tagsByNode).hasSize(cache.size());
+  }
+
+  @Test
+  public void index_expiration() {
+    var ticker = new FakeTicker();
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build().asMap();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+    ticker.advance(Duration.ofMinutes(2));
+    cache.cleanUp();
+
+    assertThat(cache.tagIndex.tagsByNode).isEmpty();
+    assertThat(cache.tagIndex.tagCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void index_clear() {
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build().asMap();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+    cache.clear();
+
+    assertThat(cache.tagIndex.tagsByNode).isEmpty();
+    assertThat(cache.tagIndex.tagCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void index_untagged() {
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger((Integer key, Integer value) -> List.of())
+        .executor(Runnable::run)
+        .build().asMap();
+    cache.put(1, 1);
+    cache.cleanUp();
+
+    assertThat(cache.tagIndex.tagsByNode).isEmpty();
+  }
+
+  @Test
+  public void index_taggerOutsideLock() {
+    var locked = new ArrayList<Boolean>();
+    var cache = new ArrayList<BoundedLocalCache<Integer, Integer>>();
+    cache.add((BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger((Integer key, Integer value) -> {
+          locked.add(cache.get(0).evictionLock.isHeldByCurrentThread());
+          return tagsOf(key, value);
+        })
+        .executor(Runnable::run)
+        .build().asMap());
+    cache.get(0).put(1, 1);
+    cache.get(0).put(1, 2);
+    cache.get(0).cleanUp();
+
+    assertThat(locked).isNotEmpty();
+    assertThat(locked).doesNotContain(true);
+    assertThat(cache.get(0).tagIndex.tagsByNode.values()).containsExactly("even");
+  }
+
+  @Test
+  public void index_replaceSameTags() {
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .build().asMap();
+    cache.put(1, 1);
+    cache.cleanUp();
+
+    // A replacement that keeps the same tags does not need to update the index
+    long producerIndex = cache.writeBuffer.producerIndex;
+    cache.put(1, 3);
+    cache.replace(1, 5);
+    cache.replace(1, 5, 7);
+    assertThat(cache.writeBuffer.producerIndex).isEqualTo(producerIndex);
+
+    cache.put(1, 2);
+    assertThat(cache.writeBuffer.producerIndex).isGreaterThan(producerIndex);
+    cache.invalidateTag("even");
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void index_taggerFails() {
+    var cache = (BoundedLocalCache<Integer, Integer>) Caffeine.newBuilder()
+        .tagger((Integer key, Integer value) -> {
+          if (value < 0) {
+            throw new IllegalStateException();
+          }
+          return tagsOf(key, value);
+        })
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build().asMap();
+    cache.put(1, -1);
+    cache.put(2, 2);
+    cache.cleanUp();
+
+    // The failed entry is left untagged and the maintenance is not disrupted
+    assertThat(cache).containsExactly(1, -1, 2, 2);
+    assertThat(cache.tagIndex.tagsByNode.values()).containsExactly("even");
+    assertThat(cache.drainStatus).isEqualTo(BoundedLocalCache.IDLE);
+  }
+
+  @Test
+  public void invalidateTag_async() {
+    var future = new CompletableFuture<Integer>();
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tagger(TagInvalidationTest::tagsOf)
+        .executor(Runnable::run)
+        .buildAsync();
+    cache.put(1, future);
+
+    // An in-flight load is not tagged until it completes
+    cache.synchronous().invalidateTag("odd");
+    assertThat(cache.asMap()).containsKey(1);
+
+    future.complete(1);
+    cache.synchronous().invalidateTag("odd");
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  private static Set<String> tagsOf(Integer key, Integer value) {
+    String parity = ((value % 2) == 0) ? "even" : "odd";
+    return ((key % 10) == 0) ? Set.of(parity, "tens") : Set.of(parity);
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+/**
+ * The tests for a cache whose entries are partitioned by tenant.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class TenantQuotaTest {
+
+  @Test
+  public void tenantMaximum() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+
+    // The noisy tenant is limited to its quota and evicts its own least recently used entries
+    for (int i = 0; i < 50; i++) {
+      cache.put(2 * i, i);
+    }
+    cache.put(1, 1);
+    cache.cleanUp();
+
+    assertThat(countByTenant(cache, 0)).isEqualTo(10);
+    assertThat(countByTenant(cache, 1)).isEqualTo(1);
+    assertThat(cache.asMap()).containsKey(98);
+    assertThat(cache.asMap()).doesNotContainKey(0);
+  }
+
+  @Test
+  public void tenantMaximum_perTenant() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, tenant -> (tenant == 0) ? 5L : 20L)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 60; i++) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+
+    assertThat(countByTenant(cache, 0)).isEqualTo(5);
+    assertThat(countByTenant(cache, 1)).isEqualTo(20);
+  }
+
+  @Test
+  public void fairShare() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, Long.MAX_VALUE)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+
+    // The quiet tenant's entries are retained despite the noisy tenant's churn
+    IntStream.range(0, 20).forEach(i -> cache.put(2 * i + 1, i));
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(2 * i, i);
+    }
+    cache.cleanUp();
+
+    assertThat(cache.estimatedSize()).isEqualTo(100);
+    assertThat(countByTenant(cache, 1)).isEqualTo(20);
+  }
+
+  @Test
+  public void tenantStats() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, 2)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .recordStats()
+        .build();
+    cache.get(0, k -> k);
+    cache.get(0, k -> k);
+    cache.getIfPresent(1);
+    cache.put(2, 2);
+    cache.put(4, 4);
+    cache.cleanUp();
+
+    var stats = cache.policy().eviction().orElseThrow().tenantStats();
+    assertThat(stats.get(0).hitCount()).isEqualTo(1);
+    assertThat(stats.get(0).missCount()).isEqualTo(1);
+    assertThat(stats.get(0).evictionCount()).isEqualTo(1);
+
+    // A lookup does not create a tenant that holds no entries
+    assertThat(stats).doesNotContainKey(1);
+  }
+
+  @Test
+  public void tenants_transientLookups() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(key -> key, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .recordStats()
+        .build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.getIfPresent(i);
+    }
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(localCache.tenants.tenants).isEmpty();
+  }
+
+  @Test
+  public void tenants_discardedWhenEmpty() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    assertThat(localCache.tenants.tenants.keySet()).containsExactly(0, 1);
+
+    cache.invalidate(1);
+    cache.cleanUp();
+    assertThat(localCache.tenants.tenants.keySet()).containsExactly(0);
+    assertThat(localCache.tenants.activeTenants).isEqualTo(1);
+  }
+
+  @Test
+  public void tenantMaximum_hotEntriesRetained() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(2 * i, i);
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.getIfPresent(0);
+    }
+    for (int i = 10; i < 20; i++) {
+      cache.put(2 * i, i);
+    }
+    cache.cleanUp();
+
+    assertThat(countByTenant(cache, 0)).isEqualTo(10);
+    assertThat(cache.asMap()).containsKey(38);
+  }
+
+  @Test
+  public void tenantMaximum_scanResumes() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, tenant -> (tenant == 0) ? 10L : Long.MAX_VALUE)
+        .executor(Runnable::run)
+        .maximumSize(10_000)
+        .build();
+    int coldEntries = 3 * TenantPolicy.EVICTION_SCAN_LIMIT;
+    for (int i = 0; i < coldEntries; i++) {
+      cache.put(2 * i + 1, i);
+    }
+    for (int i = 0; i < 20; i++) {
+      cache.put(2 * i, i);
+    }
+    for (int i = 0; i < 5; i++) {
+      cache.cleanUp();
+    }
+
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(countByTenant(cache, 0)).isEqualTo(10);
+    assertThat(countByTenant(cache, 1)).isEqualTo(coldEntries);
+    assertThat(localCache.tenants.overweight).isEmpty();
+    assertThat(localCache.tenants.owners).hasSize(coldEntries + 10);
+  }
+
+  @Test
+  public void classifier_outsideLock() {
+    var underLock = new boolean[1];
+    var localCache = new BoundedLocalCache<?, ?>[1];
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota((Integer key) -> {
+          underLock[0] |= localCache[0].evictionLock.isHeldByCurrentThread();
+          return tenantOf(key);
+        }, tenant -> {
+          underLock[0] |= localCache[0].evictionLock.isHeldByCurrentThread();
+          return 5L;
+        })
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    localCache[0] = (BoundedLocalCache<?, ?>) cache.asMap();
+    for (int i = 0; i < 50; i++) {
+      cache.put(i, i);
+      cache.getIfPresent(i);
+    }
+    cache.invalidateAll();
+    cache.cleanUp();
+
+    assertThat(underLock[0]).isFalse();
+    assertThat(localCache[0].tenants.tenants).isEmpty();
+  }
+
+  @Test
+  public void classifier_throws() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota((Integer key) -> {
+          if (key == 1) {
+            throw new IllegalStateException();
+          }
+          return tenantOf(key);
+        }, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    cache.put(1, 1);
+    cache.put(2, 2);
+    cache.cleanUp();
+
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    assertThat(cache.asMap()).containsKey(1);
+    assertThat(localCache.tenants.tenants.keySet()).containsExactly(0);
+  }
+
+  @Test
+  public void tenantStats_absent() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    assertThat(cache.policy().eviction().orElseThrow().tenantStats()).isEmpty();
+  }
+
+  @Test
+  public void invalidate() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .tenantQuota(TenantQuotaTest::tenantOf, 10)
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    for (int i = 0; i < 20; i += 2) {
+      cache.put(i, i);
+    }
+    cache.invalidateAll();
+    for (int i = 20; i < 40; i += 2) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+
+    // The removals released the tenant's quota, so the new entries are not evicted
+    assertThat(countByTenant(cache, 0)).isEqualTo(10);
+  }
+
+  private static int tenantOf(Integer key) {
+    return Math.floorMod(key, 2);
+  }
+
+  private static long countByTenant(Cache<Integer, Integer> cache, int tenant) {
+    return cache.asMap().keySet().stream().filter(key -> tenantOf(key) == tenant).count();
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.testing.FakeTicker;
+
+/**
+ * The tests for discarding the loaded values whose keys were invalidated while in-flight.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class VersionedLoadTest {
+
+  @Test
+  public void getAll_invalidatedWhileLoading() {
+    var cache = new Object() {
+      LoadingCache<Integer, Integer> value;
+    };
+    cache.value = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build(new CacheLoader<Integer, Integer>() {
+          @Override public Integer load(Integer key) {
+            return -key;
+          }
+          @Override public Map<Integer, Integer> loadAll(Set<? extends Integer> keys) {
+            // The system of record is updated and the key invalidated while the load is in-flight
+            cache.value.invalidate(1);
+            var result = new HashMap<Integer, Integer>();
+            for (Integer key : keys) {
+              result.put(key, -key);
+            }
+            result.put(4, -4);
+            return result;
+          }
+        });
+
+    var result = cache.value.getAll(List.of(1, 2, 3));
+    assertThat(result).containsExactly(1, -1, 2, -2, 3, -3);
+    assertThat(cache.value.asMap()).containsExactly(2, -2, 3, -3, 4, -4);
+  }
+
+  @Test
+  public void getAll_writtenWhileLoading() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    var result = cache.getAll(List.of(1, 2), keys -> {
+      cache.put(2, 20);
+      return Map.of(1, -1, 2, -2);
+    });
+
+    assertThat(result).containsExactly(1, -1, 2, -2);
+    assertThat(cache.asMap()).containsExactly(1, -1, 2, 20);
+  }
+
+  @Test
+  public void getAll_clearedWhileLoading() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(100)
+        .build();
+    cache.getAll(List.of(1, 2), keys -> {
+      cache.invalidateAll();
+      return Map.of(1, -1, 2, -2);
+    });
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void putIfVersion() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    long version = cache.policy().versionOf(1);
+
+    assertThat(cache.policy().putIfVersion(1, 1, version)).isTrue();
+    assertThat(cache.getIfPresent(1)).isEqualTo(1);
+    assertThat(cache.policy().putIfVersion(1, 2, version)).isTrue();
+    assertThat(cache.getIfPresent(1)).isEqualTo(2);
+  }
+
+  @Test
+  public void putIfVersion_invalidated() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    long version = cache.policy().versionOf(1);
+
+    // The key is absent, so the invalidation only leaves a tombstone
+    cache.invalidate(1);
+    assertThat(cache.policy().putIfVersion(1, 1, version)).isFalse();
+    assertThat(cache.getIfPresent(1)).isNull();
+  }
+
+  @Test
+  public void putIfVersion_replaced() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    long version = cache.policy().versionOf(1);
+
+    cache.put(1, 1);
+    assertThat(cache.policy().putIfVersion(1, 2, version)).isFalse();
+    assertThat(cache.getIfPresent(1)).isEqualTo(1);
+  }
+
+  @Test
+  public void putIfVersion_rejectedLeavesEntry() {
+    var ticker = new FakeTicker();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .maximumSize(100)
+        .build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+    var expireAfterWrite = cache.policy().expireAfterWrite().orElseThrow();
+    long version = cache.policy().versionOf(1);
+
+    cache.put(1, 1);
+    ticker.advance(Duration.ofSeconds(30));
+    var refresh = new CompletableFuture<Integer>();
+    localCache.refreshes().put(localCache.referenceKey(1), refresh);
+    long writeTime = localCache.data.get(localCache.referenceKey(1)).getWriteTime();
+
+    assertThat(cache.policy().putIfVersion(1, 2, version)).isFalse();
+    assertThat(cache.getIfPresent(1)).isEqualTo(1);
+    assertThat(localCache.data.get(localCache.referenceKey(1)).getWriteTime())
+        .isEqualTo(writeTime);
+    assertThat(expireAfterWrite.ageOf(1, TimeUnit.SECONDS)).hasValue(30);
+    assertThat(localCache.refreshes()).containsEntry(localCache.referenceKey(1), refresh);
+  }
+
+  @Test
+  public void putIfVersion_rejectedAbsent() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    long version = cache.policy().versionOf(1);
+
+    cache.put(1, 1);
+    cache.invalidate(1);
+    assertThat(cache.policy().putIfVersion(1, 2, version)).isFalse();
+    assertThat(cache.asMap()).isEmpty();
+  }
+
+  @Test
+  public void generations_lazy() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).build();
+    var localCache = (BoundedLocalCache<Integer, Integer>) cache.asMap();
+
+    cache.put(1, 1);
+    cache.invalidate(1);
+    cache.invalidateAll();
+    assertThat(localCache.generations).isNull();
+
+    cache.policy().versionOf(1);
+    assertThat(localCache.generations).isNotNull();
+  }
+
+  @Test
+  public void putIfVersion_async() {
+    AsyncCache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(100).buildAsync();
+    var policy = cache.synchronous().policy();
+    long version = policy.versionOf(1);
+
+    assertThat(policy.putIfVersion(1, 1, version)).isTrue();
+    assertThat(cache.synchronous().getIfPresent(1)).isEqualTo(1);
+  }
+
+  @Test(expectedExceptions = UnsupportedOperationException.class)
+  public void versionOf_unbounded() {
+    Caffeine.newBuilder().build().policy().versionOf(1);
+  }
+
+  @Test
+  public void generations() {
+    var generations = new Generations(/* expectedKeys */ 0L);
+    long first = generations.versionOf(1);
+    long second = generations.versionOf(2);
+
+    generations.advance(1);
+    assertThat(generations.isCurrent(1, first)).isFalse();
+    if (generations.indexOf(1) != generations.indexOf(2)) {
+      assertThat(generations.isCurrent(2, second)).isTrue();
+    }
+
+    second = generations.versionOf(2);
+    generations.advanceAll();
+    assertThat(generations.isCurrent(2, second)).isFalse();
+  }
+}
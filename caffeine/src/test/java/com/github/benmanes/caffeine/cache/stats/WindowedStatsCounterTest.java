@@ -0,0 +1,242 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class WindowedStatsCounterTest {
+
+  @Test
+  public void cumulative() {
+    var counter = new WindowedStatsCounter();
+    counter.recordHits(1);
+    counter.recordMisses(1);
+    counter.recordEviction(10, RemovalCause.SIZE);
+    counter.recordLoadSuccess(1);
+    counter.recordLoadFailure(1);
+    var expected = CacheStats.of(1, 1, 1, 1, 2, 1, 10);
+    assertThat(counter.snapshot()).isEqualTo(expected);
+    assertThat(counter.toString()).isEqualTo(expected.toString());
+  }
+
+  @Test
+  public void windowed() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(10), 10, ticker::read);
+    for (int i = 0; i < 100; i++) {
+      counter.recordHits(2);
+      counter.recordMisses(1);
+      counter.recordLoadSuccess(TimeUnit.MILLISECONDS.toNanos(i));
+      ticker.advance(Duration.ofMillis(100));
+      counter.advance();
+    }
+
+    var windowed = counter.windowedSnapshot();
+    assertThat(windowed.window()).isEqualTo(Duration.ofSeconds(9));
+    assertThat(windowed.stats().hitCount()).isEqualTo(180);
+    assertThat(windowed.stats().missCount()).isEqualTo(90);
+    assertThat(windowed.stats().loadSuccessCount()).isEqualTo(90);
+    assertThat(windowed.hitRate()).isWithin(0.001).of(2.0 / 3.0);
+    assertThat(windowed.hitsPerSecond()).isWithin(0.001).of(20.0);
+    assertThat(windowed.requestsPerSecond()).isWithin(0.001).of(30.0);
+    assertThat(windowed.loadSuccessLatency().count()).isEqualTo(90);
+    assertThat(windowed.loadFailureLatency().count()).isEqualTo(0);
+    assertThat(counter.snapshot().hitCount()).isEqualTo(200);
+  }
+
+  @Test
+  public void windowed_expires() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(10), 10, ticker::read);
+    counter.recordHits(1);
+    counter.recordEviction(1, RemovalCause.SIZE);
+    counter.recordLoadFailure(1);
+
+    ticker.advance(Duration.ofSeconds(20));
+    var windowed = counter.windowedSnapshot();
+    assertThat(windowed.stats()).isEqualTo(CacheStats.empty());
+    assertThat(windowed.evictionsPerSecond()).isEqualTo(0.0);
+    assertThat(counter.snapshot()).isEqualTo(CacheStats.of(1, 0, 0, 1, 1, 1, 1));
+  }
+
+  @Test
+  public void windowed_sliceReused() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(2), 2, ticker::read);
+    counter.recordHits(5);
+    ticker.advance(Duration.ofSeconds(2));
+    counter.advance();
+    counter.recordHits(1);
+    assertThat(counter.windowedSnapshot().stats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void record_doesNotReadTicker() {
+    var reads = new AtomicInteger();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(10), 10, () -> {
+      reads.incrementAndGet();
+      return 0L;
+    }, Scheduler.disabledScheduler());
+    reads.set(0);
+
+    counter.recordHits(1);
+    counter.recordMisses(1);
+    counter.recordEviction(1, RemovalCause.SIZE);
+    counter.recordLoadSuccess(1);
+    counter.recordLoadFailure(1);
+    assertThat(reads.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void clock_advancesSlice() {
+    var ticker = new FakeTicker();
+    var tasks = new ArrayList<Runnable>();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(2), 2, ticker::read,
+        (executor, command, delay, unit) -> {
+          assertThat(unit.toNanos(delay)).isEqualTo(
+              TimeUnit.SECONDS.toNanos(1) / WindowedStatsCounter.TICKS_PER_SLICE);
+          tasks.add(command);
+          return CompletableFuture.completedFuture(null);
+        });
+    assertThat(tasks).hasSize(1);
+    counter.recordHits(5);
+
+    ticker.advance(Duration.ofSeconds(2));
+    tasks.remove(0).run();
+    assertThat(tasks).hasSize(1);
+
+    counter.recordHits(1);
+    ticker.advance(Duration.ofMillis(500));
+    assertThat(counter.windowedSnapshot().stats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void windowed_empty() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofSeconds(10), 10, ticker::read);
+    var windowed = counter.windowedSnapshot();
+    assertThat(windowed.window()).isEqualTo(Duration.ZERO);
+    assertThat(windowed.requestsPerSecond()).isEqualTo(0.0);
+    assertThat(windowed.loadSuccessLatency().percentile(99.0)).isEqualTo(0);
+    assertThat(windowed.toString()).contains("window=PT0S");
+  }
+
+  @Test
+  public void concurrent() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofMinutes(1), 12, ticker::read);
+    ConcurrentTestHarness.timeTasks(5, () -> {
+      counter.recordHits(1);
+      counter.recordMisses(1);
+      counter.recordEviction(10, RemovalCause.SIZE);
+      counter.recordLoadSuccess(1);
+      counter.recordLoadFailure(1);
+    });
+    assertThat(counter.snapshot()).isEqualTo(CacheStats.of(5, 5, 5, 5, 10, 5, 50));
+    assertThat(counter.windowedSnapshot().stats()).isEqualTo(CacheStats.of(5, 5, 5, 5, 10, 5, 50));
+  }
+
+  @Test
+  public void cache() {
+    var ticker = new FakeTicker();
+    var counter = new WindowedStatsCounter(Duration.ofMinutes(1), 12, ticker::read);
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .recordStats(() -> counter)
+        .ticker(ticker::read)
+        .build();
+    ticker.advance(Duration.ofSeconds(1));
+    cache.get(1, key -> key);
+    cache.getIfPresent(1);
+
+    var windowed = counter.windowedSnapshot();
+    assertThat(windowed.stats().hitCount()).isEqualTo(1);
+    assertThat(windowed.stats().missCount()).isEqualTo(1);
+    assertThat(windowed.loadSuccessLatency().count()).isEqualTo(1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void slices_notPositive() {
+    new WindowedStatsCounter(Duration.ofMinutes(1), 0, System::nanoTime);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void window_tooShort() {
+    new WindowedStatsCounter(Duration.ofNanos(1), 2, System::nanoTime);
+  }
+
+  /* --------------- LatencyHistogram --------------- */
+
+  @Test
+  public void histogram_buckets() {
+    for (int bucket = 0; bucket < (LatencyHistogram.BUCKETS - 1); bucket++) {
+      long highest = LatencyHistogram.highestValueOf(bucket);
+      assertThat(LatencyHistogram.bucketOf(highest)).isEqualTo(bucket);
+      assertThat(LatencyHistogram.bucketOf(highest + 1)).isEqualTo(bucket + 1);
+    }
+    assertThat(LatencyHistogram.bucketOf(-1)).isEqualTo(0);
+    assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+  }
+
+  @Test
+  public void histogram_percentiles() {
+    var counter = new WindowedStatsCounter();
+    for (int i = 1; i <= 1_000; i++) {
+      counter.recordLoadSuccess(TimeUnit.MICROSECONDS.toNanos(i));
+    }
+    var histogram = counter.windowedSnapshot().loadSuccessLatency();
+    assertThat(histogram.count()).isEqualTo(1_000);
+    assertThat(histogram.averageTime()).isWithin(1.0).of(500_500.0);
+    assertThat((double) histogram.percentile(50.0)).isWithin(0.125 * 500_000).of(500_000);
+    assertThat((double) histogram.percentile(99.0)).isWithin(0.125 * 990_000).of(990_000);
+    assertThat(histogram.percentile(99.0)).isAtLeast(990_000);
+    assertThat(histogram.maximum()).isAtLeast(1_000_000);
+    assertThat(histogram.percentile(0.0)).isEqualTo(LatencyHistogram.highestValueOf(
+        LatencyHistogram.bucketOf(1_000)));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void histogram_percentile_negative() {
+    LatencyHistogram.empty().percentile(-1.0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void histogram_percentile_tooLarge() {
+    LatencyHistogram.empty().percentile(100.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void histogram_percentile_nan() {
+    LatencyHistogram.empty().percentile(Double.NaN);
+  }
+}
@@ -22,6 +22,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.function.Function.identity;
 
 import java.io.Serializable;
+import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -47,6 +48,7 @@ import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheExecutor;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheExpiry;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheScheduler;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheWeigher;
+import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compact;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compute;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Expiration;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Expire;
@@ -65,7 +67,9 @@ import com.github.benmanes.caffeine.testing.Int;
 import com.google.common.base.MoreObjects;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.math.LongMath;
 import com.google.common.testing.FakeTicker;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
 
 /**
  * The cache configuration context for a test case.
@@ -73,6 +77,9 @@ import com.google.common.testing.FakeTicker;
  * @author ben.manes@gmail.com (Ben Manes)
  */
 public final class CacheContext {
+  /** The span of a compact node's time unit, which is the timer wheel's finest bucket (1.07s). */
+  static final long COMPACT_TIME_UNIT = 1L << 30;
+
   private static final ThreadLocal<Map<Object, Object>> interner =
       ThreadLocal.withInitial(HashMap::new);
 
@@ -99,6 +106,7 @@ public final class CacheContext {
   final Expire afterAccess;
   final Expire afterWrite;
   final Expire expiryTime;
+  final Compact compact;
   final Compute compute;
   final Expire refresh;
   final Loader loader;
@@ -122,14 +130,15 @@ public final class CacheContext {
 
   Map<Int, Int> absent;
 
-  public CacheContext(InitialCapacity initialCapacity, Stats stats, CacheWeigher cacheWeigher,
-      Maximum maximumSize, CacheExpiry expiryType, Expire afterAccess, Expire afterWrite,
-      Expire refresh, ReferenceType keyStrength, ReferenceType valueStrength,
+  public CacheContext(InitialCapacity initialCapacity, Stats stats, Compact compact,
+      CacheWeigher cacheWeigher, Maximum maximumSize, CacheExpiry expiryType, Expire afterAccess,
+      Expire afterWrite, Expire refresh, ReferenceType keyStrength, ReferenceType valueStrength,
       CacheExecutor cacheExecutor, CacheScheduler cacheScheduler, Listener removalListenerType,
       Listener evictionListenerType, Population population, boolean isAsyncLoader, Compute compute,
       Loader loader, Implementation implementation, CacheSpec cacheSpec) {
     this.initialCapacity = requireNonNull(initialCapacity);
     this.stats = requireNonNull(stats);
+    this.compact = requireNonNull(compact);
     this.weigher = cacheWeigher.create();
     this.cacheWeigher = cacheWeigher;
     this.maximumSize = requireNonNull(maximumSize);
@@ -149,7 +158,9 @@ public final class CacheContext {
     this.population = requireNonNull(population);
     this.loader = requireNonNull(loader);
     this.isAsyncLoader = isAsyncLoader;
-    this.ticker = new SerializableFakeTicker();
+    this.ticker = (compact == Compact.ENABLED)
+        ? new SerializableFakeTicker(/* startTime */ 0L, COMPACT_TIME_UNIT)
+        : new SerializableFakeTicker(randomStartTime(), /* granularity */ 1L);
     this.implementation = requireNonNull(implementation);
     this.original = new LinkedHashMap<>();
     this.initialSize = -1;
@@ -380,6 +391,10 @@ public final class CacheContext {
     return requireNonNull(evictionListener);
   }
 
+  public boolean isCompact() {
+    return (compact == Compact.ENABLED);
+  }
+
   public boolean isRecordingStats() {
     return (stats == Stats.ENABLED);
   }
@@ -502,19 +517,38 @@ public final class CacheContext {
         .add("evictionListener", evictionListenerType)
         .add("initialCapacity", initialCapacity)
         .add("stats", stats)
+        .add("compact", compact)
         .add("implementation", implementation)
         .add("startTime", ticker.startTime)
         .toString();
   }
 
+  private static long randomStartTime() {
+    return ThreadLocalRandom.current().nextLong(Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * A ticker that advances in multiples of its granularity. A compact node stores its timestamps as
+   * coarse units that are relative to the cache's creation, so the ticker starts at zero and moves
+   * in whole units to keep the entries' times exact for the test's assertions.
+   */
   @SuppressWarnings("serial")
   static final class SerializableFakeTicker extends FakeTicker implements Serializable {
+    final long granularity;
     final long startTime;
 
     @SuppressWarnings("PreferJavaTimeOverload")
-    public SerializableFakeTicker() {
-      startTime = ThreadLocalRandom.current().nextLong(Long.MIN_VALUE, Long.MAX_VALUE);
+    SerializableFakeTicker(long startTime, long granularity) {
+      this.granularity = granularity;
+      this.startTime = startTime;
       advance(startTime);
     }
+
+    @Override
+    @CanIgnoreReturnValue
+    public FakeTicker advance(long nanoseconds) {
+      return super.advance((granularity == 1L) ? nanoseconds
+          : LongMath.divide(nanoseconds, granularity, RoundingMode.UP) * granularity);
+    }
   }
 }
@@ -29,6 +29,7 @@ import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheExecutor;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheExpiry;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheScheduler;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.CacheWeigher;
+import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compact;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compute;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Expire;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Implementation;
@@ -93,6 +94,7 @@ public final class CacheGenerator {
     var keys = filterTypes(options.keys(), cacheSpec.keys());
     var values = filterTypes(options.values(), cacheSpec.values());
     var statistics = filterTypes(options.stats(), cacheSpec.stats());
+    var compactness = filterTypes(options.compact(), cacheSpec.compact());
     var computations = filterTypes(options.compute(), cacheSpec.compute());
     var implementations = filterTypes(options.implementation(), cacheSpec.implementation());
 
@@ -114,12 +116,13 @@ public final class CacheGenerator {
     }
 
     if (computations.isEmpty() || implementations.isEmpty()
-        || keys.isEmpty() || values.isEmpty()) {
+        || keys.isEmpty() || values.isEmpty() || compactness.isEmpty()) {
       return ImmutableSet.of();
     }
     return Sets.cartesianProduct(
         ImmutableSet.copyOf(cacheSpec.initialCapacity()),
         ImmutableSet.copyOf(statistics),
+        ImmutableSet.copyOf(compactness),
         ImmutableSet.copyOf(cacheSpec.weigher()),
         ImmutableSet.copyOf(cacheSpec.maximumSize()),
         ImmutableSet.copyOf(cacheSpec.expiry()),
@@ -152,6 +155,7 @@ public final class CacheGenerator {
     return new CacheContext(
         (InitialCapacity) combination.get(index++),
         (Stats) combination.get(index++),
+        (Compact) combination.get(index++),
         (CacheWeigher) combination.get(index++),
         (Maximum) combination.get(index++),
         (CacheExpiry) combination.get(index++),
@@ -190,12 +194,15 @@ public final class CacheGenerator {
         && Arrays.stream(cacheSpec.mustExpireWithAnyOf()).noneMatch(context::expires);
     boolean schedulerIgnored = (context.cacheScheduler != CacheScheduler.DISABLED)
         && (!context.expires() || context.isGuava());
+    boolean compactIncompatible = context.isCompact()
+        && (!context.isCaffeine() || !(context.expires() || context.refreshes()));
     boolean evictionListenerIncompatible = (context.evictionListenerType() != Listener.DISABLED)
         && (!context.isCaffeine() || (context.isAsync() && context.isWeakKeys()));
 
     boolean skip = asyncIncompatible || asyncLoaderIncompatible || evictionListenerIncompatible
         || refreshIncompatible || weigherIncompatible || expiryIncompatible
-        || expirationIncompatible || referenceIncompatible || schedulerIgnored;
+        || expirationIncompatible || referenceIncompatible || schedulerIgnored
+        || compactIncompatible;
     return !skip;
   }
 
@@ -136,6 +136,21 @@ public @interface CacheSpec {
     DISABLED
   }
 
+  /* --------------- Compact nodes --------------- */
+
+  /** The timestamp encoding, each resulting in a new combination if the entries expire. */
+  Compact[] compact() default {
+    Compact.DISABLED,
+    Compact.ENABLED
+  };
+
+  enum Compact {
+    /** A flag indicating that the entry's timestamps are stored as longs. */
+    DISABLED,
+    /** A configuration where the entry's timestamps are stored as coarse 32-bit words. */
+    ENABLED
+  }
+
   /* --------------- Maximum size --------------- */
 
   /** The maximum size, each resulting in a new combination. */
@@ -73,6 +73,9 @@ public final class CaffeineCacheFromContext {
     if (context.refreshes()) {
       builder.refreshAfterWrite(context.refreshAfterWrite().timeNanos(), TimeUnit.NANOSECONDS);
     }
+    if (context.isCompact()) {
+      builder.compactNodes();
+    }
     if (context.expires() || context.refreshes()) {
       SerializableTicker ticker = context.ticker()::read;
       builder.ticker(ticker);
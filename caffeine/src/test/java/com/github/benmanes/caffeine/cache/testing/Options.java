@@ -20,6 +20,7 @@ import static org.apache.commons.lang3.StringUtils.capitalize;
 
 import java.util.Optional;
 
+import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compact;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Compute;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.Implementation;
 import com.github.benmanes.caffeine.cache.testing.CacheSpec.ReferenceType;
@@ -58,6 +59,12 @@ final class Options {
         System.getProperty("stats", "").toUpperCase(US)).orNull());
   }
 
+  /** Indicates if compact nodes should be used, both if unset */
+  Optional<Compact> compact() {
+    return Optional.ofNullable(Enums.getIfPresent(Compact.class,
+        System.getProperty("compact", "").toUpperCase(US)).orNull());
+  }
+
   /** The key reference combination to use, or all if unset. */
   Optional<ReferenceType> keys() {
     return Optional.ofNullable(Enums.getIfPresent(ReferenceType.class,
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A transport that connects the peers within the same process, which is intended for testing. A
+ * message is delivered synchronously on the sender's thread to every other transport on the same
+ * network.
+ * <pre>{@code
+ *   var network = InMemoryTransport.newNetwork();
+ *   var first = InvalidationBus.newBuilder(network.connect(), KeyCodec.utf8()).build();
+ *   var second = InvalidationBus.newBuilder(network.connect(), KeyCodec.utf8()).build();
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class InMemoryTransport implements InvalidationTransport {
+  final Network network;
+
+  volatile @Nullable Consumer<byte[]> receiver;
+  volatile boolean closed;
+
+  InMemoryTransport(Network network) {
+    this.network = network;
+  }
+
+  /**
+   * Returns a new network that the transports can be connected to.
+   *
+   * @return a new network
+   */
+  public static Network newNetwork() {
+    return new Network();
+  }
+
+  @Override
+  public synchronized void start(Consumer<byte[]> receiver) {
+    if (closed || (this.receiver != null)) {
+      throw new IllegalStateException("The transport was already started or has been closed");
+    }
+    this.receiver = requireNonNull(receiver);
+  }
+
+  @Override
+  public void send(byte[] message) {
+    if (closed) {
+      throw new IllegalStateException("The transport has been closed");
+    }
+    for (var peer : network.transports) {
+      if (peer != this) {
+        peer.deliver(message);
+      }
+    }
+  }
+
+  void deliver(byte[] message) {
+    var consumer = receiver;
+    if ((consumer != null) && !closed) {
+      consumer.accept(message);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    network.transports.remove(this);
+  }
+
+  /** A group of transports that deliver the messages to each other. */
+  public static final class Network {
+    final List<InMemoryTransport> transports;
+
+    Network() {
+      transports = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Returns a new transport that sends to, and receives from, the other transports on this
+     * network.
+     *
+     * @return a new transport
+     */
+    public InMemoryTransport connect() {
+      var transport = new InMemoryTransport(this);
+      transports.add(transport);
+      return transport;
+    }
+  }
+}
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import com.google.errorprone.annotations.CheckReturnValue;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+
+/**
+ * A bus that broadcasts the invalidation of cache entries to the peer processes, so that a near
+ * cache can rely on being told when its data has changed rather than on a short expiration time.
+ * When an application writes to the system of record it invalidates the affected keys through the
+ * bus, which discards them from the local caches and broadcasts them to the peers, whose buses
+ * discard them from their registered caches.
+ * <p>
+ * The invalidations are accumulated briefly and sent in batches, where a key that is invalidated
+ * repeatedly within a batch is sent once and a large batch is compressed. The receiver discards
+ * the messages that it has already applied, as a transport may redeliver them, and applies each
+ * batch to its caches with a single {@link Cache#invalidateAll(Iterable)}. The delivery is
+ * best-effort, so the caches should still expire their entries as a safety net, though the
+ * expiration time can be far longer than what the staleness tolerance would otherwise dictate.
+ * <pre>{@code
+ *   InvalidationBus<String> bus = InvalidationBus.newBuilder(transport, KeyCodec.utf8()).build();
+ *   bus.register(cache);
+ *
+ *   database.update(key, value);
+ *   bus.invalidate(key);
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ */
+public final class InvalidationBus<K> implements AutoCloseable {
+  static final Logger logger = System.getLogger(InvalidationBus.class.getName());
+  static final int DEFAULT_MAXIMUM_BATCH_SIZE = 1_000;
+  static final long DEFAULT_MAXIMUM_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  static final long DEFAULT_DEDUPLICATION_NANOS = TimeUnit.MINUTES.toNanos(1);
+  /** The number of received message ids that are retained for deduplication. */
+  static final int MAXIMUM_RECEIVED_IDS = 1 << 16;
+
+  final Cache<MessageId, Boolean> received;
+  final InvalidationTransport transport;
+  final List<Cache<K, ?>> caches;
+  final long maximumDelayNanos;
+  final int maximumBatchSize;
+  final Scheduler scheduler;
+  final AtomicLong sequence;
+  final Executor executor;
+  final KeyCodec<K> codec;
+  final long sender;
+
+  @GuardedBy("this")
+  Set<K> pending;
+  @GuardedBy("this")
+  @Nullable Future<?> scheduled;
+  @GuardedBy("this")
+  boolean closed;
+
+  InvalidationBus(Builder<K> builder) {
+    this.received = Caffeine.newBuilder()
+        .expireAfterWrite(builder.deduplicationNanos, NANOSECONDS)
+        .maximumSize(MAXIMUM_RECEIVED_IDS)
+        .executor(builder.executor)
+        .build();
+    this.sender = ThreadLocalRandom.current().nextLong();
+    this.maximumDelayNanos = builder.maximumDelayNanos;
+    this.maximumBatchSize = builder.maximumBatchSize;
+    this.caches = new CopyOnWriteArrayList<>();
+    this.transport = builder.transport;
+    this.scheduler = builder.scheduler;
+    this.executor = builder.executor;
+    this.sequence = new AtomicLong();
+    this.pending = new LinkedHashSet<>();
+    this.codec = builder.codec;
+  }
+
+  /**
+   * Returns a new builder for a bus that sends its messages over the given transport.
+   *
+   * @param transport the network that carries the messages between the peers
+   * @param codec the encoding of the keys
+   * @param <K> the type of keys
+   * @return a new builder
+   */
+  @CheckReturnValue
+  public static <K> Builder<K> newBuilder(InvalidationTransport transport, KeyCodec<K> codec) {
+    return new Builder<>(transport, codec);
+  }
+
+  /**
+   * Registers the cache so that the invalidations sent by the peers, and those made through this
+   * bus, are applied to it. An asynchronous cache is registered by its
+   * {@link com.github.benmanes.caffeine.cache.AsyncCache#synchronous()} view.
+   *
+   * @param cache the cache to invalidate
+   */
+  public void register(Cache<K, ?> cache) {
+    caches.add(requireNonNull(cache));
+  }
+
+  /**
+   * Unregisters the cache so that it no longer receives the invalidations.
+   *
+   * @param cache the cache to stop invalidating
+   */
+  public void unregister(Cache<K, ?> cache) {
+    caches.remove(cache);
+  }
+
+  /**
+   * Discards the entry for the key from the registered caches and broadcasts the invalidation to
+   * the peers.
+   *
+   * @param key the key whose entry should be discarded
+   * @throws IllegalStateException if the bus has been closed
+   */
+  public void invalidate(K key) {
+    requireNonNull(key);
+    for (var cache : caches) {
+      cache.invalidate(key);
+    }
+    enqueue(List.of(key));
+  }
+
+  /**
+   * Discards the entries for the keys from the registered caches and broadcasts the invalidations
+   * to the peers.
+   *
+   * @param keys the keys whose entries should be discarded
+   * @throws IllegalStateException if the bus has been closed
+   */
+  public void invalidateAll(Iterable<? extends K> keys) {
+    var distinct = new LinkedHashSet<K>();
+    for (K key : keys) {
+      distinct.add(requireNonNull(key));
+    }
+    if (distinct.isEmpty()) {
+      return;
+    }
+    for (var cache : caches) {
+      cache.invalidateAll(distinct);
+    }
+    enqueue(distinct);
+  }
+
+  /** Adds the keys to the next batch and schedules it to be sent. */
+  void enqueue(Iterable<? extends K> keys) {
+    boolean flush;
+    synchronized (this) {
+      if (closed) {
+        throw new IllegalStateException("The invalidation bus has been closed");
+      }
+      for (K key : keys) {
+        pending.add(key);
+      }
+      flush = (pending.size() >= maximumBatchSize) || (maximumDelayNanos == 0);
+      if (!flush && (scheduled == null)) {
+        scheduled = scheduler.schedule(executor, this::flush, maximumDelayNanos, NANOSECONDS);
+      }
+    }
+    if (flush) {
+      submitFlush();
+    }
+  }
+
+  /** Submits a flush to the executor, falling back to the caller if it is rejected. */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void submitFlush() {
+    try {
+      executor.execute(this::flush);
+    } catch (Throwable t) {
+      logger.log(Level.ERROR, "Exception thrown when submitting the invalidation flush", t);
+      flush();
+    }
+  }
+
+  /** Sends the pending invalidations to the peers immediately. */
+  public void flush() {
+    Set<K> keys;
+    synchronized (this) {
+      if (scheduled != null) {
+        scheduled.cancel(/* mayInterruptIfRunning */ false);
+        scheduled = null;
+      }
+      if (pending.isEmpty()) {
+        return;
+      }
+      keys = pending;
+      pending = new LinkedHashSet<>();
+    }
+    send(keys);
+  }
+
+  /** Sends the keys in as few messages as the batch size and the transport's limit allow. */
+  void send(Set<K> keys) {
+    int limit = transport.maximumMessageSize() - InvalidationMessage.HEADER_SIZE;
+    var batch = new ArrayList<byte[]>(Math.min(keys.size(), maximumBatchSize));
+    int size = 0;
+    for (K key : keys) {
+      byte[] bytes = codec.encode(key);
+      int framed = InvalidationMessage.framedSize(bytes);
+      if (framed > limit) {
+        logger.log(Level.WARNING, "Discarded the invalidation of a key that exceeds the "
+            + "transport's maximum message size: {0}", key);
+        continue;
+      }
+      if (!batch.isEmpty() && ((size + framed > limit) || (batch.size() == maximumBatchSize))) {
+        sendMessage(batch);
+        batch = new ArrayList<>();
+        size = 0;
+      }
+      batch.add(bytes);
+      size += framed;
+    }
+    if (!batch.isEmpty()) {
+      sendMessage(batch);
+    }
+  }
+
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void sendMessage(List<byte[]> keys) {
+    var message = new InvalidationMessage(sender, sequence.incrementAndGet(), keys);
+    try {
+      transport.send(message.encode());
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when broadcasting the invalidations", t);
+    }
+  }
+
+  /** Applies the invalidations sent by a peer, unless the message was already received. */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void receive(byte[] bytes) {
+    InvalidationMessage message;
+    try {
+      message = InvalidationMessage.decode(bytes);
+    } catch (IllegalArgumentException e) {
+      logger.log(Level.WARNING, "Discarded a malformed invalidation message", e);
+      return;
+    }
+    if (message.sender == sender) {
+      return;
+    }
+    var id = new MessageId(message.sender, message.sequence);
+    if (received.asMap().putIfAbsent(id, Boolean.TRUE) != null) {
+      return;
+    }
+
+    var keys = new LinkedHashSet<K>(message.keys.size());
+    try {
+      for (byte[] key : message.keys) {
+        keys.add(codec.decode(key));
+      }
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when decoding the invalidated keys", t);
+      return;
+    }
+    for (var cache : caches) {
+      cache.invalidateAll(keys);
+    }
+  }
+
+  /**
+   * Sends the pending invalidations, stops receiving the peers' invalidations, and closes the
+   * transport.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    try {
+      flush();
+    } finally {
+      transport.close();
+    }
+  }
+
+  /** The identity of a message, used to discard a redelivery. */
+  static final class MessageId {
+    final long sender;
+    final long sequence;
+
+    MessageId(long sender, long sequence) {
+      this.sequence = sequence;
+      this.sender = sender;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (o == this) {
+        return true;
+      } else if (!(o instanceof MessageId)) {
+        return false;
+      }
+      var id = (MessageId) o;
+      return (sender == id.sender) && (sequence == id.sequence);
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(sender) ^ Long.hashCode(31 * sequence);
+    }
+  }
+
+  /**
+   * A builder of {@link InvalidationBus} instances.
+   *
+   * @param <K> the type of keys
+   */
+  public static final class Builder<K> {
+    final InvalidationTransport transport;
+    final KeyCodec<K> codec;
+
+    long deduplicationNanos = DEFAULT_DEDUPLICATION_NANOS;
+    long maximumDelayNanos = DEFAULT_MAXIMUM_DELAY_NANOS;
+    int maximumBatchSize = DEFAULT_MAXIMUM_BATCH_SIZE;
+    Scheduler scheduler = Scheduler.systemScheduler();
+    Executor executor = ForkJoinPool.commonPool();
+
+    Builder(InvalidationTransport transport, KeyCodec<K> codec) {
+      this.transport = requireNonNull(transport);
+      this.codec = requireNonNull(codec);
+    }
+
+    /**
+     * Specifies the maximum number of keys that are sent in a single message. A batch is sent
+     * immediately when this many invalidations are pending.
+     *
+     * @param maximumBatchSize the maximum number of keys in a message
+     * @return this builder instance
+     * @throws IllegalArgumentException if {@code maximumBatchSize} is not positive
+     */
+    @CanIgnoreReturnValue
+    public Builder<K> maximumBatchSize(int maximumBatchSize) {
+      if (maximumBatchSize <= 0) {
+        throw new IllegalArgumentException("maximumBatchSize must be positive: "
+            + maximumBatchSize);
+      }
+      this.maximumBatchSize = maximumBatchSize;
+      return this;
+    }
+
+    /**
+     * Specifies how long an invalidation may wait to be batched with others before it is sent. A
+     * zero delay sends each invalidation as soon as possible.
+     *
+     * @param delay the maximum delay before an invalidation is sent
+     * @return this builder instance
+     * @throws IllegalArgumentException if {@code delay} is negative
+     */
+    @CanIgnoreReturnValue
+    public Builder<K> maximumDelay(Duration delay) {
+      long nanos = delay.toNanos();
+      if (nanos < 0) {
+        throw new IllegalArgumentException("maximumDelay must not be negative: " + delay);
+      }
+      this.maximumDelayNanos = nanos;
+      return this;
+    }
+
+    /**
+     * Specifies how long a received message is remembered in order to discard its redelivery.
+     *
+     * @param window the duration that a message id is retained
+     * @return this builder instance
+     * @throws IllegalArgumentException if {@code window} is not positive
+     */
+    @CanIgnoreReturnValue
+    public Builder<K> deduplicationWindow(Duration window) {
+      long nanos = window.toNanos();
+      if (nanos <= 0) {
+        throw new IllegalArgumentException("deduplicationWindow must be positive: " + window);
+      }
+      this.deduplicationNanos = nanos;
+      return this;
+    }
+
+    /**
+     * Specifies the executor that sends the batches. The default is
+     * {@link ForkJoinPool#commonPool()}.
+     *
+     * @param executor the executor that sends the invalidations
+     * @return this builder instance
+     */
+    @CanIgnoreReturnValue
+    public Builder<K> executor(Executor executor) {
+      this.executor = requireNonNull(executor);
+      return this;
+    }
+
+    /**
+     * Specifies the scheduler that delays a batch so that it can accumulate invalidations. The
+     * default is {@link Scheduler#systemScheduler()}.
+     *
+     * @param scheduler the scheduler that submits the delayed batches to the executor
+     * @return this builder instance
+     */
+    @CanIgnoreReturnValue
+    public Builder<K> scheduler(Scheduler scheduler) {
+      this.scheduler = requireNonNull(scheduler);
+      return this;
+    }
+
+    /**
+     * Returns a bus that has started receiving the peers' invalidations from the transport.
+     *
+     * @return a new invalidation bus
+     */
+    public InvalidationBus<K> build() {
+      var bus = new InvalidationBus<>(this);
+      transport.start(bus::receive);
+      return bus;
+    }
+  }
+}
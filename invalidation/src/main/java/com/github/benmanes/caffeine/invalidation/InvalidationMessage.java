@@ -0,0 +1,226 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A batch of invalidated keys in its wire format. The message consists of a fixed size header that
+ * identifies the sender and its sequence number, followed by the length-prefixed keys. The keys
+ * are deflated when the payload is large enough for compression to be worthwhile and the result
+ * is smaller, which is typical of a batch of keys that share a common prefix.
+ * <pre>
+ *   magic (1) | version (1) | flags (1) | sender (8) | sequence (8) | count (4) | length (4)
+ *   payload := (varint keyLength, key bytes)*
+ * </pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class InvalidationMessage {
+  static final byte MAGIC = (byte) 0xCA;
+  static final byte VERSION = 1;
+  static final int FLAG_DEFLATED = 0x1;
+  static final int HEADER_SIZE = 27;
+
+  /** The payload size at which compression is attempted. */
+  static final int COMPRESSION_THRESHOLD = 256;
+  /** The largest uncompressed payload that will be accepted, to guard against a malformed size. */
+  static final int MAXIMUM_PAYLOAD_SIZE = (1 << 26);
+  /** The largest expansion that the deflate format can achieve, which bounds a claimed size. */
+  static final int MAXIMUM_INFLATION_RATIO = 1032;
+
+  final long sender;
+  final long sequence;
+  final List<byte[]> keys;
+
+  InvalidationMessage(long sender, long sequence, List<byte[]> keys) {
+    this.sequence = sequence;
+    this.sender = sender;
+    this.keys = keys;
+  }
+
+  /** Returns the number of bytes that the key occupies in the uncompressed payload. */
+  static int framedSize(byte[] key) {
+    return varIntSize(key.length) + key.length;
+  }
+
+  /** Returns the wire format of this message. */
+  byte[] encode() {
+    int payloadSize = 0;
+    for (byte[] key : keys) {
+      payloadSize += framedSize(key);
+    }
+    var payload = ByteBuffer.allocate(payloadSize);
+    for (byte[] key : keys) {
+      putVarInt(payload, key.length);
+      payload.put(key);
+    }
+
+    byte flags = 0;
+    byte[] body = payload.array();
+    if (payloadSize >= COMPRESSION_THRESHOLD) {
+      byte[] deflated = deflate(body);
+      if (deflated.length < body.length) {
+        flags |= FLAG_DEFLATED;
+        body = deflated;
+      }
+    }
+
+    return ByteBuffer.allocate(HEADER_SIZE + body.length)
+        .put(MAGIC).put(VERSION).put(flags)
+        .putLong(sender).putLong(sequence)
+        .putInt(keys.size()).putInt(payloadSize)
+        .put(body)
+        .array();
+  }
+
+  /**
+   * Returns the message represented by the bytes.
+   *
+   * @throws IllegalArgumentException if the bytes are not a well-formed message
+   */
+  static InvalidationMessage decode(byte[] message) {
+    try {
+      var buffer = ByteBuffer.wrap(message);
+      if ((buffer.get() != MAGIC) || (buffer.get() != VERSION)) {
+        throw new IllegalArgumentException("Unrecognized message format");
+      }
+      byte flags = buffer.get();
+      long sender = buffer.getLong();
+      long sequence = buffer.getLong();
+      int count = buffer.getInt();
+      int payloadSize = buffer.getInt();
+      if ((count < 0) || (payloadSize < 0) || (payloadSize > MAXIMUM_PAYLOAD_SIZE)) {
+        throw new IllegalArgumentException("Malformed message header");
+      }
+
+      ByteBuffer payload;
+      if ((flags & FLAG_DEFLATED) == 0) {
+        payload = buffer;
+      } else if (payloadSize > ((long) MAXIMUM_INFLATION_RATIO * buffer.remaining())) {
+        throw new IllegalArgumentException("Malformed payload size: " + payloadSize);
+      } else {
+        payload = ByteBuffer.wrap(inflate(message, buffer.position(), payloadSize));
+      }
+
+      // The header is untrusted, so the count is bounded by the payload where each key is framed by
+      // at least one byte
+      if (count > payload.remaining()) {
+        throw new IllegalArgumentException("Malformed key count: " + count);
+      }
+      var keys = new ArrayList<byte[]>(count);
+      for (int i = 0; i < count; i++) {
+        int length = getVarInt(payload);
+        if ((length < 0) || (length > payload.remaining())) {
+          throw new IllegalArgumentException("Malformed key length: " + length);
+        }
+        byte[] key = new byte[length];
+        payload.get(key);
+        keys.add(key);
+      }
+      return new InvalidationMessage(sender, sequence, keys);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated message", e);
+    }
+  }
+
+  static byte[] deflate(byte[] bytes) {
+    var deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      byte[] output = new byte[bytes.length];
+      int length = 0;
+      while (!deflater.finished() && (length < output.length)) {
+        length += deflater.deflate(output, length, output.length - length);
+      }
+      // An incompressible payload is sent as is
+      return deflater.finished() ? Arrays.copyOf(output, length) : bytes;
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Returns the inflated payload, which must be of the given size. The output is grown as the data
+   * is inflated, rather than allocated up front, so that a claimed size that the compressed bytes
+   * do not back up does not cause a large allocation.
+   */
+  static byte[] inflate(byte[] message, int offset, int size) {
+    var inflater = new Inflater();
+    try {
+      int compressed = message.length - offset;
+      inflater.setInput(message, offset, compressed);
+      long initialSize = Math.max(COMPRESSION_THRESHOLD, 4L * compressed);
+      byte[] output = new byte[(int) Math.min(size, initialSize)];
+      int length = 0;
+      while (!inflater.finished() && (length < size)) {
+        if (length == output.length) {
+          output = Arrays.copyOf(output, (int) Math.min(size, 2L * output.length));
+        }
+        int inflated = inflater.inflate(output, length, output.length - length);
+        if ((inflated == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      if (length != size) {
+        throw new IllegalArgumentException("Malformed compressed payload");
+      }
+      return output;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Malformed compressed payload", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  static int varIntSize(int value) {
+    int size = 1;
+    while ((value & ~0x7F) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  static void putVarInt(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  static int getVarInt(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import java.util.function.Consumer;
+
+/**
+ * The service provider interface for the network that carries the invalidation messages between
+ * the peers. A transport is a best-effort, unordered channel: a message may be lost, duplicated,
+ * or delivered out of order, which the {@link InvalidationBus} tolerates by deduplicating the
+ * messages that it receives. A transport should not deliver a message back to its sender, though
+ * the bus ignores its own messages if it does.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+  /**
+   * Starts receiving the messages sent by the peers, which are passed to the given receiver. The
+   * receiver may be invoked concurrently and should not be blocked on by the transport.
+   *
+   * @param receiver the consumer of the messages sent by the peers
+   * @throws IllegalStateException if the transport was already started or has been closed
+   */
+  void start(Consumer<byte[]> receiver);
+
+  /**
+   * Sends the message to the peers. The message must not be modified after it is sent.
+   *
+   * @param message the encoded message
+   * @throws java.io.UncheckedIOException if the message could not be sent
+   */
+  void send(byte[] message);
+
+  /**
+   * Returns the largest message, in bytes, that this transport can send. The bus splits a batch
+   * of invalidations across multiple messages when it would exceed this size.
+   *
+   * @return the maximum size of a message
+   */
+  default int maximumMessageSize() {
+    return Integer.MAX_VALUE;
+  }
+
+  /** Stops receiving messages and releases the transport's resources. */
+  @Override
+  void close();
+}
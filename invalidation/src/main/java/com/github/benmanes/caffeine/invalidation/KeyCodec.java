@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+/**
+ * Converts a cache key to and from its binary representation so that it can be sent to the peers.
+ * The encoding must be stable across processes, such that a decoded key is equal to the key that
+ * was encoded.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ */
+public interface KeyCodec<K> {
+
+  /**
+   * Returns the binary representation of the key.
+   *
+   * @param key the key to encode
+   * @return the encoded key
+   */
+  byte[] encode(K key);
+
+  /**
+   * Returns the key represented by the bytes.
+   *
+   * @param bytes the encoded key
+   * @return the decoded key
+   * @throws IllegalArgumentException if the bytes do not represent a key
+   */
+  K decode(byte[] bytes);
+
+  /**
+   * Returns a codec that encodes the keys as UTF-8 strings.
+   *
+   * @return a codec for string keys
+   */
+  static KeyCodec<String> utf8() {
+    return KeyCodecs.Utf8.INSTANCE;
+  }
+
+  /**
+   * Returns a codec that encodes the keys as eight byte, big-endian integers.
+   *
+   * @return a codec for long keys
+   */
+  static KeyCodec<Long> int64() {
+    return KeyCodecs.Int64.INSTANCE;
+  }
+}
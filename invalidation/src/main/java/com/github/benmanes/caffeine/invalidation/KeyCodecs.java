@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The codecs for the common key types.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class KeyCodecs {
+
+  private KeyCodecs() {}
+
+  enum Utf8 implements KeyCodec<String> {
+    INSTANCE;
+
+    @Override public byte[] encode(String key) {
+      return key.getBytes(UTF_8);
+    }
+    @Override public String decode(byte[] bytes) {
+      return new String(bytes, UTF_8);
+    }
+  }
+
+  enum Int64 implements KeyCodec<Long> {
+    INSTANCE;
+
+    @Override public byte[] encode(Long key) {
+      return ByteBuffer.allocate(Long.BYTES).putLong(key).array();
+    }
+    @Override public Long decode(byte[] bytes) {
+      if (bytes.length != Long.BYTES) {
+        throw new IllegalArgumentException("Expected 8 bytes but found " + bytes.length);
+      }
+      return ByteBuffer.wrap(bytes).getLong();
+    }
+  }
+}
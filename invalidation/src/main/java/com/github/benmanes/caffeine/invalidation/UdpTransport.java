@@ -0,0 +1,190 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A reference transport that sends each message as a UDP datagram to every peer. The datagrams
+ * are received by a dedicated daemon thread, which hands them to the bus. As UDP may drop,
+ * duplicate, or reorder the datagrams, this transport is suited for a trusted network where the
+ * caches also expire their entries to bound the staleness of a lost invalidation.
+ * <pre>{@code
+ *   var transport = UdpTransport.bind(new InetSocketAddress(7801));
+ *   transport.addPeer(new InetSocketAddress("cache-2.internal", 7801));
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class UdpTransport implements InvalidationTransport {
+  static final Logger logger = System.getLogger(UdpTransport.class.getName());
+  /** The largest payload of a UDP datagram over IPv4. */
+  static final int MAXIMUM_DATAGRAM_SIZE = 65_507;
+
+  final List<SocketAddress> peers;
+  final DatagramChannel channel;
+
+  @Nullable Thread thread;
+
+  UdpTransport(DatagramChannel channel) {
+    this.peers = new CopyOnWriteArrayList<>();
+    this.channel = channel;
+  }
+
+  /**
+   * Returns a transport that receives the datagrams sent to the given address.
+   *
+   * @param address the local address to listen on
+   * @return a new transport
+   * @throws UncheckedIOException if the socket could not be bound
+   */
+  public static UdpTransport bind(InetSocketAddress address) {
+    requireNonNull(address);
+    try {
+      return new UdpTransport(DatagramChannel.open().bind(address));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns a transport that receives the datagrams sent to the given port on the loopback
+   * interface, where a port of zero uses an ephemeral port.
+   *
+   * @param port the local port to listen on
+   * @return a new transport
+   * @throws UncheckedIOException if the socket could not be bound
+   */
+  public static UdpTransport loopback(int port) {
+    return bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+  }
+
+  /**
+   * Returns the address that this transport receives the datagrams on.
+   *
+   * @return the local address
+   */
+  public InetSocketAddress localAddress() {
+    try {
+      return (InetSocketAddress) channel.getLocalAddress();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Adds the peer that the messages are sent to.
+   *
+   * @param address the peer's address
+   */
+  public void addPeer(SocketAddress address) {
+    peers.add(requireNonNull(address));
+  }
+
+  /**
+   * Removes the peer so that the messages are no longer sent to it.
+   *
+   * @param address the peer's address
+   */
+  public void removePeer(SocketAddress address) {
+    peers.remove(address);
+  }
+
+  @Override
+  public synchronized void start(Consumer<byte[]> receiver) {
+    requireNonNull(receiver);
+    if ((thread != null) || !channel.isOpen()) {
+      throw new IllegalStateException("The transport was already started or has been closed");
+    }
+    thread = new Thread(() -> receive(receiver), "caffeine-invalidation-" + localAddress());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** Receives the datagrams until the channel is closed. */
+  @SuppressWarnings("PMD.AvoidCatchingThrowable")
+  void receive(Consumer<byte[]> receiver) {
+    var buffer = ByteBuffer.allocate(MAXIMUM_DATAGRAM_SIZE);
+    while (channel.isOpen()) {
+      try {
+        buffer.clear();
+        if (channel.receive(buffer) == null) {
+          continue;
+        }
+        buffer.flip();
+        receiver.accept(Arrays.copyOf(buffer.array(), buffer.limit()));
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown when receiving an invalidation datagram", t);
+      }
+    }
+  }
+
+  @Override
+  public void send(byte[] message) {
+    if (message.length > MAXIMUM_DATAGRAM_SIZE) {
+      throw new IllegalArgumentException("The message exceeds the maximum datagram size: "
+          + message.length);
+    }
+    IOException failure = null;
+    for (var peer : peers) {
+      try {
+        channel.send(ByteBuffer.wrap(message), peer);
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw new UncheckedIOException(failure);
+    }
+  }
+
+  @Override
+  public int maximumMessageSize() {
+    return MAXIMUM_DATAGRAM_SIZE;
+  }
+
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Exception thrown when closing the invalidation channel", e);
+    }
+  }
+}
@@ -0,0 +1,8 @@
+module com.github.benmanes.caffeine.invalidation {
+  exports com.github.benmanes.caffeine.invalidation;
+
+  requires transitive com.github.benmanes.caffeine;
+
+  requires static com.google.errorprone.annotations;
+  requires static org.checkerframework.checker.qual;
+}
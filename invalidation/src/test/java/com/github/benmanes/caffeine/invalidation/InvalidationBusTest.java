@@ -0,0 +1,327 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+
+/**
+ * The tests for broadcasting invalidations between peers.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class InvalidationBusTest {
+
+  @Test
+  public void invalidate_peers() {
+    var network = InMemoryTransport.newNetwork();
+    var local = newBus(network.connect());
+    var remote = newBus(network.connect());
+    Cache<String, String> localCache = newCache();
+    Cache<String, String> remoteCache = newCache();
+    local.register(localCache);
+    remote.register(remoteCache);
+
+    localCache.put("a", "1");
+    remoteCache.put("a", "1");
+    remoteCache.put("b", "2");
+    local.invalidate("a");
+
+    assertThat(localCache.asMap()).isEmpty();
+    assertThat(remoteCache.asMap()).containsExactly("b", "2");
+  }
+
+  @Test
+  public void invalidateAll_batched() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect());
+    var bus = InvalidationBus.newBuilder(recording, KeyCodec.utf8())
+        .scheduler(Scheduler.disabledScheduler())
+        .maximumDelay(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .build();
+
+    bus.invalidate("a");
+    bus.invalidate("a");
+    bus.invalidateAll(List.of("b", "c", "b"));
+    assertThat(recording.sent).isEmpty();
+
+    bus.flush();
+    assertThat(recording.sent).hasSize(1);
+    var message = InvalidationMessage.decode(recording.sent.get(0));
+    assertThat(decode(message)).containsExactly("a", "b", "c").inOrder();
+  }
+
+  @Test
+  public void maximumBatchSize() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect());
+    var bus = InvalidationBus.newBuilder(recording, KeyCodec.int64())
+        .scheduler(Scheduler.disabledScheduler())
+        .maximumDelay(Duration.ofMinutes(1))
+        .executor(Runnable::run)
+        .maximumBatchSize(10)
+        .build();
+
+    for (long i = 0; i < 25; i++) {
+      bus.invalidate(i);
+    }
+    assertThat(recording.sent).hasSize(2);
+    bus.flush();
+    assertThat(recording.sent).hasSize(3);
+  }
+
+  @Test
+  public void maximumMessageSize() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect()) {
+      @Override public int maximumMessageSize() {
+        return InvalidationMessage.HEADER_SIZE + 100;
+      }
+    };
+    var bus = InvalidationBus.newBuilder(recording, KeyCodec.int64())
+        .executor(Runnable::run)
+        .maximumDelay(Duration.ZERO)
+        .build();
+
+    bus.invalidateAll(longs(20));
+    assertThat(recording.sent).hasSize(2);
+    for (byte[] message : recording.sent) {
+      assertThat(message.length).isAtMost(recording.maximumMessageSize());
+    }
+  }
+
+  @Test
+  public void compressed() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect());
+    var bus = newBus(recording);
+    var keys = IntStream.range(0, 500)
+        .mapToObj(i -> "tenant-42:user:" + i)
+        .collect(Collectors.toList());
+    bus.invalidateAll(keys);
+
+    byte[] bytes = recording.sent.get(0);
+    int uncompressed = keys.stream()
+        .mapToInt(key -> InvalidationMessage.framedSize(KeyCodec.utf8().encode(key)))
+        .sum();
+    assertThat(bytes[2] & InvalidationMessage.FLAG_DEFLATED).isNotEqualTo(0);
+    assertThat(bytes.length).isLessThan(uncompressed / 2);
+    assertThat(decode(InvalidationMessage.decode(bytes))).containsExactlyElementsIn(keys);
+  }
+
+  @Test
+  public void redelivered() {
+    var network = InMemoryTransport.newNetwork();
+    var recording = new RecordingTransport(network.connect());
+    var sender = newBus(recording);
+    var receiver = newBus(network.connect());
+    Cache<String, String> cache = newCache();
+    receiver.register(cache);
+
+    sender.invalidate("a");
+    cache.put("a", "1");
+    receiver.receive(recording.sent.get(0));
+    assertThat(cache.asMap()).containsExactly("a", "1");
+  }
+
+  @Test
+  public void ownMessage() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect());
+    var bus = newBus(recording);
+    Cache<String, String> cache = newCache();
+    bus.register(cache);
+
+    bus.invalidate("a");
+    cache.put("a", "1");
+    bus.receive(recording.sent.get(0));
+    assertThat(cache.asMap()).containsExactly("a", "1");
+  }
+
+  @Test
+  public void malformed() {
+    var bus = newBus(InMemoryTransport.newNetwork().connect());
+    Cache<String, String> cache = newCache();
+    bus.register(cache);
+    cache.put("a", "1");
+
+    bus.receive(new byte[] { 1, 2, 3 });
+    assertThat(cache.asMap()).containsExactly("a", "1");
+  }
+
+  @Test
+  public void unregister() {
+    var network = InMemoryTransport.newNetwork();
+    var local = newBus(network.connect());
+    var remote = newBus(network.connect());
+    Cache<String, String> cache = newCache();
+    remote.register(cache);
+    remote.unregister(cache);
+
+    cache.put("a", "1");
+    local.invalidate("a");
+    assertThat(cache.asMap()).containsExactly("a", "1");
+  }
+
+  @Test
+  public void close() {
+    var recording = new RecordingTransport(InMemoryTransport.newNetwork().connect());
+    var bus = InvalidationBus.newBuilder(recording, KeyCodec.utf8())
+        .scheduler(Scheduler.disabledScheduler())
+        .executor(Runnable::run)
+        .build();
+    bus.invalidate("a");
+    bus.close();
+
+    assertThat(recording.sent).hasSize(1);
+    assertThat(recording.closed).isTrue();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void invalidate_closed() {
+    var bus = newBus(InMemoryTransport.newNetwork().connect());
+    bus.close();
+    bus.invalidate("a");
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void maximumBatchSize_negative() {
+    InvalidationBus.newBuilder(InMemoryTransport.newNetwork().connect(), KeyCodec.utf8())
+        .maximumBatchSize(-1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void maximumDelay_negative() {
+    InvalidationBus.newBuilder(InMemoryTransport.newNetwork().connect(), KeyCodec.utf8())
+        .maximumDelay(Duration.ofMillis(-1));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void deduplicationWindow_zero() {
+    InvalidationBus.newBuilder(InMemoryTransport.newNetwork().connect(), KeyCodec.utf8())
+        .deduplicationWindow(Duration.ZERO);
+  }
+
+  @Test
+  public void message_truncated() {
+    var keys = List.of(KeyCodec.utf8().encode("a"), KeyCodec.utf8().encode("b"));
+    byte[] bytes = new InvalidationMessage(1, 2, keys).encode();
+    for (int length = 0; length < bytes.length; length++) {
+      byte[] truncated = Arrays.copyOf(bytes, length);
+      try {
+        InvalidationMessage.decode(truncated);
+        throw new AssertionError("Decoded a truncated message of length " + length);
+      } catch (IllegalArgumentException expected) { /* ignored */ }
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void message_malformedCount() {
+    InvalidationMessage.decode(header(/* flags */ 0, Integer.MAX_VALUE, /* payloadSize */ 0)
+        .array());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void message_malformedCount_exceedsPayload() {
+    var message = header(/* flags */ 0, /* count */ 3, /* payloadSize */ 2, /* body */ 2);
+    message.put((byte) 0).put((byte) 0);
+    InvalidationMessage.decode(message.array());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void message_malformedDeflatedSize() {
+    var message = header(InvalidationMessage.FLAG_DEFLATED,
+        /* count */ 1, InvalidationMessage.MAXIMUM_PAYLOAD_SIZE, /* body */ 1);
+    message.put((byte) 0);
+    InvalidationMessage.decode(message.array());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void message_malformedDeflatedPayload() {
+    byte[] deflated = InvalidationMessage.deflate(new byte[1024]);
+    var message = header(InvalidationMessage.FLAG_DEFLATED,
+        /* count */ 1, /* payloadSize */ 2048, deflated.length);
+    message.put(deflated);
+    InvalidationMessage.decode(message.array());
+  }
+
+  /** Returns a buffer with the message header, positioned at the start of the body. */
+  static ByteBuffer header(int flags, int count, int payloadSize) {
+    return header(flags, count, payloadSize, /* body */ 0);
+  }
+
+  static ByteBuffer header(int flags, int count, int payloadSize, int bodySize) {
+    return ByteBuffer.allocate(InvalidationMessage.HEADER_SIZE + bodySize)
+        .put(InvalidationMessage.MAGIC).put(InvalidationMessage.VERSION).put((byte) flags)
+        .putLong(1L).putLong(2L).putInt(count).putInt(payloadSize);
+  }
+
+  static InvalidationBus<String> newBus(InvalidationTransport transport) {
+    return InvalidationBus.newBuilder(transport, KeyCodec.utf8())
+        .maximumDelay(Duration.ZERO)
+        .executor(Runnable::run)
+        .build();
+  }
+
+  static Cache<String, String> newCache() {
+    return Caffeine.newBuilder().executor(Runnable::run).build();
+  }
+
+  static List<String> decode(InvalidationMessage message) {
+    return message.keys.stream().map(KeyCodec.utf8()::decode).collect(Collectors.toList());
+  }
+
+  static List<Long> longs(int count) {
+    var keys = new ArrayList<Long>(count);
+    for (long i = 0; i < count; i++) {
+      keys.add(i);
+    }
+    return keys;
+  }
+
+  /** A transport that records the messages that it sends. */
+  static class RecordingTransport implements InvalidationTransport {
+    final List<byte[]> sent = new ArrayList<>();
+    final InvalidationTransport delegate;
+    boolean closed;
+
+    RecordingTransport(InvalidationTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override public void start(Consumer<byte[]> receiver) {
+      delegate.start(receiver);
+    }
+    @Override public void send(byte[] message) {
+      sent.add(message);
+      delegate.send(message);
+    }
+    @Override public void close() {
+      closed = true;
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.invalidation;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * The tests for broadcasting invalidations over UDP on the loopback interface.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class UdpTransportTest {
+
+  @Test
+  public void invalidate_peers() {
+    try (var first = UdpTransport.loopback(0);
+         var second = UdpTransport.loopback(0);
+         var third = UdpTransport.loopback(0)) {
+      connect(first, second, third);
+      var publisher = newBus(first);
+      Cache<String, String> secondCache = register(newBus(second));
+      Cache<String, String> thirdCache = register(newBus(third));
+      secondCache.put("a", "1");
+      thirdCache.put("a", "1");
+      thirdCache.put("b", "2");
+
+      publisher.invalidateAll(List.of("a", "b"));
+      await().until(() -> secondCache.asMap().isEmpty() && thirdCache.asMap().isEmpty());
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void send_tooLarge() {
+    try (var transport = UdpTransport.loopback(0)) {
+      transport.send(new byte[UdpTransport.MAXIMUM_DATAGRAM_SIZE + 1]);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void start_twice() {
+    try (var transport = UdpTransport.loopback(0)) {
+      transport.start(message -> {});
+      transport.start(message -> {});
+    }
+  }
+
+  @Test
+  public void close() {
+    var transport = UdpTransport.loopback(0);
+    transport.start(message -> {});
+    transport.close();
+    await().until(() -> !transport.thread.isAlive());
+    assertThat(transport.channel.isOpen()).isFalse();
+  }
+
+  private static void connect(UdpTransport... transports) {
+    for (var transport : transports) {
+      for (var peer : transports) {
+        if (peer != transport) {
+          transport.addPeer(peer.localAddress());
+        }
+      }
+    }
+  }
+
+  private static InvalidationBus<String> newBus(UdpTransport transport) {
+    return InvalidationBus.newBuilder(transport, KeyCodec.utf8())
+        .maximumDelay(Duration.ZERO)
+        .build();
+  }
+
+  private static Cache<String, String> register(InvalidationBus<String> bus) {
+    Cache<String, String> cache = Caffeine.newBuilder().build();
+    bus.register(cache);
+    return cache;
+  }
+}